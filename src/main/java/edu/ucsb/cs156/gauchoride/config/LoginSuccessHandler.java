@@ -0,0 +1,65 @@
+package edu.ucsb.cs156.gauchoride.config;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.security.web.authentication.SavedRequestAwareAuthenticationSuccessHandler;
+
+import edu.ucsb.cs156.gauchoride.entities.User;
+import edu.ucsb.cs156.gauchoride.services.UserProvisioningService;
+
+/**
+ * After a successful Google login, provisions the users row and replaces the
+ * principal with one that also carries the row's id
+ * ({@link UserProvisioningService#USER_ID}), then redirects as usual.
+ */
+
+public class LoginSuccessHandler extends SavedRequestAwareAuthenticationSuccessHandler {
+
+  private final UserProvisioningService userProvisioning;
+  private final ClientRegistrationRepository clientRegistrations;
+
+  public LoginSuccessHandler(UserProvisioningService userProvisioning,
+      ClientRegistrationRepository clientRegistrations) {
+    this.userProvisioning = userProvisioning;
+    this.clientRegistrations = clientRegistrations;
+  }
+
+  @Override
+  public void onAuthenticationSuccess(HttpServletRequest request, HttpServletResponse response,
+      Authentication authentication) throws ServletException, IOException {
+    if (authentication instanceof OAuth2AuthenticationToken token) {
+      OAuth2User principal = token.getPrincipal();
+      User user = userProvisioning.provision(principal);
+
+      Map<String, Object> attributes = new HashMap<>(principal.getAttributes());
+      attributes.put(UserProvisioningService.USER_ID, user.getId());
+      OAuth2User provisioned = new DefaultOAuth2User(principal.getAuthorities(), attributes,
+          nameAttributeKey(token.getAuthorizedClientRegistrationId()));
+      OAuth2AuthenticationToken provisionedToken = new OAuth2AuthenticationToken(provisioned,
+          token.getAuthorities(), token.getAuthorizedClientRegistrationId());
+      provisionedToken.setDetails(token.getDetails());
+      authentication = provisionedToken;
+      SecurityContextHolder.getContext().setAuthentication(authentication);
+    }
+    super.onAuthenticationSuccess(request, response, authentication);
+  }
+
+  // keeps getName() the same as the principal the provider gave us
+  private String nameAttributeKey(String registrationId) {
+    ClientRegistration registration = clientRegistrations.findByRegistrationId(registrationId);
+    return registration.getProviderDetails().getUserInfoEndpoint().getUserNameAttributeName();
+  }
+}
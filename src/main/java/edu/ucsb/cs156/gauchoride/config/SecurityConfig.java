@@ -25,6 +25,7 @@ import org.springframework.security.config.annotation.web.configuration.WebSecur
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.authority.mapping.GrantedAuthoritiesMapper;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
 import org.springframework.security.oauth2.core.user.OAuth2UserAuthority;
 import org.springframework.security.web.authentication.Http403ForbiddenEntryPoint;
 import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
@@ -32,7 +33,8 @@ import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 import org.springframework.security.web.util.matcher.RequestMatcher;
 
 import edu.ucsb.cs156.gauchoride.entities.User;
-import edu.ucsb.cs156.gauchoride.repositories.UserRepository;
+import edu.ucsb.cs156.gauchoride.services.UserCache;
+import edu.ucsb.cs156.gauchoride.services.UserProvisioningService;
 import lombok.extern.slf4j.Slf4j;
 
 @Configuration
@@ -45,7 +47,13 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
   private final List<String> adminEmails = new ArrayList<String>();
 
   @Autowired
-  UserRepository userRepository;
+  UserCache userCache;
+
+  @Autowired
+  UserProvisioningService userProvisioning;
+
+  @Autowired
+  ClientRegistrationRepository clientRegistrations;
 
   @Override
   protected void configure(HttpSecurity http) throws Exception {
@@ -54,7 +62,8 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
         .exceptionHandling(handlingConfigurer -> handlingConfigurer
             .authenticationEntryPoint(new Http403ForbiddenEntryPoint()))
         .oauth2Login(
-            oauth2 -> oauth2.userInfoEndpoint(userInfo -> userInfo.userAuthoritiesMapper(this.userAuthoritiesMapper())))
+            oauth2 -> oauth2.userInfoEndpoint(userInfo -> userInfo.userAuthoritiesMapper(this.userAuthoritiesMapper()))
+                .successHandler(new LoginSuccessHandler(userProvisioning, clientRegistrations)))
         .csrf(csrf -> csrf
             .csrfTokenRepository(CookieCsrfTokenRepository.withHttpOnlyFalse()))
         .logout(logout -> logout
@@ -103,12 +112,12 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
     if (adminEmails.contains(email)) {
       return true;
     }
-    Optional<User> u = userRepository.findByEmail(email);
+    Optional<User> u = userCache.findByEmail(email);
     return u.isPresent() && u.get().getAdmin();
   }
 
   public boolean getDriver(String email) {
-    Optional<User> u = userRepository.findByEmail(email);
+    Optional<User> u = userCache.findByEmail(email);
     return u.isPresent() && u.get().getDriver();
   }
 
@@ -5,12 +5,17 @@ import org.springframework.beans.factory.annotation.Autowired;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
+import edu.ucsb.cs156.gauchoride.errors.BadRequestException;
 import edu.ucsb.cs156.gauchoride.errors.EntityNotFoundException;
+import edu.ucsb.cs156.gauchoride.errors.RideConflictException;
+import edu.ucsb.cs156.gauchoride.errors.ShiftConflictException;
 import edu.ucsb.cs156.gauchoride.models.CurrentUser;
 import edu.ucsb.cs156.gauchoride.services.CurrentUserService;
+import edu.ucsb.cs156.gauchoride.utilities.MinuteOfWeek;
 
 import java.util.Map;
 
@@ -36,6 +41,52 @@ public abstract class ApiController {
   }
 
 
+  /**
+   * @return true if the user may see every rider's rides
+   */
+  protected static boolean isAdminOrDriver(CurrentUser currentUser) {
+    return currentUser.getRoles().contains(new SimpleGrantedAuthority("ROLE_ADMIN")) ||
+      currentUser.getRoles().contains(new SimpleGrantedAuthority("ROLE_DRIVER"));
+  }
+
+  /**
+   * Like {@link MinuteOfWeek#of(String, String)}, for a day and time given
+   * in the request
+   * @throws BadRequestException if either can't be parsed
+   */
+  protected static int minuteOfWeek(String day, String time) {
+    try {
+      return MinuteOfWeek.of(day, time);
+    } catch (IllegalArgumentException e) {
+      throw new BadRequestException(e.getMessage());
+    }
+  }
+
+  /**
+   * Like {@link MinuteOfWeek#end(int, String)}, for an end time given in the
+   * request
+   * @throws BadRequestException if it can't be parsed
+   */
+  protected static int endMinuteOfWeek(int start, String endTime) {
+    try {
+      return MinuteOfWeek.end(start, endTime);
+    } catch (IllegalArgumentException e) {
+      throw new BadRequestException(e.getMessage());
+    }
+  }
+
+  /**
+   * Like {@link MinuteOfWeek#dayIndex(String)}, for a day given in the request
+   * @throws BadRequestException if it can't be parsed
+   */
+  protected static int dayIndex(String day) {
+    try {
+      return MinuteOfWeek.dayIndex(day);
+    } catch (IllegalArgumentException e) {
+      throw new BadRequestException(e.getMessage());
+    }
+  }
+
   /**
    * This creates a plain old java object that can be returned as a JSON response
    * @return a Map object with a single key/value pair: "message" => message
@@ -57,4 +108,30 @@ public abstract class ApiController {
       "message", e.getMessage()
     );
   }
+
+  /**
+   * This catches any BadRequestExceptions and returns a 400 (BAD_REQUEST) response
+   * @return a Map object that can be returned as a JSON response
+   */
+  @ExceptionHandler({ BadRequestException.class })
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public Object handleBadRequest(Throwable e) {
+    return Map.of(
+      "type", e.getClass().getSimpleName(),
+      "message", e.getMessage()
+    );
+  }
+
+  /**
+   * This catches any RideConflictExceptions and ShiftConflictExceptions and returns a 409 (CONFLICT) response
+   * @return a Map object that can be returned as a JSON response
+   */
+  @ExceptionHandler({ RideConflictException.class, ShiftConflictException.class })
+  @ResponseStatus(HttpStatus.CONFLICT)
+  public Object handleConflict(Throwable e) {
+    return Map.of(
+      "type", e.getClass().getSimpleName(),
+      "message", e.getMessage()
+    );
+  }
 }
@@ -0,0 +1,40 @@
+package edu.ucsb.cs156.gauchoride.controllers;
+
+import edu.ucsb.cs156.gauchoride.models.CurrentUser;
+import edu.ucsb.cs156.gauchoride.services.ChangeEventBus;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+
+@Api(description = "Live ride and shift changes")
+@RequestMapping("/api/events")
+@RestController
+public class EventsController extends ApiController {
+
+    @Autowired
+    ChangeEventBus changeEventBus;
+
+    @Value("${app.events.timeoutMinutes:30}")
+    long timeoutMinutes;
+
+    @ApiOperation(value = "Server-sent events for ride and shift changes, only user's rides if not admin/driver")
+    @PreAuthorize("hasRole('ROLE_ADMIN') || hasRole('ROLE_DRIVER') || hasRole('ROLE_USER')")
+    @GetMapping(value = "", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe() {
+        CurrentUser currentUser = getCurrentUser();
+        SseEmitter emitter = new SseEmitter(Duration.ofMinutes(timeoutMinutes).toMillis());
+        changeEventBus.subscribe(emitter, isAdminOrDriver(currentUser) ? null : currentUser.getUser().getId());
+        return emitter;
+    }
+}
@@ -0,0 +1,96 @@
+package edu.ucsb.cs156.gauchoride.controllers;
+
+import edu.ucsb.cs156.gauchoride.entities.Location;
+import edu.ucsb.cs156.gauchoride.errors.BadRequestException;
+import edu.ucsb.cs156.gauchoride.errors.EntityNotFoundException;
+import edu.ucsb.cs156.gauchoride.repositories.LocationRepository;
+import edu.ucsb.cs156.gauchoride.repositories.RideRepository;
+import edu.ucsb.cs156.gauchoride.services.CollectionVersions;
+import edu.ucsb.cs156.gauchoride.services.LocationDictionary;
+import edu.ucsb.cs156.gauchoride.services.RideChangeService;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Optional;
+
+@Api(description = "Pickup and dropoff locations")
+@RequestMapping("/api/locations")
+@RestController
+public class LocationController extends ApiController {
+
+    @Autowired
+    LocationRepository locationRepository;
+
+    @Autowired
+    RideRepository rideRepository;
+
+    @Autowired
+    LocationDictionary locationDictionary;
+
+    @Autowired
+    RideChangeService rideChangeService;
+
+    @Autowired
+    CollectionVersions collectionVersions;
+
+    @ApiOperation(value = "List all locations")
+    @PreAuthorize("hasRole('ROLE_ADMIN') || hasRole('ROLE_DRIVER') || hasRole('ROLE_USER')")
+    @GetMapping("/all")
+    public List<Location> allLocations() {
+        return locationDictionary.all();
+    }
+
+    @ApiOperation(value = "Add a location (admin only); returns the existing location if the name is already known")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/post")
+    public Location postLocation(
+            @ApiParam(name = "name", type = "String", value = "Name of the building", example = "Phelps Hall", required = true)
+            @RequestParam String name) {
+        Location location = locationDictionary.intern(name);
+        if (location == null) {
+            throw new BadRequestException("Location name must not be blank");
+        }
+        return location;
+    }
+
+    @ApiOperation(value = "Rename a location, and the rides that use it (admin only)")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PutMapping("")
+    @Transactional
+    public Location renameLocation(
+            @ApiParam(name = "id", type = "long", value = "id of the location", example = "1", required = true)
+            @RequestParam long id,
+            @ApiParam(name = "name", type = "String", value = "New name of the building", example = "Phelps Hall", required = true)
+            @RequestParam String name) {
+        String newName = LocationDictionary.normalize(name);
+        if (newName == null) {
+            throw new BadRequestException("Location name must not be blank");
+        }
+        locationRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException(Location.class, id));
+        Optional<Location> taken = locationDictionary.lookup(newName);
+        if (taken.isPresent() && taken.get().getId() != id) {
+            throw new BadRequestException("Location %s already exists with id %d".formatted(newName, taken.get().getId()));
+        }
+
+        Location renamed = locationRepository.save(Location.builder().id(id).name(newName).build());
+        long version = rideChangeService.nextVersion();
+        rideRepository.locationRenamed(id, version);
+        collectionVersions.changed(CollectionVersions.RIDES);
+        locationDictionary.remember(renamed);
+        return renamed;
+    }
+}
@@ -1,16 +1,43 @@
 package edu.ucsb.cs156.gauchoride.controllers;
 
+import edu.ucsb.cs156.gauchoride.entities.Location;
 import edu.ucsb.cs156.gauchoride.entities.Ride;
+import edu.ucsb.cs156.gauchoride.errors.BadRequestException;
 import edu.ucsb.cs156.gauchoride.errors.EntityNotFoundException;
+import edu.ucsb.cs156.gauchoride.errors.RideConflictException;
+import edu.ucsb.cs156.gauchoride.models.ChangeEvent;
+import edu.ucsb.cs156.gauchoride.models.CurrentUser;
+import edu.ucsb.cs156.gauchoride.models.CursorPage;
+import edu.ucsb.cs156.gauchoride.models.RideAssignment;
+import edu.ucsb.cs156.gauchoride.models.RideChanges;
 import edu.ucsb.cs156.gauchoride.repositories.RideRepository;
+import edu.ucsb.cs156.gauchoride.repositories.RideSpecifications;
+import edu.ucsb.cs156.gauchoride.repositories.UserRepository;
+import edu.ucsb.cs156.gauchoride.services.ChangeEventBus;
+import edu.ucsb.cs156.gauchoride.services.CollectionVersions;
+import edu.ucsb.cs156.gauchoride.services.LocationDictionary;
+import edu.ucsb.cs156.gauchoride.services.RideAssignmentService;
+import edu.ucsb.cs156.gauchoride.services.RideChangeService;
+import edu.ucsb.cs156.gauchoride.services.RideExportService;
+import edu.ucsb.cs156.gauchoride.utilities.MinuteOfWeek;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder.SecretKeyReactiveJwtDecoderBuilder;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -19,9 +46,16 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
 
 @Api(description = "Ride Request")
 @RequestMapping("/api/ride_request")
@@ -29,25 +63,227 @@ import javax.validation.Valid;
 
 public class RideController extends ApiController {
 
+    public static final int DEFAULT_PAGE_SIZE = 25;
+    public static final int MAX_PAGE_SIZE = 100;
+    public static final int MAX_BATCH_SIZE = 100;
+    public static final List<String> SEARCH_SORT_FIELDS = List.of(
+        "startMinuteOfWeek", "id", "pickupLocation", "dropoffLocation", "course", "student");
+
     @Autowired
     RideRepository rideRepository;
 
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    RideExportService rideExportService;
+
+    @Autowired
+    RideAssignmentService rideAssignmentService;
+
+    @Autowired
+    LocationDictionary locationDictionary;
+
+    @Autowired
+    ChangeEventBus changeEventBus;
+
+    @Autowired
+    RideChangeService rideChangeService;
+
+    @Autowired
+    CollectionVersions collectionVersions;
+
     @ApiOperation(value = "List all rides, only user's if not admin/driver")
     @PreAuthorize("hasRole('ROLE_ADMIN') || hasRole('ROLE_DRIVER') || hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<Ride> allRides() {
+    public ResponseEntity<Iterable<Ride>> allRides(WebRequest webRequest) {
+        CurrentUser currentUser = getCurrentUser();
+        boolean everyone = isAdminOrDriver(currentUser);
+        String etag = everyone
+            ? collectionVersions.etag(CollectionVersions.RIDES)
+            : collectionVersions.riderEtag(currentUser.getUser().getId());
+        if (webRequest.checkNotModified(etag)) {
+            // 304 Not Modified, already set on the response
+            return null;
+        }
+
         Iterable<Ride> rides;
 
-        if (getCurrentUser().getRoles().contains(new SimpleGrantedAuthority("ROLE_ADMIN")) ||
-            getCurrentUser().getRoles().contains(new SimpleGrantedAuthority("ROLE_DRIVER"))) {
+        if (everyone) {
             rides = rideRepository.findAll();
         } else {
-            rides = rideRepository.findAllByRiderId(getCurrentUser().getUser().getId());
+            rides = rideRepository.findAllByRiderId(currentUser.getUser().getId());
         }
 
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache().cachePrivate()).body(rides);
+    }
+
+    @ApiOperation(value = "List rides one page at a time in id order, only user's if not admin/driver")
+    @PreAuthorize("hasRole('ROLE_ADMIN') || hasRole('ROLE_DRIVER') || hasRole('ROLE_USER')")
+    @GetMapping("/page")
+    public CursorPage<Ride> pageOfRides(
+            @ApiParam(name="cursor", type="long", value = "nextCursor from the previous page; omit for the first page", example="0")
+            @RequestParam(defaultValue = "0") long cursor,
+            @ApiParam(name="size", type="int", value = "Number of rides per page (at most 100)", example="25")
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        // ask for one extra row so we know whether there is a next page
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+        CurrentUser currentUser = getCurrentUser();
+        List<Ride> rides;
+
+        if (isAdminOrDriver(currentUser)) {
+            rides = rideRepository.findByIdGreaterThanOrderByIdAsc(cursor, limit);
+        } else {
+            rides = rideRepository.findByRiderIdAndIdGreaterThanOrderByIdAsc(
+                currentUser.getUser().getId(), cursor, limit);
+        }
+
+        return CursorPage.of(rides, pageSize, Ride::getId);
+    }
+
+    @ApiOperation(value = "List rides that overlap a time window, only user's if not admin/driver")
+    @PreAuthorize("hasRole('ROLE_ADMIN') || hasRole('ROLE_DRIVER') || hasRole('ROLE_USER')")
+    @GetMapping("/window")
+    public List<Ride> ridesInWindow(
+            @ApiParam(name="day", type="String", value = "Day of the week", example="Tuesday", required = true,
+                allowableValues = "Monday, Tuesday, Wednesday, Thursday, Friday, Saturday, Sunday")
+            @RequestParam String day,
+            @ApiParam(name="start", type="String", value = "Start of the window HH:MM(A/P)M", example="2:00PM", required = true)
+            @RequestParam String start,
+            @ApiParam(name="end", type="String", value = "End of the window HH:MM(A/P)M", example="3:00PM", required = true)
+            @RequestParam String end) {
+        int windowStart = minuteOfWeek(day, start);
+        int windowEnd = endMinuteOfWeek(windowStart, end);
+        CurrentUser currentUser = getCurrentUser();
+
+        List<Ride> rides = new ArrayList<>();
+        for (int offset : MinuteOfWeek.weekOffsets(windowStart, windowEnd)) {
+            rides.addAll(isAdminOrDriver(currentUser)
+                ? rideRepository.findOverlapping(windowStart + offset, windowEnd + offset)
+                : rideRepository.findOverlappingByRiderId(currentUser.getUser().getId(), windowStart + offset, windowEnd + offset));
+        }
         return rides;
     }
 
+    @ApiOperation(value = "Search rides by day, time window, locations and course, only user's if not admin/driver")
+    @PreAuthorize("hasRole('ROLE_ADMIN') || hasRole('ROLE_DRIVER') || hasRole('ROLE_USER')")
+    @GetMapping("/search")
+    public Page<Ride> searchRides(
+            @ApiParam(name="day", type="String", value = "Day of the week", example="Tuesday",
+                allowableValues = "Monday, Tuesday, Wednesday, Thursday, Friday, Saturday, Sunday")
+            @RequestParam(required = false) String day,
+            @ApiParam(name="start", type="String", value = "Start of a time window on day, HH:MM(A/P)M", example="2:00PM")
+            @RequestParam(required = false) String start,
+            @ApiParam(name="end", type="String", value = "End of a time window on day, HH:MM(A/P)M", example="3:00PM")
+            @RequestParam(required = false) String end,
+            @ApiParam(name="pickupLocation", type="String", value = "Location the ride starts", example="Phelps Hall")
+            @RequestParam(required = false) String pickupLocation,
+            @ApiParam(name="dropoffLocation", type="String", value = "Location the ride ends", example="South Hall")
+            @RequestParam(required = false) String dropoffLocation,
+            @ApiParam(name="course", type="String", value = "Course number", example="CMPSC 156")
+            @RequestParam(required = false) String course,
+            @ApiParam(name="page", type="int", value = "Page number, starting at 0", example="0")
+            @RequestParam(defaultValue = "0") int page,
+            @ApiParam(name="size", type="int", value = "Number of rides per page (at most 100)", example="25")
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int size,
+            @ApiParam(name="sort", type="String", value = "Field to sort by", example="startMinuteOfWeek",
+                allowableValues = "startMinuteOfWeek, id, pickupLocation, dropoffLocation, course, student")
+            @RequestParam(defaultValue = "startMinuteOfWeek") String sort,
+            @ApiParam(name="direction", type="String", value = "Sort direction", example="ASC", allowableValues = "ASC, DESC")
+            @RequestParam(defaultValue = "ASC") String direction) {
+
+        if (!SEARCH_SORT_FIELDS.contains(sort)) {
+            throw new BadRequestException("Cannot sort rides by %s".formatted(sort));
+        }
+        if ((start != null || end != null) && (day == null || start == null || end == null)) {
+            throw new BadRequestException("A time window needs day, start and end");
+        }
+
+        Specification<Ride> spec = Specification.where(null);
+        CurrentUser currentUser = getCurrentUser();
+        if (!isAdminOrDriver(currentUser)) {
+            spec = spec.and(RideSpecifications.riderIs(currentUser.getUser().getId()));
+        }
+        if (start != null) {
+            int windowStart = minuteOfWeek(day, start);
+            spec = spec.and(RideSpecifications.overlaps(windowStart, endMinuteOfWeek(windowStart, end)));
+        } else if (day != null) {
+            spec = spec.and(RideSpecifications.startsOnDay(dayIndex(day)));
+        }
+        if (course != null) {
+            spec = spec.and(RideSpecifications.courseIs(course));
+        }
+
+        Sort order = Sort.by(Sort.Direction.fromString(direction), sort).and(Sort.by("id"));
+        Pageable pageable = PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), MAX_PAGE_SIZE), order);
+
+        // locations are matched by id; a name that isn't in the dictionary can't match any ride
+        if (pickupLocation != null) {
+            Optional<Location> pickup = locationDictionary.lookup(pickupLocation);
+            if (pickup.isEmpty()) {
+                return Page.empty(pageable);
+            }
+            spec = spec.and(RideSpecifications.pickupLocationIs(pickup.get().getId()));
+        }
+        if (dropoffLocation != null) {
+            Optional<Location> dropoff = locationDictionary.lookup(dropoffLocation);
+            if (dropoff.isEmpty()) {
+                return Page.empty(pageable);
+            }
+            spec = spec.and(RideSpecifications.dropoffLocationIs(dropoff.get().getId()));
+        }
+
+        return rideRepository.findAll(spec, pageable);
+    }
+
+    @ApiOperation(value = "Rides created, updated or deleted since a version returned by an earlier call, only user's if not admin/driver")
+    @PreAuthorize("hasRole('ROLE_ADMIN') || hasRole('ROLE_DRIVER') || hasRole('ROLE_USER')")
+    @GetMapping("/changes")
+    public RideChanges rideChanges(
+            @ApiParam(name="since", type="long", value = "version from the previous response, or 0 to start", example="0")
+            @RequestParam(defaultValue = "0") long since) {
+        CurrentUser currentUser = getCurrentUser();
+        Long riderId = isAdminOrDriver(currentUser) ? null : currentUser.getUser().getId();
+        return rideChangeService.changesSince(since, riderId);
+    }
+
+    @ApiOperation(value = "Match every ride to a shift and driver (admin/driver only)")
+    @PreAuthorize("hasRole('ROLE_ADMIN') || hasRole('ROLE_DRIVER')")
+    @GetMapping("/assignments")
+    public List<RideAssignment> assignments() {
+        return rideAssignmentService.assignAll();
+    }
+
+    @ApiOperation(value = "Export all rides as newline delimited JSON or CSV (admin only)")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportRides(
+            @ApiParam(name="format", type="String", value = "Export format", example="csv",
+                allowableValues = "ndjson, csv")
+            @RequestParam(defaultValue = "ndjson") String format) {
+        StreamingResponseBody body;
+        MediaType contentType;
+
+        switch (format) {
+            case "ndjson":
+                body = out -> rideExportService.writeNdjson(out);
+                contentType = new MediaType("application", "x-ndjson");
+                break;
+            case "csv":
+                body = out -> rideExportService.writeCsv(out);
+                contentType = new MediaType("text", "csv");
+                break;
+            default:
+                throw new BadRequestException("Unknown export format %s".formatted(format));
+        }
+
+        return ResponseEntity.ok()
+            .contentType(contentType)
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"rides.%s\"".formatted(format))
+            .body(body);
+    }
+
     @ApiOperation(value = "Get a single ride by id, only user's if not admin/driver")
     @PreAuthorize("hasRole('ROLE_ADMIN') || hasRole('ROLE_DRIVER') || hasRole('ROLE_USER')")
     @GetMapping("")
@@ -72,6 +308,7 @@ public class RideController extends ApiController {
     @ApiOperation(value = "Create a new ride")
     @PreAuthorize("hasRole('ROLE_USER')")
     @PostMapping("/post")
+    @Transactional
     public Ride postRide(
         @ApiParam(name="day", type="String", value = "Day of the week ride is requested (Monday - Sunday)", example="Tuesday", 
                     required = true, allowableValues = "Monday, Tuesday, Wednesday, Thursday, Friday, Saturday, Sunday") 
@@ -109,14 +346,94 @@ public class RideController extends ApiController {
         ride.setRoom(room);
         ride.setCourse(course);
 
+        resolveLocations(ride);
+        rejectOverlaps(List.of(ride));
         Ride savedRide = rideRepository.save(ride);
+        changeEventBus.publish(ChangeEvent.of("created", ride));
 
         return savedRide;
     }
 
+    @ApiOperation(value = "Create many rides at once, e.g. a whole quarter's schedule")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @PostMapping("/batch")
+    @Transactional
+    public Iterable<Ride> postRides(
+            @ApiParam(value = "Rides to create; id, riderId and student are filled in from the current user", required = true)
+            @RequestBody List<Ride> incoming) {
+
+        if (incoming.isEmpty() || incoming.size() > MAX_BATCH_SIZE) {
+            throw new BadRequestException(
+                "A batch must have between 1 and %d rides, got %d".formatted(MAX_BATCH_SIZE, incoming.size()));
+        }
+
+        List<String> errors = new ArrayList<>();
+        int[] starts = new int[incoming.size()];
+        int[] ends = new int[incoming.size()];
+        for (int i = 0; i < incoming.size(); i++) {
+            Ride ride = incoming.get(i);
+            try {
+                starts[i] = MinuteOfWeek.of(ride.getDay(), ride.getStartTime());
+                ends[i] = MinuteOfWeek.end(starts[i], ride.getEndTime());
+            } catch (IllegalArgumentException e) {
+                errors.add("ride %d: %s".formatted(i, e.getMessage()));
+            }
+        }
+        if (!errors.isEmpty()) {
+            throw new BadRequestException(String.join("; ", errors));
+        }
+
+        // rides in the batch must not overlap each other either
+        List<Integer> byStart = new ArrayList<>();
+        for (int i = 0; i < incoming.size(); i++) {
+            byStart.add(i);
+        }
+        byStart.sort(Comparator.comparingInt(i -> starts[i]));
+        int latest = byStart.get(0);
+        for (int i : byStart.subList(1, byStart.size())) {
+            if (starts[i] < ends[latest]) {
+                errors.add("rides %d and %d overlap".formatted(Math.min(i, latest), Math.max(i, latest)));
+            }
+            if (ends[i] > ends[latest]) {
+                latest = i;
+            }
+        }
+        if (!errors.isEmpty()) {
+            throw new BadRequestException(String.join("; ", errors));
+        }
+
+        CurrentUser currentUser = getCurrentUser();
+        List<Ride> rides = new ArrayList<>(incoming.size());
+        for (Ride ride : incoming) {
+            rides.add(Ride.builder()
+                .riderId(currentUser.getUser().getId())
+                .student(currentUser.getUser().getFullName())
+                .day(ride.getDay())
+                .startTime(ride.getStartTime())
+                .endTime(ride.getEndTime())
+                .pickupLocation(ride.getPickupLocation())
+                .dropoffLocation(ride.getDropoffLocation())
+                .room(ride.getRoom())
+                .course(ride.getCourse())
+                .build());
+        }
+
+        for (Ride ride : rides) {
+            resolveLocations(ride);
+        }
+        rejectOverlaps(rides);
+        // inserts are sent in JDBC batches of hibernate.jdbc.batch_size
+        Iterable<Ride> savedRides = rideRepository.saveAll(rides);
+        for (Ride ride : rides) {
+            changeEventBus.publish(ChangeEvent.of("created", ride));
+        }
+        return savedRides;
+    }
+
     @ApiOperation(value = "Delete a ride, only user's if not admin/driver")
     @PreAuthorize("hasRole('ROLE_ADMIN') || hasRole('ROLE_DRIVER') || hasRole('ROLE_USER')")
     @DeleteMapping("")
+    @Transactional
     public Object deleteRide(
         @ApiParam(name="id", type="long", value = "Id of the Ride to be deleted", 
         required = true)
@@ -134,6 +451,8 @@ public class RideController extends ApiController {
         }
 
         rideRepository.delete(ride);
+        rideChangeService.recordDelete(ride);
+        changeEventBus.publish(ChangeEvent.of("deleted", ride));
         return genericMessage("Ride with id %s deleted".formatted(id));
     }
 
@@ -141,6 +460,7 @@ public class RideController extends ApiController {
     @ApiOperation(value = "Update a single ride, only user's if not admin/driver")
     @PreAuthorize("hasRole('ROLE_ADMIN') || hasRole('ROLE_DRIVER') || hasRole('ROLE_USER')")
     @PutMapping("")
+    @Transactional
     public Ride updateRide(
             @ApiParam(name="id", type="long", value = "Id of the Ride to be edited", 
             required = true)
@@ -166,8 +486,48 @@ public class RideController extends ApiController {
         ride.setRoom(incoming.getRoom());
         ride.setCourse(incoming.getCourse());
 
+        resolveLocations(ride);
+        rejectOverlaps(List.of(ride));
         rideRepository.save(ride);
+        changeEventBus.publish(ChangeEvent.of("updated", ride));
 
         return ride;
     }
+
+    /**
+     * Points the ride's pickupLocationId/dropoffLocationId at the location
+     * table entries for its pickup and dropoff names, adding any name that
+     * isn't known yet (the ride form takes free text), and sets the names as
+     * stored there. The known names are listed at /api/locations/all.
+     */
+    private void resolveLocations(Ride ride) {
+        Location pickup = locationDictionary.intern(ride.getPickupLocation());
+        ride.setPickupLocationId(pickup == null ? null : pickup.getId());
+        ride.setPickupLocation(pickup == null ? null : pickup.getName());
+        Location dropoff = locationDictionary.intern(ride.getDropoffLocation());
+        ride.setDropoffLocationId(dropoff == null ? null : dropoff.getId());
+        ride.setDropoffLocation(dropoff == null ? null : dropoff.getName());
+    }
+
+    /**
+     * Throws RideConflictException if any of rides (all for the same rider)
+     * overlaps another of that rider's rides.
+     *
+     * The rider's users row is locked first, so a concurrent request for the
+     * same rider waits here until this transaction commits and then sees its rides.
+     */
+    private void rejectOverlaps(List<Ride> rides) {
+        userRepository.findByIdForUpdate(rides.get(0).getRiderId());
+        for (Ride ride : rides) {
+            int start = minuteOfWeek(ride.getDay(), ride.getStartTime());
+            int end = endMinuteOfWeek(start, ride.getEndTime());
+            for (int offset : MinuteOfWeek.weekOffsets(start, end)) {
+                for (Ride other : rideRepository.findOverlappingByRiderId(ride.getRiderId(), start + offset, end + offset)) {
+                    if (other.getId() != ride.getId()) {
+                        throw new RideConflictException(other);
+                    }
+                }
+            }
+        }
+    }
 }
@@ -1,26 +1,54 @@
 package edu.ucsb.cs156.gauchoride.controllers;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 import edu.ucsb.cs156.gauchoride.entities.Shift;
+import edu.ucsb.cs156.gauchoride.entities.User;
 import edu.ucsb.cs156.gauchoride.repositories.ShiftRepository;
 import edu.ucsb.cs156.gauchoride.repositories.UserRepository;
+import edu.ucsb.cs156.gauchoride.errors.BadRequestException;
 import edu.ucsb.cs156.gauchoride.errors.EntityNotFoundException;
+import edu.ucsb.cs156.gauchoride.errors.ShiftConflictException;
+import edu.ucsb.cs156.gauchoride.models.ChangeEvent;
+import edu.ucsb.cs156.gauchoride.models.CoverageReport;
 import edu.ucsb.cs156.gauchoride.models.CurrentUser;
+import edu.ucsb.cs156.gauchoride.models.DriverAvailability;
+import edu.ucsb.cs156.gauchoride.models.Itinerary;
+import edu.ucsb.cs156.gauchoride.models.Roster;
+import edu.ucsb.cs156.gauchoride.services.ChangeEventBus;
+import edu.ucsb.cs156.gauchoride.services.CollectionVersions;
+import edu.ucsb.cs156.gauchoride.services.CoverageService;
+import edu.ucsb.cs156.gauchoride.services.ItineraryService;
+import edu.ucsb.cs156.gauchoride.services.JsonStreamService;
+import edu.ucsb.cs156.gauchoride.services.RosterService;
+import edu.ucsb.cs156.gauchoride.services.ShiftIndex;
+import edu.ucsb.cs156.gauchoride.utilities.MinuteOfWeek;
 
+import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -35,16 +63,127 @@ public class ShiftController extends ApiController {
     ShiftRepository shiftRepository;
 
     @Autowired
-    ObjectMapper mapper;
+    UserRepository userRepository;
+
+    @Autowired
+    ItineraryService itineraryService;
+
+    @Autowired
+    ChangeEventBus changeEventBus;
+
+    @Autowired
+    CollectionVersions collectionVersions;
+
+    @Autowired
+    ShiftIndex shiftIndex;
+
+    @Autowired
+    CoverageService coverageService;
+
+    @Autowired
+    RosterService rosterService;
+
+    @Autowired
+    JsonStreamService jsonStreamService;
+
+    @Value("${app.timezone:America/Los_Angeles}")
+    ZoneId timezone;
 
     @ApiOperation(value = "Get a list of all shifts")
     @PreAuthorize("hasRole('ROLE_ADMIN') || hasRole('ROLE_DRIVER') || hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public ResponseEntity<String> allShifts()
-            throws JsonProcessingException {
-        Iterable<Shift> shifts = shiftRepository.findAll();
-        String body = mapper.writeValueAsString(shifts);
-        return ResponseEntity.ok().body(body);
+    public ResponseEntity<StreamingResponseBody> allShifts(WebRequest webRequest) {
+        String etag = collectionVersions.etag(CollectionVersions.SHIFTS);
+        if (webRequest.checkNotModified(etag)) {
+            // 304 Not Modified, already set on the response
+            return null;
+        }
+        StreamingResponseBody body = out -> jsonStreamService.writeArray(out, shiftRepository::streamAllByOrderByIdAsc);
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache().cachePrivate())
+                .contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    @ApiOperation(value = "List shifts that overlap a time window")
+    @PreAuthorize("hasRole('ROLE_ADMIN') || hasRole('ROLE_DRIVER') || hasRole('ROLE_USER')")
+    @GetMapping("/window")
+    public List<Shift> shiftsInWindow(
+            @ApiParam(name = "day", type = "String", value = "Day of the week", example = "Tuesday", required = true,
+                allowableValues = "Monday, Tuesday, Wednesday, Thursday, Friday, Saturday, Sunday")
+            @RequestParam String day,
+            @ApiParam(name = "start", type = "String", value = "Start of the window HH:MM(A/P)M", example = "2:00PM", required = true)
+            @RequestParam String start,
+            @ApiParam(name = "end", type = "String", value = "End of the window HH:MM(A/P)M", example = "3:00PM", required = true)
+            @RequestParam String end) {
+        int windowStart = minuteOfWeek(day, start);
+        int windowEnd = endMinuteOfWeek(windowStart, end);
+        List<Shift> shifts = new ArrayList<>();
+        for (int offset : MinuteOfWeek.weekOffsets(windowStart, windowEnd)) {
+            shifts.addAll(shiftRepository.findOverlapping(windowStart + offset, windowEnd + offset));
+        }
+        return shifts;
+    }
+
+    @ApiOperation(value = "List the shifts (and so the drivers and backup drivers) on duty at a time")
+    @PreAuthorize("hasRole('ROLE_ADMIN') || hasRole('ROLE_DRIVER') || hasRole('ROLE_USER')")
+    @GetMapping("/onDuty")
+    public List<Shift> onDuty(
+            @ApiParam(name = "at", type = "String", value = "Local date and time (ISO 8601); omit for now", example = "2023-05-16T14:30:00")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        LocalDateTime when = at != null ? at : LocalDateTime.now(timezone);
+        return shiftIndex.onDuty(MinuteOfWeek.of(when));
+    }
+
+    @ApiOperation(value = "Find the times of the week with no shift, or with more rides than the drivers on duty can carry")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/coverage")
+    public CoverageReport coverage() {
+        return coverageService.analyzeWeek();
+    }
+
+    @ApiOperation(value = "Propose a week of shifts from driver availability and past ride demand, and optionally save them")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/roster")
+    @Transactional
+    public Roster roster(
+            @ApiParam(name = "maxHours", type = "Integer", value = "Most hours any one driver works; omit for the configured limit", example = "20")
+            @RequestParam(required = false) Integer maxHours,
+            @ApiParam(name = "save", type = "boolean", value = "save the proposed shifts", example = "false")
+            @RequestParam(defaultValue = "false") boolean save,
+            @ApiParam("when each driver can work") @RequestBody List<DriverAvailability> availability) {
+        if (maxHours != null && maxHours < 0) {
+            throw new BadRequestException("maxHours must not be negative");
+        }
+        for (DriverAvailability window : availability) {
+            endMinuteOfWeek(minuteOfWeek(window.getDay(), window.getStart()), window.getEnd());
+        }
+        if (!save) {
+            return rosterService.generate(availability, maxHours);
+        }
+
+        // lock every driver up front, in id order, rather than shift by
+        // shift, so the shifts the roster is planned around can't change
+        TreeSet<Long> driverIds = new TreeSet<>();
+        for (DriverAvailability window : availability) {
+            driverIds.add(window.getDriverId());
+        }
+        for (long driverId : driverIds) {
+            User driver = userRepository.findByIdForUpdate(driverId)
+                    .orElseThrow(() -> new BadRequestException("No user with id %d".formatted(driverId)));
+            if (!driver.getDriver()) {
+                throw new BadRequestException("User %d is not a driver".formatted(driverId));
+            }
+        }
+        Roster roster = rosterService.generate(availability, maxHours);
+        List<Shift> saved = new ArrayList<>();
+        for (Shift shift : roster.getShifts()) {
+            rejectDoubleBooking(shift);
+            Shift savedShift = shiftRepository.save(shift);
+            shiftIndex.saved(savedShift);
+            changeEventBus.publish(ChangeEvent.of("created", savedShift));
+            saved.add(savedShift);
+        }
+        roster.setShifts(saved);
+        return roster;
     }
 
     @ApiOperation(value = "Get shift by id")
@@ -58,9 +197,21 @@ public class ShiftController extends ApiController {
         return shift;
     }
 
+    @ApiOperation(value = "Get the order of pickups and dropoffs for the driver (or backup driver) of a shift")
+    @PreAuthorize("hasRole('ROLE_ADMIN') || hasRole('ROLE_DRIVER')")
+    @GetMapping("/{id}/itinerary")
+    public Itinerary shiftItinerary(
+            @ApiParam(name = "id", type = "long", value = "id number of the shift", example = "1", required = true)
+            @PathVariable long id,
+            @ApiParam(name = "backup", type = "boolean", value = "plan the backup driver's rides instead", example = "false")
+            @RequestParam(defaultValue = "false") boolean backup) {
+        return itineraryService.planShift(id, backup);
+    }
+
     @ApiOperation(value = "Create a new shift for the table")
     @PreAuthorize("hasRole('ROLE_ADMIN') || hasRole('ROLE_DRIVER')")
     @PostMapping("/post")
+    @Transactional
     public Shift postShift(
         @ApiParam("day") @RequestParam String day,
         @ApiParam("shiftStart") @RequestParam String shiftStart,
@@ -78,8 +229,40 @@ public class ShiftController extends ApiController {
         shift.setShiftEnd(shiftEnd);
         shift.setDriverBackupID(driverBackupID);
 
+        rejectDoubleBooking(shift);
         Shift savedShift = shiftRepository.save(shift);
+        shiftIndex.saved(savedShift);
+        changeEventBus.publish(ChangeEvent.of("created", savedShift));
 
         return savedShift;
     }
-}
\ No newline at end of file
+
+    /**
+     * Throws ShiftConflictException if the shift's driver or backup driver is
+     * already the driver or backup driver of an overlapping shift, and
+     * BadRequestException if they are the same person.
+     *
+     * Both users rows are locked first (in id order, so two requests can't
+     * deadlock), so a concurrent request for either driver waits here until
+     * this transaction commits and then sees its shift.
+     */
+    private void rejectDoubleBooking(Shift shift) {
+        if (shift.getDriverID() == shift.getDriverBackupID()) {
+            throw new BadRequestException("The backup driver can't be the driver of the same shift");
+        }
+        TreeSet<Long> driverIds = new TreeSet<>(List.of(shift.getDriverID(), shift.getDriverBackupID()));
+        for (long driverId : driverIds) {
+            userRepository.findByIdForUpdate(driverId);
+        }
+
+        int start = minuteOfWeek(shift.getDay(), shift.getShiftStart());
+        int end = endMinuteOfWeek(start, shift.getShiftEnd());
+        for (int offset : MinuteOfWeek.weekOffsets(start, end)) {
+            for (Shift other : shiftRepository.findOverlappingByDriverIds(driverIds, start + offset, end + offset)) {
+                if (other.getId() != shift.getId()) {
+                    throw new ShiftConflictException(other);
+                }
+            }
+        }
+    }
+}
@@ -1,17 +1,30 @@
 package edu.ucsb.cs156.gauchoride.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import edu.ucsb.cs156.gauchoride.entities.User;
 import edu.ucsb.cs156.gauchoride.repositories.UserRepository;
+import edu.ucsb.cs156.gauchoride.models.CursorPage;
+import edu.ucsb.cs156.gauchoride.models.RoleChangeEvent;
+import edu.ucsb.cs156.gauchoride.models.UserCacheStats;
+import edu.ucsb.cs156.gauchoride.services.CollectionVersions;
+import edu.ucsb.cs156.gauchoride.services.JsonStreamService;
+import edu.ucsb.cs156.gauchoride.services.UserCache;
 
+import edu.ucsb.cs156.gauchoride.errors.BadRequestException;
 import edu.ucsb.cs156.gauchoride.errors.EntityNotFoundException;
 
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -19,6 +32,12 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -35,14 +54,156 @@ public class UsersController extends ApiController {
     @Autowired
     ObjectMapper mapper;
 
+    @Autowired
+    CollectionVersions collectionVersions;
+
+    @Autowired
+    UserCache userCache;
+
+    @Autowired
+    JsonStreamService jsonStreamService;
+
+    @Autowired
+    ApplicationEventPublisher publisher;
+
+    public static final int MAX_ROLE_UPDATE = 500;
+    public static final int DEFAULT_PAGE_SIZE = 25;
+    public static final int MAX_PAGE_SIZE = 100;
+
     @ApiOperation(value = "Get a list of all users")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @GetMapping("")
-    public ResponseEntity<String> users()
-            throws JsonProcessingException {
-        Iterable<User> users = userRepository.findAll();
-        String body = mapper.writeValueAsString(users);
-        return ResponseEntity.ok().body(body);
+    public ResponseEntity<StreamingResponseBody> users(WebRequest webRequest) {
+        String etag = collectionVersions.etag(CollectionVersions.USERS);
+        if (webRequest.checkNotModified(etag)) {
+            // 304 Not Modified, already set on the response
+            return null;
+        }
+        StreamingResponseBody body = out -> jsonStreamService.writeArray(out, userRepository::streamAllByOrderByIdAsc);
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache().cachePrivate())
+                .contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    @ApiOperation(value = "List users one page at a time in id order, or searching by email or name prefix, optionally filtering by role")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping(value = "/page", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> pageOfUsers(
+            @ApiParam(name = "q", type = "String", value = "Start of the email address or full name (any case); omit for everyone", example = "cgau")
+            @RequestParam(required = false) String q,
+            @ApiParam(name = "admin", type = "Boolean", value = "Only admins (true) or non-admins (false); omit for both", example = "true")
+            @RequestParam(required = false) Boolean admin,
+            @ApiParam(name = "driver", type = "Boolean", value = "Only drivers (true) or non-drivers (false); omit for both", example = "true")
+            @RequestParam(required = false) Boolean driver,
+            @ApiParam(name = "cursor", type = "long", value = "nextCursor from the previous page; omit for the first page", example = "0")
+            @RequestParam(defaultValue = "0") long cursor,
+            @ApiParam(name = "size", type = "int", value = "Number of users per page (at most 100)", example = "25")
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        String prefix = q == null || q.isBlank() ? null : likePrefix(User.emailKeyOf(q));
+        CursorPage<User> page;
+        Long estimatedTotal;
+        if (prefix == null) {
+            // ask for one extra row so we know whether there is a next page
+            List<User> users = userRepository.search(cursor, admin, driver, PageRequest.of(0, pageSize + 1));
+            page = CursorPage.of(users, pageSize, User::getId);
+            estimatedTotal = estimateTotal(cursor, page);
+        } else {
+            page = searchPage(prefix, admin, driver, cursor, pageSize);
+            estimatedTotal = searchTotal(prefix, admin, driver, cursor, page);
+        }
+
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator json = mapper.getFactory().createGenerator(out)) {
+                json.writeStartObject();
+                json.writeArrayFieldStart("content");
+                for (User user : page.getContent()) {
+                    mapper.writeValue(json, user);
+                }
+                json.writeEndArray();
+                if (page.getNextCursor() == null) {
+                    json.writeNullField("nextCursor");
+                } else {
+                    json.writeNumberField("nextCursor", page.getNextCursor());
+                }
+                if (estimatedTotal == null) {
+                    json.writeNullField("estimatedTotal");
+                } else {
+                    json.writeNumberField("estimatedTotal", estimatedTotal);
+                }
+                json.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * A page of a prefix search: users whose email key matches in (email key,
+     * id) order, then those whose name key matches in (name key, id) order.
+     * The cursor is the id of the last user on the previous page, negated
+     * once the search has moved on to names.
+     */
+    CursorPage<User> searchPage(String prefix, Boolean admin, Boolean driver, long cursor, int pageSize) {
+        // one extra row, as above
+        List<User> users = new ArrayList<>();
+        if (cursor >= 0) {
+            String afterKey = cursor == 0 ? "" : cursorUser(cursor).getEmailKey();
+            users.addAll(userRepository.searchByEmailKey(prefix, afterKey, cursor, admin, driver,
+                    PageRequest.of(0, pageSize + 1)));
+        }
+        int byEmail = users.size();
+        if (users.size() <= pageSize) {
+            long afterId = Math.max(-cursor, 0);
+            String afterKey = afterId == 0 ? "" : cursorUser(afterId).getNameKey();
+            users.addAll(userRepository.searchByNameKey(prefix, afterKey, afterId, admin, driver,
+                    PageRequest.of(0, pageSize + 1 - users.size())));
+        }
+        if (users.size() <= pageSize) {
+            return new CursorPage<User>(users, null);
+        }
+        List<User> content = users.subList(0, pageSize);
+        long lastId = content.get(pageSize - 1).getId();
+        return new CursorPage<User>(content, pageSize <= byEmail ? lastId : -lastId);
+    }
+
+    private User cursorUser(long id) {
+        return userRepository.findById(id)
+                .orElseThrow(() -> new BadRequestException("The user at cursor %d is gone; start the search again".formatted(id)));
+    }
+
+    static String likePrefix(String text) {
+        return text.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+    }
+
+    /**
+     * Number of users matching the search, exact when everything fit on the
+     * first page and otherwise assuming matches are spread evenly over ids the
+     * way they are on this page; avoids counting every match
+     */
+    long estimateTotal(long cursor, CursorPage<User> page) {
+        int found = page.getContent().size();
+        if (cursor == 0 && page.getNextCursor() == null) {
+            return found;
+        }
+        long maxId = userRepository.maxId();
+        long end = page.getNextCursor() == null ? maxId : page.getNextCursor();
+        long span = Math.max(end - cursor, 1);
+        return Math.max(found, Math.round((double) found * maxId / span));
+    }
+
+    /**
+     * Number of users matching a prefix search. Matches are in key order, not
+     * id order, so they can't be estimated from a page the way
+     * {@link #estimateTotal} does; they are counted once, on the first page,
+     * and later pages leave it null for the client to keep the first page's.
+     */
+    Long searchTotal(String prefix, Boolean admin, Boolean driver, long cursor, CursorPage<User> page) {
+        if (cursor != 0) {
+            return null;
+        }
+        if (page.getNextCursor() == null) {
+            return (long) page.getContent().size();
+        }
+        return userRepository.countByEmailKey(prefix, admin, driver) + userRepository.countByNameKey(prefix, admin, driver);
     }
 
     @ApiOperation(value = "Get user by id")
@@ -65,6 +226,7 @@ public class UsersController extends ApiController {
           .orElseThrow(() -> new EntityNotFoundException(User.class, id));
 
           userRepository.delete(user);
+          userCache.invalidate(user);
 
         return genericMessage("User with id %s deleted".formatted(id));
     }
@@ -73,25 +235,60 @@ public class UsersController extends ApiController {
     @ApiOperation(value = "Toggle the admin field")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PostMapping("/toggleAdmin")
+    @Transactional
     public Object toggleAdmin( @ApiParam(name = "id", type = "Long", value = "id number of user to toggle their admin field", example = "1", required = true) @RequestParam Long id){
-        User user = userRepository.findById(id)
-        .orElseThrow(() -> new EntityNotFoundException(User.class, id));
-
-        user.setAdmin(!user.getAdmin());
-        userRepository.save(user);
+        if (userRepository.toggleAdmin(id) == 0) {
+            throw new EntityNotFoundException(User.class, id);
+        }
+        rolesChanged(List.of(id), null, null);
         return genericMessage("User with id %s has toggled admin status".formatted(id));
     }
 
     @ApiOperation(value = "Toggle the driver field")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PostMapping("/toggleDriver")
+    @Transactional
     public Object toggleDriver( @ApiParam(name = "id", type = "Long", value = "id number of user to toggle their driver field", example = "1", required = true) @RequestParam Long id){
-        User user = userRepository.findById(id)
-        .orElseThrow(() -> new EntityNotFoundException(User.class, id));
-
-        user.setDriver(!user.getDriver());
-        userRepository.save(user);
+        if (userRepository.toggleDriver(id) == 0) {
+            throw new EntityNotFoundException(User.class, id);
+        }
+        rolesChanged(List.of(id), null, null);
         return genericMessage("User with id %s has toggled driver status".formatted(id));
     }
 
-}
\ No newline at end of file
+    @ApiOperation(value = "Set the admin and/or driver field of many users at once")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/roles")
+    @Transactional
+    public Object updateRoles(
+            @ApiParam(name = "ids", type = "List<Long>", value = "ids of the users to update (at most 500)", example = "1,2,3", required = true)
+            @RequestParam List<Long> ids,
+            @ApiParam(name = "admin", type = "Boolean", value = "New value of the admin field; omit to leave it alone", example = "false")
+            @RequestParam(required = false) Boolean admin,
+            @ApiParam(name = "driver", type = "Boolean", value = "New value of the driver field; omit to leave it alone", example = "true")
+            @RequestParam(required = false) Boolean driver) {
+        if (ids.isEmpty() || ids.size() > MAX_ROLE_UPDATE) {
+            throw new BadRequestException(
+                "Between 1 and %d ids are needed, got %d".formatted(MAX_ROLE_UPDATE, ids.size()));
+        }
+        if (admin == null && driver == null) {
+            throw new BadRequestException("Give admin, driver or both");
+        }
+        List<Long> distinctIds = ids.stream().distinct().collect(Collectors.toList());
+        int updated = userRepository.updateRoles(distinctIds, admin, driver);
+        rolesChanged(distinctIds, admin, driver);
+        return genericMessage("Updated roles of %d users".formatted(updated));
+    }
+
+    private void rolesChanged(List<Long> ids, Boolean admin, Boolean driver) {
+        collectionVersions.changed(CollectionVersions.USERS);
+        publisher.publishEvent(RoleChangeEvent.builder().userIds(ids).admin(admin).driver(driver).build());
+    }
+
+    @ApiOperation(value = "Hit rate and size of the user cache")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/cache")
+    public UserCacheStats userCacheStats() {
+        return userCache.stats();
+    }
+}
@@ -0,0 +1,36 @@
+package edu.ucsb.cs156.gauchoride.entities;
+
+import edu.ucsb.cs156.gauchoride.services.CollectionVersions;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * Bumps the {@link CollectionVersions} entry for every ride, shift and user
+ * written or deleted through JPA. Bulk JPQL updates bypass this and must
+ * call CollectionVersions themselves.
+ */
+
+public class CollectionVersionListener {
+
+  @Autowired
+  ObjectProvider<CollectionVersions> collectionVersionsProvider;
+
+  @PostPersist
+  @PostUpdate
+  @PostRemove
+  public void changed(Object entity) {
+    CollectionVersions versions = collectionVersionsProvider.getObject();
+    if (entity instanceof Ride ride) {
+      versions.rideChanged(ride.getRiderId());
+    } else if (entity instanceof Shift) {
+      versions.changed(CollectionVersions.SHIFTS);
+    } else if (entity instanceof User) {
+      versions.changed(CollectionVersions.USERS);
+    }
+  }
+}
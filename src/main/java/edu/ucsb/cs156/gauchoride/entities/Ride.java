@@ -1,9 +1,22 @@
 package edu.ucsb.cs156.gauchoride.entities;
 
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import org.hibernate.annotations.Formula;
+
+import java.time.Instant;
+
+import edu.ucsb.cs156.gauchoride.utilities.MinuteOfWeek;
 import io.swagger.annotations.ApiModelProperty;
 
 import javax.persistence.GeneratedValue;
@@ -18,9 +31,26 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "ride")
+@Table(indexes = {
+  @Index(name = "ride_rider_id_idx", columnList = "riderId, id"),
+  @Index(name = "ride_start_minute_idx", columnList = "startMinuteOfWeek"),
+  @Index(name = "ride_rider_start_minute_idx", columnList = "riderId, startMinuteOfWeek"),
+  @Index(name = "ride_pickup_start_minute_idx", columnList = "pickupLocationId, startMinuteOfWeek"),
+  @Index(name = "ride_dropoff_start_minute_idx", columnList = "dropoffLocationId, startMinuteOfWeek"),
+  @Index(name = "ride_course_start_minute_idx", columnList = "course, startMinuteOfWeek"),
+  @Index(name = "ride_change_version_idx", columnList = "changeVersion"),
+  @Index(name = "ride_rider_change_version_idx", columnList = "riderId, changeVersion")
+})
+@EntityListeners({ RideVersionListener.class, CollectionVersionListener.class })
 public class Ride {
+  public static final String SEQUENCE = "ride_seq";
+  public static final int SEQUENCE_ALLOCATION = 50;
+
+  // a pooled sequence (rather than IDENTITY) lets Hibernate batch inserts;
+  // BackfillService moves it past rows written under IDENTITY
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = SEQUENCE)
+  @SequenceGenerator(name = SEQUENCE, sequenceName = SEQUENCE, allocationSize = SEQUENCE_ALLOCATION)
   private long id;
 
   private long riderId;
@@ -32,9 +62,38 @@ public class Ride {
   private String startTime; // format: HH:MM(A/P)M e.g. "11:00AM" or "1:37PM"
   private String endTime; // format: HH:MM(A/P)M e.g. "11:00AM" or "1:37PM"
 
+  // ids in the location table; the controller resolves them from the names
+  // in the request before every write
+  private Long pickupLocationId;
+  private Long dropoffLocationId;
+
+  // the names of those locations, read from the location table with the ride
+  // (so a rename shows up everywhere at once) and never written back
+  @Formula("(select l.name from location l where l.id = pickup_location_id)")
   private String pickupLocation;
+  @Formula("(select l.name from location l where l.id = dropoff_location_id)")
   private String dropoffLocation;
   
   private String room;
   private String course; // e.g. CMPSC 156
-}
\ No newline at end of file
+
+  // day + startTime/endTime as minutes since Monday 12:00AM; set on every write
+  @JsonIgnore
+  private Integer startMinuteOfWeek;
+  @JsonIgnore
+  private Integer endMinuteOfWeek;
+
+  // set on every write by RideVersionListener; changeVersion orders writes
+  // for /api/ride_request/changes
+  @JsonIgnore
+  private Long changeVersion;
+  @JsonIgnore
+  private Instant updatedAt;
+
+  @PrePersist
+  @PreUpdate
+  public void computeMinutesOfWeek() {
+    startMinuteOfWeek = MinuteOfWeek.ofOrNull(day, startTime);
+    endMinuteOfWeek = MinuteOfWeek.endOrNull(startMinuteOfWeek, endTime);
+  }
+}
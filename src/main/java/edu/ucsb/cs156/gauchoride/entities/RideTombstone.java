@@ -0,0 +1,35 @@
+package edu.ucsb.cs156.gauchoride.entities;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import java.time.Instant;
+
+/**
+ * Record of a deleted ride, so clients syncing with /api/ride_request/changes
+ * learn about the delete.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "ride_tombstone")
+@Table(indexes = {
+  @Index(name = "ride_tombstone_version_idx", columnList = "version"),
+  @Index(name = "ride_tombstone_rider_version_idx", columnList = "riderId, version")
+})
+public class RideTombstone {
+  @Id
+  private long rideId;
+
+  private long riderId;
+  private long version; // change version of the delete
+  private Instant deletedAt;
+}
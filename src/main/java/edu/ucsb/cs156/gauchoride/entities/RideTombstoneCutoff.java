@@ -0,0 +1,31 @@
+package edu.ucsb.cs156.gauchoride.entities;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+import java.time.Instant;
+
+/**
+ * The highest change version whose tombstones have been pruned. A client
+ * that last synced below it may have missed deletes. There is only ever
+ * one row, with id ID.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "ride_tombstone_cutoff")
+public class RideTombstoneCutoff {
+  public static final long ID = 1;
+
+  @Id
+  private long id;
+
+  private long version;
+  private Instant prunedAt;
+}
@@ -0,0 +1,29 @@
+package edu.ucsb.cs156.gauchoride.entities;
+
+import edu.ucsb.cs156.gauchoride.services.RideChangeService;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+
+/**
+ * Gives a ride a new change version and updatedAt on every write.
+ *
+ * Hibernate gets instances of this class from Spring while the entity manager
+ * factory is being built, before the service (which needs repositories, and
+ * so the factory) can exist; hence the service is looked up on first use.
+ */
+
+public class RideVersionListener {
+
+  @Autowired
+  ObjectProvider<RideChangeService> rideChangeServiceProvider;
+
+  @PrePersist
+  @PreUpdate
+  public void stamp(Ride ride) {
+    rideChangeServiceProvider.getObject().stamp(ride);
+  }
+}
@@ -5,9 +5,18 @@ import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import javax.persistence.Table;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import edu.ucsb.cs156.gauchoride.utilities.MinuteOfWeek;
 import io.swagger.annotations.ApiModelProperty;
 
 @Data
@@ -15,6 +24,12 @@ import io.swagger.annotations.ApiModelProperty;
 @NoArgsConstructor
 @Builder
 @Entity(name = "shift")
+@Table(indexes = {
+  @Index(name = "shift_start_minute_idx", columnList = "startMinuteOfWeek"),
+  @Index(name = "shift_driver_start_minute_idx", columnList = "driverID, startMinuteOfWeek"),
+  @Index(name = "shift_backup_start_minute_idx", columnList = "driverBackupID, startMinuteOfWeek")
+})
+@EntityListeners(CollectionVersionListener.class)
 public class Shift {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -28,4 +43,17 @@ public class Shift {
 
   private long driverID;
   private long driverBackupID;
-}
\ No newline at end of file
+
+  // day + shiftStart/shiftEnd as minutes since Monday 12:00AM; set on every write
+  @JsonIgnore
+  private Integer startMinuteOfWeek;
+  @JsonIgnore
+  private Integer endMinuteOfWeek;
+
+  @PrePersist
+  @PreUpdate
+  public void computeMinutesOfWeek() {
+    startMinuteOfWeek = MinuteOfWeek.ofOrNull(day, shiftStart);
+    endMinuteOfWeek = MinuteOfWeek.endOrNull(startMinuteOfWeek, shiftEnd);
+  }
+}
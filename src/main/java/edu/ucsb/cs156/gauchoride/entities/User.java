@@ -5,24 +5,46 @@ import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.AccessLevel;
+import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.Id;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
+import javax.persistence.Index;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import javax.persistence.Table;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.Locale;
 
 @Data
 @AllArgsConstructor
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @Builder
 @Entity(name = "users")
+@Table(indexes = {
+  @Index(name = "users_email_key_idx", columnList = "emailKey", unique = true),
+  @Index(name = "users_google_sub_idx", columnList = "googleSub", unique = true),
+  @Index(name = "users_name_key_idx", columnList = "nameKey")
+})
+@EntityListeners(CollectionVersionListener.class)
 public class User {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   private long id;
   private String email;
+  // email as looked up: see emailKeyOf
+  @JsonIgnore
+  private String emailKey;
   private String googleSub;
   private String pictureUrl;
   private String fullName;
+  // fullName as searched: see nameKeyOf
+  @JsonIgnore
+  private String nameKey;
   private String givenName;
   private String familyName;
   private boolean emailVerified;
@@ -31,4 +53,28 @@ public class User {
   private boolean admin;
   @Builder.Default
   private boolean driver=false;
+  // moves whenever admin or driver does; RoleInterceptor compares it with
+  // the value a session's authorities were worked out at
+  @JsonIgnore
+  @Column(columnDefinition = "bigint default 0 not null")
+  private long roleEpoch;
+
+  /**
+   * @return the form of an email address that lookups compare: trimmed and
+   *         lower case
+   */
+  public static String emailKeyOf(String email) {
+    return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+  }
+
+  public static String nameKeyOf(String name) {
+    return name == null ? null : name.trim().toLowerCase(Locale.ROOT);
+  }
+
+  @PrePersist
+  @PreUpdate
+  public void computeKeys() {
+    emailKey = emailKeyOf(email);
+    nameKey = nameKeyOf(fullName);
+  }
 }
@@ -0,0 +1,7 @@
+package edu.ucsb.cs156.gauchoride.errors;
+
+public class BadRequestException extends RuntimeException {
+  public BadRequestException(String message) {
+    super(message);
+  }
+}
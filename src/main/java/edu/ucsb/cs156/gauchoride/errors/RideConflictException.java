@@ -0,0 +1,10 @@
+package edu.ucsb.cs156.gauchoride.errors;
+
+import edu.ucsb.cs156.gauchoride.entities.Ride;
+
+public class RideConflictException extends RuntimeException {
+  public RideConflictException(Ride existing) {
+    super("Ride overlaps ride with id %s on %s from %s to %s"
+      .formatted(existing.getId(), existing.getDay(), existing.getStartTime(), existing.getEndTime()));
+  }
+}
@@ -0,0 +1,10 @@
+package edu.ucsb.cs156.gauchoride.errors;
+
+import edu.ucsb.cs156.gauchoride.entities.Shift;
+
+public class ShiftConflictException extends RuntimeException {
+  public ShiftConflictException(Shift existing) {
+    super("Shift overlaps shift with id %s on %s from %s to %s, which has the same driver or backup driver"
+      .formatted(existing.getId(), existing.getDay(), existing.getShiftStart(), existing.getShiftEnd()));
+  }
+}
@@ -2,38 +2,51 @@ package edu.ucsb.cs156.gauchoride.interceptors;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
-import org.springframework.web.servlet.ModelAndView;
 
-import edu.ucsb.cs156.gauchoride.repositories.UserRepository;
+import edu.ucsb.cs156.gauchoride.services.UserCache;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 
+import java.io.Serializable;
 import java.util.Optional;
-import java.util.HashSet;
 import java.util.Set;
 import java.util.Collection;
 import java.util.stream.Collectors;
 import edu.ucsb.cs156.gauchoride.entities.User;
 
+/**
+ * Keeps ROLE_ADMIN and ROLE_DRIVER in the logged in user's authorities in
+ * step with the admin and driver columns of their users row.
+ *
+ * The session remembers the role epoch of the users row its authorities
+ * were last computed from; they are only recomputed when the row's epoch has
+ * moved, i.e. on the first request after an admin or driver change. The row
+ * comes from UserCache, so a change made by another instance is seen once
+ * this instance's copy expires.
+ */
+
 @Slf4j
 @Component
 public class RoleInterceptor implements HandlerInterceptor {
 
+    static final String SEEN_ROLES = RoleInterceptor.class.getName() + ".seenRoles";
+
+    record SeenRoles(String email, long userId, long epoch) implements Serializable {
+    }
+
     @Autowired
-    UserRepository userRepository;
+    UserCache userCache;
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
@@ -42,9 +55,17 @@ public class RoleInterceptor implements HandlerInterceptor {
         if (authentication.getClass() == OAuth2AuthenticationToken.class) {
             OAuth2User principal = ((OAuth2AuthenticationToken) authentication).getPrincipal();
             String email = principal.getAttribute("email");
-            Optional<User> optionalUser = userRepository.findByEmail(email);
+
+            Optional<User> optionalUser = userCache.findByEmail(email);
             if (optionalUser.isPresent()) {
                 User user = optionalUser.get();
+                HttpSession session = request.getSession(false);
+                Object seen = session == null ? null : session.getAttribute(SEEN_ROLES);
+                if (seen instanceof SeenRoles roles && roles.email().equals(email)
+                        && roles.userId() == user.getId() && roles.epoch() == user.getRoleEpoch()) {
+                    return true;
+                }
+
                 Collection<? extends GrantedAuthority> authorities = authentication.getAuthorities();
                 Set<GrantedAuthority> revisedAuthorities = authorities.stream().filter(
                         grantedAuth -> !grantedAuth.getAuthority().equals("ROLE_ADMIN")
@@ -59,8 +80,11 @@ public class RoleInterceptor implements HandlerInterceptor {
                 Authentication newAuth = new OAuth2AuthenticationToken(principal, revisedAuthorities,
                         (((OAuth2AuthenticationToken) authentication).getAuthorizedClientRegistrationId()));
                 SecurityContextHolder.getContext().setAuthentication(newAuth);
+                if (session != null) {
+                    session.setAttribute(SEEN_ROLES, new SeenRoles(email, user.getId(), user.getRoleEpoch()));
+                }
             }
         }
         return true;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,41 @@
+package edu.ucsb.cs156.gauchoride.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import edu.ucsb.cs156.gauchoride.entities.Ride;
+import edu.ucsb.cs156.gauchoride.entities.Shift;
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+/**
+ * A ride or shift was created, updated or deleted.
+ *
+ * entity is "ride" or "shift"; action is "created", "updated" or
+ * "deleted". The event only names what changed; clients fetch rides with
+ * /api/ride_request/changes.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class ChangeEvent {
+  private String entity;
+  private String action;
+  private long id;
+
+  // used to send ride events only to the rider they belong to
+  @JsonIgnore
+  private Long riderId;
+
+  public static ChangeEvent of(String action, Ride ride) {
+    return new ChangeEvent("ride", action, ride.getId(), ride.getRiderId());
+  }
+
+  public static ChangeEvent of(String action, Shift shift) {
+    return new ChangeEvent("shift", action, shift.getId(), null);
+  }
+}
@@ -0,0 +1,27 @@
+package edu.ucsb.cs156.gauchoride.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import java.util.List;
+
+/**
+ * Where the week's shifts fall short of its ride requests.
+ *
+ * gaps are the windows with no shift at all; oversubscribed are the windows
+ * with more rides than the drivers on duty can carry (driverCapacity each).
+ * A gap with rides waiting is in both lists.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class CoverageReport {
+  private int driverCapacity;
+  private List<CoverageWindow> gaps;
+  private List<CoverageWindow> oversubscribed;
+}
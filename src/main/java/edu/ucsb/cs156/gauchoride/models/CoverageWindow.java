@@ -0,0 +1,31 @@
+package edu.ucsb.cs156.gauchoride.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+/**
+ * A stretch of the week in a {@link CoverageReport}, from startDay/startTime
+ * up to (not including) endDay/endTime. A window can run past midnight on
+ * Sunday, in which case endMinuteOfWeek is more than a week.
+ *
+ * drivers is the number of shifts under way and rides the number of ride
+ * requests; in a gap, rides is the most waiting at any one time.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class CoverageWindow {
+  private String startDay;
+  private String startTime;
+  private String endDay;
+  private String endTime;
+  private int startMinuteOfWeek;
+  private int endMinuteOfWeek;
+  private int drivers;
+  private int rides;
+}
@@ -0,0 +1,38 @@
+package edu.ucsb.cs156.gauchoride.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * One page of a keyset-paginated listing.
+ *
+ * nextCursor is the id to pass back as the cursor to get the following page,
+ * or null when this is the last page.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class CursorPage<T> {
+  private List<T> content;
+  private Long nextCursor;
+
+  /**
+   * Build a page from a query that asked for one row more than pageSize;
+   * that extra row, if present, only tells us that another page exists.
+   */
+  public static <T> CursorPage<T> of(List<T> rows, int pageSize, ToLongFunction<T> idOf) {
+    if (rows.size() <= pageSize) {
+      return new CursorPage<T>(rows, null);
+    }
+    List<T> content = rows.subList(0, pageSize);
+    return new CursorPage<T>(content, idOf.applyAsLong(content.get(pageSize - 1)));
+  }
+}
@@ -0,0 +1,23 @@
+package edu.ucsb.cs156.gauchoride.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+/**
+ * A time a driver can work, given to the roster generator; start and end
+ * are HH:MM(A/P)M, and an end before the start runs past midnight.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class DriverAvailability {
+  private long driverId;
+  private String day;
+  private String start;
+  private String end;
+}
@@ -0,0 +1,25 @@
+package edu.ucsb.cs156.gauchoride.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import java.util.List;
+
+/**
+ * The order in which a driver on a shift picks up and drops off their rides.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class Itinerary {
+  private long shiftId;
+  private long driverId;
+  private List<ItineraryStop> stops;
+  private int travelMinutes;
+  private int minutesLate;
+}
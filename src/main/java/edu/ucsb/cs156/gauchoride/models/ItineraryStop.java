@@ -0,0 +1,28 @@
+package edu.ucsb.cs156.gauchoride.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+/**
+ * One pickup or dropoff in a driver's itinerary.
+ *
+ * day/time is when the driver gets there (after waiting for the ride's
+ * startTime, for a pickup); minutesLate is how far past the ride's endTime a
+ * dropoff is, and is 0 for pickups.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class ItineraryStop {
+  private long rideId;
+  private boolean pickup;
+  private String location;
+  private String day;
+  private String time;
+  private int minutesLate;
+}
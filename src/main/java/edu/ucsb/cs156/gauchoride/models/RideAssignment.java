@@ -0,0 +1,26 @@
+package edu.ucsb.cs156.gauchoride.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+/**
+ * The shift and driver matched to a ride request.
+ *
+ * shiftId and driverId are null when no shift covers the ride or every
+ * covering driver is at capacity; backup is true when the ride went to the
+ * shift's driverBackupID because the primary driver was at capacity.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class RideAssignment {
+  private long rideId;
+  private Long shiftId;
+  private Long driverId;
+  private boolean backup;
+}
@@ -0,0 +1,34 @@
+package edu.ucsb.cs156.gauchoride.models;
+
+import edu.ucsb.cs156.gauchoride.entities.Ride;
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import java.util.List;
+
+/**
+ * Rides created, updated or deleted since a client's last sync.
+ *
+ * Pass version back as since to get the next batch; more is true when there
+ * were too many changes for one response and the client should ask again
+ * straight away.
+ *
+ * resync is true when since is older than the oldest deletes still on file,
+ * so the client may hold rides that have since been deleted: it should
+ * reload its rides from /api/ride_request/all and carry on from version.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class RideChanges {
+  private List<Ride> changed;
+  private List<Long> deleted;
+  private long version;
+  private boolean more;
+  private boolean resync;
+}
@@ -0,0 +1,28 @@
+package edu.ucsb.cs156.gauchoride.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import java.util.List;
+
+/**
+ * Published (as a Spring application event) when the admin or driver flag
+ * of some users changes. Listeners that cache users or their roles should
+ * use @TransactionalEventListener so they hear about it once it commits.
+ *
+ * admin and driver are the new values, or null when that flag was left
+ * alone or toggled.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class RoleChangeEvent {
+  private List<Long> userIds;
+  private Boolean admin;
+  private Boolean driver;
+}
@@ -0,0 +1,29 @@
+package edu.ucsb.cs156.gauchoride.models;
+
+import edu.ucsb.cs156.gauchoride.entities.Shift;
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import java.util.List;
+
+/**
+ * A week of shifts proposed by the roster generator.
+ *
+ * demand is the ride-hours in the week (each ride counted once for every
+ * hour it is under way), covered how many of them the roster's drivers can
+ * carry, and driverHours the hours worked by drivers and backups together.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class Roster {
+  private List<Shift> shifts;
+  private int demand;
+  private int covered;
+  private int driverHours;
+}
@@ -0,0 +1,25 @@
+package edu.ucsb.cs156.gauchoride.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+/**
+ * Counters for the user cache since startup; evictions counts users dropped
+ * for age or to make room, not invalidations.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class UserCacheStats {
+  private int size;
+  private int maxSize;
+  private long hits;
+  private long misses;
+  private double hitRate;
+  private long evictions;
+}
@@ -0,0 +1,12 @@
+package edu.ucsb.cs156.gauchoride.repositories;
+
+import edu.ucsb.cs156.gauchoride.entities.Location;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface LocationRepository extends CrudRepository<Location, Long> {
+  Optional<Location> findByName(String name);
+}
@@ -1,13 +1,85 @@
 package edu.ucsb.cs156.gauchoride.repositories;
 
 import edu.ucsb.cs156.gauchoride.entities.Ride;
+import edu.ucsb.cs156.gauchoride.utilities.MinuteOfWeek;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
-public interface RideRepository extends CrudRepository<Ride, Long> {
+public interface RideRepository extends CrudRepository<Ride, Long>, JpaSpecificationExecutor<Ride> {
+  int STREAM_FETCH_SIZE = 500;
+
   Iterable<Ride> findAllByRiderId(long riderId);
   Optional<Ride> findByIdAndRiderId(long id, long riderId);
+
+  // keyset pagination: pass PageRequest.of(0, n) to limit the rows read
+  List<Ride> findByIdGreaterThanOrderByIdAsc(long afterId, Pageable limit);
+  List<Ride> findByRiderIdAndIdGreaterThanOrderByIdAsc(long riderId, long afterId, Pageable limit);
+
+  // forward-only cursor over every ride; must be consumed inside a transaction and closed
+  @QueryHints({
+    @QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+    @QueryHint(name = HINT_READONLY, value = "true")
+  })
+  Stream<Ride> streamAllByOrderByIdAsc();
+
+  // rides overlapping [start, end) in minutes of the week; a ride is shorter
+  // than a day, so the lower bound on startMinuteOfWeek keeps this an index range scan
+  @Query("select r from ride r where r.startMinuteOfWeek > :start - " + MinuteOfWeek.MINUTES_PER_DAY
+      + " and r.startMinuteOfWeek < :end and r.endMinuteOfWeek > :start order by r.startMinuteOfWeek")
+  List<Ride> findOverlapping(@Param("start") int start, @Param("end") int end);
+
+  @Query("select r from ride r where r.riderId = :riderId and r.startMinuteOfWeek > :start - " + MinuteOfWeek.MINUTES_PER_DAY
+      + " and r.startMinuteOfWeek < :end and r.endMinuteOfWeek > :start order by r.startMinuteOfWeek")
+  List<Ride> findOverlappingByRiderId(@Param("riderId") long riderId, @Param("start") int start, @Param("end") int end);
+
+  // rows written before the minute columns existed, for BackfillService
+  List<Ride> findByStartMinuteOfWeekIsNull();
+
+  // a bulk update, so the entity listeners don't give the ride a new change version
+  @Modifying
+  @Query("update ride r set r.startMinuteOfWeek = :start, r.endMinuteOfWeek = :end where r.id = :id")
+  int setMinutesOfWeek(@Param("id") long id, @Param("start") int start, @Param("end") int end);
+
+  // for BackfillService; only fills in ids that are missing
+  @Modifying
+  @Query("update ride r set r.pickupLocationId = coalesce(r.pickupLocationId, :pickup),"
+      + " r.dropoffLocationId = coalesce(r.dropoffLocationId, :dropoff) where r.id = :id")
+  int setLocationIds(@Param("id") long id, @Param("pickup") Long pickup, @Param("dropoff") Long dropoff);
+
+  // rides read their location names from the location table, so a rename
+  // only needs them to show up as changed; bulk updates skip entity
+  // listeners, so the caller supplies the new change version
+  @Modifying
+  @Query("update ride r set r.changeVersion = :version, r.updatedAt = current_timestamp"
+      + " where r.pickupLocationId = :locationId or r.dropoffLocationId = :locationId")
+  int locationRenamed(@Param("locationId") long locationId, @Param("version") long version);
+
+  @Query("select coalesce(max(r.changeVersion), 0) from ride r")
+  long maxChangeVersion();
+
+  // rides written with since < changeVersion <= upTo, oldest first
+  @Query("select r from ride r where r.changeVersion > :since and r.changeVersion <= :upTo order by r.changeVersion")
+  List<Ride> findChanged(@Param("since") long since, @Param("upTo") long upTo, Pageable limit);
+
+  @Query("select r from ride r where r.riderId = :riderId and r.changeVersion > :since and r.changeVersion <= :upTo"
+      + " order by r.changeVersion")
+  List<Ride> findChangedByRiderId(@Param("riderId") long riderId, @Param("since") long since,
+      @Param("upTo") long upTo, Pageable limit);
 }
@@ -0,0 +1,65 @@
+package edu.ucsb.cs156.gauchoride.repositories;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.criteria.Predicate;
+
+import java.util.stream.IntStream;
+
+import edu.ucsb.cs156.gauchoride.entities.Ride;
+import edu.ucsb.cs156.gauchoride.utilities.MinuteOfWeek;
+
+/**
+ * Building blocks for ride search queries; combine them with
+ * Specification.where(...).and(...) and pass the result to
+ * RideRepository.findAll(Specification, Pageable).
+ *
+ * Each filter is an equality or range test on an indexed column so that
+ * the combined query can use the composite indexes declared on Ride.
+ */
+
+public final class RideSpecifications {
+
+  private RideSpecifications() {
+  }
+
+  public static Specification<Ride> riderIs(long riderId) {
+    return (ride, query, cb) -> cb.equal(ride.get("riderId"), riderId);
+  }
+
+  /**
+   * Rides that start on the given day (0 = Monday)
+   */
+  public static Specification<Ride> startsOnDay(int dayIndex) {
+    int dayStart = dayIndex * MinuteOfWeek.MINUTES_PER_DAY;
+    return (ride, query, cb) -> cb.and(
+        cb.greaterThanOrEqualTo(ride.get("startMinuteOfWeek"), dayStart),
+        cb.lessThan(ride.get("startMinuteOfWeek"), dayStart + MinuteOfWeek.MINUTES_PER_DAY));
+  }
+
+  /**
+   * Rides that overlap [start, end) in minutes of the week, including rides
+   * that run past midnight on Sunday (see MinuteOfWeek.weekOffsets); each
+   * side of the or is a range test as in RideRepository.findOverlapping
+   */
+  public static Specification<Ride> overlaps(int start, int end) {
+    return (ride, query, cb) -> cb.or(IntStream.of(MinuteOfWeek.weekOffsets(start, end))
+        .mapToObj(offset -> cb.and(
+            cb.greaterThan(ride.get("startMinuteOfWeek"), start + offset - MinuteOfWeek.MINUTES_PER_DAY),
+            cb.lessThan(ride.get("startMinuteOfWeek"), end + offset),
+            cb.greaterThan(ride.get("endMinuteOfWeek"), start + offset)))
+        .toArray(Predicate[]::new));
+  }
+
+  public static Specification<Ride> pickupLocationIs(long locationId) {
+    return (ride, query, cb) -> cb.equal(ride.get("pickupLocationId"), locationId);
+  }
+
+  public static Specification<Ride> dropoffLocationIs(long locationId) {
+    return (ride, query, cb) -> cb.equal(ride.get("dropoffLocationId"), locationId);
+  }
+
+  public static Specification<Ride> courseIs(String course) {
+    return (ride, query, cb) -> cb.equal(ride.get("course"), course);
+  }
+}
@@ -0,0 +1,10 @@
+package edu.ucsb.cs156.gauchoride.repositories;
+
+import edu.ucsb.cs156.gauchoride.entities.RideTombstoneCutoff;
+
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface RideTombstoneCutoffRepository extends CrudRepository<RideTombstoneCutoff, Long> {
+}
@@ -0,0 +1,35 @@
+package edu.ucsb.cs156.gauchoride.repositories;
+
+import edu.ucsb.cs156.gauchoride.entities.RideTombstone;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface RideTombstoneRepository extends CrudRepository<RideTombstone, Long> {
+
+  @Query("select coalesce(max(t.version), 0) from ride_tombstone t")
+  long maxVersion();
+
+  @Query("select coalesce(max(t.version), 0) from ride_tombstone t where t.deletedAt < :before")
+  long maxVersionDeletedBefore(@Param("before") Instant before);
+
+  @Modifying
+  @Query("delete from ride_tombstone t where t.version <= :upTo")
+  int deleteUpTo(@Param("upTo") long upTo);
+
+  // deletes with since < version <= upTo, oldest first
+  @Query("select t from ride_tombstone t where t.version > :since and t.version <= :upTo order by t.version")
+  List<RideTombstone> findDeleted(@Param("since") long since, @Param("upTo") long upTo, Pageable limit);
+
+  @Query("select t from ride_tombstone t where t.riderId = :riderId and t.version > :since and t.version <= :upTo order by t.version")
+  List<RideTombstone> findDeletedByRiderId(@Param("riderId") long riderId, @Param("since") long since,
+      @Param("upTo") long upTo, Pageable limit);
+}
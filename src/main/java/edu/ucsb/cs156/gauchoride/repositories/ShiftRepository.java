@@ -1,14 +1,57 @@
 package edu.ucsb.cs156.gauchoride.repositories;
 
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import edu.ucsb.cs156.gauchoride.entities.Shift;
+import edu.ucsb.cs156.gauchoride.utilities.MinuteOfWeek;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
 public interface ShiftRepository extends CrudRepository<Shift, Long> {
   Optional<Shift> findByDay(String day);
   Optional<Shift> findByDriverID(Long driverID);
+
+  // forward-only cursor over every shift; must be consumed inside a transaction and closed
+  @QueryHints({
+    @QueryHint(name = HINT_FETCH_SIZE, value = "" + RideRepository.STREAM_FETCH_SIZE),
+    @QueryHint(name = HINT_READONLY, value = "true")
+  })
+  Stream<Shift> streamAllByOrderByIdAsc();
+
+  // rows written before the minute columns existed, for BackfillService
+  List<Shift> findByStartMinuteOfWeekIsNull();
+
+  @Modifying
+  @Query("update shift s set s.startMinuteOfWeek = :start, s.endMinuteOfWeek = :end where s.id = :id")
+  int setMinutesOfWeek(@Param("id") long id, @Param("start") int start, @Param("end") int end);
+
+  // every shift with one of driverIds as driver or backup
+  @Query("select s from shift s where s.driverID in :driverIds or s.driverBackupID in :driverIds")
+  List<Shift> findByDriverIds(@Param("driverIds") Collection<Long> driverIds);
+
+  // shifts overlapping [start, end) in minutes of the week; see RideRepository.findOverlapping
+  @Query("select s from shift s where s.startMinuteOfWeek > :start - " + MinuteOfWeek.MINUTES_PER_DAY
+      + " and s.startMinuteOfWeek < :end and s.endMinuteOfWeek > :start order by s.startMinuteOfWeek")
+  List<Shift> findOverlapping(@Param("start") int start, @Param("end") int end);
+
+  // the same window, only shifts with one of driverIds as driver or backup; each side of the or is an index range scan
+  @Query("select s from shift s where (s.driverID in :driverIds or s.driverBackupID in :driverIds)"
+      + " and s.startMinuteOfWeek > :start - " + MinuteOfWeek.MINUTES_PER_DAY
+      + " and s.startMinuteOfWeek < :end and s.endMinuteOfWeek > :start order by s.startMinuteOfWeek")
+  List<Shift> findOverlappingByDriverIds(@Param("driverIds") Collection<Long> driverIds,
+      @Param("start") int start, @Param("end") int end);
 }
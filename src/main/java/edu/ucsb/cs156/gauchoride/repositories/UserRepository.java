@@ -1,13 +1,116 @@
 package edu.ucsb.cs156.gauchoride.repositories;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import edu.ucsb.cs156.gauchoride.entities.User;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
 public interface UserRepository extends CrudRepository<User, Long> {
-  Optional<User> findByEmail(String email);
+  // case and surrounding spaces don't matter
+  default Optional<User> findByEmail(String email) {
+    return findByEmailKey(User.emailKeyOf(email));
+  }
+
+  Optional<User> findByEmailKey(String emailKey);
+
+  Optional<User> findByGoogleSub(String googleSub);
+
+  // rows written before email_key or name_key existed; see BackfillService
+  @Query("select u from users u where (u.emailKey is null and u.email is not null)"
+      + " or (u.nameKey is null and u.fullName is not null)")
+  List<User> findWithoutKeys();
+
+  @Modifying
+  @Query("update users u set u.emailKey = :emailKey, u.nameKey = :nameKey where u.id = :id")
+  int setKeys(@Param("id") long id, @Param("emailKey") String emailKey, @Param("nameKey") String nameKey);
+
+  // forward-only cursor over every user; must be consumed inside a transaction and closed
+  @QueryHints({
+    @QueryHint(name = HINT_FETCH_SIZE, value = "" + RideRepository.STREAM_FETCH_SIZE),
+    @QueryHint(name = HINT_READONLY, value = "true")
+  })
+  Stream<User> streamAllByOrderByIdAsc();
+
+  // keyset pagination over users in id order; pass PageRequest.of(0, n) to
+  // limit the rows read. A null argument doesn't filter
+  @Query("select u from users u where u.id > :afterId"
+      + " and (:admin is null or u.admin = :admin) and (:driver is null or u.driver = :driver)"
+      + " order by u.id")
+  List<User> search(@Param("afterId") long afterId, @Param("admin") Boolean admin, @Param("driver") Boolean driver,
+      Pageable limit);
+
+  // prefix search, one key at a time so each is a range of that key's index
+  // (see V10, V11), with keyset pagination in (key, id) order. prefix is a
+  // LIKE pattern with ! as the escape; users whose email key matches are
+  // left out of the name key search, so no one is listed twice
+  @Query("select u from users u where u.emailKey like :prefix escape '!'"
+      + " and (u.emailKey > :afterKey or (u.emailKey = :afterKey and u.id > :afterId))"
+      + " and (:admin is null or u.admin = :admin) and (:driver is null or u.driver = :driver)"
+      + " order by u.emailKey, u.id")
+  List<User> searchByEmailKey(@Param("prefix") String prefix, @Param("afterKey") String afterKey,
+      @Param("afterId") long afterId, @Param("admin") Boolean admin, @Param("driver") Boolean driver, Pageable limit);
+
+  @Query("select u from users u where u.nameKey like :prefix escape '!'"
+      + " and (u.emailKey is null or u.emailKey not like :prefix escape '!')"
+      + " and (u.nameKey > :afterKey or (u.nameKey = :afterKey and u.id > :afterId))"
+      + " and (:admin is null or u.admin = :admin) and (:driver is null or u.driver = :driver)"
+      + " order by u.nameKey, u.id")
+  List<User> searchByNameKey(@Param("prefix") String prefix, @Param("afterKey") String afterKey,
+      @Param("afterId") long afterId, @Param("admin") Boolean admin, @Param("driver") Boolean driver, Pageable limit);
+
+  // matches of the two searches above; each counts one index range, not the table
+  @Query("select count(u) from users u where u.emailKey like :prefix escape '!'"
+      + " and (:admin is null or u.admin = :admin) and (:driver is null or u.driver = :driver)")
+  long countByEmailKey(@Param("prefix") String prefix, @Param("admin") Boolean admin, @Param("driver") Boolean driver);
+
+  @Query("select count(u) from users u where u.nameKey like :prefix escape '!'"
+      + " and (u.emailKey is null or u.emailKey not like :prefix escape '!')"
+      + " and (:admin is null or u.admin = :admin) and (:driver is null or u.driver = :driver)")
+  long countByNameKey(@Param("prefix") String prefix, @Param("admin") Boolean admin, @Param("driver") Boolean driver);
+
+  // single statement role updates, so concurrent changes can't undo each
+  // other; each also moves the role epoch. They skip entity listeners, so
+  // callers bump CollectionVersions.USERS and publish a RoleChangeEvent
+  // themselves
+  @Modifying
+  @Query("update users u set u.admin = coalesce(:admin, u.admin), u.driver = coalesce(:driver, u.driver),"
+      + " u.roleEpoch = u.roleEpoch + 1 where u.id in :ids")
+  int updateRoles(@Param("ids") Collection<Long> ids, @Param("admin") Boolean admin, @Param("driver") Boolean driver);
+
+  @Modifying
+  @Query("update users u set u.admin = case when u.admin = true then false else true end,"
+      + " u.roleEpoch = u.roleEpoch + 1 where u.id = :id")
+  int toggleAdmin(@Param("id") long id);
+
+  @Modifying
+  @Query("update users u set u.driver = case when u.driver = true then false else true end,"
+      + " u.roleEpoch = u.roleEpoch + 1 where u.id = :id")
+  int toggleDriver(@Param("id") long id);
+
+  // ids are never reused, so this bounds the number of users; it reads one end of the primary key
+  @Query("select coalesce(max(u.id), 0) from users u")
+  long maxId();
+
+  // SELECT ... FOR UPDATE; serializes writes made on behalf of one user until the transaction ends
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("select u from users u where u.id = :id")
+  Optional<User> findByIdForUpdate(@Param("id") long id);
 }
@@ -0,0 +1,188 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import edu.ucsb.cs156.gauchoride.entities.Location;
+import edu.ucsb.cs156.gauchoride.entities.Ride;
+import edu.ucsb.cs156.gauchoride.entities.Shift;
+import edu.ucsb.cs156.gauchoride.entities.User;
+import edu.ucsb.cs156.gauchoride.repositories.RideRepository;
+import edu.ucsb.cs156.gauchoride.repositories.ShiftRepository;
+import edu.ucsb.cs156.gauchoride.repositories.UserRepository;
+import edu.ucsb.cs156.gauchoride.utilities.MinuteOfWeek;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import org.hibernate.Session;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import javax.persistence.EntityManager;
+
+import java.util.List;
+
+/**
+ * Fills in derived columns on rows written before those columns existed.
+ *
+ * The schema is managed by Hibernate (ddl-auto=update), so the scripts in
+ * db/migration never run; a new column starts out null on every existing
+ * row. This runs once at startup and sets the columns that the entities
+ * would otherwise only set when a row is next written. Rows whose values
+ * can't be parsed are left null, as the entity callbacks would leave them.
+ */
+
+@Slf4j
+@Service("backfill")
+public class BackfillService implements ApplicationRunner {
+
+  @Autowired
+  RideRepository rideRepository;
+
+  @Autowired
+  ShiftRepository shiftRepository;
+
+  @Autowired
+  UserRepository userRepository;
+
+  @Autowired
+  ShiftIndex shiftIndex;
+
+  @Autowired
+  LocationDictionary locationDictionary;
+
+  @Autowired
+  EntityManager entityManager;
+
+  @Override
+  @Transactional
+  public void run(ApplicationArguments args) {
+    advanceRideSequence();
+    backfillMinutesOfWeek();
+    backfillLocationIds();
+    backfillUserKeys();
+    createPrefixIndexes();
+  }
+
+  /**
+   * Rides written when ids came from an IDENTITY column are numbered from 1,
+   * and the ride_seq that Hibernate creates in their place starts at 1 too;
+   * move it past them, as V6 would have. The sequence only ever moves
+   * forward, so a second instance starting up alongside this one is safe.
+   */
+  void advanceRideSequence() {
+    Number maxId = (Number) entityManager.createNativeQuery("SELECT MAX(id) FROM ride").getSingleResult();
+    if (maxId == null) {
+      return;
+    }
+    Dialect dialect = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+        .getJdbcServices().getDialect();
+    long next = ((Number) entityManager.createNativeQuery(dialect.getSequenceNextValString(Ride.SEQUENCE))
+        .getSingleResult()).longValue();
+    // the pooled optimizer hands out the allocationSize ids up to each value
+    // it reads, so this is setval(MAX(id) + 1) as in V6
+    long restart = maxId.longValue() + 1 + Ride.SEQUENCE_ALLOCATION;
+    if (next < restart) {
+      entityManager.createNativeQuery("ALTER SEQUENCE " + Ride.SEQUENCE + " RESTART WITH " + restart).executeUpdate();
+      log.info("Moved {} past ride id {}", Ride.SEQUENCE, maxId);
+    }
+  }
+
+  void backfillMinutesOfWeek() {
+    int rides = 0;
+    for (Ride ride : rideRepository.findByStartMinuteOfWeekIsNull()) {
+      Integer start = MinuteOfWeek.ofOrNull(ride.getDay(), ride.getStartTime());
+      Integer end = MinuteOfWeek.endOrNull(start, ride.getEndTime());
+      if (end != null) {
+        rides += rideRepository.setMinutesOfWeek(ride.getId(), start, end);
+      }
+    }
+
+    int shifts = 0;
+    for (Shift shift : shiftRepository.findByStartMinuteOfWeekIsNull()) {
+      Integer start = MinuteOfWeek.ofOrNull(shift.getDay(), shift.getShiftStart());
+      Integer end = MinuteOfWeek.endOrNull(start, shift.getShiftEnd());
+      if (end != null) {
+        shifts += shiftRepository.setMinutesOfWeek(shift.getId(), start, end);
+        // the index was loaded before this ran, without the shift
+        shiftIndex.saved(Shift.builder()
+            .id(shift.getId())
+            .day(shift.getDay())
+            .shiftStart(shift.getShiftStart())
+            .shiftEnd(shift.getShiftEnd())
+            .driverID(shift.getDriverID())
+            .driverBackupID(shift.getDriverBackupID())
+            .startMinuteOfWeek(start)
+            .endMinuteOfWeek(end)
+            .build());
+      }
+    }
+    log.info("Backfilled minutes of the week on {} rides and {} shifts", rides, shifts);
+  }
+
+  /**
+   * Rides written before the location table existed only have the names in
+   * the pickup_location/dropoff_location columns, which are no longer mapped
+   * (see V13); resolve them to location ids while the columns are there.
+   */
+  void backfillLocationIds() {
+    Number columns = (Number) entityManager.createNativeQuery("SELECT COUNT(*) FROM information_schema.columns"
+        + " WHERE LOWER(table_name) = 'ride' AND LOWER(column_name) IN ('pickup_location', 'dropoff_location')")
+        .getSingleResult();
+    if (columns.intValue() < 2) {
+      return;
+    }
+    @SuppressWarnings("unchecked")
+    List<Object[]> rows = entityManager.createNativeQuery("SELECT id, pickup_location, dropoff_location FROM ride"
+        + " WHERE (pickup_location_id IS NULL AND pickup_location IS NOT NULL)"
+        + " OR (dropoff_location_id IS NULL AND dropoff_location IS NOT NULL)")
+        .getResultList();
+    int rides = 0;
+    for (Object[] row : rows) {
+      Location pickup = locationDictionary.intern((String) row[1]);
+      Location dropoff = locationDictionary.intern((String) row[2]);
+      rides += rideRepository.setLocationIds(((Number) row[0]).longValue(),
+          pickup == null ? null : pickup.getId(), dropoff == null ? null : dropoff.getId());
+    }
+    log.info("Backfilled location ids on {} rides", rides);
+  }
+
+  /**
+   * Users are looked up by email_key and searched by name_key; a row that
+   * predates them (and has only been saved since without a change, so
+   * User.computeKeys never ran) can't be found. A row whose email_key is
+   * already taken by another differing only in case is left for merging by
+   * hand, as V10 says.
+   */
+  void backfillUserKeys() {
+    int users = 0;
+    for (User user : userRepository.findWithoutKeys()) {
+      String emailKey = User.emailKeyOf(user.getEmail());
+      if (user.getEmailKey() == null && emailKey != null && userRepository.findByEmailKey(emailKey).isPresent()) {
+        log.warn("User {} has the same email as another user, up to case; not backfilling its email_key", user.getId());
+        emailKey = null;
+      }
+      users += userRepository.setKeys(user.getId(), emailKey, User.nameKeyOf(user.getFullName()));
+    }
+    log.info("Backfilled email and name keys on {} users", users);
+  }
+
+  /**
+   * On PostgreSQL a plain index only serves LIKE 'abc%' under the C
+   * collation, and Hibernate can't declare the operator class, so the
+   * indexes from V10 and V11 that user search walks are made here.
+   */
+  void createPrefixIndexes() {
+    String database = entityManager.unwrap(Session.class)
+        .doReturningWork(connection -> connection.getMetaData().getDatabaseProductName());
+    if (!"PostgreSQL".equals(database)) {
+      return;
+    }
+    entityManager.createNativeQuery("CREATE INDEX IF NOT EXISTS users_email_key_prefix_idx"
+        + " ON users (email_key varchar_pattern_ops)").executeUpdate();
+    entityManager.createNativeQuery("CREATE INDEX IF NOT EXISTS users_name_key_prefix_idx"
+        + " ON users (name_key varchar_pattern_ops)").executeUpdate();
+  }
+}
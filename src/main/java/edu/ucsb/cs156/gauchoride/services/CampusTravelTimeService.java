@@ -0,0 +1,179 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import edu.ucsb.cs156.gauchoride.entities.Location;
+import edu.ucsb.cs156.gauchoride.utilities.RoadGraph;
+import edu.ucsb.cs156.gauchoride.utilities.TravelTimeMatrix;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Travel times from the campus road graph (app.travel.graph).
+ *
+ * At startup the all-pairs shortest path table for the graph is
+ * memory-mapped from app.travel.matrix, which is built ahead of time and
+ * shipped with the app (see {@link TravelTimeMatrix}). A table inside the
+ * jar can't be mapped where it is, so it is first copied out to a temporary
+ * file. If the table is missing or was built from a different graph, it is
+ * computed in memory instead, every time the app starts. Locations are
+ * matched to graph nodes by name; trips to or from a location that isn't on
+ * the graph take app.travel.defaultMinutes.
+ */
+
+@Slf4j
+@Service("travelTime")
+public class CampusTravelTimeService extends TravelTimeService {
+
+  // nodeOfLocation entries: 0 = not looked up yet, -1 = not on the graph, else node + 1
+  private static final int UNRESOLVED = 0;
+  private static final int OFF_GRAPH = -1;
+  // location ids are small; don't grow the cache for anything bigger than this
+  private static final int MAX_CACHED_ID = 1 << 20;
+
+  @Value("${app.travel.graph:classpath:campus/roads.csv}")
+  Resource graphFile;
+
+  @Value("${app.travel.matrix:classpath:campus/travel-times.bin}")
+  Resource matrixFile;
+
+  @Value("${app.travel.defaultMinutes:5}")
+  int defaultMinutes;
+
+  @Autowired
+  LocationDictionary locationDictionary;
+
+  RoadGraph graph;
+  TravelTimeMatrix matrix;
+
+  private volatile int[] nodeOfLocation = new int[0];
+  private volatile long locationGeneration;
+
+  @PostConstruct
+  public void load() throws IOException {
+    byte[] contents;
+    try (InputStream in = graphFile.getInputStream()) {
+      contents = in.readAllBytes();
+    }
+    graph = RoadGraph.parse(new InputStreamReader(new ByteArrayInputStream(contents), StandardCharsets.UTF_8));
+    byte[] hash = TravelTimeMatrix.hashOf(contents);
+
+    Optional<TravelTimeMatrix> stored = Optional.empty();
+    if (matrixFile.isFile()) {
+      stored = TravelTimeMatrix.map(matrixFile.getFile().toPath(), graph.size(), hash);
+    } else if (matrixFile.exists()) {
+      stored = mapCopy(matrixFile, graph.size(), hash);
+    }
+    if (stored.isPresent()) {
+      matrix = stored.get();
+      log.info("Loaded travel times for {} places from {}", graph.size(), matrixFile);
+      return;
+    }
+
+    long begin = System.nanoTime();
+    matrix = TravelTimeMatrix.compute(graph, hash);
+    log.warn("{} is missing or was built from a different road graph; computed travel times for {} places in {} ms",
+        matrixFile, graph.size(), (System.nanoTime() - begin) / 1_000_000);
+  }
+
+  private static Optional<TravelTimeMatrix> mapCopy(Resource resource, int size, byte[] hash) throws IOException {
+    Path copy = Files.createTempFile("travel-times", ".bin");
+    try {
+      try (InputStream in = resource.getInputStream()) {
+        Files.copy(in, copy, StandardCopyOption.REPLACE_EXISTING);
+      }
+      return TravelTimeMatrix.map(copy, size, hash);
+    } finally {
+      // the mapping stays valid once the file is gone, except on Windows,
+      // which won't delete a mapped file
+      try {
+        Files.deleteIfExists(copy);
+      } catch (IOException e) {
+        copy.toFile().deleteOnExit();
+      }
+    }
+  }
+
+  public int minutes(long fromLocationId, long toLocationId) {
+    if (fromLocationId == toLocationId) {
+      return 0;
+    }
+    return minutesBetweenNodes(node(fromLocationId), node(toLocationId));
+  }
+
+  @Override
+  public int[][] matrix(long[] locationIds) {
+    int n = locationIds.length;
+    int[] nodes = new int[n];
+    for (int i = 0; i < n; i++) {
+      nodes[i] = node(locationIds[i]);
+    }
+    int[][] result = new int[n][n];
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < n; j++) {
+        result[i][j] = locationIds[i] == locationIds[j] ? 0 : minutesBetweenNodes(nodes[i], nodes[j]);
+      }
+    }
+    return result;
+  }
+
+  private int minutesBetweenNodes(int from, int to) {
+    if (from < 0 || to < 0) {
+      return defaultMinutes;
+    }
+    int minutes = matrix.minutes(from, to);
+    return minutes == TravelTimeMatrix.UNREACHABLE ? defaultMinutes : minutes;
+  }
+
+  /**
+   * @return the graph node for a location, or -1 if it isn't on the graph
+   */
+  int node(long locationId) {
+    // read in the opposite order to resolve()'s writes
+    long generation = locationGeneration;
+    int[] nodes = nodeOfLocation;
+    if (generation == locationDictionary.generation()
+        && locationId >= 0 && locationId < nodes.length && nodes[(int) locationId] != UNRESOLVED) {
+      int entry = nodes[(int) locationId];
+      return entry == OFF_GRAPH ? -1 : entry - 1;
+    }
+    return resolve(locationId);
+  }
+
+  private synchronized int resolve(long locationId) {
+    int[] nodes = nodeOfLocation;
+    long generation = locationDictionary.generation();
+    if (generation != locationGeneration) {
+      // a location was renamed, so any cached entry may be wrong
+      nodes = new int[nodes.length];
+    }
+    int node = locationDictionary.lookup(locationId)
+        .map(Location::getName)
+        .map(graph::indexOf)
+        .orElse(-1);
+    if (locationId >= 0 && locationId < MAX_CACHED_ID) {
+      if (locationId >= nodes.length) {
+        nodes = Arrays.copyOf(nodes, Math.max((int) locationId + 1, 2 * nodes.length));
+      }
+      nodes[(int) locationId] = node < 0 ? OFF_GRAPH : node + 1;
+    }
+    nodeOfLocation = nodes;
+    locationGeneration = generation;
+    return node;
+  }
+}
@@ -0,0 +1,189 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import edu.ucsb.cs156.gauchoride.models.ChangeEvent;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes ride and shift changes to clients subscribed to /api/events.
+ *
+ * Controllers call {@link #publish} inside their transaction; subscribers
+ * only hear about the change once it commits (or straight away when there is
+ * no transaction).
+ *
+ * Subscribers are server-sent event streams on async requests, so an idle
+ * subscriber holds a connection but no thread. Each has a queue of at most
+ * app.events.bufferSize unsent events, drained by a small shared pool of
+ * sender threads; a subscriber whose queue fills up is too slow and is
+ * disconnected (EventSource clients reconnect and can catch up from
+ * /api/ride_request/changes). A heartbeat comment every
+ * app.events.heartbeatSeconds keeps proxies from closing idle streams and
+ * finds dead connections.
+ */
+
+@Slf4j
+@Service("changeEvents")
+public class ChangeEventBus {
+
+  // queued to send a heartbeat comment rather than an event
+  private static final ChangeEvent HEARTBEAT = ChangeEvent.builder().entity("heartbeat").build();
+
+  @Autowired
+  ApplicationEventPublisher publisher;
+
+  @Value("${app.events.bufferSize:64}")
+  int bufferSize;
+
+  @Value("${app.events.heartbeatSeconds:15}")
+  int heartbeatSeconds;
+
+  @Value("${app.events.senderThreads:2}")
+  int senderThreads;
+
+  final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+  Executor senders;
+  private ScheduledExecutorService heartbeats;
+
+  @PostConstruct
+  public void start() {
+    senders = Executors.newFixedThreadPool(senderThreads, daemonThreads("sse-sender-"));
+    heartbeats = Executors.newSingleThreadScheduledExecutor(daemonThreads("sse-heartbeat-"));
+    heartbeats.scheduleAtFixedRate(this::heartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+  }
+
+  private static CustomizableThreadFactory daemonThreads(String prefix) {
+    CustomizableThreadFactory factory = new CustomizableThreadFactory(prefix);
+    factory.setDaemon(true);
+    return factory;
+  }
+
+  @PreDestroy
+  public void stop() {
+    heartbeats.shutdownNow();
+    if (senders instanceof ExecutorService) {
+      ((ExecutorService) senders).shutdownNow();
+    }
+    for (Subscriber subscriber : subscribers) {
+      subscriber.emitter.complete();
+    }
+    subscribers.clear();
+  }
+
+  public void publish(ChangeEvent event) {
+    publisher.publishEvent(event);
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onChange(ChangeEvent event) {
+    for (Subscriber subscriber : subscribers) {
+      if (subscriber.wants(event)) {
+        subscriber.offer(event);
+      }
+    }
+  }
+
+  /**
+   * Start sending events to emitter
+   * @param riderId only send this rider's ride events (and all shift
+   *                events), or null to send everything
+   */
+  public void subscribe(SseEmitter emitter, Long riderId) {
+    Subscriber subscriber = new Subscriber(emitter, riderId);
+    subscribers.add(subscriber);
+    emitter.onCompletion(() -> subscribers.remove(subscriber));
+    emitter.onTimeout(() -> subscribers.remove(subscriber));
+    emitter.onError(e -> subscribers.remove(subscriber));
+  }
+
+  public int subscriberCount() {
+    return subscribers.size();
+  }
+
+  void heartbeat() {
+    for (Subscriber subscriber : subscribers) {
+      subscriber.offer(HEARTBEAT);
+    }
+  }
+
+  private void evict(Subscriber subscriber, String reason) {
+    if (subscribers.remove(subscriber)) {
+      log.info("Dropping event subscriber: {}", reason);
+      subscriber.emitter.complete();
+    }
+  }
+
+  final class Subscriber {
+    final SseEmitter emitter;
+    final Long riderId;
+    final BlockingQueue<ChangeEvent> queue = new ArrayBlockingQueue<>(bufferSize);
+    // true while a drain() for this subscriber is queued or running
+    final AtomicBoolean draining = new AtomicBoolean();
+
+    Subscriber(SseEmitter emitter, Long riderId) {
+      this.emitter = emitter;
+      this.riderId = riderId;
+    }
+
+    boolean wants(ChangeEvent event) {
+      return riderId == null || !"ride".equals(event.getEntity()) || riderId.equals(event.getRiderId());
+    }
+
+    void offer(ChangeEvent event) {
+      if (!queue.offer(event)) {
+        evict(this, "%d events behind".formatted(bufferSize));
+        return;
+      }
+      if (draining.compareAndSet(false, true)) {
+        senders.execute(this::drain);
+      }
+    }
+
+    void drain() {
+      try {
+        ChangeEvent event;
+        while ((event = queue.poll()) != null) {
+          emitter.send(event == HEARTBEAT ? SseEmitter.event().comment("heartbeat") : toSse(event));
+        }
+      } catch (IOException | IllegalStateException e) {
+        evict(this, e.toString());
+        return;
+      } finally {
+        draining.set(false);
+      }
+      // an event offered after the last poll() but before draining was cleared
+      if (!queue.isEmpty() && draining.compareAndSet(false, true)) {
+        senders.execute(this::drain);
+      }
+    }
+  }
+
+  private static SseEmitter.SseEventBuilder toSse(ChangeEvent event) {
+    return SseEmitter.event()
+        .name(event.getEntity())
+        .data(event, MediaType.APPLICATION_JSON);
+  }
+}
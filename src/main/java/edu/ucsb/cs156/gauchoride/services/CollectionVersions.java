@@ -0,0 +1,86 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory version numbers for the lists behind GET /api/shift/all,
+ * /api/admin/users and /api/ride_request/all, used as their ETags.
+ *
+ * A version goes up when a transaction that wrote to its collection commits
+ * (see CollectionVersionListener). Controllers must take the ETag before
+ * reading the collection: a write that commits in between then only costs
+ * the client an extra download, rather than leaving it with stale rows under
+ * the new tag.
+ *
+ * Versions restart at zero with the application, so each tag also carries a
+ * random id for this run.
+ */
+
+@Service("collectionVersions")
+public class CollectionVersions {
+
+  public static final String RIDES = "rides";
+  public static final String SHIFTS = "shifts";
+  public static final String USERS = "users";
+
+  private final String bootId = UUID.randomUUID().toString().substring(0, 8);
+  private final ConcurrentHashMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Long, AtomicLong> riderVersions = new ConcurrentHashMap<>();
+  // bumped by changes that may touch any rider's rides, e.g. a location rename
+  private final AtomicLong allRiders = new AtomicLong();
+
+  public String etag(String collection) {
+    return "\"%s-%s-%d\"".formatted(bootId, collection, version(versions, collection));
+  }
+
+  /**
+   * ETag for the rides of a single rider
+   */
+  public String riderEtag(long riderId) {
+    return "\"%s-%s-%d-%d.%d\"".formatted(bootId, RIDES, riderId, allRiders.get(), version(riderVersions, riderId));
+  }
+
+  private static <K> long version(ConcurrentHashMap<K, AtomicLong> versions, K key) {
+    AtomicLong version = versions.get(key);
+    return version == null ? 0 : version.get();
+  }
+
+  /**
+   * Any rows of collection may have changed; for RIDES, that includes every
+   * rider's
+   */
+  public void changed(String collection) {
+    afterCommit(() -> {
+      versions.computeIfAbsent(collection, c -> new AtomicLong()).incrementAndGet();
+      if (RIDES.equals(collection)) {
+        allRiders.incrementAndGet();
+      }
+    });
+  }
+
+  public void rideChanged(long riderId) {
+    afterCommit(() -> {
+      versions.computeIfAbsent(RIDES, c -> new AtomicLong()).incrementAndGet();
+      riderVersions.computeIfAbsent(riderId, r -> new AtomicLong()).incrementAndGet();
+    });
+  }
+
+  private static void afterCommit(Runnable bump) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          bump.run();
+        }
+      });
+    } else {
+      bump.run();
+    }
+  }
+}
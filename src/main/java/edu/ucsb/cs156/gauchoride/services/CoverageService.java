@@ -0,0 +1,170 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import edu.ucsb.cs156.gauchoride.entities.Ride;
+import edu.ucsb.cs156.gauchoride.entities.Shift;
+import edu.ucsb.cs156.gauchoride.models.CoverageReport;
+import edu.ucsb.cs156.gauchoride.models.CoverageWindow;
+import edu.ucsb.cs156.gauchoride.repositories.RideRepository;
+import edu.ucsb.cs156.gauchoride.repositories.ShiftRepository;
+import edu.ucsb.cs156.gauchoride.utilities.MinuteOfWeek;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiPredicate;
+import java.util.function.IntPredicate;
+
+/**
+ * Finds the parts of the week where shifts don't cover ride requests.
+ *
+ * Every shift and ride becomes a start and an end event on minute of the
+ * week (an interval running past midnight on Sunday is split in two); the
+ * events are sorted and swept once, keeping count of the shifts and rides
+ * under way, which splits the week into stretches with constant counts.
+ * Sorting dominates, so this is O(n log n) in the number of shifts and rides.
+ */
+
+@Slf4j
+@Service("coverage")
+public class CoverageService {
+
+  // low bits of an event; at the same minute ends sort before starts, as intervals are half-open
+  private static final int SHIFT_END = 0;
+  private static final int RIDE_END = 1;
+  private static final int SHIFT_START = 2;
+  private static final int RIDE_START = 3;
+
+  @Autowired
+  ShiftRepository shiftRepository;
+
+  @Autowired
+  RideRepository rideRepository;
+
+  @Value("${app.assignment.driverCapacity:3}")
+  int driverCapacity;
+
+  public CoverageReport analyzeWeek() {
+    return analyze(shiftRepository.findAll(), rideRepository.findAll());
+  }
+
+  public CoverageReport analyze(Iterable<Shift> shifts, Iterable<Ride> rides) {
+    Events events = new Events();
+    for (Shift shift : shifts) {
+      events.add(shift.getStartMinuteOfWeek(), shift.getEndMinuteOfWeek(), SHIFT_START, SHIFT_END);
+    }
+    for (Ride ride : rides) {
+      events.add(ride.getStartMinuteOfWeek(), ride.getEndMinuteOfWeek(), RIDE_START, RIDE_END);
+    }
+    long[] sorted = Arrays.copyOf(events.events, events.size);
+    Arrays.sort(sorted);
+
+    // stretches of constant counts, as {start, end, drivers, rides}
+    List<int[]> stretches = new ArrayList<>();
+    int drivers = 0;
+    int riding = 0;
+    int from = 0;
+    for (long event : sorted) {
+      int minute = (int) (event >> 2);
+      if (minute > from) {
+        stretches.add(new int[] { from, minute, drivers, riding });
+        from = minute;
+      }
+      switch ((int) (event & 3)) {
+        case SHIFT_END -> drivers--;
+        case RIDE_END -> riding--;
+        case SHIFT_START -> drivers++;
+        default -> riding++;
+      }
+    }
+    if (from < MinuteOfWeek.MINUTES_PER_WEEK) {
+      stretches.add(new int[] { from, MinuteOfWeek.MINUTES_PER_WEEK, drivers, riding });
+    }
+
+    // a gap is one window however the ride count changes within it
+    List<int[]> gaps = windows(stretches, d -> d == 0, (a, b) -> true);
+    List<int[]> oversubscribed = windows(stretches, d -> true, (a, b) -> a[2] == b[2] && a[3] == b[3]);
+    oversubscribed.removeIf(w -> w[3] <= w[2] * driverCapacity);
+
+    log.debug("{} events, {} gaps, {} oversubscribed windows", sorted.length, gaps.size(), oversubscribed.size());
+    return CoverageReport.builder()
+        .driverCapacity(driverCapacity)
+        .gaps(toWindows(gaps))
+        .oversubscribed(toWindows(oversubscribed))
+        .build();
+  }
+
+  /**
+   * Join runs of adjacent stretches whose driver count passes include and
+   * that sameWindow says belong together (also across the end of the week);
+   * rides becomes the most in any of them
+   */
+  private static List<int[]> windows(List<int[]> stretches, IntPredicate include, BiPredicate<int[], int[]> sameWindow) {
+    List<int[]> windows = new ArrayList<>();
+    for (int[] stretch : stretches) {
+      if (!include.test(stretch[2])) {
+        continue;
+      }
+      int[] last = windows.isEmpty() ? null : windows.get(windows.size() - 1);
+      if (last != null && last[1] == stretch[0] && sameWindow.test(last, stretch)) {
+        last[1] = stretch[1];
+        last[3] = Math.max(last[3], stretch[3]);
+      } else {
+        windows.add(stretch.clone());
+      }
+    }
+    if (windows.size() > 1) {
+      int[] first = windows.get(0);
+      int[] last = windows.get(windows.size() - 1);
+      if (first[0] == 0 && last[1] == MinuteOfWeek.MINUTES_PER_WEEK && sameWindow.test(last, first)) {
+        last[1] = MinuteOfWeek.MINUTES_PER_WEEK + first[1];
+        last[3] = Math.max(last[3], first[3]);
+        windows.remove(0);
+      }
+    }
+    return windows;
+  }
+
+  private static List<CoverageWindow> toWindows(List<int[]> windows) {
+    List<CoverageWindow> result = new ArrayList<>(windows.size());
+    for (int[] w : windows) {
+      result.add(CoverageWindow.builder()
+          .startDay(MinuteOfWeek.dayOf(w[0]))
+          .startTime(MinuteOfWeek.timeOf(w[0]))
+          .endDay(MinuteOfWeek.dayOf(w[1]))
+          .endTime(MinuteOfWeek.timeOf(w[1]))
+          .startMinuteOfWeek(w[0])
+          .endMinuteOfWeek(w[1])
+          .drivers(w[2])
+          .rides(w[3])
+          .build());
+    }
+    return result;
+  }
+
+  /** growable array of events, each minute << 2 | kind */
+  private static final class Events {
+    long[] events = new long[64];
+    int size;
+
+    void add(Integer start, Integer end, int startKind, int endKind) {
+      if (start == null || end == null || end <= start) {
+        return;
+      }
+      if (end > MinuteOfWeek.MINUTES_PER_WEEK) {
+        add(start, MinuteOfWeek.MINUTES_PER_WEEK, startKind, endKind);
+        add(0, end - MinuteOfWeek.MINUTES_PER_WEEK, startKind, endKind);
+        return;
+      }
+      if (size + 2 > events.length) {
+        events = Arrays.copyOf(events, 2 * events.length);
+      }
+      events[size++] = ((long) start << 2) | startKind;
+      events[size++] = ((long) end << 2) | endKind;
+    }
+  }
+}
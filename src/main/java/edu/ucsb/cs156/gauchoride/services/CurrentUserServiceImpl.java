@@ -2,13 +2,10 @@ package edu.ucsb.cs156.gauchoride.services;
 
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContext;
@@ -19,70 +16,54 @@ import org.springframework.stereotype.Service;
 
 import edu.ucsb.cs156.gauchoride.entities.User;
 import edu.ucsb.cs156.gauchoride.models.CurrentUser;
-import edu.ucsb.cs156.gauchoride.repositories.UserRepository;
+import edu.ucsb.cs156.gauchoride.utilities.RequestMemo;
 
 
+/**
+ * The logged in user. The users row is looked up by the id in the session
+ * principal (see {@link UserProvisioningService}) through {@link UserCache},
+ * and the CurrentUser is kept for the rest of the request.
+ */
+
 @Slf4j
 @Service("currentUser")
 public class CurrentUserServiceImpl extends CurrentUserService {
+  private static final String CURRENT_USER = CurrentUserServiceImpl.class.getName() + ".currentUser";
+
   @Autowired
-  private UserRepository userRepository;
+  UserCache userCache;
 
   @Autowired
-  GrantedAuthoritiesService grantedAuthoritiesService;
+  UserProvisioningService userProvisioning;
 
-  @Value("${app.admin.emails}")
-  final private List<String> adminEmails = new ArrayList<String>();
+  @Autowired
+  GrantedAuthoritiesService grantedAuthoritiesService;
 
   public CurrentUser getCurrentUser() {
-    CurrentUser cu = CurrentUser.builder()
-      .user(this.getUser())
-      .roles(this.getRoles())
-      .build();
-    log.info("getCurrentUser returns {}",cu);
-    return cu;
+    return RequestMemo.get(CURRENT_USER, () -> {
+      CurrentUser cu = CurrentUser.builder()
+        .user(this.getUser())
+        .roles(this.getRoles())
+        .build();
+      log.debug("getCurrentUser returns {}",cu);
+      return cu;
+    });
   }
 
-  
+  /**
+   * The user whose id LoginSuccessHandler put in the principal; sessions
+   * without one (or whose user has since been deleted) are provisioned here
+   */
   public User getOAuth2AuthenticatedUser(SecurityContext securityContext, Authentication authentication) {
     OAuth2User oAuthUser = ((OAuth2AuthenticationToken) authentication).getPrincipal();
-    String email = oAuthUser.getAttribute("email");
-    String googleSub = oAuthUser.getAttribute("sub");
-    String pictureUrl = oAuthUser.getAttribute("picture");
-    String fullName = oAuthUser.getAttribute("name");
-    String givenName = oAuthUser.getAttribute("given_name");
-    String familyName = oAuthUser.getAttribute("family_name");
-    boolean emailVerified = oAuthUser.getAttribute("email_verified");
-    String locale = oAuthUser.getAttribute("locale");
-    String hostedDomain = oAuthUser.getAttribute("hd");
-
-    java.util.Map<java.lang.String,java.lang.Object> attrs = oAuthUser.getAttributes();
-    log.info("attrs={}",attrs);
-
-    Optional<User> ou = userRepository.findByEmail(email);
-    if (ou.isPresent()) {
-      User u = ou.get();
-      if (adminEmails.contains(email) && !u.getAdmin()) {
-        u.setAdmin(true);
-        userRepository.save(u);
+    if (oAuthUser.getAttribute(UserProvisioningService.USER_ID) instanceof Long userId) {
+      Optional<User> ou = userCache.findById(userId);
+      if (ou.isPresent()) {
+        return ou.get();
       }
-      return u;
     }
-
-    User u = User.builder()
-        .googleSub(googleSub)
-        .email(email)
-        .pictureUrl(pictureUrl)
-        .fullName(fullName)
-        .givenName(givenName)
-        .familyName(familyName)
-        .emailVerified(emailVerified)
-        .locale(locale)
-        .hostedDomain(hostedDomain)
-        .admin(adminEmails.contains(email))
-        .build();
-    userRepository.save(u);
-    return u;
+    log.debug("provisioning user for attrs={}", oAuthUser.getAttributes());
+    return userProvisioning.provision(oAuthUser);
   }
 
   public User getUser() {
@@ -0,0 +1,306 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import edu.ucsb.cs156.gauchoride.entities.Ride;
+import edu.ucsb.cs156.gauchoride.entities.Shift;
+import edu.ucsb.cs156.gauchoride.errors.EntityNotFoundException;
+import edu.ucsb.cs156.gauchoride.models.Itinerary;
+import edu.ucsb.cs156.gauchoride.models.ItineraryStop;
+import edu.ucsb.cs156.gauchoride.models.RideAssignment;
+import edu.ucsb.cs156.gauchoride.repositories.RideRepository;
+import edu.ucsb.cs156.gauchoride.repositories.ShiftRepository;
+import edu.ucsb.cs156.gauchoride.utilities.MinuteOfWeek;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Orders the pickups and dropoffs of the rides a driver carries on a shift.
+ *
+ * A ride is picked up no earlier than its startTime and should be dropped off
+ * by its endTime, and the driver never carries more than driverCapacity
+ * riders. Rides are inserted one at a time, earliest first, at the cheapest
+ * pickup and dropoff positions, then the route is improved with 2-opt
+ * (segment reversal) until no reversal helps. Travel times come from
+ * {@link TravelTimeService}, looked up once per plan into a matrix.
+ *
+ * Time windows are soft: if no order gets everyone there on time, the plan
+ * with the fewest total minutes late is returned and the late stops say so.
+ */
+
+@Slf4j
+@Service("itinerary")
+public class ItineraryService {
+
+  // any amount of lateness costs more than any amount of driving, and going
+  // over capacity costs more than any amount of lateness
+  static final long LATE_PENALTY = 100_000;
+  static final long OVERLOAD_PENALTY = 10_000_000_000L;
+  static final long INFEASIBLE = Long.MAX_VALUE;
+
+  @Autowired
+  ShiftRepository shiftRepository;
+
+  @Autowired
+  RideRepository rideRepository;
+
+  @Autowired
+  RideAssignmentService rideAssignmentService;
+
+  @Autowired
+  TravelTimeService travelTimeService;
+
+  @Value("${app.assignment.driverCapacity:3}")
+  int driverCapacity;
+
+  /**
+   * Plan the rides that {@link RideAssignmentService} gives to a shift's
+   * primary (or backup) driver
+   */
+  public Itinerary planShift(long shiftId, boolean backup) {
+    Shift shift = shiftRepository.findById(shiftId)
+        .orElseThrow(() -> new EntityNotFoundException(Shift.class, shiftId));
+
+    List<Ride> rides = new ArrayList<>();
+    rideRepository.findAll().forEach(rides::add);
+    Set<Long> assigned = new HashSet<>();
+    for (RideAssignment assignment : rideAssignmentService.assign(shiftRepository.findAll(), rides)) {
+      if (assignment.getShiftId() != null && assignment.getShiftId() == shiftId
+          && assignment.getBackup() == backup) {
+        assigned.add(assignment.getRideId());
+      }
+    }
+    rides.removeIf(ride -> !assigned.contains(ride.getId()));
+
+    return plan(shift, backup ? shift.getDriverBackupID() : shift.getDriverID(), rides);
+  }
+
+  public Itinerary plan(Shift shift, long driverId, List<Ride> rides) {
+    List<Ride> timed = new ArrayList<>();
+    for (Ride ride : rides) {
+      if (ride.getStartMinuteOfWeek() != null && ride.getEndMinuteOfWeek() != null) {
+        timed.add(ride);
+      }
+    }
+    int clockStart = shift.getStartMinuteOfWeek() != null ? shift.getStartMinuteOfWeek()
+        : timed.stream().mapToInt(Ride::getStartMinuteOfWeek).min().orElse(0);
+    timed.sort(Comparator.comparingInt((Ride ride) -> weekOffset(ride, clockStart) + ride.getStartMinuteOfWeek())
+        .thenComparing(Ride::getId));
+    Route route = new Route(timed, clockStart);
+    route.insertAll();
+    route.improve();
+
+    log.debug("planned {} stops for shift {} driver {}", route.size, shift.getId(), driverId);
+    return route.toItinerary(shift.getId(), driverId);
+  }
+
+  /**
+   * A Monday morning ride carried by a shift that started on Sunday night is
+   * a week after its stored minute of the week on the shift's clock.
+   */
+  private static int weekOffset(Ride ride, int clockStart) {
+    return clockStart - ride.getStartMinuteOfWeek() > MinuteOfWeek.MINUTES_PER_DAY ? MinuteOfWeek.MINUTES_PER_WEEK : 0;
+  }
+
+  /**
+   * Stops are numbered 2r (pickup) and 2r + 1 (dropoff) for the r-th ride.
+   */
+  private final class Route {
+    final List<Ride> rides;
+    final int clockStart;
+    final int[] location; // row/column in travel, or -1 when unknown
+    final int[] earliest;
+    final int[] deadline;
+    final int[][] travel;
+
+    final int[] order;
+    final int[] scratch;
+    int size;
+
+    // pickedUp[r] == pass marks ride r as picked up in the current cost() pass
+    final int[] pickedUp;
+    int pass;
+
+    Route(List<Ride> rides, int clockStart) {
+      this.rides = rides;
+      this.clockStart = clockStart;
+      int stops = 2 * rides.size();
+      location = new int[stops];
+      earliest = new int[stops];
+      deadline = new int[stops];
+      order = new int[stops];
+      scratch = new int[stops];
+      pickedUp = new int[rides.size()];
+
+      Map<Long, Integer> index = new HashMap<>();
+      List<Long> ids = new ArrayList<>();
+      for (int r = 0; r < rides.size(); r++) {
+        Ride ride = rides.get(r);
+        location[2 * r] = indexOf(ride.getPickupLocationId(), index, ids);
+        location[2 * r + 1] = indexOf(ride.getDropoffLocationId(), index, ids);
+        int offset = weekOffset(ride, clockStart);
+        earliest[2 * r] = ride.getStartMinuteOfWeek() + offset;
+        earliest[2 * r + 1] = Integer.MIN_VALUE;
+        deadline[2 * r] = Integer.MAX_VALUE;
+        deadline[2 * r + 1] = ride.getEndMinuteOfWeek() + offset;
+      }
+      travel = travelTimeService.matrix(ids.stream().mapToLong(Long::longValue).toArray());
+    }
+
+    private int indexOf(Long locationId, Map<Long, Integer> index, List<Long> ids) {
+      if (locationId == null) {
+        return -1;
+      }
+      return index.computeIfAbsent(locationId, id -> {
+        ids.add(id);
+        return ids.size() - 1;
+      });
+    }
+
+    int minutes(int fromStop, int toStop) {
+      int from = location[fromStop];
+      int to = location[toStop];
+      return (from < 0 || to < 0) ? 0 : travel[from][to];
+    }
+
+    long cost(int[] stops, int length) {
+      pass++;
+      int clock = clockStart;
+      int load = 0;
+      long driving = 0;
+      long late = 0;
+      long overload = 0;
+      for (int k = 0; k < length; k++) {
+        int stop = stops[k];
+        int ride = stop >> 1;
+        if ((stop & 1) == 0) {
+          pickedUp[ride] = pass;
+          if (++load > driverCapacity) {
+            overload++;
+          }
+        } else {
+          if (pickedUp[ride] != pass) {
+            return INFEASIBLE;
+          }
+          load--;
+        }
+        if (k > 0) {
+          int leg = minutes(stops[k - 1], stop);
+          clock += leg;
+          driving += leg;
+        }
+        clock = Math.max(clock, earliest[stop]);
+        if (clock > deadline[stop]) {
+          late += clock - deadline[stop];
+        }
+      }
+      return overload * OVERLOAD_PENALTY + late * LATE_PENALTY + driving;
+    }
+
+    // cheapest insertion: try every pickup position i and dropoff position j >= i
+    void insertAll() {
+      for (int r = 0; r < rides.size(); r++) {
+        long best = INFEASIBLE;
+        int bestI = size;
+        int bestJ = size;
+        for (int i = 0; i <= size; i++) {
+          for (int j = i; j <= size; j++) {
+            fill(scratch, i, j, 2 * r);
+            long cost = cost(scratch, size + 2);
+            if (cost < best) {
+              best = cost;
+              bestI = i;
+              bestJ = j;
+            }
+          }
+        }
+        fill(scratch, bestI, bestJ, 2 * r);
+        size += 2;
+        System.arraycopy(scratch, 0, order, 0, size);
+      }
+    }
+
+    // order[0, i) + pickup + order[i, j) + dropoff + order[j, size)
+    private void fill(int[] into, int i, int j, int pickup) {
+      System.arraycopy(order, 0, into, 0, i);
+      into[i] = pickup;
+      System.arraycopy(order, i, into, i + 1, j - i);
+      into[j + 1] = pickup + 1;
+      System.arraycopy(order, j, into, j + 2, size - j);
+    }
+
+    // 2-opt: keep any segment reversal that lowers the cost, until none does
+    void improve() {
+      long best = cost(order, size);
+      boolean improved = true;
+      while (improved) {
+        improved = false;
+        for (int i = 0; i < size - 1; i++) {
+          for (int j = i + 1; j < size; j++) {
+            reverse(i, j);
+            long cost = cost(order, size);
+            if (cost < best) {
+              best = cost;
+              improved = true;
+            } else {
+              reverse(i, j);
+            }
+          }
+        }
+      }
+    }
+
+    private void reverse(int i, int j) {
+      for (; i < j; i++, j--) {
+        int swap = order[i];
+        order[i] = order[j];
+        order[j] = swap;
+      }
+    }
+
+    Itinerary toItinerary(long shiftId, long driverId) {
+      List<ItineraryStop> stops = new ArrayList<>(size);
+      int clock = clockStart;
+      int driving = 0;
+      int totalLate = 0;
+      for (int k = 0; k < size; k++) {
+        int stop = order[k];
+        if (k > 0) {
+          int leg = minutes(order[k - 1], stop);
+          clock += leg;
+          driving += leg;
+        }
+        clock = Math.max(clock, earliest[stop]);
+        int late = Math.max(0, clock - deadline[stop]);
+        totalLate += late;
+
+        Ride ride = rides.get(stop >> 1);
+        boolean pickup = (stop & 1) == 0;
+        stops.add(ItineraryStop.builder()
+            .rideId(ride.getId())
+            .pickup(pickup)
+            .location(pickup ? ride.getPickupLocation() : ride.getDropoffLocation())
+            .day(MinuteOfWeek.dayOf(clock))
+            .time(MinuteOfWeek.timeOf(clock))
+            .minutesLate(late)
+            .build());
+      }
+      return Itinerary.builder()
+          .shiftId(shiftId)
+          .driverId(driverId)
+          .stops(stops)
+          .travelMinutes(driving)
+          .minutesLate(totalLate)
+          .build();
+    }
+  }
+}
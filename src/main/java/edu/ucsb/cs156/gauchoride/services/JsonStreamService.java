@@ -0,0 +1,65 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Writes a whole table as a JSON array straight to an output stream.
+ *
+ * Like {@link RideExportService}, entities come from a repository Stream (a
+ * forward-only database cursor) and are detached once written. Each one is
+ * serialized into the generator's buffer, which goes out as UTF-8 bytes as
+ * it fills, so the response is never held as a String or byte array.
+ */
+
+@Slf4j
+@Service("jsonStream")
+public class JsonStreamService {
+
+  @Autowired
+  EntityManager entityManager;
+
+  @Autowired
+  ObjectMapper mapper;
+
+  /**
+   * @param out the stream to write to; it is flushed but not closed
+   * @param rows opens the cursor, e.g. shiftRepository::streamAllByOrderByIdAsc;
+   *             it is called, and the stream closed, inside this transaction
+   * @return the number of elements written
+   */
+  @Transactional(readOnly = true)
+  public <T> long writeArray(OutputStream out, Supplier<Stream<T>> rows) throws IOException {
+    // ObjectMapper flushes after every writeValue by default, which would mean one write per row
+    ObjectWriter rowWriter = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    long count = 0;
+    try (JsonGenerator json = mapper.getFactory().createGenerator(out)
+        .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        Stream<T> stream = rows.get()) {
+      json.writeStartArray();
+      for (T row : (Iterable<T>) stream::iterator) {
+        rowWriter.writeValue(json, row);
+        entityManager.detach(row);
+        count++;
+      }
+      json.writeEndArray();
+    }
+    log.debug("streamed {} rows", count);
+    return count;
+  }
+}
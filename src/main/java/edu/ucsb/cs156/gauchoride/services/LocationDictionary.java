@@ -0,0 +1,162 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import edu.ucsb.cs156.gauchoride.entities.Location;
+import edu.ucsb.cs156.gauchoride.repositories.LocationRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory copy of the location table, mapping building names to their ids
+ * and back.
+ *
+ * The whole table is loaded at startup; names seen for the first time are
+ * added to the table (in their own transaction, so the row exists even if the
+ * ride that mentioned it is rolled back) and to the dictionary. Names are
+ * normalized and each is held as a single shared String instance, so rides
+ * that mention the same building share it too.
+ */
+
+@Slf4j
+@Service("locationDictionary")
+public class LocationDictionary {
+
+  @Autowired
+  LocationRepository locationRepository;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  private volatile Map<String, Location> byName = new ConcurrentHashMap<>();
+  private volatile Map<Long, Location> byId = new ConcurrentHashMap<>();
+
+  // bumped whenever a location's name changes, so caches keyed on location
+  // ids know to start over
+  private volatile long generation;
+
+  /**
+   * Trim a location name
+   * @return the trimmed name, or null for a null or blank name
+   */
+  public static String normalize(String name) {
+    if (name == null || name.isBlank()) {
+      return null;
+    }
+    return name.trim();
+  }
+
+  /**
+   * Reload the dictionary from the location table
+   */
+  @PostConstruct
+  public void refresh() {
+    Map<String, Location> names = new ConcurrentHashMap<>();
+    Map<Long, Location> ids = new ConcurrentHashMap<>();
+    for (Location location : locationRepository.findAll()) {
+      names.put(location.getName(), location);
+      ids.put(location.getId(), location);
+    }
+    byName = names;
+    byId = ids;
+    generation++;
+    log.info("Loaded {} locations", ids.size());
+  }
+
+  public long generation() {
+    return generation;
+  }
+
+  /**
+   * @return every known location, sorted by name
+   */
+  public List<Location> all() {
+    List<Location> locations = new ArrayList<>(byId.values());
+    locations.sort(Comparator.comparing(Location::getName));
+    return locations;
+  }
+
+  /**
+   * Find a location by name without creating it
+   */
+  public Optional<Location> lookup(String name) {
+    String key = normalize(name);
+    if (key == null) {
+      return Optional.empty();
+    }
+    Location location = byName.get(key);
+    if (location == null) {
+      // another instance may have added it since we loaded
+      Optional<Location> stored = locationRepository.findByName(key);
+      stored.ifPresent(this::remember);
+      return stored;
+    }
+    return Optional.of(location);
+  }
+
+  public Optional<Location> lookup(long id) {
+    Location location = byId.get(id);
+    if (location == null) {
+      Optional<Location> stored = locationRepository.findById(id);
+      stored.ifPresent(this::remember);
+      return stored;
+    }
+    return Optional.of(location);
+  }
+
+  /**
+   * Find a location by name, adding it to the location table if it is new
+   * @return the location, or null for a null or blank name
+   */
+  public Location intern(String name) {
+    String key = normalize(name);
+    if (key == null) {
+      return null;
+    }
+    return lookup(key).orElseGet(() -> create(key));
+  }
+
+  /**
+   * Record a location that was saved or renamed elsewhere
+   */
+  public void remember(Location location) {
+    Location previous = byId.put(location.getId(), location);
+    if (previous != null && !previous.getName().equals(location.getName())) {
+      byName.remove(previous.getName(), previous);
+      generation++;
+    }
+    byName.put(location.getName(), location);
+  }
+
+  private synchronized Location create(String name) {
+    Location existing = byName.get(name);
+    if (existing != null) {
+      return existing;
+    }
+    TransactionTemplate tx = new TransactionTemplate(transactionManager);
+    tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    Location location;
+    try {
+      location = tx.execute(status -> locationRepository.findByName(name)
+          .orElseGet(() -> locationRepository.save(Location.builder().name(name).build())));
+    } catch (DataIntegrityViolationException e) {
+      // lost a race with another instance adding the same name
+      location = locationRepository.findByName(name).orElseThrow(() -> e);
+    }
+    remember(location);
+    return location;
+  }
+}
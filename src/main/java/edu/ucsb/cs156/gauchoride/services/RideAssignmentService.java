@@ -0,0 +1,127 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import edu.ucsb.cs156.gauchoride.entities.Ride;
+import edu.ucsb.cs156.gauchoride.entities.Shift;
+import edu.ucsb.cs156.gauchoride.models.RideAssignment;
+import edu.ucsb.cs156.gauchoride.repositories.RideRepository;
+import edu.ucsb.cs156.gauchoride.repositories.ShiftRepository;
+import edu.ucsb.cs156.gauchoride.utilities.IntervalTree;
+import edu.ucsb.cs156.gauchoride.utilities.MinuteOfWeek;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matches ride requests to the shifts (and drivers) that will serve them.
+ *
+ * The week's shifts are loaded into an {@link IntervalTree} on minute of the
+ * week, so finding the shifts that cover a ride is a stabbing query rather
+ * than a scan. Rides are handed out earliest first; a ride goes to the
+ * primary driver of a covering shift unless that driver is already carrying
+ * driverCapacity rides at some point during it, in which case it goes to the
+ * shift's backup driver.
+ *
+ * Shifts that start late on Sunday end after MINUTES_PER_WEEK rather than
+ * wrapping, so a ride is also looked for a week later, and a driver's load
+ * is kept in a ring of slots so that Sunday night and Monday morning are the
+ * same hours.
+ */
+
+@Slf4j
+@Service("rideAssignment")
+public class RideAssignmentService {
+
+  // driver load is tracked in slots of this many minutes
+  static final int SLOT_MINUTES = 5;
+  static final int SLOTS_PER_WEEK = MinuteOfWeek.MINUTES_PER_WEEK / SLOT_MINUTES;
+
+  @Autowired
+  ShiftRepository shiftRepository;
+
+  @Autowired
+  RideRepository rideRepository;
+
+  @Value("${app.assignment.driverCapacity:3}")
+  int driverCapacity;
+
+  public List<RideAssignment> assignAll() {
+    return assign(shiftRepository.findAll(), rideRepository.findAll());
+  }
+
+  public List<RideAssignment> assign(Iterable<Shift> shifts, Iterable<Ride> rides) {
+    List<Shift> indexed = new ArrayList<>();
+    for (Shift shift : shifts) {
+      if (shift.getStartMinuteOfWeek() != null && shift.getEndMinuteOfWeek() != null) {
+        indexed.add(shift);
+      }
+    }
+    IntervalTree<Shift> tree = IntervalTree.of(indexed, Shift::getStartMinuteOfWeek, Shift::getEndMinuteOfWeek);
+
+    List<Ride> ordered = new ArrayList<>();
+    rides.forEach(ordered::add);
+    ordered.sort(Comparator.comparing(Ride::getStartMinuteOfWeek, Comparator.nullsLast(Comparator.naturalOrder())));
+
+    Map<Long, int[]> loads = new HashMap<>();
+    List<RideAssignment> result = new ArrayList<>(ordered.size());
+    for (Ride ride : ordered) {
+      result.add(assignOne(tree, loads, ride));
+    }
+    log.info("assigned {} rides to {} shifts", result.size(), indexed.size());
+    return result;
+  }
+
+  private RideAssignment assignOne(IntervalTree<Shift> tree, Map<Long, int[]> loads, Ride ride) {
+    Integer start = ride.getStartMinuteOfWeek();
+    Integer end = ride.getEndMinuteOfWeek();
+    RideAssignment.RideAssignmentBuilder assignment = RideAssignment.builder().rideId(ride.getId());
+    if (start == null || end == null) {
+      return assignment.build();
+    }
+
+    List<Shift> covering = new ArrayList<>();
+    for (int offset : new int[] { MinuteOfWeek.MINUTES_PER_WEEK, 0 }) {
+      int from = start + offset;
+      int to = end + offset;
+      tree.forEachOverlapping(from, from + 1, shift -> {
+        if (shift.getStartMinuteOfWeek() <= from && shift.getEndMinuteOfWeek() >= to) {
+          covering.add(shift);
+        }
+      });
+    }
+
+    for (Shift shift : covering) {
+      if (tryCarry(loads, shift.getDriverID(), start, end)) {
+        return assignment.shiftId(shift.getId()).driverId(shift.getDriverID()).build();
+      }
+    }
+    for (Shift shift : covering) {
+      if (tryCarry(loads, shift.getDriverBackupID(), start, end)) {
+        return assignment.shiftId(shift.getId()).driverId(shift.getDriverBackupID()).backup(true).build();
+      }
+    }
+    return assignment.build();
+  }
+
+  private boolean tryCarry(Map<Long, int[]> loads, long driverId, int start, int end) {
+    int[] load = loads.computeIfAbsent(driverId, id -> new int[SLOTS_PER_WEEK]);
+    int first = start / SLOT_MINUTES;
+    int last = Math.max(first, (end - 1) / SLOT_MINUTES);
+    for (int slot = first; slot <= last; slot++) {
+      if (load[Math.floorMod(slot, SLOTS_PER_WEEK)] >= driverCapacity) {
+        return false;
+      }
+    }
+    for (int slot = first; slot <= last; slot++) {
+      load[Math.floorMod(slot, SLOTS_PER_WEEK)]++;
+    }
+    return true;
+  }
+}
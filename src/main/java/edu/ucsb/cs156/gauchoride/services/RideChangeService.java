@@ -0,0 +1,214 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import edu.ucsb.cs156.gauchoride.entities.Ride;
+import edu.ucsb.cs156.gauchoride.entities.RideTombstone;
+import edu.ucsb.cs156.gauchoride.entities.RideTombstoneCutoff;
+import edu.ucsb.cs156.gauchoride.models.RideChanges;
+import edu.ucsb.cs156.gauchoride.repositories.RideRepository;
+import edu.ucsb.cs156.gauchoride.repositories.RideTombstoneCutoffRepository;
+import edu.ucsb.cs156.gauchoride.repositories.RideTombstoneRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Change versions for rides, and the delta sync built on them.
+ *
+ * Every ride write and delete gets the next number from a counter that
+ * starts at the highest version in the database. A version is "in flight"
+ * until the transaction that used it ends. A sync only returns changes up to
+ * just below the oldest in-flight version, so a slow transaction that
+ * commits after a faster one with a higher version is not skipped.
+ *
+ * Tombstones are kept for app.rides.tombstoneRetentionDays. A client whose
+ * since is older than the newest pruned tombstone is told to resync instead.
+ *
+ * Versions are only ordered within this process; running more than one
+ * instance against the same database would need a database sequence instead.
+ */
+
+@Slf4j
+@Service("rideChanges")
+public class RideChangeService {
+
+  public static final int MAX_CHANGES = 500;
+  static final Duration PRUNE_INTERVAL = Duration.ofHours(1);
+
+  @Autowired
+  RideRepository rideRepository;
+
+  @Autowired
+  RideTombstoneRepository rideTombstoneRepository;
+
+  @Autowired
+  RideTombstoneCutoffRepository rideTombstoneCutoffRepository;
+
+  @Value("${app.rides.tombstoneRetentionDays:30}")
+  int tombstoneRetentionDays;
+
+  private long lastVersion;
+  private final TreeSet<Long> inFlight = new TreeSet<>();
+  // tombstones at or below this version have been pruned
+  private long prunedVersion;
+  private Instant nextPrune = Instant.MIN;
+
+  @PostConstruct
+  public synchronized void seed() {
+    lastVersion = Math.max(rideRepository.maxChangeVersion(), rideTombstoneRepository.maxVersion());
+    prunedVersion = rideTombstoneCutoffRepository.findById(RideTombstoneCutoff.ID)
+        .map(RideTombstoneCutoff::getVersion)
+        .orElse(0L);
+    nextPrune = Instant.MIN;
+    log.info("Ride change versions start after {}", lastVersion);
+  }
+
+  /**
+   * Take the next change version; it stays in flight until the current
+   * transaction (if any) completes
+   */
+  public long nextVersion() {
+    long version;
+    synchronized (this) {
+      version = ++lastVersion;
+      inFlight.add(version);
+    }
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCompletion(int status) {
+          complete(version);
+        }
+      });
+    } else {
+      complete(version);
+    }
+    return version;
+  }
+
+  private synchronized void complete(long version) {
+    inFlight.remove(version);
+  }
+
+  /**
+   * @return the highest version such that every change at or below it has
+   *         been committed (or rolled back)
+   */
+  public synchronized long settledVersion() {
+    return inFlight.isEmpty() ? lastVersion : inFlight.first() - 1;
+  }
+
+  public void stamp(Ride ride) {
+    ride.setChangeVersion(nextVersion());
+    ride.setUpdatedAt(Instant.now());
+  }
+
+  public void recordDelete(Ride ride) {
+    rideTombstoneRepository.save(RideTombstone.builder()
+        .rideId(ride.getId())
+        .riderId(ride.getRiderId())
+        .version(nextVersion())
+        .deletedAt(Instant.now())
+        .build());
+    pruneTombstones();
+  }
+
+  public synchronized long prunedVersion() {
+    return prunedVersion;
+  }
+
+  /**
+   * Delete tombstones more than tombstoneRetentionDays old; does nothing if
+   * the last prune was less than PRUNE_INTERVAL ago. The cutoff is saved
+   * before the tombstones go, so a failure in between only costs clients an
+   * unneeded resync.
+   */
+  public void pruneTombstones() {
+    Instant now = Instant.now();
+    synchronized (this) {
+      if (now.isBefore(nextPrune)) {
+        return;
+      }
+      nextPrune = now.plus(PRUNE_INTERVAL);
+    }
+    long upTo = rideTombstoneRepository.maxVersionDeletedBefore(now.minus(Duration.ofDays(tombstoneRetentionDays)));
+    if (upTo <= prunedVersion()) {
+      return;
+    }
+    rideTombstoneCutoffRepository.save(RideTombstoneCutoff.builder()
+        .id(RideTombstoneCutoff.ID)
+        .version(upTo)
+        .prunedAt(now)
+        .build());
+    int pruned = rideTombstoneRepository.deleteUpTo(upTo);
+    synchronized (this) {
+      prunedVersion = Math.max(prunedVersion, upTo);
+    }
+    log.info("Pruned {} ride tombstones up to version {}", pruned, upTo);
+  }
+
+  /**
+   * Rides written or deleted after version since, oldest first, at most
+   * MAX_CHANGES of them; or, if tombstones newer than since have been
+   * pruned, none and resync set
+   * @param riderId only this rider's rides, or null for everyone's
+   */
+  public RideChanges changesSince(long since, Long riderId) {
+    long upTo = settledVersion();
+    if (since < prunedVersion()) {
+      // full resync required: deletes after since may be gone
+      return RideChanges.builder().changed(List.of()).deleted(List.of()).version(upTo).resync(true).build();
+    }
+    if (since >= upTo) {
+      return RideChanges.builder().changed(List.of()).deleted(List.of()).version(since).build();
+    }
+
+    // one extra row tells us there's more
+    Pageable limit = PageRequest.of(0, MAX_CHANGES + 1);
+    List<Ride> rides = riderId == null
+        ? rideRepository.findChanged(since, upTo, limit)
+        : rideRepository.findChangedByRiderId(riderId, since, upTo, limit);
+    List<RideTombstone> tombstones = riderId == null
+        ? rideTombstoneRepository.findDeleted(since, upTo, limit)
+        : rideTombstoneRepository.findDeletedByRiderId(riderId, since, upTo, limit);
+
+    List<Ride> changed = new ArrayList<>();
+    List<Long> deleted = new ArrayList<>();
+    long last = since;
+    int r = 0;
+    int t = 0;
+    while (changed.size() + deleted.size() < MAX_CHANGES && (r < rides.size() || t < tombstones.size())) {
+      if (t == tombstones.size()
+          || (r < rides.size() && rides.get(r).getChangeVersion() < tombstones.get(t).getVersion())) {
+        Ride ride = rides.get(r++);
+        changed.add(ride);
+        last = ride.getChangeVersion();
+      } else {
+        RideTombstone tombstone = tombstones.get(t++);
+        deleted.add(tombstone.getRideId());
+        last = tombstone.getVersion();
+      }
+    }
+    boolean more = r < rides.size() || t < tombstones.size();
+
+    return RideChanges.builder()
+        .changed(changed)
+        .deleted(deleted)
+        .version(more ? last : upTo)
+        .more(more)
+        .build();
+  }
+}
@@ -0,0 +1,116 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import edu.ucsb.cs156.gauchoride.entities.Ride;
+import edu.ucsb.cs156.gauchoride.repositories.RideRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+/**
+ * Writes every ride to an output stream, one row at a time.
+ *
+ * Rows are read through a forward-only database cursor and detached from the
+ * persistence context once written, so memory use does not depend on the
+ * number of rides.
+ */
+
+@Slf4j
+@Service("rideExport")
+public class RideExportService {
+
+  public static final String CSV_HEADER =
+      "id,riderId,student,day,startTime,endTime,pickupLocation,dropoffLocation,room,course";
+
+  @Autowired
+  RideRepository rideRepository;
+
+  @Autowired
+  EntityManager entityManager;
+
+  @Autowired
+  ObjectMapper mapper;
+
+  /**
+   * Write all rides as newline delimited JSON, one ride object per line
+   * @param out the stream to write to; it is flushed but not closed
+   * @return the number of rides written
+   */
+  @Transactional(readOnly = true)
+  public long writeNdjson(OutputStream out) throws IOException {
+    ObjectWriter rowWriter = mapper.writerFor(Ride.class);
+    return writeRows(out, null, (writer, ride) -> {
+      writer.write(rowWriter.writeValueAsString(ride));
+      writer.write('\n');
+    });
+  }
+
+  /**
+   * Write all rides as CSV with a header line
+   * @param out the stream to write to; it is flushed but not closed
+   * @return the number of rides written
+   */
+  @Transactional(readOnly = true)
+  public long writeCsv(OutputStream out) throws IOException {
+    return writeRows(out, CSV_HEADER + "\r\n", (writer, ride) -> {
+      writer.write(Long.toString(ride.getId()));
+      writer.write(',');
+      writer.write(Long.toString(ride.getRiderId()));
+      for (String field : new String[] { ride.getStudent(), ride.getDay(), ride.getStartTime(), ride.getEndTime(),
+          ride.getPickupLocation(), ride.getDropoffLocation(), ride.getRoom(), ride.getCourse() }) {
+        writer.write(',');
+        writer.write(csvField(field));
+      }
+      writer.write("\r\n");
+    });
+  }
+
+  /**
+   * Quote a CSV field when it contains a delimiter, quote or line break (RFC 4180)
+   */
+  public static String csvField(String value) {
+    if (value == null) {
+      return "";
+    }
+    if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+      return value;
+    }
+    return "\"" + value.replace("\"", "\"\"") + "\"";
+  }
+
+  private interface RowWriter {
+    void write(Writer writer, Ride ride) throws IOException;
+  }
+
+  private long writeRows(OutputStream out, String header, RowWriter rowWriter) throws IOException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    if (header != null) {
+      writer.write(header);
+    }
+    long count = 0;
+    try (Stream<Ride> rides = rideRepository.streamAllByOrderByIdAsc()) {
+      for (Ride ride : (Iterable<Ride>) rides::iterator) {
+        rowWriter.write(writer, ride);
+        entityManager.detach(ride);
+        count++;
+      }
+    }
+    writer.flush();
+    log.info("exported {} rides", count);
+    return count;
+  }
+}
@@ -0,0 +1,382 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import edu.ucsb.cs156.gauchoride.entities.Ride;
+import edu.ucsb.cs156.gauchoride.entities.Shift;
+import edu.ucsb.cs156.gauchoride.models.DriverAvailability;
+import edu.ucsb.cs156.gauchoride.models.Roster;
+import edu.ucsb.cs156.gauchoride.repositories.RideRepository;
+import edu.ucsb.cs156.gauchoride.repositories.ShiftRepository;
+import edu.ucsb.cs156.gauchoride.utilities.MinuteOfWeek;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds a week of shifts from when drivers can work and when rides are
+ * requested.
+ *
+ * The week is split into hours. Demand for an hour is the number of rides
+ * (all rides on file, as they repeat weekly) under way during it, and an
+ * hour with k drivers on duty covers min(demand, k * driverCapacity) of it;
+ * primary and backup drivers both count, as {@link RideAssignmentService}
+ * gives rides to the backup once the primary is full.
+ *
+ * A shift is a run of minShiftHours to maxShiftHours whole hours within one
+ * day, with a primary and a backup driver who are both free for all of it.
+ * The generator adds shifts greedily, best coverage per hour first, then
+ * improves the result by local search (moving, growing, shrinking or
+ * dropping single shifts) and repeats until neither finds anything. No
+ * driver works more than maxHours, counting the shifts they already have
+ * (an hour they are on duty for at all counts in full), and no one is
+ * rostered while on one of those.
+ */
+
+@Slf4j
+@Service("roster")
+public class RosterService {
+
+  static final int HOURS_PER_DAY = 24;
+  static final int HOURS_PER_WEEK = 7 * HOURS_PER_DAY;
+  // a covered ride-hour is worth more than any number of driver hours saved
+  static final long COVERAGE_WEIGHT = 1_000_000;
+  static final int MAX_ROUNDS = 50;
+
+  @Autowired
+  RideRepository rideRepository;
+
+  @Autowired
+  ShiftRepository shiftRepository;
+
+  @Value("${app.assignment.driverCapacity:3}")
+  int driverCapacity;
+
+  @Value("${app.roster.maxHoursPerDriver:20}")
+  int maxHoursPerDriver;
+
+  @Value("${app.roster.minShiftHours:2}")
+  int minShiftHours;
+
+  @Value("${app.roster.maxShiftHours:4}")
+  int maxShiftHours;
+
+  /**
+   * @param maxHours the most hours any one driver works, or null for
+   *                 app.roster.maxHoursPerDriver
+   */
+  public Roster generate(List<DriverAvailability> availability, Integer maxHours) {
+    List<Long> driverIds = availability.stream().map(DriverAvailability::getDriverId).distinct().toList();
+    List<Shift> existing = driverIds.isEmpty() ? List.of() : shiftRepository.findByDriverIds(driverIds);
+    return generate(availability, demandPerHour(rideRepository.findAll()), existing,
+        maxHours != null ? maxHours : maxHoursPerDriver);
+  }
+
+  public Roster generate(List<DriverAvailability> availability, int[] demand, int maxHours) {
+    return generate(availability, demand, List.of(), maxHours);
+  }
+
+  /**
+   * @param existing shifts already on file for any of the drivers
+   */
+  public Roster generate(List<DriverAvailability> availability, int[] demand, List<Shift> existing, int maxHours) {
+    if (maxHours < 0) {
+      throw new IllegalArgumentException("maxHours must not be negative");
+    }
+    long begin = System.nanoTime();
+    Plan plan = new Plan(availability, demand, existing, maxHours);
+    int rounds = plan.solve();
+    Roster roster = plan.toRoster();
+    log.info("rostered {} shifts for {} drivers covering {} of {} ride-hours in {} rounds, {} ms",
+        roster.getShifts().size(), plan.driverIds.length, roster.getCovered(), roster.getDemand(), rounds,
+        (System.nanoTime() - begin) / 1_000_000);
+    return roster;
+  }
+
+  /**
+   * @return for each hour of the week, the number of rides under way at
+   *         some point during it
+   */
+  public static int[] demandPerHour(Iterable<Ride> rides) {
+    int[] demand = new int[HOURS_PER_WEEK];
+    for (Ride ride : rides) {
+      Integer start = ride.getStartMinuteOfWeek();
+      Integer end = ride.getEndMinuteOfWeek();
+      if (start == null || end == null || end <= start) {
+        continue;
+      }
+      int last = (end + 59) / 60;
+      for (int hour = start / 60; hour < last; hour++) {
+        demand[hour % HOURS_PER_WEEK]++;
+      }
+    }
+    return demand;
+  }
+
+  /**
+   * The search state. Shifts are {start hour, end hour, primary, backup},
+   * with drivers numbered by their position in driverIds.
+   */
+  private final class Plan {
+    final int[] demand;
+    final long[] driverIds;
+    final boolean[][] available;
+    final boolean[][] busy;
+    final int[] hoursLeft;
+    final int[] onDuty = new int[HOURS_PER_WEEK];
+    final List<int[]> shifts = new ArrayList<>();
+
+    Plan(List<DriverAvailability> availability, int[] demand, List<Shift> existing, int maxHours) {
+      if (demand.length != HOURS_PER_WEEK) {
+        throw new IllegalArgumentException("Expected demand for each of the %d hours of the week".formatted(HOURS_PER_WEEK));
+      }
+      this.demand = demand;
+      Map<Long, Integer> index = new LinkedHashMap<>();
+      for (DriverAvailability window : availability) {
+        index.putIfAbsent(window.getDriverId(), index.size());
+      }
+      int n = index.size();
+      driverIds = index.keySet().stream().mapToLong(Long::longValue).toArray();
+      available = new boolean[n][HOURS_PER_WEEK];
+      busy = new boolean[n][HOURS_PER_WEEK];
+      hoursLeft = new int[n];
+      Arrays.fill(hoursLeft, maxHours);
+
+      for (DriverAvailability window : availability) {
+        int start = MinuteOfWeek.of(window.getDay(), window.getStart());
+        int end = MinuteOfWeek.end(start, window.getEnd());
+        // only hours the window covers completely
+        int last = end / 60;
+        for (int hour = (start + 59) / 60; hour < last; hour++) {
+          available[index.get(window.getDriverId())][hour % HOURS_PER_WEEK] = true;
+        }
+      }
+
+      for (Shift shift : existing) {
+        Integer start = shift.getStartMinuteOfWeek();
+        Integer end = shift.getEndMinuteOfWeek();
+        if (start == null || end == null) {
+          continue;
+        }
+        int first = start / 60;
+        int last = (end + 59) / 60;
+        for (long driverId : new long[] { shift.getDriverID(), shift.getDriverBackupID() }) {
+          Integer driver = index.get(driverId);
+          if (driver == null) {
+            continue;
+          }
+          for (int hour = first; hour < last; hour++) {
+            busy[driver][hour % HOURS_PER_WEEK] = true;
+          }
+          hoursLeft[driver] -= last - first;
+        }
+      }
+    }
+
+    int covered(int hour, int drivers) {
+      return Math.min(demand[hour], drivers * driverCapacity);
+    }
+
+    // coverage, less a little for every driver hour, over hours [from, to)
+    long value(int from, int to) {
+      long value = 0;
+      for (int hour = from; hour < to; hour++) {
+        value += covered(hour, onDuty[hour]) * COVERAGE_WEIGHT - onDuty[hour];
+      }
+      return value;
+    }
+
+    boolean canWork(int driver, int from, int to) {
+      if (hoursLeft[driver] < to - from) {
+        return false;
+      }
+      for (int hour = from; hour < to; hour++) {
+        if (!available[driver][hour] || busy[driver][hour]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    void place(int[] shift) {
+      for (int hour = shift[0]; hour < shift[1]; hour++) {
+        onDuty[hour] += 2;
+        busy[shift[2]][hour] = true;
+        busy[shift[3]][hour] = true;
+      }
+      hoursLeft[shift[2]] -= shift[1] - shift[0];
+      hoursLeft[shift[3]] -= shift[1] - shift[0];
+    }
+
+    void unplace(int[] shift) {
+      for (int hour = shift[0]; hour < shift[1]; hour++) {
+        onDuty[hour] -= 2;
+        busy[shift[2]][hour] = false;
+        busy[shift[3]][hour] = false;
+      }
+      hoursLeft[shift[2]] += shift[1] - shift[0];
+      hoursLeft[shift[3]] += shift[1] - shift[0];
+    }
+
+    int solve() {
+      int rounds = 0;
+      while (rounds < MAX_ROUNDS) {
+        rounds++;
+        fill();
+        if (!improve()) {
+          break;
+        }
+      }
+      return rounds;
+    }
+
+    /**
+     * Add the shift with the most coverage gained per hour (the longer on a
+     * tie) until no shift adds any; its drivers are the two free ones with
+     * the most hours left
+     */
+    void fill() {
+      while (true) {
+        long bestGain = 0;
+        int bestStart = -1;
+        int bestEnd = -1;
+        int bestPrimary = -1;
+        int bestBackup = -1;
+        for (int day = 0; day < 7; day++) {
+          int dayStart = day * HOURS_PER_DAY;
+          for (int start = dayStart; start < dayStart + HOURS_PER_DAY; start++) {
+            long gain = 0;
+            for (int end = start + 1; end <= Math.min(start + maxShiftHours, dayStart + HOURS_PER_DAY); end++) {
+              int hour = end - 1;
+              gain += covered(hour, onDuty[hour] + 2) - covered(hour, onDuty[hour]);
+              int length = end - start;
+              if (length < minShiftHours || gain == 0) {
+                continue;
+              }
+              if (bestStart >= 0) {
+                int bestLength = bestEnd - bestStart;
+                long ours = gain * bestLength;
+                long theirs = bestGain * length;
+                if (ours < theirs || (ours == theirs && length <= bestLength)) {
+                  continue;
+                }
+              }
+              int primary = -1;
+              int backup = -1;
+              for (int driver = 0; driver < driverIds.length; driver++) {
+                if (!canWork(driver, start, end)) {
+                  continue;
+                }
+                if (primary < 0 || hoursLeft[driver] > hoursLeft[primary]) {
+                  backup = primary;
+                  primary = driver;
+                } else if (backup < 0 || hoursLeft[driver] > hoursLeft[backup]) {
+                  backup = driver;
+                }
+              }
+              if (backup >= 0) {
+                bestGain = gain;
+                bestStart = start;
+                bestEnd = end;
+                bestPrimary = primary;
+                bestBackup = backup;
+              }
+            }
+          }
+        }
+        if (bestStart < 0) {
+          return;
+        }
+        int[] shift = { bestStart, bestEnd, bestPrimary, bestBackup };
+        place(shift);
+        shifts.add(shift);
+      }
+    }
+
+    /**
+     * One pass of local search over the shifts: for each, keep the first of
+     * dropping it, shrinking or growing either end by an hour, or moving it
+     * an hour earlier or later that raises the plan's value
+     * @return true if any shift changed
+     */
+    boolean improve() {
+      boolean changed = false;
+      for (int i = shifts.size() - 1; i >= 0; i--) {
+        int[] shift = shifts.get(i);
+        int start = shift[0];
+        int end = shift[1];
+        int[][] moves = {
+            null, // drop
+            { start + 1, end }, { start, end - 1 },
+            { start - 1, end }, { start, end + 1 },
+            { start - 1, end - 1 }, { start + 1, end + 1 } };
+        for (int[] move : moves) {
+          if (move != null && !fits(start, move[0], move[1])) {
+            continue;
+          }
+          int from = move == null ? start : Math.min(start, move[0]);
+          int to = move == null ? end : Math.max(end, move[1]);
+          long before = value(from, to);
+          unplace(shift);
+          if (move == null) {
+            if (value(from, to) > before) {
+              shifts.remove(i);
+              changed = true;
+              break;
+            }
+          } else if (canWork(shift[2], move[0], move[1]) && canWork(shift[3], move[0], move[1])) {
+            int[] moved = { move[0], move[1], shift[2], shift[3] };
+            place(moved);
+            if (value(from, to) > before) {
+              shifts.set(i, moved);
+              changed = true;
+              break;
+            }
+            unplace(moved);
+          }
+          place(shift);
+        }
+      }
+      return changed;
+    }
+
+    // a shift may not leave the day it started in, or its length limits
+    boolean fits(int oldStart, int start, int end) {
+      int dayStart = oldStart - oldStart % HOURS_PER_DAY;
+      return start >= dayStart && end <= dayStart + HOURS_PER_DAY
+          && end - start >= minShiftHours && end - start <= maxShiftHours;
+    }
+
+    Roster toRoster() {
+      shifts.sort(Comparator.comparingInt((int[] shift) -> shift[0]).thenComparingLong(shift -> driverIds[shift[2]]));
+      List<Shift> result = new ArrayList<>(shifts.size());
+      for (int[] shift : shifts) {
+        Shift proposed = Shift.builder()
+            .day(MinuteOfWeek.dayOf(shift[0] * 60))
+            .shiftStart(MinuteOfWeek.timeOf(shift[0] * 60))
+            .shiftEnd(MinuteOfWeek.timeOf(shift[1] * 60))
+            .driverID(driverIds[shift[2]])
+            .driverBackupID(driverIds[shift[3]])
+            .build();
+        proposed.computeMinutesOfWeek();
+        result.add(proposed);
+      }
+      int total = 0;
+      int covered = 0;
+      int driverHours = 0;
+      for (int hour = 0; hour < HOURS_PER_WEEK; hour++) {
+        total += demand[hour];
+        covered += covered(hour, onDuty[hour]);
+        driverHours += onDuty[hour];
+      }
+      return Roster.builder().shifts(result).demand(total).covered(covered).driverHours(driverHours).build();
+    }
+  }
+}
@@ -0,0 +1,156 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import edu.ucsb.cs156.gauchoride.entities.Shift;
+import edu.ucsb.cs156.gauchoride.repositories.ShiftRepository;
+import edu.ucsb.cs156.gauchoride.utilities.IntervalTree;
+import edu.ucsb.cs156.gauchoride.utilities.MinuteOfWeek;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Every shift, in an {@link IntervalTree} on minute of the week, for
+ * answering "who is on duty at T" without going to the database.
+ *
+ * Loaded once at startup. Whatever writes a shift must call {@link #saved}
+ * or {@link #deleted}; a transaction's changes are applied together once it
+ * commits. The tree itself is immutable, so each commit that changes shifts
+ * rebuilds it once from the shifts held here (there are at most a few
+ * hundred a week) and swaps it in; readers never wait.
+ *
+ * Only writes made through this instance reach the index; running more than
+ * one instance against the same database would need them to share changes.
+ */
+
+@Slf4j
+@Service("shiftIndex")
+public class ShiftIndex {
+
+  @Autowired
+  ShiftRepository shiftRepository;
+
+  // copies of the shifts, so later changes to an entity don't leak in
+  private final Map<Long, Shift> shifts = new HashMap<>();
+  private volatile IntervalTree<Shift> tree = build(List.of());
+
+  @PostConstruct
+  public synchronized void load() {
+    shifts.clear();
+    for (Shift shift : shiftRepository.findAll()) {
+      shifts.put(shift.getId(), copy(shift));
+    }
+    tree = build(shifts.values());
+    log.info("Indexed {} of {} shifts", tree.size(), shifts.size());
+  }
+
+  public void saved(Shift shift) {
+    change(shift.getId(), copy(shift));
+  }
+
+  public void deleted(long id) {
+    change(id, null);
+  }
+
+  /**
+   * Queue a change until the current transaction (if any) commits
+   * @param shift the shift as saved, or null if it was deleted
+   */
+  private void change(long id, Shift shift) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      apply(Collections.singletonMap(id, shift));
+      return;
+    }
+    @SuppressWarnings("unchecked")
+    Map<Long, Shift> pending = (Map<Long, Shift>) TransactionSynchronizationManager.getResource(this);
+    if (pending == null) {
+      Map<Long, Shift> changes = new LinkedHashMap<>();
+      TransactionSynchronizationManager.bindResource(this, changes);
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          apply(changes);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+          TransactionSynchronizationManager.unbindResourceIfPossible(ShiftIndex.this);
+        }
+      });
+      pending = changes;
+    }
+    pending.put(id, shift);
+  }
+
+  private synchronized void apply(Map<Long, Shift> changes) {
+    boolean changed = false;
+    for (Map.Entry<Long, Shift> change : changes.entrySet()) {
+      if (change.getValue() != null) {
+        shifts.put(change.getKey(), change.getValue());
+        changed = true;
+      } else if (shifts.remove(change.getKey()) != null) {
+        changed = true;
+      }
+    }
+    if (changed) {
+      tree = build(shifts.values());
+    }
+  }
+
+  /**
+   * @return the shifts under way at a minute of the week, earliest start
+   *         first; includes shifts that started late on Sunday and run past
+   *         midnight
+   */
+  public List<Shift> onDuty(int minuteOfWeek) {
+    IntervalTree<Shift> current = tree;
+    int at = Math.floorMod(minuteOfWeek, MinuteOfWeek.MINUTES_PER_WEEK);
+    List<Shift> result = new ArrayList<>();
+    // Sunday's late shifts end after MINUTES_PER_WEEK rather than wrapping
+    for (Shift shift : current.containing(at + MinuteOfWeek.MINUTES_PER_WEEK)) {
+      result.add(copy(shift));
+    }
+    for (Shift shift : current.containing(at)) {
+      result.add(copy(shift));
+    }
+    return result;
+  }
+
+  public int size() {
+    return tree.size();
+  }
+
+  private static IntervalTree<Shift> build(Iterable<Shift> shifts) {
+    List<Shift> timed = new ArrayList<>();
+    for (Shift shift : shifts) {
+      if (shift.getStartMinuteOfWeek() != null && shift.getEndMinuteOfWeek() != null) {
+        timed.add(shift);
+      }
+    }
+    return IntervalTree.of(timed, Shift::getStartMinuteOfWeek, Shift::getEndMinuteOfWeek);
+  }
+
+  private static Shift copy(Shift shift) {
+    return Shift.builder()
+        .id(shift.getId())
+        .day(shift.getDay())
+        .shiftStart(shift.getShiftStart())
+        .shiftEnd(shift.getShiftEnd())
+        .driverID(shift.getDriverID())
+        .driverBackupID(shift.getDriverBackupID())
+        .startMinuteOfWeek(shift.getStartMinuteOfWeek())
+        .endMinuteOfWeek(shift.getEndMinuteOfWeek())
+        .build();
+  }
+}
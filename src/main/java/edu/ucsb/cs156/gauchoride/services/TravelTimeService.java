@@ -0,0 +1,25 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+/**
+ * Driving time between locations (ids in the location table), in whole minutes.
+ */
+
+public abstract class TravelTimeService {
+  public abstract int minutes(long fromLocationId, long toLocationId);
+
+  /**
+   * Travel times between every pair of the given locations, for planners that
+   * look the same pairs up many times
+   * @return matrix[i][j] = minutes(locationIds[i], locationIds[j])
+   */
+  public int[][] matrix(long[] locationIds) {
+    int n = locationIds.length;
+    int[][] matrix = new int[n][n];
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < n; j++) {
+        matrix[i][j] = (i == j) ? 0 : minutes(locationIds[i], locationIds[j]);
+      }
+    }
+    return matrix;
+  }
+}
@@ -0,0 +1,179 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import edu.ucsb.cs156.gauchoride.entities.User;
+import edu.ucsb.cs156.gauchoride.models.RoleChangeEvent;
+import edu.ucsb.cs156.gauchoride.models.UserCacheStats;
+import edu.ucsb.cs156.gauchoride.repositories.UserRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Users rows by email and by id, so that RoleInterceptor, CurrentUserServiceImpl
+ * and SecurityConfig don't query the users table on every request.
+ *
+ * Holds at most app.userCache.maxSize users (least recently used goes first),
+ * each for at most app.userCache.ttlSeconds. Anything that writes a users row
+ * must call {@link #invalidate} after the write commits. A lookup that
+ * overlaps an invalidation isn't cached, so it can't put back the row that was
+ * just invalidated. Users that don't exist aren't cached.
+ *
+ * Role changes made in UsersController arrive as a RoleChangeEvent once they
+ * commit.
+ *
+ * Cached users are shared between requests; don't modify them.
+ */
+
+@Service("userCache")
+public class UserCache {
+
+  @Autowired
+  UserRepository userRepository;
+
+  @Value("${app.userCache.maxSize:10000}")
+  int maxSize;
+
+  @Value("${app.userCache.ttlSeconds:300}")
+  long ttlSeconds;
+
+  LongSupplier clock = System::nanoTime;
+
+  private static final class Entry {
+    final User user;
+    final long expires;
+
+    Entry(User user, long expires) {
+      this.user = user;
+      this.expires = expires;
+    }
+  }
+
+  // access ordered, so iteration starts at the least recently used; the
+  // email index only holds ids that are keys of byId
+  private final LinkedHashMap<Long, Entry> byId = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<String, Long> idByEmail = new HashMap<>();
+  private long invalidations;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  public Optional<User> findByEmail(String email) {
+    long generation;
+    synchronized (this) {
+      Long id = idByEmail.get(User.emailKeyOf(email));
+      User cached = id == null ? null : get(id);
+      if (cached != null) {
+        hits.incrementAndGet();
+        return Optional.of(cached);
+      }
+      generation = invalidations;
+    }
+    misses.incrementAndGet();
+    Optional<User> user = userRepository.findByEmail(email);
+    user.ifPresent(u -> put(u, generation));
+    return user;
+  }
+
+  public Optional<User> findById(long id) {
+    long generation;
+    synchronized (this) {
+      User cached = get(id);
+      if (cached != null) {
+        hits.incrementAndGet();
+        return Optional.of(cached);
+      }
+      generation = invalidations;
+    }
+    misses.incrementAndGet();
+    Optional<User> user = userRepository.findById(id);
+    user.ifPresent(u -> put(u, generation));
+    return user;
+  }
+
+  // must hold the lock
+  private User get(long id) {
+    Entry entry = byId.get(id);
+    if (entry == null) {
+      return null;
+    }
+    if (clock.getAsLong() - entry.expires >= 0) {
+      remove(id);
+      evictions.incrementAndGet();
+      return null;
+    }
+    return entry.user;
+  }
+
+  private synchronized void put(User user, long generation) {
+    if (generation != invalidations) {
+      return;
+    }
+    remove(user.getId());
+    byId.put(user.getId(), new Entry(user, clock.getAsLong() + ttlSeconds * 1_000_000_000L));
+    if (user.getEmail() != null) {
+      idByEmail.put(User.emailKeyOf(user.getEmail()), user.getId());
+    }
+    Iterator<Map.Entry<Long, Entry>> oldest = byId.entrySet().iterator();
+    while (byId.size() > maxSize) {
+      User evicted = oldest.next().getValue().user;
+      oldest.remove();
+      idByEmail.remove(User.emailKeyOf(evicted.getEmail()), evicted.getId());
+      evictions.incrementAndGet();
+    }
+  }
+
+  // must hold the lock
+  private void remove(long id) {
+    Entry entry = byId.remove(id);
+    if (entry != null && entry.user.getEmail() != null) {
+      idByEmail.remove(User.emailKeyOf(entry.user.getEmail()), id);
+    }
+  }
+
+  public synchronized void invalidate(long id) {
+    invalidations++;
+    remove(id);
+  }
+
+  public void invalidate(User user) {
+    invalidate(user.getId());
+  }
+
+  public synchronized void invalidateAll() {
+    invalidations++;
+    byId.clear();
+    idByEmail.clear();
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onRoleChange(RoleChangeEvent event) {
+    for (long id : event.getUserIds()) {
+      invalidate(id);
+    }
+  }
+
+  public synchronized UserCacheStats stats() {
+    long hitCount = hits.get();
+    long missCount = misses.get();
+    long lookups = hitCount + missCount;
+    return UserCacheStats.builder()
+        .size(byId.size())
+        .maxSize(maxSize)
+        .hits(hitCount)
+        .misses(missCount)
+        .hitRate(lookups == 0 ? 0 : (double) hitCount / lookups)
+        .evictions(evictions.get())
+        .build();
+  }
+}
@@ -0,0 +1,95 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import edu.ucsb.cs156.gauchoride.entities.User;
+import edu.ucsb.cs156.gauchoride.errors.EntityNotFoundException;
+import edu.ucsb.cs156.gauchoride.repositories.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Creates the users row for someone logging in for the first time, and makes
+ * anyone listed in app.admin.emails an admin.
+ *
+ * This runs once per login (see LoginSuccessHandler), which then keeps the
+ * user's id in the session principal under {@link #USER_ID} so later requests
+ * only need an id lookup.
+ */
+
+@Slf4j
+@Service("userProvisioning")
+public class UserProvisioningService {
+
+  /** principal attribute holding the id of the users row */
+  public static final String USER_ID = "userId";
+
+  @Autowired
+  UserRepository userRepository;
+
+  @Autowired
+  UserCache userCache;
+
+  @Value("${app.admin.emails}")
+  List<String> adminEmails = new ArrayList<String>();
+
+  public User provision(OAuth2User oAuthUser) {
+    String email = oAuthUser.getAttribute("email");
+
+    Optional<User> ou = userCache.findByEmail(email);
+    if (ou.isPresent()) {
+      User cached = ou.get();
+      if (!adminEmails.contains(email) || cached.getAdmin()) {
+        return cached;
+      }
+      // the cached user is shared with other requests, so change a fresh copy
+      User u = userRepository.findById(cached.getId())
+          .orElseThrow(() -> new EntityNotFoundException(User.class, cached.getId()));
+      u.setAdmin(true);
+      u.setRoleEpoch(u.getRoleEpoch() + 1);
+      userRepository.save(u);
+      userCache.invalidate(u);
+      return u;
+    }
+
+    // the Google account's address changed since it last logged in
+    String googleSub = oAuthUser.getAttribute("sub");
+    Optional<User> bySub = googleSub == null ? Optional.empty() : userRepository.findByGoogleSub(googleSub);
+    if (bySub.isPresent()) {
+      // straight from the repository, never the cache, so ours to change
+      User u = bySub.get();
+      u.setEmail(email);
+      if (!u.getAdmin() && adminEmails.contains(email)) {
+        u.setAdmin(true);
+        u.setRoleEpoch(u.getRoleEpoch() + 1);
+      }
+      userRepository.save(u);
+      userCache.invalidate(u);
+      return u;
+    }
+
+    Boolean emailVerified = oAuthUser.getAttribute("email_verified");
+    User u = User.builder()
+        .googleSub(googleSub)
+        .email(email)
+        .pictureUrl(oAuthUser.getAttribute("picture"))
+        .fullName(oAuthUser.getAttribute("name"))
+        .givenName(oAuthUser.getAttribute("given_name"))
+        .familyName(oAuthUser.getAttribute("family_name"))
+        .emailVerified(emailVerified != null && emailVerified)
+        .locale(oAuthUser.getAttribute("locale"))
+        .hostedDomain(oAuthUser.getAttribute("hd"))
+        .admin(adminEmails.contains(email))
+        .build();
+    userRepository.save(u);
+    userCache.invalidate(u);
+    log.info("Created user {} for {}", u.getId(), email);
+    return u;
+  }
+}
@@ -0,0 +1,123 @@
+package edu.ucsb.cs156.gauchoride.utilities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * An immutable set of half-open integer intervals [start, end), each carrying
+ * a value, that can be searched for the intervals overlapping a point or a
+ * range in O(log n + k) time.
+ *
+ * The intervals are kept sorted by start in flat arrays that are treated as
+ * an implicit balanced binary search tree (the root of any range is its
+ * middle element), where every node also records the largest end in its
+ * subtree so that whole subtrees ending before the query can be skipped.
+ */
+
+public final class IntervalTree<T> {
+  private final int[] starts;
+  private final int[] ends;
+  private final int[] maxEnds;
+  private final Object[] values;
+
+  private IntervalTree(int[] starts, int[] ends, Object[] values) {
+    this.starts = starts;
+    this.ends = ends;
+    this.values = values;
+    this.maxEnds = new int[starts.length];
+    computeMaxEnds(0, starts.length);
+  }
+
+  /**
+   * Build a tree from items; items for which startOf or endOf can't be
+   * computed should be filtered out by the caller.
+   */
+  public static <T> IntervalTree<T> of(Collection<? extends T> items, ToIntFunction<? super T> startOf,
+      ToIntFunction<? super T> endOf) {
+    int n = items.size();
+    Integer[] order = new Integer[n];
+    int[] itemStarts = new int[n];
+    int[] itemEnds = new int[n];
+    Object[] itemValues = new Object[n];
+    int i = 0;
+    for (T item : items) {
+      order[i] = i;
+      itemStarts[i] = startOf.applyAsInt(item);
+      itemEnds[i] = endOf.applyAsInt(item);
+      itemValues[i] = item;
+      i++;
+    }
+    Arrays.sort(order, Comparator.comparingInt(k -> itemStarts[k]));
+
+    int[] starts = new int[n];
+    int[] ends = new int[n];
+    Object[] values = new Object[n];
+    for (int k = 0; k < n; k++) {
+      starts[k] = itemStarts[order[k]];
+      ends[k] = itemEnds[order[k]];
+      values[k] = itemValues[order[k]];
+    }
+    return new IntervalTree<T>(starts, ends, values);
+  }
+
+  public int size() {
+    return starts.length;
+  }
+
+  /**
+   * Call action on every interval that overlaps [from, to), in order of start
+   */
+  public void forEachOverlapping(int from, int to, Consumer<? super T> action) {
+    visit(0, starts.length, from, to, action);
+  }
+
+  /**
+   * @return the values of every interval that overlaps [from, to), in order of start
+   */
+  public List<T> overlapping(int from, int to) {
+    List<T> result = new ArrayList<>();
+    forEachOverlapping(from, to, result::add);
+    return result;
+  }
+
+  /**
+   * @return the values of every interval that contains the point at
+   */
+  public List<T> containing(int at) {
+    return overlapping(at, at + 1);
+  }
+
+  private int computeMaxEnds(int lo, int hi) {
+    if (lo >= hi) {
+      return Integer.MIN_VALUE;
+    }
+    int mid = (lo + hi) >>> 1;
+    int max = Math.max(ends[mid], Math.max(computeMaxEnds(lo, mid), computeMaxEnds(mid + 1, hi)));
+    maxEnds[mid] = max;
+    return max;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void visit(int lo, int hi, int from, int to, Consumer<? super T> action) {
+    if (lo >= hi) {
+      return;
+    }
+    int mid = (lo + hi) >>> 1;
+    if (maxEnds[mid] <= from) {
+      return; // everything below here ends before the query starts
+    }
+    visit(lo, mid, from, to, action);
+    if (starts[mid] >= to) {
+      return; // this node and everything to its right start after the query ends
+    }
+    if (ends[mid] > from) {
+      action.accept((T) values[mid]);
+    }
+    visit(mid + 1, hi, from, to, action);
+  }
+}
@@ -0,0 +1,130 @@
+package edu.ucsb.cs156.gauchoride.utilities;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * Converts the weekday names and "HH:MM(A/P)M" times stored on rides and
+ * shifts into minutes since Monday 12:00AM, so that they can be stored in
+ * integer columns and compared in SQL.
+ */
+
+public final class MinuteOfWeek {
+  public static final int MINUTES_PER_DAY = 24 * 60;
+  public static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+
+  public static final List<String> DAYS = List.of(
+      "Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday", "Sunday");
+
+  private static final Pattern TIME = Pattern.compile("\\s*(\\d{1,2}):(\\d{2})\\s*([AaPp])[Mm]\\s*");
+
+  private MinuteOfWeek() {
+  }
+
+  /**
+   * @param day a weekday name, e.g. "Tuesday" (case insensitive)
+   * @return 0 for Monday through 6 for Sunday
+   */
+  public static int dayIndex(String day) {
+    if (day != null) {
+      String trimmed = day.trim();
+      for (int i = 0; i < DAYS.size(); i++) {
+        if (DAYS.get(i).equalsIgnoreCase(trimmed)) {
+          return i;
+        }
+      }
+    }
+    throw new IllegalArgumentException("Invalid day %s".formatted(day));
+  }
+
+  /**
+   * @param time a time in the format HH:MM(A/P)M, e.g. "2:00PM" or "09:30AM"
+   * @return minutes since midnight
+   */
+  public static int minuteOfDay(String time) {
+    Matcher m = time == null ? null : TIME.matcher(time);
+    if (m == null || !m.matches()) {
+      throw new IllegalArgumentException("Invalid time %s, expected HH:MM(A/P)M".formatted(time));
+    }
+    int hour = Integer.parseInt(m.group(1));
+    int minute = Integer.parseInt(m.group(2));
+    if (hour < 1 || hour > 12 || minute > 59) {
+      throw new IllegalArgumentException("Invalid time %s, expected HH:MM(A/P)M".formatted(time));
+    }
+    boolean pm = m.group(3).equalsIgnoreCase("P");
+    return ((hour % 12) + (pm ? 12 : 0)) * 60 + minute;
+  }
+
+  public static int of(String day, String time) {
+    return dayIndex(day) * MINUTES_PER_DAY + minuteOfDay(time);
+  }
+
+  public static int of(LocalDateTime dateTime) {
+    return (dateTime.getDayOfWeek().getValue() - 1) * MINUTES_PER_DAY
+        + dateTime.getHour() * 60 + dateTime.getMinute();
+  }
+
+  /**
+   * The end of an interval that starts at start on the same day; an end time
+   * earlier than the start time is taken to be after midnight.
+   */
+  public static int end(int start, String endTime) {
+    int end = start - start % MINUTES_PER_DAY + minuteOfDay(endTime);
+    return end < start ? end + MINUTES_PER_DAY : end;
+  }
+
+  /**
+   * Stored intervals start within the week and may run up to a day past its
+   * end, so a window [start, end) must also be looked for a week later (for
+   * intervals that started late on Sunday) and, if it runs past the end of
+   * Sunday itself, a week earlier.
+   * @return the offsets to add to start and end, one query each, in the
+   *         order that returns intervals earliest first
+   */
+  public static int[] weekOffsets(int start, int end) {
+    return IntStream.of(MINUTES_PER_WEEK, 0, -MINUTES_PER_WEEK)
+        .filter(offset -> end + offset > 0 && start + offset < MINUTES_PER_WEEK + MINUTES_PER_DAY)
+        .toArray();
+  }
+
+  /**
+   * Like {@link #of(String, String)} but returns null for values that can't be
+   * parsed; used when populating columns from data that was never validated.
+   */
+  public static Integer ofOrNull(String day, String time) {
+    try {
+      return of(day, time);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  public static Integer endOrNull(Integer start, String endTime) {
+    if (start == null) {
+      return null;
+    }
+    try {
+      return end(start, endTime);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  public static String dayOf(int minuteOfWeek) {
+    return DAYS.get(Math.floorMod(minuteOfWeek, MINUTES_PER_WEEK) / MINUTES_PER_DAY);
+  }
+
+  /**
+   * @return the time of day of minuteOfWeek in the format HH:MM(A/P)M, e.g. "2:05PM"
+   */
+  public static String timeOf(int minuteOfWeek) {
+    int minuteOfDay = Math.floorMod(minuteOfWeek, MINUTES_PER_DAY);
+    int hour = minuteOfDay / 60;
+    int hour12 = hour % 12 == 0 ? 12 : hour % 12;
+    return String.format(Locale.ROOT, "%d:%02d%s", hour12, minuteOfDay % 60, hour < 12 ? "AM" : "PM");
+  }
+}
@@ -0,0 +1,36 @@
+package edu.ucsb.cs156.gauchoride.utilities;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.function.Supplier;
+
+/**
+ * Values worked out at most once per HTTP request, kept as attributes of the
+ * current request. Outside a request (e.g. at startup) nothing is kept and
+ * every call computes the value again.
+ */
+
+public final class RequestMemo {
+
+  private RequestMemo() {
+  }
+
+  /**
+   * @return the value stored under key for this request, computing and
+   *         storing it first if there isn't one; compute must not return null
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> T get(String key, Supplier<T> compute) {
+    RequestAttributes request = RequestContextHolder.getRequestAttributes();
+    if (request == null) {
+      return compute.get();
+    }
+    T value = (T) request.getAttribute(key, RequestAttributes.SCOPE_REQUEST);
+    if (value == null) {
+      value = compute.get();
+      request.setAttribute(key, value, RequestAttributes.SCOPE_REQUEST);
+    }
+    return value;
+  }
+}
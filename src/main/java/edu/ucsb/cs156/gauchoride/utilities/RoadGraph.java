@@ -0,0 +1,124 @@
+package edu.ucsb.cs156.gauchoride.utilities;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A road network read from a text file with one two-way road per line:
+ *
+ * <pre>
+ * # comment
+ * Phelps Hall,Ocean Road &amp; Pardall Road,2
+ * </pre>
+ *
+ * i.e. the names of the two places a road joins and the minutes it takes to
+ * drive. Places are numbered in the order they first appear.
+ */
+
+public final class RoadGraph {
+
+  private final List<String> names;
+  private final Map<String, Integer> index;
+  // adjacency lists: node i's roads are targets/minutes[firstRoad[i], firstRoad[i + 1])
+  private final int[] firstRoad;
+  private final int[] targets;
+  private final int[] minutes;
+
+  private RoadGraph(List<String> names, Map<String, Integer> index, List<int[]> roads) {
+    this.names = names;
+    this.index = index;
+    int n = names.size();
+    firstRoad = new int[n + 1];
+    for (int[] road : roads) {
+      firstRoad[road[0] + 1]++;
+      firstRoad[road[1] + 1]++;
+    }
+    for (int i = 0; i < n; i++) {
+      firstRoad[i + 1] += firstRoad[i];
+    }
+    targets = new int[2 * roads.size()];
+    minutes = new int[2 * roads.size()];
+    int[] next = firstRoad.clone();
+    for (int[] road : roads) {
+      targets[next[road[0]]] = road[1];
+      minutes[next[road[0]]++] = road[2];
+      targets[next[road[1]]] = road[0];
+      minutes[next[road[1]]++] = road[2];
+    }
+  }
+
+  public static RoadGraph parse(Reader in) throws IOException {
+    List<String> names = new ArrayList<>();
+    Map<String, Integer> index = new HashMap<>();
+    List<int[]> roads = new ArrayList<>();
+    BufferedReader reader = new BufferedReader(in);
+    String line;
+    int lineNumber = 0;
+    while ((line = reader.readLine()) != null) {
+      lineNumber++;
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      String[] fields = line.split(",");
+      if (fields.length != 3) {
+        throw new IllegalArgumentException("Line %d: expected from,to,minutes".formatted(lineNumber));
+      }
+      int minutes;
+      try {
+        minutes = Integer.parseInt(fields[2].trim());
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Line %d: invalid minutes %s".formatted(lineNumber, fields[2].trim()));
+      }
+      if (minutes < 0) {
+        throw new IllegalArgumentException("Line %d: invalid minutes %s".formatted(lineNumber, minutes));
+      }
+      int from = index.computeIfAbsent(fields[0].trim(), name -> add(names, name));
+      int to = index.computeIfAbsent(fields[1].trim(), name -> add(names, name));
+      roads.add(new int[] { from, to, minutes });
+    }
+    return new RoadGraph(names, index, roads);
+  }
+
+  private static int add(List<String> names, String name) {
+    names.add(name);
+    return names.size() - 1;
+  }
+
+  public int size() {
+    return names.size();
+  }
+
+  public String name(int node) {
+    return names.get(node);
+  }
+
+  /**
+   * @return the node for a place, or -1 if no road goes there
+   */
+  public int indexOf(String name) {
+    Integer node = index.get(name);
+    return node == null ? -1 : node;
+  }
+
+  public int firstRoad(int node) {
+    return firstRoad[node];
+  }
+
+  public int endRoad(int node) {
+    return firstRoad[node + 1];
+  }
+
+  public int target(int road) {
+    return targets[road];
+  }
+
+  public int minutes(int road) {
+    return minutes[road];
+  }
+}
@@ -0,0 +1,209 @@
+package edu.ucsb.cs156.gauchoride.utilities;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.PriorityQueue;
+
+/**
+ * Shortest driving time, in minutes, between every pair of nodes of a
+ * {@link RoadGraph}, stored as an n x n table of unsigned shorts.
+ *
+ * The table can be written to a file and later memory-mapped or read instead
+ * of recomputed. The file starts with a header holding a magic number, format
+ * version, node count and a hash of the road graph file; a file whose
+ * header does not match the current graph is ignored. Lookups read straight
+ * from the buffer and do not allocate.
+ *
+ * The table for the campus graph is built ahead of time and shipped on the
+ * classpath next to it; after changing campus/roads.csv, rebuild it with
+ *
+ *   java -cp target/classes edu.ucsb.cs156.gauchoride.utilities.TravelTimeMatrix \
+ *     src/main/resources/campus/roads.csv src/main/resources/campus/travel-times.bin
+ */
+
+public final class TravelTimeMatrix {
+
+  static final int MAGIC = 0x47525454; // "GRTT"
+  static final int VERSION = 1;
+  public static final int HASH_BYTES = 32;
+  static final int HEADER_BYTES = 4 + 4 + 4 + HASH_BYTES;
+
+  /** minutes(from, to) when there is no road from one to the other */
+  public static final int UNREACHABLE = 0xFFFF;
+
+  private final ByteBuffer buffer;
+  private final int size;
+
+  private TravelTimeMatrix(ByteBuffer buffer, int size) {
+    this.buffer = buffer;
+    this.size = size;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return true if the table is read from a memory-mapped file rather than
+   *         from the heap
+   */
+  public boolean isMapped() {
+    return buffer instanceof MappedByteBuffer;
+  }
+
+  public int minutes(int from, int to) {
+    return buffer.getShort(HEADER_BYTES + 2 * (from * size + to)) & 0xFFFF;
+  }
+
+  /**
+   * @return the hash of a road graph file that goes in the header
+   */
+  public static byte[] hashOf(byte[] graphFile) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(graphFile);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  static long fileBytes(int size) {
+    return HEADER_BYTES + 2L * size * size;
+  }
+
+  /**
+   * Run Dijkstra's algorithm from every node of the graph
+   * @param hash hash of the graph file, recorded in the header
+   */
+  public static TravelTimeMatrix compute(RoadGraph graph, byte[] hash) {
+    int n = graph.size();
+    ByteBuffer buffer = ByteBuffer.allocate((int) fileBytes(n));
+    writeHeader(buffer, n, hash);
+
+    int[] distance = new int[n];
+    // queue entries are {distance, node}; stale entries are skipped when polled
+    PriorityQueue<int[]> queue = new PriorityQueue<>((a, b) -> Integer.compare(a[0], b[0]));
+    for (int source = 0; source < n; source++) {
+      Arrays.fill(distance, Integer.MAX_VALUE);
+      distance[source] = 0;
+      queue.add(new int[] { 0, source });
+      while (!queue.isEmpty()) {
+        int[] entry = queue.poll();
+        int node = entry[1];
+        if (entry[0] > distance[node]) {
+          continue;
+        }
+        for (int road = graph.firstRoad(node); road < graph.endRoad(node); road++) {
+          int target = graph.target(road);
+          int through = distance[node] + graph.minutes(road);
+          if (through < distance[target]) {
+            distance[target] = through;
+            queue.add(new int[] { through, target });
+          }
+        }
+      }
+      for (int target = 0; target < n; target++) {
+        int minutes = Math.min(distance[target], UNREACHABLE);
+        buffer.putShort(HEADER_BYTES + 2 * (source * n + target), (short) minutes);
+      }
+    }
+    return new TravelTimeMatrix(buffer, n);
+  }
+
+  private static void writeHeader(ByteBuffer buffer, int size, byte[] hash) {
+    if (hash.length != HASH_BYTES) {
+      throw new IllegalArgumentException("Expected a %d byte hash".formatted(HASH_BYTES));
+    }
+    buffer.putInt(0, MAGIC);
+    buffer.putInt(4, VERSION);
+    buffer.putInt(8, size);
+    buffer.put(12, hash);
+  }
+
+  /**
+   * Write the table to a file; the file is written next to path and then
+   * moved into place, so a reader never maps a half-written file
+   */
+  public void writeTo(Path path) throws IOException {
+    Path parent = path.toAbsolutePath().getParent();
+    Files.createDirectories(parent);
+    Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+      ByteBuffer contents = buffer.duplicate();
+      contents.clear();
+      while (contents.hasRemaining()) {
+        channel.write(contents);
+      }
+      channel.force(true);
+    }
+    try {
+      Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * Memory-map a table written by {@link #writeTo}
+   * @return the table, or empty if there is no file or it was written for a
+   *         different graph
+   */
+  public static Optional<TravelTimeMatrix> map(Path path, int size, byte[] hash) throws IOException {
+    if (!Files.isRegularFile(path) || Files.size(path) != fileBytes(size)) {
+      return Optional.empty();
+    }
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return checked(channel.map(FileChannel.MapMode.READ_ONLY, 0, fileBytes(size)), size, hash);
+    }
+  }
+
+  /**
+   * Read a table written by {@link #writeTo} onto the heap
+   * @return the table, or empty if it was written for a different graph
+   */
+  public static Optional<TravelTimeMatrix> read(InputStream in, int size, byte[] hash) throws IOException {
+    byte[] contents = in.readNBytes((int) fileBytes(size) + 1);
+    if (contents.length != fileBytes(size)) {
+      return Optional.empty();
+    }
+    return checked(ByteBuffer.wrap(contents), size, hash);
+  }
+
+  private static Optional<TravelTimeMatrix> checked(ByteBuffer buffer, int size, byte[] hash) {
+    byte[] storedHash = new byte[HASH_BYTES];
+    buffer.get(12, storedHash);
+    if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != size
+        || !Arrays.equals(storedHash, hash)) {
+      return Optional.empty();
+    }
+    return Optional.of(new TravelTimeMatrix(buffer, size));
+  }
+
+  /**
+   * Build the table for a road graph file and write it out
+   * @param args the road graph file and the table file to write
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: TravelTimeMatrix <roads.csv> <travel-times.bin>");
+      System.exit(2);
+    }
+    byte[] contents = Files.readAllBytes(Path.of(args[0]));
+    RoadGraph graph = RoadGraph.parse(new InputStreamReader(new ByteArrayInputStream(contents), StandardCharsets.UTF_8));
+    compute(graph, hashOf(contents)).writeTo(Path.of(args[1]));
+    System.out.printf("Wrote travel times for %d places to %s%n", graph.size(), args[1]);
+  }
+}
@@ -0,0 +1,15 @@
+-- Index lookups for UserRepository.findByEmail (on the trimmed, lower case
+-- email_key) and findByGoogleSub, and prefix search on email_key for
+-- /api/admin/users/page. Rows whose email differs only in case must be
+-- merged by hand before the unique index can be built.
+--
+-- Under a collation other than C, a plain index can't serve LIKE 'abc%';
+-- varchar_pattern_ops can. BackfillService creates the prefix index at
+-- startup, as Hibernate can't declare it.
+
+ALTER TABLE users ADD email_key VARCHAR(255);
+UPDATE users SET email_key = LOWER(TRIM(email));
+
+CREATE UNIQUE INDEX users_email_key_idx ON users (email_key);
+CREATE INDEX users_email_key_prefix_idx ON users (email_key varchar_pattern_ops);
+CREATE UNIQUE INDEX users_google_sub_idx ON users (google_sub);
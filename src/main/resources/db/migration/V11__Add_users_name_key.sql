@@ -0,0 +1,8 @@
+-- Prefix search on names for /api/admin/users/page, on the trimmed, lower
+-- case full_name. varchar_pattern_ops so LIKE 'abc%' can use the index
+-- under any collation (see V10).
+
+ALTER TABLE users ADD name_key VARCHAR(255);
+UPDATE users SET name_key = LOWER(TRIM(full_name));
+
+CREATE INDEX users_name_key_prefix_idx ON users (name_key varchar_pattern_ops);
@@ -0,0 +1,5 @@
+-- Composite indexes for the double-booking check on /api/shift/post: the
+-- driver (or backup driver) followed by the start of the shift.
+
+CREATE INDEX shift_driver_start_minute_idx ON shift (driverid, start_minute_of_week);
+CREATE INDEX shift_backup_start_minute_idx ON shift (driver_backupid, start_minute_of_week);
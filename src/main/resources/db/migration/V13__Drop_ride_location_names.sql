@@ -0,0 +1,6 @@
+-- Rides reference pickup and dropoff locations by id only and read the names
+-- from the location table. BackfillService resolves the ids of rides written
+-- before V8 at startup; once it has run, the name columns can go.
+
+ALTER TABLE ride DROP COLUMN pickup_location;
+ALTER TABLE ride DROP COLUMN dropoff_location;
@@ -0,0 +1,10 @@
+-- Tombstones older than app.rides.tombstoneRetentionDays are pruned; the
+-- single row here holds the highest version pruned so far, so
+-- /api/ride_request/changes can tell a client that synced before it to
+-- start again from since=0.
+
+CREATE TABLE ride_tombstone_cutoff (
+  id BIGINT PRIMARY KEY,
+  version BIGINT NOT NULL,
+  pruned_at TIMESTAMP
+);
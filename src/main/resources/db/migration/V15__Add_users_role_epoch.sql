@@ -0,0 +1,4 @@
+-- Moves on every change to admin or driver, in the same UPDATE; a session
+-- whose authorities were worked out at an older epoch recomputes them.
+
+ALTER TABLE users ADD role_epoch BIGINT DEFAULT 0 NOT NULL;
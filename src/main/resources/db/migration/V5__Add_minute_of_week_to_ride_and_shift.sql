@@ -0,0 +1,52 @@
+-- Minutes since Monday 12:00AM for the day + HH:MM(A/P)M start/end strings.
+-- New and updated rows are filled in by Ride/Shift @PrePersist/@PreUpdate;
+-- this backfills rows written before those columns existed. The app runs
+-- with ddl-auto=update rather than these scripts, so BackfillService does the
+-- same at startup.
+
+ALTER TABLE ride ADD start_minute_of_week INTEGER;
+ALTER TABLE ride ADD end_minute_of_week INTEGER;
+ALTER TABLE shift ADD start_minute_of_week INTEGER;
+ALTER TABLE shift ADD end_minute_of_week INTEGER;
+
+UPDATE ride SET start_minute_of_week =
+    CASE day
+      WHEN 'Monday' THEN 0 WHEN 'Tuesday' THEN 1440 WHEN 'Wednesday' THEN 2880 WHEN 'Thursday' THEN 4320
+      WHEN 'Friday' THEN 5760 WHEN 'Saturday' THEN 7200 WHEN 'Sunday' THEN 8640
+    END
+    + (MOD(CAST(SUBSTRING(TRIM(start_time), 1, POSITION(':' IN TRIM(start_time)) - 1) AS INTEGER), 12)
+       + CASE WHEN UPPER(TRIM(start_time)) LIKE '%PM' THEN 12 ELSE 0 END) * 60
+    + CAST(SUBSTRING(TRIM(start_time), POSITION(':' IN TRIM(start_time)) + 1, 2) AS INTEGER)
+  WHERE (UPPER(TRIM(start_time)) LIKE '%:__AM' OR UPPER(TRIM(start_time)) LIKE '%:__PM');
+
+UPDATE ride SET end_minute_of_week = start_minute_of_week - MOD(start_minute_of_week, 1440)
+    + (MOD(CAST(SUBSTRING(TRIM(end_time), 1, POSITION(':' IN TRIM(end_time)) - 1) AS INTEGER), 12)
+       + CASE WHEN UPPER(TRIM(end_time)) LIKE '%PM' THEN 12 ELSE 0 END) * 60
+    + CAST(SUBSTRING(TRIM(end_time), POSITION(':' IN TRIM(end_time)) + 1, 2) AS INTEGER)
+  WHERE start_minute_of_week IS NOT NULL AND (UPPER(TRIM(end_time)) LIKE '%:__AM' OR UPPER(TRIM(end_time)) LIKE '%:__PM');
+
+UPDATE ride SET end_minute_of_week = end_minute_of_week + 1440
+  WHERE end_minute_of_week < start_minute_of_week;
+
+UPDATE shift SET start_minute_of_week =
+    CASE day
+      WHEN 'Monday' THEN 0 WHEN 'Tuesday' THEN 1440 WHEN 'Wednesday' THEN 2880 WHEN 'Thursday' THEN 4320
+      WHEN 'Friday' THEN 5760 WHEN 'Saturday' THEN 7200 WHEN 'Sunday' THEN 8640
+    END
+    + (MOD(CAST(SUBSTRING(TRIM(shift_start), 1, POSITION(':' IN TRIM(shift_start)) - 1) AS INTEGER), 12)
+       + CASE WHEN UPPER(TRIM(shift_start)) LIKE '%PM' THEN 12 ELSE 0 END) * 60
+    + CAST(SUBSTRING(TRIM(shift_start), POSITION(':' IN TRIM(shift_start)) + 1, 2) AS INTEGER)
+  WHERE (UPPER(TRIM(shift_start)) LIKE '%:__AM' OR UPPER(TRIM(shift_start)) LIKE '%:__PM');
+
+UPDATE shift SET end_minute_of_week = start_minute_of_week - MOD(start_minute_of_week, 1440)
+    + (MOD(CAST(SUBSTRING(TRIM(shift_end), 1, POSITION(':' IN TRIM(shift_end)) - 1) AS INTEGER), 12)
+       + CASE WHEN UPPER(TRIM(shift_end)) LIKE '%PM' THEN 12 ELSE 0 END) * 60
+    + CAST(SUBSTRING(TRIM(shift_end), POSITION(':' IN TRIM(shift_end)) + 1, 2) AS INTEGER)
+  WHERE start_minute_of_week IS NOT NULL AND (UPPER(TRIM(shift_end)) LIKE '%:__AM' OR UPPER(TRIM(shift_end)) LIKE '%:__PM');
+
+UPDATE shift SET end_minute_of_week = end_minute_of_week + 1440
+  WHERE end_minute_of_week < start_minute_of_week;
+
+CREATE INDEX ride_start_minute_idx ON ride (start_minute_of_week);
+CREATE INDEX ride_rider_start_minute_idx ON ride (rider_id, start_minute_of_week);
+CREATE INDEX shift_start_minute_idx ON shift (start_minute_of_week);
@@ -0,0 +1,7 @@
+-- Ride ids now come from a pooled sequence that hands out 50 ids per call,
+-- so that inserts can be sent in JDBC batches (IDENTITY columns can't be).
+-- Start it past every id already issued by the identity column.
+-- (PostgreSQL syntax; on H2 the development database is simply recreated.)
+
+CREATE SEQUENCE ride_seq START WITH 1 INCREMENT BY 50;
+SELECT setval('ride_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM ride));
@@ -0,0 +1,6 @@
+-- Composite indexes for /api/ride_request/search: an equality filter on
+-- the leading column followed by a day or time window range on the second.
+
+CREATE INDEX ride_pickup_start_minute_idx ON ride (pickup_location, start_minute_of_week);
+CREATE INDEX ride_dropoff_start_minute_idx ON ride (dropoff_location, start_minute_of_week);
+CREATE INDEX ride_course_start_minute_idx ON ride (course, start_minute_of_week);
@@ -0,0 +1,29 @@
+-- Pickup and dropoff locations move into a dictionary table that rides
+-- reference by id. The name columns on ride are kept for display; the
+-- search indexes from V7 switch to the id columns.
+-- New and updated rows are filled in by RideController; this
+-- backfills rows written before the table existed.
+
+CREATE TABLE location (
+  id BIGSERIAL PRIMARY KEY,
+  name VARCHAR(255) NOT NULL UNIQUE
+);
+
+INSERT INTO location (name)
+  SELECT TRIM(pickup_location) FROM ride WHERE TRIM(pickup_location) <> ''
+  UNION
+  SELECT TRIM(dropoff_location) FROM ride WHERE TRIM(dropoff_location) <> '';
+
+ALTER TABLE ride ADD pickup_location_id BIGINT;
+ALTER TABLE ride ADD dropoff_location_id BIGINT;
+
+UPDATE ride SET
+  pickup_location = TRIM(pickup_location),
+  pickup_location_id = (SELECT id FROM location WHERE name = TRIM(ride.pickup_location)),
+  dropoff_location = TRIM(dropoff_location),
+  dropoff_location_id = (SELECT id FROM location WHERE name = TRIM(ride.dropoff_location));
+
+DROP INDEX ride_pickup_start_minute_idx;
+DROP INDEX ride_dropoff_start_minute_idx;
+CREATE INDEX ride_pickup_start_minute_idx ON ride (pickup_location_id, start_minute_of_week);
+CREATE INDEX ride_dropoff_start_minute_idx ON ride (dropoff_location_id, start_minute_of_week);
@@ -0,0 +1,20 @@
+-- Change versions for /api/ride_request/changes. Existing rides get
+-- change_version = id so that a first sync (since=0) returns them; new
+-- versions continue from the highest one.
+
+ALTER TABLE ride ADD change_version BIGINT;
+ALTER TABLE ride ADD updated_at TIMESTAMP;
+UPDATE ride SET change_version = id;
+
+CREATE INDEX ride_change_version_idx ON ride (change_version);
+CREATE INDEX ride_rider_change_version_idx ON ride (rider_id, change_version);
+
+CREATE TABLE ride_tombstone (
+  ride_id BIGINT PRIMARY KEY,
+  rider_id BIGINT NOT NULL,
+  version BIGINT NOT NULL,
+  deleted_at TIMESTAMP
+);
+
+CREATE INDEX ride_tombstone_version_idx ON ride_tombstone (version);
+CREATE INDEX ride_tombstone_rider_version_idx ON ride_tombstone (rider_id, version);
@@ -0,0 +1,53 @@
+package edu.ucsb.cs156.gauchoride;
+
+import edu.ucsb.cs156.gauchoride.entities.Ride;
+import edu.ucsb.cs156.gauchoride.entities.Shift;
+import edu.ucsb.cs156.gauchoride.models.ChangeEvent;
+
+/**
+ * Rides and shifts for tests, with their minutes of the week computed as
+ * they would be on save.
+ */
+
+public final class Fixtures {
+
+  private Fixtures() {
+  }
+
+  public static Shift shift(long id, String day, String start, String end, long driver, long backup) {
+    Shift shift = Shift.builder().id(id).day(day).shiftStart(start).shiftEnd(end)
+        .driverID(driver).driverBackupID(backup).build();
+    shift.computeMinutesOfWeek();
+    return shift;
+  }
+
+  public static Ride ride(long id, String day, String start, String end) {
+    Ride ride = Ride.builder().id(id).day(day).startTime(start).endTime(end).build();
+    ride.computeMinutesOfWeek();
+    return ride;
+  }
+
+  /**
+   * A ride between the locations with ids pickup and dropoff, named "L" and
+   * the id
+   */
+  public static Ride ride(long id, String day, String start, String end, long pickup, long dropoff) {
+    Ride ride = ride(id, day, start, end);
+    ride.setPickupLocationId(pickup);
+    ride.setPickupLocation("L" + pickup);
+    ride.setDropoffLocationId(dropoff);
+    ride.setDropoffLocation("L" + dropoff);
+    return ride;
+  }
+
+  /**
+   * A ride as last written at a change version, for change tracking tests
+   */
+  public static Ride rideAtVersion(long id, long changeVersion) {
+    return Ride.builder().id(id).changeVersion(changeVersion).build();
+  }
+
+  public static ChangeEvent rideCreated(long id, long riderId) {
+    return ChangeEvent.builder().entity("ride").action("created").id(id).riderId(riderId).build();
+  }
+}
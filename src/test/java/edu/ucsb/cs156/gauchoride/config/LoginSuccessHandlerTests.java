@@ -0,0 +1,58 @@
+package edu.ucsb.cs156.gauchoride.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.config.oauth2.client.CommonOAuth2Provider;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.client.registration.InMemoryClientRegistrationRepository;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+
+import edu.ucsb.cs156.gauchoride.entities.User;
+import edu.ucsb.cs156.gauchoride.services.UserProvisioningService;
+
+class LoginSuccessHandlerTests {
+
+  @AfterEach
+  void clearContext() {
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  void test_principal_gets_the_user_id_and_keeps_its_name() throws Exception {
+    InMemoryClientRegistrationRepository registrations = new InMemoryClientRegistrationRepository(
+        CommonOAuth2Provider.GOOGLE.getBuilder("google").clientId("id").clientSecret("secret").build());
+    OAuth2User principal = new DefaultOAuth2User(List.of(new SimpleGrantedAuthority("ROLE_USER")),
+        Map.of("sub", "12345", "email", "cgaucho@ucsb.edu"), "sub");
+    OAuth2AuthenticationToken token = new OAuth2AuthenticationToken(principal,
+        List.of(new SimpleGrantedAuthority("ROLE_MEMBER")), "google");
+    SecurityContextHolder.getContext().setAuthentication(token);
+
+    UserProvisioningService userProvisioning = mock(UserProvisioningService.class);
+    when(userProvisioning.provision(principal)).thenReturn(User.builder().id(15L).email("cgaucho@ucsb.edu").build());
+
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    new LoginSuccessHandler(userProvisioning, registrations)
+        .onAuthenticationSuccess(new MockHttpServletRequest(), response, token);
+
+    OAuth2AuthenticationToken provisioned = (OAuth2AuthenticationToken) SecurityContextHolder.getContext()
+        .getAuthentication();
+    assertEquals(15L, (Long) provisioned.getPrincipal().getAttribute(UserProvisioningService.USER_ID));
+    assertEquals("12345", provisioned.getName());
+    assertEquals("cgaucho@ucsb.edu", provisioned.getPrincipal().getAttribute("email"));
+    assertEquals(token.getAuthorities(), provisioned.getAuthorities());
+    assertEquals("google", provisioned.getAuthorizedClientRegistrationId());
+    assertEquals("/", response.getRedirectedUrl());
+  }
+}
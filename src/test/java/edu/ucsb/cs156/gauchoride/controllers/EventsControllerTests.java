@@ -0,0 +1,59 @@
+package edu.ucsb.cs156.gauchoride.controllers;
+
+import edu.ucsb.cs156.gauchoride.ControllerTestCase;
+import edu.ucsb.cs156.gauchoride.repositories.UserRepository;
+import edu.ucsb.cs156.gauchoride.services.ChangeEventBus;
+import edu.ucsb.cs156.gauchoride.testconfig.TestConfig;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(controllers = EventsController.class)
+@Import(TestConfig.class)
+public class EventsControllerTests extends ControllerTestCase {
+
+        @MockBean
+        UserRepository userRepository;
+
+        @MockBean
+        ChangeEventBus changeEventBus;
+
+        @Test
+        public void logged_out_users_cannot_subscribe() throws Exception {
+                mockMvc.perform(get("/api/events"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void user_subscribes_to_their_own_rides() throws Exception {
+                long userId = currentUserService.getCurrentUser().getUser().getId();
+
+                mockMvc.perform(get("/api/events"))
+                                .andExpect(request().asyncStarted());
+
+                verify(changeEventBus, times(1)).subscribe(any(SseEmitter.class), eq(userId));
+        }
+
+        @WithMockUser(roles = { "DRIVER" })
+        @Test
+        public void driver_subscribes_to_all_rides() throws Exception {
+                mockMvc.perform(get("/api/events"))
+                                .andExpect(request().asyncStarted());
+
+                verify(changeEventBus, times(1)).subscribe(any(SseEmitter.class), isNull());
+        }
+}
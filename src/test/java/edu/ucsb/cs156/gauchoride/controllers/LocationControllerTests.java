@@ -0,0 +1,177 @@
+package edu.ucsb.cs156.gauchoride.controllers;
+
+import edu.ucsb.cs156.gauchoride.ControllerTestCase;
+import edu.ucsb.cs156.gauchoride.entities.Location;
+import edu.ucsb.cs156.gauchoride.repositories.LocationRepository;
+import edu.ucsb.cs156.gauchoride.repositories.RideRepository;
+import edu.ucsb.cs156.gauchoride.repositories.UserRepository;
+import edu.ucsb.cs156.gauchoride.services.CollectionVersions;
+import edu.ucsb.cs156.gauchoride.services.LocationDictionary;
+import edu.ucsb.cs156.gauchoride.services.RideChangeService;
+import edu.ucsb.cs156.gauchoride.testconfig.TestConfig;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(controllers = LocationController.class)
+@Import(TestConfig.class)
+public class LocationControllerTests extends ControllerTestCase {
+
+        @MockBean
+        LocationRepository locationRepository;
+
+        @MockBean
+        RideRepository rideRepository;
+
+        @MockBean
+        UserRepository userRepository;
+
+        @MockBean
+        LocationDictionary locationDictionary;
+
+        @MockBean
+        RideChangeService rideChangeService;
+
+        @MockBean
+        CollectionVersions collectionVersions;
+
+        Location phelps = Location.builder().id(1L).name("Phelps Hall").build();
+        Location southHall = Location.builder().id(2L).name("South Hall").build();
+
+        // GET /all
+
+        @Test
+        public void logged_out_users_cannot_get_all() throws Exception {
+                mockMvc.perform(get("/api/locations/all"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void users_get_all_locations_from_the_dictionary() throws Exception {
+                List<Location> expected = Arrays.asList(phelps, southHall);
+                when(locationDictionary.all()).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/locations/all"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(locationRepository, times(0)).findAll();
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        // POST
+
+        @WithMockUser(roles = { "DRIVER" })
+        @Test
+        public void drivers_cannot_post() throws Exception {
+                mockMvc.perform(post("/api/locations/post?name=Phelps Hall").with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_can_post_a_location() throws Exception {
+                when(locationDictionary.intern("Phelps Hall")).thenReturn(phelps);
+
+                // act
+                MvcResult response = mockMvc.perform(post("/api/locations/post?name=Phelps Hall").with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(locationDictionary, times(1)).intern("Phelps Hall");
+                assertEquals(mapper.writeValueAsString(phelps), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_cannot_post_a_blank_location() throws Exception {
+                MvcResult response = mockMvc.perform(post("/api/locations/post?name= ").with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Location name must not be blank", json.get("message"));
+        }
+
+        // PUT
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_can_rename_a_location_and_its_rides() throws Exception {
+                Location renamed = Location.builder().id(1L).name("Phelps").build();
+                when(locationRepository.findById(1L)).thenReturn(Optional.of(phelps));
+                when(locationDictionary.lookup("Phelps")).thenReturn(Optional.empty());
+                when(locationRepository.save(renamed)).thenReturn(renamed);
+                when(rideChangeService.nextVersion()).thenReturn(42L);
+
+                // act
+                MvcResult response = mockMvc.perform(put("/api/locations?id=1&name= Phelps ").with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(locationRepository, times(1)).save(renamed);
+                verify(rideRepository, times(1)).locationRenamed(1L, 42L);
+                verify(collectionVersions, times(1)).changed(CollectionVersions.RIDES);
+                verify(locationDictionary, times(1)).remember(renamed);
+                assertEquals(mapper.writeValueAsString(renamed), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_cannot_rename_a_location_that_does_not_exist() throws Exception {
+                when(locationRepository.findById(7L)).thenReturn(Optional.empty());
+
+                MvcResult response = mockMvc.perform(put("/api/locations?id=7&name=Phelps").with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Location with id 7 not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_cannot_rename_onto_another_location() throws Exception {
+                when(locationRepository.findById(1L)).thenReturn(Optional.of(phelps));
+                when(locationDictionary.lookup("South Hall")).thenReturn(Optional.of(southHall));
+
+                MvcResult response = mockMvc.perform(put("/api/locations?id=1&name=South Hall").with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                verify(locationRepository, times(0)).save(any());
+                verify(rideRepository, times(0)).locationRenamed(anyLong(), anyLong());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Location South Hall already exists with id 2", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_cannot_rename_to_blank() throws Exception {
+                MvcResult response = mockMvc.perform(put("/api/locations?id=1&name=").with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Location name must not be blank", json.get("message"));
+        }
+}
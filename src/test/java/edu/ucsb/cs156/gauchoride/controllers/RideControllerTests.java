@@ -5,12 +5,29 @@ import edu.ucsb.cs156.gauchoride.testconfig.TestConfig;
 import edu.ucsb.cs156.gauchoride.ControllerTestCase;
 import edu.ucsb.cs156.gauchoride.entities.Ride;
 import edu.ucsb.cs156.gauchoride.repositories.RideRepository;
+import edu.ucsb.cs156.gauchoride.models.RideAssignment;
+import edu.ucsb.cs156.gauchoride.entities.Location;
+import edu.ucsb.cs156.gauchoride.models.ChangeEvent;
+import edu.ucsb.cs156.gauchoride.services.ChangeEventBus;
+import edu.ucsb.cs156.gauchoride.services.CollectionVersions;
+import edu.ucsb.cs156.gauchoride.services.LocationDictionary;
+import edu.ucsb.cs156.gauchoride.services.RideAssignmentService;
+import edu.ucsb.cs156.gauchoride.services.RideChangeService;
+import edu.ucsb.cs156.gauchoride.models.RideChanges;
+import edu.ucsb.cs156.gauchoride.services.RideExportService;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.BeforeEach;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
@@ -25,10 +42,15 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.inOrder;
+
+import org.mockito.InOrder;
 
 @WebMvcTest(controllers = RideController.class)
 @Import(TestConfig.class)
@@ -40,6 +62,44 @@ public class RideControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        RideExportService rideExportService;
+
+        @MockBean
+        RideAssignmentService rideAssignmentService;
+
+        @MockBean
+        LocationDictionary locationDictionary;
+
+        @MockBean
+        RideChangeService rideChangeService;
+
+        @MockBean
+        ChangeEventBus changeEventBus;
+
+        @MockBean
+        CollectionVersions collectionVersions;
+
+        @BeforeEach
+        public void stubCollectionVersions() {
+                when(collectionVersions.etag(CollectionVersions.RIDES)).thenReturn("\"all-7\"");
+                when(collectionVersions.riderEtag(anyLong())).thenReturn("\"rider-3\"");
+        }
+
+        static final List<Location> LOCATIONS = List.of(
+                        Location.builder().id(3L).name("Phelps Hall").build(),
+                        Location.builder().id(4L).name("South Hall").build(),
+                        Location.builder().id(5L).name("UCen").build(),
+                        Location.builder().id(6L).name("Student Resource Building").build());
+
+        @BeforeEach
+        public void stubLocationDictionary() {
+                for (Location location : LOCATIONS) {
+                        when(locationDictionary.lookup(location.getName())).thenReturn(Optional.of(location));
+                        when(locationDictionary.intern(location.getName())).thenReturn(location);
+                }
+        }
+
         // Authorization tests for /api/ride_request/all
 
         @Test
@@ -534,6 +594,8 @@ public class RideControllerTests extends ControllerTestCase {
                         .endTime("3:15PM")
                         .dropoffLocation("South Hall")
                         .pickupLocation("Phelps Hall")
+                        .pickupLocationId(3L)
+                        .dropoffLocationId(4L)
                         .room("1431")
                         .build();
 
@@ -549,6 +611,7 @@ public class RideControllerTests extends ControllerTestCase {
 
                 // assert
                 verify(rideRepository, times(1)).save(ride1);
+                verify(changeEventBus, times(1)).publish(ChangeEvent.of("created", ride1));
                 String expectedJson = mapper.writeValueAsString(ride1);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -558,6 +621,72 @@ public class RideControllerTests extends ControllerTestCase {
         
 
 
+        // CONDITIONAL GET ALL
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void a_user_can_post_a_ride_to_a_new_location() throws Exception {
+                Location storke = Location.builder().id(9L).name("Storke Tower").build();
+                when(locationDictionary.intern("Storke Tower ")).thenReturn(storke);
+                when(rideRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+                MvcResult response = mockMvc.perform(
+                                post("/api/ride_request/post?day=Monday&course=CMPSC 156&startTime=2:00PM&endTime=3:15PM&pickupLocation=Storke Tower &dropoffLocation=South Hall&room=1431")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                verify(locationDictionary, times(1)).intern("Storke Tower ");
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(9, json.get("pickupLocationId"));
+                assertEquals("Storke Tower", json.get("pickupLocation"));
+                assertEquals(4, json.get("dropoffLocationId"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_all_returns_the_riders_etag() throws Exception {
+                long userId = currentUserService.getCurrentUser().getUser().getId();
+                when(rideRepository.findAllByRiderId(eq(userId))).thenReturn(new ArrayList<>());
+
+                mockMvc.perform(get("/api/ride_request/all"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"rider-3\""))
+                                .andExpect(header().string("Cache-Control", "no-cache, private"));
+
+                verify(collectionVersions, times(1)).riderEtag(userId);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_all_with_current_etag_is_not_modified_without_a_query() throws Exception {
+                mockMvc.perform(get("/api/ride_request/all").header("If-None-Match", "\"rider-3\""))
+                                .andExpect(status().isNotModified())
+                                .andExpect(content().string(""));
+
+                verify(rideRepository, never()).findAllByRiderId(anyLong());
+        }
+
+        @WithMockUser(roles = { "DRIVER" })
+        @Test
+        public void driver_get_all_with_stale_etag_gets_all_rides() throws Exception {
+                when(rideRepository.findAll()).thenReturn(new ArrayList<>());
+
+                mockMvc.perform(get("/api/ride_request/all").header("If-None-Match", "\"all-6\""))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"all-7\""));
+
+                verify(rideRepository, times(1)).findAll();
+        }
+
+        @WithMockUser(roles = { "DRIVER" })
+        @Test
+        public void driver_get_all_with_current_etag_is_not_modified() throws Exception {
+                mockMvc.perform(get("/api/ride_request/all").header("If-None-Match", "\"all-7\""))
+                                .andExpect(status().isNotModified());
+
+                verify(rideRepository, never()).findAll();
+        }
+
         // DELETE
 
         @WithMockUser(roles = { "USER" })
@@ -590,6 +719,8 @@ public class RideControllerTests extends ControllerTestCase {
                 // assertuserId
                 verify(rideRepository, times(1)).findByIdAndRiderId(eq(15L), eq(userId));
                 verify(rideRepository, times(1)).delete(ride1);
+                verify(rideChangeService, times(1)).recordDelete(ride1);
+                verify(changeEventBus, times(1)).publish(ChangeEvent.of("deleted", ride1));
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Ride with id 15 deleted", json.get("message"));
@@ -684,6 +815,8 @@ public class RideControllerTests extends ControllerTestCase {
                 // assert
                 verify(rideRepository, times(1)).findById(15L);
                 verify(rideRepository, times(1)).delete(ride1);
+                verify(rideChangeService, times(1)).recordDelete(ride1);
+                verify(changeEventBus, times(1)).publish(ChangeEvent.of("deleted", ride1));
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Ride with id 15 deleted", json.get("message"));
@@ -720,6 +853,8 @@ public class RideControllerTests extends ControllerTestCase {
                 // assert
                 verify(rideRepository, times(1)).findById(15L);
                 verify(rideRepository, times(1)).delete(ride1);
+                verify(rideChangeService, times(1)).recordDelete(ride1);
+                verify(changeEventBus, times(1)).publish(ChangeEvent.of("deleted", ride1));
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Ride with id 15 deleted", json.get("message"));
@@ -803,6 +938,8 @@ public class RideControllerTests extends ControllerTestCase {
                                 .build();
 
                 String requestBody = mapper.writeValueAsString(ride_edited);
+                ride_edited.setPickupLocationId(5L);
+                ride_edited.setDropoffLocationId(3L);
 
                 when(rideRepository.findByIdAndRiderId(eq(67L), eq(userId))).thenReturn(Optional.of(ride_original));
 
@@ -818,8 +955,9 @@ public class RideControllerTests extends ControllerTestCase {
                 // assert
                 verify(rideRepository, times(1)).findByIdAndRiderId(eq(67L), eq(userId));
                 verify(rideRepository, times(1)).save(ride_edited); // should be saved with correct user
+                verify(changeEventBus, times(1)).publish(ChangeEvent.of("updated", ride_edited));
                 String responseString = response.getResponse().getContentAsString();
-                assertEquals(requestBody, responseString);
+                assertEquals(mapper.writeValueAsString(ride_edited), responseString);
         }
 
 
@@ -948,6 +1086,8 @@ public class RideControllerTests extends ControllerTestCase {
                                 .build();
 
                 String requestBody = mapper.writeValueAsString(ride_edited);
+                ride_edited.setPickupLocationId(5L);
+                ride_edited.setDropoffLocationId(3L);
 
                 when(rideRepository.findById(eq(67L))).thenReturn(Optional.of(ride_original));
 
@@ -963,8 +1103,9 @@ public class RideControllerTests extends ControllerTestCase {
                 // assert
                 verify(rideRepository, times(1)).findById(67L);
                 verify(rideRepository, times(1)).save(ride_edited); // should be saved with correct user
+                verify(changeEventBus, times(1)).publish(ChangeEvent.of("updated", ride_edited));
                 String responseString = response.getResponse().getContentAsString();
-                assertEquals(requestBody, responseString);
+                assertEquals(mapper.writeValueAsString(ride_edited), responseString);
         }
 
         @WithMockUser(roles = { "DRIVER" })
@@ -1000,6 +1141,8 @@ public class RideControllerTests extends ControllerTestCase {
                                 .build();
 
                 String requestBody = mapper.writeValueAsString(ride_edited);
+                ride_edited.setPickupLocationId(5L);
+                ride_edited.setDropoffLocationId(3L);
 
                 when(rideRepository.findById(eq(67L))).thenReturn(Optional.of(ride_original));
 
@@ -1015,8 +1158,9 @@ public class RideControllerTests extends ControllerTestCase {
                 // assert
                 verify(rideRepository, times(1)).findById(67L);
                 verify(rideRepository, times(1)).save(ride_edited); // should be saved with correct user
+                verify(changeEventBus, times(1)).publish(ChangeEvent.of("updated", ride_edited));
                 String responseString = response.getResponse().getContentAsString();
-                assertEquals(requestBody, responseString);
+                assertEquals(mapper.writeValueAsString(ride_edited), responseString);
         }
 
         @WithMockUser(roles = { "ADMIN", "USER" })
@@ -1094,4 +1238,737 @@ public class RideControllerTests extends ControllerTestCase {
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Ride with id 67 not found", json.get("message"));
         }
-}
\ No newline at end of file
+
+        // GET PAGE
+
+        @Test
+        public void logged_out_users_cannot_get_page() throws Exception {
+                mockMvc.perform(get("/api/ride_request/page"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_a_page_of_their_own_rides() throws Exception {
+
+                long userId = currentUserService.getCurrentUser().getUser().getId();
+
+                Ride ride1 = Ride.builder()
+                                .id(4L)
+                                .riderId(userId)
+                                .student("CGaucho")
+                                .day("Monday")
+                                .course("CMPSC 156")
+                                .startTime("2:00PM")
+                                .endTime("3:15PM")
+                                .dropoffLocation("South Hall")
+                                .pickupLocation("Phelps Hall")
+                                .room("1431")
+                                .build();
+
+                ArrayList<Ride> expectedRides = new ArrayList<>();
+                expectedRides.add(ride1);
+
+                when(rideRepository.findByRiderIdAndIdGreaterThanOrderByIdAsc(eq(userId), eq(3L), eq(PageRequest.of(0, 3))))
+                                .thenReturn(expectedRides);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ride_request/page?cursor=3&size=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(rideRepository, times(1)).findByRiderIdAndIdGreaterThanOrderByIdAsc(eq(userId), eq(3L), eq(PageRequest.of(0, 3)));
+                verify(rideRepository, times(0)).findByIdGreaterThanOrderByIdAsc(any(Long.class), any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(null, json.get("nextCursor"));
+                String expectedJson = mapper.writeValueAsString(expectedRides);
+                assertEquals(expectedJson, mapper.writeValueAsString(json.get("content")));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void logged_in_admin_gets_a_page_of_all_rides_with_next_cursor() throws Exception {
+
+                Ride ride1 = Ride.builder().id(1L).riderId(5L).day("Monday").build();
+                Ride ride2 = Ride.builder().id(2L).riderId(6L).day("Tuesday").build();
+                Ride ride3 = Ride.builder().id(3L).riderId(7L).day("Friday").build();
+
+                when(rideRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, 3))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(ride1, ride2, ride3)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ride_request/page?size=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(rideRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, 3)));
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(2, json.get("nextCursor"));
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(ride1, ride2));
+                assertEquals(expectedJson, mapper.writeValueAsString(json.get("content")));
+        }
+
+        @WithMockUser(roles = { "DRIVER" })
+        @Test
+        public void page_size_is_capped() throws Exception {
+
+                when(rideRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, RideController.MAX_PAGE_SIZE + 1))))
+                                .thenReturn(new ArrayList<>());
+
+                // act
+                mockMvc.perform(get("/api/ride_request/page?size=100000"))
+                                .andExpect(status().isOk());
+
+                // assert
+
+                verify(rideRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, RideController.MAX_PAGE_SIZE + 1)));
+        }
+
+        // EXPORT
+
+        @Test
+        public void logged_out_users_cannot_export() throws Exception {
+                mockMvc.perform(get("/api/ride_request/export"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "DRIVER" })
+        @Test
+        public void drivers_cannot_export() throws Exception {
+                mockMvc.perform(get("/api/ride_request/export"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_export_ndjson() throws Exception {
+                when(rideExportService.writeNdjson(any())).thenReturn(0L);
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/ride_request/export"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk())
+                                .andExpect(content().contentType("application/x-ndjson"))
+                                .andExpect(header().string("Content-Disposition", "attachment; filename=\"rides.ndjson\""));
+
+                // assert
+                verify(rideExportService, times(1)).writeNdjson(any());
+                verify(rideExportService, times(0)).writeCsv(any());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_export_csv() throws Exception {
+                when(rideExportService.writeCsv(any())).thenReturn(0L);
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/ride_request/export?format=csv"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk())
+                                .andExpect(content().contentType("text/csv"))
+                                .andExpect(header().string("Content-Disposition", "attachment; filename=\"rides.csv\""));
+
+                // assert
+                verify(rideExportService, times(1)).writeCsv(any());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void export_rejects_unknown_format() throws Exception {
+                MvcResult response = mockMvc.perform(get("/api/ride_request/export?format=xml"))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("BadRequestException", json.get("type"));
+                assertEquals("Unknown export format xml", json.get("message"));
+        }
+
+        // TIME WINDOW
+
+        @Test
+        public void logged_out_users_cannot_get_window() throws Exception {
+                mockMvc.perform(get("/api/ride_request/window?day=Tuesday&start=2:00PM&end=3:00PM"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void user_gets_their_own_rides_in_window() throws Exception {
+
+                long userId = currentUserService.getCurrentUser().getUser().getId();
+
+                Ride ride1 = Ride.builder()
+                                .riderId(userId)
+                                .day("Tuesday")
+                                .startTime("2:30PM")
+                                .endTime("3:15PM")
+                                .build();
+
+                ArrayList<Ride> expectedRides = new ArrayList<>(Arrays.asList(ride1));
+                when(rideRepository.findOverlappingByRiderId(eq(userId), eq(1440 + 840), eq(1440 + 900))).thenReturn(expectedRides);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ride_request/window?day=Tuesday&start=2:00PM&end=3:00PM"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(rideRepository, times(1)).findOverlappingByRiderId(eq(userId), eq(1440 + 840), eq(1440 + 900));
+                assertEquals(mapper.writeValueAsString(expectedRides), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "DRIVER" })
+        @Test
+        public void driver_gets_all_rides_in_window() throws Exception {
+
+                Ride ride1 = Ride.builder().riderId(3L).day("Tuesday").startTime("2:30PM").endTime("3:15PM").build();
+                Ride ride2 = Ride.builder().riderId(4L).day("Tuesday").startTime("1:30PM").endTime("2:15PM").build();
+
+                ArrayList<Ride> expectedRides = new ArrayList<>(Arrays.asList(ride2, ride1));
+                when(rideRepository.findOverlapping(eq(1440 + 840), eq(1440 + 900))).thenReturn(expectedRides);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ride_request/window?day=Tuesday&start=2:00PM&end=3:00PM"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(rideRepository, times(1)).findOverlapping(eq(1440 + 840), eq(1440 + 900));
+                assertEquals(mapper.writeValueAsString(expectedRides), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "DRIVER" })
+        @Test
+        public void window_on_monday_morning_includes_rides_from_sunday_night() throws Exception {
+
+                Ride sunday = Ride.builder().riderId(3L).day("Sunday").startTime("11:30PM").endTime("12:30AM").build();
+                Ride monday = Ride.builder().riderId(4L).day("Monday").startTime("12:15AM").endTime("12:45AM").build();
+                when(rideRepository.findOverlapping(eq(10080), eq(10080 + 60))).thenReturn(List.of(sunday));
+                when(rideRepository.findOverlapping(eq(0), eq(60))).thenReturn(List.of(monday));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ride_request/window?day=Monday&start=12:00AM&end=1:00AM"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                assertEquals(mapper.writeValueAsString(List.of(sunday, monday)), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "DRIVER" })
+        @Test
+        public void window_rejects_bad_time() throws Exception {
+                MvcResult response = mockMvc.perform(get("/api/ride_request/window?day=Tuesday&start=14:00&end=3:00PM"))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Invalid time 14:00, expected HH:MM(A/P)M", json.get("message"));
+        }
+
+        // SEARCH
+
+        @Test
+        public void logged_out_users_cannot_search() throws Exception {
+                mockMvc.perform(get("/api/ride_request/search?day=Tuesday"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void user_can_search_their_rides() throws Exception {
+
+                long userId = currentUserService.getCurrentUser().getUser().getId();
+
+                Ride ride1 = Ride.builder().id(7L).riderId(userId).day("Tuesday").startTime("2:30PM").endTime("3:15PM")
+                                .course("CMPSC 156").build();
+
+                Pageable expectedPageable = PageRequest.of(0, 25, Sort.by("startMinuteOfWeek").and(Sort.by("id")));
+                PageImpl<Ride> expectedPage = new PageImpl<>(Arrays.asList(ride1), expectedPageable, 1);
+                when(rideRepository.findAll(any(Specification.class), eq(expectedPageable))).thenReturn(expectedPage);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ride_request/search?day=Tuesday&course=CMPSC 156"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(rideRepository, times(1)).findAll(any(Specification.class), eq(expectedPageable));
+                assertEquals(mapper.writeValueAsString(expectedPage), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "DRIVER" })
+        @Test
+        public void driver_can_search_with_window_sort_and_capped_size() throws Exception {
+
+                Pageable expectedPageable = PageRequest.of(2, 100,
+                                Sort.by(Sort.Direction.DESC, "pickupLocation").and(Sort.by("id")));
+                PageImpl<Ride> expectedPage = new PageImpl<>(new ArrayList<>(), expectedPageable, 0);
+                when(locationDictionary.lookup("Phelps Hall")).thenReturn(Optional.of(Location.builder().id(3L).name("Phelps Hall").build()));
+                when(locationDictionary.lookup("South Hall")).thenReturn(Optional.of(Location.builder().id(4L).name("South Hall").build()));
+                when(rideRepository.findAll(any(Specification.class), eq(expectedPageable))).thenReturn(expectedPage);
+
+                // act
+                MvcResult response = mockMvc.perform(get(
+                                "/api/ride_request/search?day=Tuesday&start=2:00PM&end=3:00PM&pickupLocation=Phelps Hall"
+                                                + "&dropoffLocation=South Hall&page=2&size=500&sort=pickupLocation&direction=DESC"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(rideRepository, times(1)).findAll(any(Specification.class), eq(expectedPageable));
+                assertEquals(mapper.writeValueAsString(expectedPage), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "DRIVER" })
+        @Test
+        public void search_for_unknown_location_is_empty_without_a_query() throws Exception {
+                when(locationDictionary.lookup("Nowhere")).thenReturn(Optional.empty());
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ride_request/search?dropoffLocation=Nowhere"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(rideRepository, times(0)).findAll(any(Specification.class), any(Pageable.class));
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(0, json.get("totalElements"));
+        }
+
+        @WithMockUser(roles = { "DRIVER" })
+        @Test
+        public void search_rejects_unknown_sort_field() throws Exception {
+                MvcResult response = mockMvc.perform(get("/api/ride_request/search?sort=room"))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Cannot sort rides by room", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "DRIVER" })
+        @Test
+        public void search_rejects_window_without_day() throws Exception {
+                MvcResult response = mockMvc.perform(get("/api/ride_request/search?start=2:00PM&end=3:00PM"))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("A time window needs day, start and end", json.get("message"));
+        }
+
+        // CHANGES
+
+        @Test
+        public void logged_out_users_cannot_get_changes() throws Exception {
+                mockMvc.perform(get("/api/ride_request/changes?since=0"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void user_gets_changes_to_their_own_rides() throws Exception {
+
+                long userId = currentUserService.getCurrentUser().getUser().getId();
+
+                Ride ride1 = Ride.builder().id(7L).riderId(userId).day("Tuesday").startTime("2:30PM").endTime("3:15PM").build();
+                RideChanges expected = RideChanges.builder()
+                                .changed(Arrays.asList(ride1))
+                                .deleted(Arrays.asList(4L))
+                                .version(12L)
+                                .build();
+                when(rideChangeService.changesSince(10L, userId)).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ride_request/changes?since=10"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(rideChangeService, times(1)).changesSince(10L, userId);
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "DRIVER" })
+        @Test
+        public void driver_gets_changes_to_all_rides() throws Exception {
+                RideChanges expected = RideChanges.builder()
+                                .changed(new ArrayList<>())
+                                .deleted(new ArrayList<>())
+                                .version(3L)
+                                .build();
+                when(rideChangeService.changesSince(0L, null)).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ride_request/changes"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(rideChangeService, times(1)).changesSince(0L, null);
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        // ASSIGNMENTS
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void users_cannot_get_assignments() throws Exception {
+                mockMvc.perform(get("/api/ride_request/assignments"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "DRIVER" })
+        @Test
+        public void driver_can_get_assignments() throws Exception {
+                java.util.List<RideAssignment> expected = Arrays.asList(
+                                RideAssignment.builder().rideId(1L).shiftId(2L).driverId(3L).build(),
+                                RideAssignment.builder().rideId(4L).build());
+                when(rideAssignmentService.assignAll()).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ride_request/assignments"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(rideAssignmentService, times(1)).assignAll();
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        // BATCH POST
+
+        @Test
+        public void logged_out_users_cannot_post_batch() throws Exception {
+                mockMvc.perform(post("/api/ride_request/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content("[]")
+                                                .with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "DRIVER" })
+        @Test
+        public void logged_in_driver_cannot_post_batch() throws Exception {
+                mockMvc.perform(post("/api/ride_request/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content("[]")
+                                                .with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void a_user_can_post_a_batch_of_rides() throws Exception {
+                // arrange
+
+                long userId = currentUserService.getCurrentUser().getUser().getId();
+
+                Ride incoming1 = Ride.builder()
+                                .id(99L)
+                                .riderId(userId + 5)
+                                .day("Monday")
+                                .course("CMPSC 156")
+                                .startTime("2:00PM")
+                                .endTime("3:15PM")
+                                .dropoffLocation("South Hall")
+                                .pickupLocation("Phelps Hall")
+                                .room("1431")
+                                .build();
+                Ride incoming2 = Ride.builder()
+                                .day("Wednesday")
+                                .course("CMPSC 156")
+                                .startTime("2:00PM")
+                                .endTime("3:15PM")
+                                .dropoffLocation("South Hall")
+                                .pickupLocation("Phelps Hall")
+                                .room("1431")
+                                .build();
+
+                Ride expected1 = Ride.builder()
+                                .riderId(userId)
+                                .student("Fake user")
+                                .day("Monday")
+                                .course("CMPSC 156")
+                                .startTime("2:00PM")
+                                .endTime("3:15PM")
+                                .dropoffLocation("South Hall")
+                                .pickupLocation("Phelps Hall")
+                                .pickupLocationId(3L)
+                                .dropoffLocationId(4L)
+                                .room("1431")
+                                .build();
+                Ride expected2 = Ride.builder()
+                                .riderId(userId)
+                                .student("Fake user")
+                                .day("Wednesday")
+                                .course("CMPSC 156")
+                                .startTime("2:00PM")
+                                .endTime("3:15PM")
+                                .dropoffLocation("South Hall")
+                                .pickupLocation("Phelps Hall")
+                                .pickupLocationId(3L)
+                                .dropoffLocationId(4L)
+                                .room("1431")
+                                .build();
+                java.util.List<Ride> expectedRides = Arrays.asList(expected1, expected2);
+
+                when(rideRepository.saveAll(eq(expectedRides))).thenReturn(expectedRides);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/ride_request/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(Arrays.asList(incoming1, incoming2)))
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(rideRepository, times(1)).saveAll(expectedRides);
+                verify(changeEventBus, times(2)).publish(any(ChangeEvent.class));
+                assertEquals(mapper.writeValueAsString(expectedRides), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void a_batch_with_invalid_rides_is_rejected_as_a_whole() throws Exception {
+                Ride good = Ride.builder().day("Monday").startTime("2:00PM").endTime("3:15PM").build();
+                Ride badDay = Ride.builder().day("Mon").startTime("2:00PM").endTime("3:15PM").build();
+                Ride badTime = Ride.builder().day("Friday").startTime("2:00PM").endTime("15:15").build();
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/ride_request/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(Arrays.asList(good, badDay, badTime)))
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(rideRepository, times(0)).saveAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("ride 1: Invalid day Mon; ride 2: Invalid time 15:15, expected HH:MM(A/P)M", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void an_empty_batch_is_rejected() throws Exception {
+                MvcResult response = mockMvc.perform(
+                                post("/api/ride_request/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content("[]")
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                verify(rideRepository, times(0)).saveAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("A batch must have between 1 and 100 rides, got 0", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void an_oversized_batch_is_rejected() throws Exception {
+                ArrayList<Ride> rides = new ArrayList<>();
+                for (int i = 0; i <= RideController.MAX_BATCH_SIZE; i++) {
+                        rides.add(Ride.builder().day("Monday").startTime("2:00PM").endTime("3:15PM").build());
+                }
+
+                MvcResult response = mockMvc.perform(
+                                post("/api/ride_request/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content(mapper.writeValueAsString(rides))
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                verify(rideRepository, times(0)).saveAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("A batch must have between 1 and 100 rides, got 101", json.get("message"));
+        }
+
+        // OVERLAP DETECTION
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void posting_a_ride_locks_the_rider_before_checking_for_overlaps() throws Exception {
+                long userId = currentUserService.getCurrentUser().getUser().getId();
+
+                // act
+                mockMvc.perform(
+                                post("/api/ride_request/post?day=Monday&course=CMPSC 156&startTime=2:00PM&endTime=3:15PM&pickupLocation=Phelps Hall&dropoffLocation=South Hall&room=1431")
+                                                .with(csrf()))
+                                .andExpect(status().isOk());
+
+                // assert
+                InOrder order = inOrder(userRepository, rideRepository);
+                order.verify(userRepository).findByIdForUpdate(userId);
+                order.verify(rideRepository).findOverlappingByRiderId(userId, 14 * 60, 15 * 60 + 15);
+                order.verify(rideRepository).save(any());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void posting_an_overlapping_ride_is_rejected() throws Exception {
+                long userId = currentUserService.getCurrentUser().getUser().getId();
+
+                Ride existing = Ride.builder()
+                                .id(12L)
+                                .riderId(userId)
+                                .day("Monday")
+                                .startTime("3:00PM")
+                                .endTime("3:30PM")
+                                .build();
+                when(rideRepository.findOverlappingByRiderId(eq(userId), eq(14 * 60), eq(15 * 60 + 15)))
+                                .thenReturn(new ArrayList<>(Arrays.asList(existing)));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/ride_request/post?day=Monday&course=CMPSC 156&startTime=2:00PM&endTime=3:15PM&pickupLocation=Phelps Hall&dropoffLocation=South Hall&room=1431")
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+                verify(rideRepository, times(0)).save(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("RideConflictException", json.get("type"));
+                assertEquals("Ride overlaps ride with id 12 on Monday from 3:00PM to 3:30PM", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void posting_a_ride_with_a_bad_time_is_rejected() throws Exception {
+                mockMvc.perform(
+                                post("/api/ride_request/post?day=Monday&course=CMPSC 156&startTime=2pm&endTime=3:15PM&pickupLocation=Phelps Hall&dropoffLocation=South Hall&room=1431")
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest());
+
+                verify(rideRepository, times(0)).save(any());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void updating_a_ride_does_not_conflict_with_itself() throws Exception {
+                long userId = currentUserService.getCurrentUser().getUser().getId();
+
+                Ride original = Ride.builder()
+                                .id(67L)
+                                .riderId(userId)
+                                .student("CGaucho")
+                                .day("Monday")
+                                .startTime("2:00PM")
+                                .endTime("3:15PM")
+                                .build();
+                Ride edited = Ride.builder()
+                                .id(67L)
+                                .riderId(userId)
+                                .student("CGaucho")
+                                .day("Monday")
+                                .startTime("2:30PM")
+                                .endTime("3:15PM")
+                                .build();
+
+                when(rideRepository.findByIdAndRiderId(eq(67L), eq(userId))).thenReturn(Optional.of(original));
+                when(rideRepository.findOverlappingByRiderId(eq(userId), eq(14 * 60 + 30), eq(15 * 60 + 15)))
+                                .thenReturn(new ArrayList<>(Arrays.asList(original)));
+
+                // act
+                mockMvc.perform(
+                                put("/api/ride_request?id=67")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(edited))
+                                                .with(csrf()))
+                                .andExpect(status().isOk());
+
+                // assert
+                verify(userRepository, times(1)).findByIdForUpdate(userId);
+                verify(rideRepository, times(1)).save(edited);
+        }
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_update_checks_overlaps_for_the_rides_rider() throws Exception {
+                long riderId = 42L;
+
+                Ride original = Ride.builder()
+                                .id(67L)
+                                .riderId(riderId)
+                                .day("Monday")
+                                .startTime("2:00PM")
+                                .endTime("3:15PM")
+                                .build();
+                Ride other = Ride.builder()
+                                .id(68L)
+                                .riderId(riderId)
+                                .day("Tuesday")
+                                .startTime("9:00AM")
+                                .endTime("9:45AM")
+                                .build();
+                Ride edited = Ride.builder()
+                                .day("Tuesday")
+                                .startTime("9:30AM")
+                                .endTime("10:00AM")
+                                .build();
+
+                when(rideRepository.findById(eq(67L))).thenReturn(Optional.of(original));
+                when(rideRepository.findOverlappingByRiderId(eq(riderId), eq(1440 + 9 * 60 + 30), eq(1440 + 10 * 60)))
+                                .thenReturn(new ArrayList<>(Arrays.asList(other)));
+
+                // act
+                mockMvc.perform(
+                                put("/api/ride_request?id=67")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(edited))
+                                                .with(csrf()))
+                                .andExpect(status().isConflict());
+
+                // assert
+                verify(userRepository, times(1)).findByIdForUpdate(riderId);
+                verify(rideRepository, times(0)).save(any());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void a_batch_that_overlaps_itself_is_rejected() throws Exception {
+                Ride ride0 = Ride.builder().day("Monday").startTime("2:00PM").endTime("3:15PM").build();
+                Ride ride1 = Ride.builder().day("Monday").startTime("9:00AM").endTime("11:00AM").build();
+                Ride ride2 = Ride.builder().day("Monday").startTime("10:00AM").endTime("10:30AM").build();
+                Ride ride3 = Ride.builder().day("Monday").startTime("10:45AM").endTime("11:15AM").build();
+                Ride ride4 = Ride.builder().day("Tuesday").startTime("10:00AM").endTime("10:30AM").build();
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/ride_request/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content(mapper.writeValueAsString(Arrays.asList(ride0, ride1, ride2, ride3, ride4)))
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(rideRepository, times(0)).saveAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("rides 1 and 2 overlap; rides 1 and 3 overlap", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void a_batch_that_overlaps_existing_rides_is_rejected() throws Exception {
+                long userId = currentUserService.getCurrentUser().getUser().getId();
+
+                Ride existing = Ride.builder().id(5L).riderId(userId).day("Tuesday").startTime("10:15AM").endTime("10:45AM").build();
+                Ride ride0 = Ride.builder().day("Monday").startTime("10:00AM").endTime("10:30AM").build();
+                Ride ride1 = Ride.builder().day("Tuesday").startTime("10:00AM").endTime("10:30AM").build();
+
+                when(rideRepository.findOverlappingByRiderId(eq(userId), eq(1440 + 600), eq(1440 + 630)))
+                                .thenReturn(new ArrayList<>(Arrays.asList(existing)));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/ride_request/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content(mapper.writeValueAsString(Arrays.asList(ride0, ride1)))
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+                verify(userRepository, times(1)).findByIdForUpdate(userId);
+                verify(rideRepository, times(0)).saveAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Ride overlaps ride with id 5 on Tuesday from 10:15AM to 10:45AM", json.get("message"));
+        }
+}
@@ -4,12 +4,33 @@ import edu.ucsb.cs156.gauchoride.repositories.UserRepository;
 import edu.ucsb.cs156.gauchoride.testconfig.TestConfig;
 import edu.ucsb.cs156.gauchoride.ControllerTestCase;
 import edu.ucsb.cs156.gauchoride.entities.Shift;
+import edu.ucsb.cs156.gauchoride.entities.User;
 import edu.ucsb.cs156.gauchoride.repositories.ShiftRepository;
+import edu.ucsb.cs156.gauchoride.models.Itinerary;
+import edu.ucsb.cs156.gauchoride.models.ItineraryStop;
+import edu.ucsb.cs156.gauchoride.models.ChangeEvent;
+import edu.ucsb.cs156.gauchoride.models.CoverageReport;
+import edu.ucsb.cs156.gauchoride.models.CoverageWindow;
+import edu.ucsb.cs156.gauchoride.models.DriverAvailability;
+import edu.ucsb.cs156.gauchoride.models.Roster;
+import edu.ucsb.cs156.gauchoride.services.ChangeEventBus;
+import edu.ucsb.cs156.gauchoride.services.CollectionVersions;
+import edu.ucsb.cs156.gauchoride.services.CoverageService;
+import edu.ucsb.cs156.gauchoride.services.ItineraryService;
+import edu.ucsb.cs156.gauchoride.services.JsonStreamService;
+import edu.ucsb.cs156.gauchoride.services.RosterService;
+import edu.ucsb.cs156.gauchoride.services.ShiftIndex;
+
+import javax.persistence.EntityManager;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import org.mockito.InOrder;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.BeforeEach;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
@@ -23,13 +44,18 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @WebMvcTest(controllers = ShiftController.class)
-@Import(TestConfig.class)
+@Import({ TestConfig.class, JsonStreamService.class })
 public class ShiftControllerTests extends ControllerTestCase {
 
         @MockBean
@@ -38,6 +64,32 @@ public class ShiftControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        ItineraryService itineraryService;
+
+        @MockBean
+        ChangeEventBus changeEventBus;
+
+        @MockBean
+        CollectionVersions collectionVersions;
+
+        @MockBean
+        ShiftIndex shiftIndex;
+
+        @MockBean
+        CoverageService coverageService;
+
+        @MockBean
+        RosterService rosterService;
+
+        @MockBean
+        EntityManager entityManager;
+
+        @BeforeEach
+        public void stubCollectionVersions() {
+                when(collectionVersions.etag(CollectionVersions.SHIFTS)).thenReturn("\"shifts-4\"");
+        }
+
         // Authorization tests for /api/shift/all
 
         @Test
@@ -291,15 +343,20 @@ public class ShiftControllerTests extends ControllerTestCase {
                 ArrayList<Shift> expectedShifts = new ArrayList<>();
                 expectedShifts.addAll(Arrays.asList(shift1, shift2));
 
-                when(shiftRepository.findAll()).thenReturn(expectedShifts);
+                when(shiftRepository.streamAllByOrderByIdAsc()).thenReturn(expectedShifts.stream());
 
                 // act
-                MvcResult response = mockMvc.perform(get("/api/shift/all"))
-                                .andExpect(status().isOk()).andReturn();
+                MvcResult started = mockMvc.perform(get("/api/shift/all"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk())
+                                .andExpect(content().contentType("application/json")).andReturn();
 
                 // assert
 
-                verify(shiftRepository, times(1)).findAll();
+                verify(shiftRepository, times(1)).streamAllByOrderByIdAsc();
+                verify(shiftRepository, never()).findAll();
+                verify(entityManager, times(expectedShifts.size())).detach(any());
                 String expectedJson = mapper.writeValueAsString(expectedShifts);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -331,15 +388,20 @@ public class ShiftControllerTests extends ControllerTestCase {
                 ArrayList<Shift> expectedShifts = new ArrayList<>();
                 expectedShifts.addAll(Arrays.asList(shift1, shift2));
 
-                when(shiftRepository.findAll()).thenReturn(expectedShifts);
+                when(shiftRepository.streamAllByOrderByIdAsc()).thenReturn(expectedShifts.stream());
 
                 // act
-                MvcResult response = mockMvc.perform(get("/api/shift/all"))
-                                .andExpect(status().isOk()).andReturn();
+                MvcResult started = mockMvc.perform(get("/api/shift/all"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk())
+                                .andExpect(content().contentType("application/json")).andReturn();
 
                 // assert
 
-                verify(shiftRepository, times(1)).findAll();
+                verify(shiftRepository, times(1)).streamAllByOrderByIdAsc();
+                verify(shiftRepository, never()).findAll();
+                verify(entityManager, times(expectedShifts.size())).detach(any());
                 String expectedJson = mapper.writeValueAsString(expectedShifts);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -370,14 +432,19 @@ public class ShiftControllerTests extends ControllerTestCase {
                 ArrayList<Shift> expectedShifts = new ArrayList<>();
                 expectedShifts.addAll(Arrays.asList(shift1, shift2));
                 
-                when(shiftRepository.findAll()).thenReturn(expectedShifts);
+                when(shiftRepository.streamAllByOrderByIdAsc()).thenReturn(expectedShifts.stream());
                 
-                MvcResult response = mockMvc.perform(get("/api/shift/all"))
-                                .andExpect(status().isOk()).andReturn();
+                MvcResult started = mockMvc.perform(get("/api/shift/all"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk())
+                                .andExpect(content().contentType("application/json")).andReturn();
 
                 // assert
 
-                verify(shiftRepository, times(1)).findAll();
+                verify(shiftRepository, times(1)).streamAllByOrderByIdAsc();
+                verify(shiftRepository, never()).findAll();
+                verify(entityManager, times(expectedShifts.size())).detach(any());
                 String expectedJson = mapper.writeValueAsString(expectedShifts);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -386,6 +453,24 @@ public class ShiftControllerTests extends ControllerTestCase {
 
         // POST
 
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_all_shifts_returns_an_etag() throws Exception {
+                mockMvc.perform(get("/api/shift/all"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"shifts-4\""));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_all_shifts_with_current_etag_is_not_modified_without_a_query() throws Exception {
+                mockMvc.perform(get("/api/shift/all").header("If-None-Match", "\"shifts-4\""))
+                                .andExpect(status().isNotModified())
+                                .andExpect(content().string(""));
+
+                verify(shiftRepository, never()).streamAllByOrderByIdAsc();
+        }
+
         @WithMockUser(roles = { "DRIVER" })
         @Test
         public void a_driver_can_post_a_new_shift() throws Exception {
@@ -398,12 +483,12 @@ public class ShiftControllerTests extends ControllerTestCase {
                                 .day("Monday")
                                 .shiftStart("10:30AM")
                                 .shiftEnd("12:30PM")
-                                .driverBackupID(1)
+                                .driverBackupID(2)
                                 .build();
 
                 when(shiftRepository.save(eq(shift1))).thenReturn(shift1);
 
-                String postRequestString = "day=Monday&shiftStart=10:30AM&shiftEnd=12:30PM&driverID="+userId+"&driverBackupID=1";
+                String postRequestString = "day=Monday&shiftStart=10:30AM&shiftEnd=12:30PM&driverID="+userId+"&driverBackupID=2";
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -413,6 +498,8 @@ public class ShiftControllerTests extends ControllerTestCase {
 
                 // assert
                 verify(shiftRepository, times(1)).save(shift1);
+                verify(shiftIndex, times(1)).saved(shift1);
+                verify(changeEventBus, times(1)).publish(ChangeEvent.of("created", shift1));
                 String expectedJson = mapper.writeValueAsString(shift1);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -430,12 +517,12 @@ public class ShiftControllerTests extends ControllerTestCase {
                                 .day("Monday")
                                 .shiftStart("10:30AM")
                                 .shiftEnd("12:30PM")
-                                .driverBackupID(1)
+                                .driverBackupID(2)
                                 .build();
 
                 when(shiftRepository.save(eq(shift1))).thenReturn(shift1);
 
-                String postRequestString = "day=Monday&shiftStart=10:30AM&shiftEnd=12:30PM&driverID="+userId+"&driverBackupID=1";
+                String postRequestString = "day=Monday&shiftStart=10:30AM&shiftEnd=12:30PM&driverID="+userId+"&driverBackupID=2";
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -445,8 +532,420 @@ public class ShiftControllerTests extends ControllerTestCase {
 
                 // assert
                 verify(shiftRepository, times(1)).save(shift1);
+                verify(shiftIndex, times(1)).saved(shift1);
+                verify(changeEventBus, times(1)).publish(ChangeEvent.of("created", shift1));
                 String expectedJson = mapper.writeValueAsString(shift1);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
         }
-}
\ No newline at end of file
+
+        // TIME WINDOW
+
+        @Test
+        public void logged_out_users_cannot_get_window() throws Exception {
+                mockMvc.perform(get("/api/shift/window?day=Tuesday&start=2:00PM&end=3:00PM"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void user_gets_shifts_in_window() throws Exception {
+
+                Shift shift1 = Shift.builder()
+                                .driverID(2)
+                                .day("Tuesday")
+                                .shiftStart("1:00PM")
+                                .shiftEnd("4:00PM")
+                                .driverBackupID(3)
+                                .build();
+
+                ArrayList<Shift> expectedShifts = new ArrayList<>(Arrays.asList(shift1));
+                when(shiftRepository.findOverlapping(eq(1440 + 840), eq(1440 + 900))).thenReturn(expectedShifts);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/shift/window?day=Tuesday&start=2:00PM&end=3:00PM"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(shiftRepository, times(1)).findOverlapping(eq(1440 + 840), eq(1440 + 900));
+                assertEquals(mapper.writeValueAsString(expectedShifts), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void window_rejects_bad_day() throws Exception {
+                MvcResult response = mockMvc.perform(get("/api/shift/window?day=Someday&start=2:00PM&end=3:00PM"))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Invalid day Someday", json.get("message"));
+        }
+
+        // ITINERARY
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void users_cannot_get_itinerary() throws Exception {
+                mockMvc.perform(get("/api/shift/1/itinerary"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "DRIVER" })
+        @Test
+        public void driver_can_get_itinerary() throws Exception {
+                Itinerary expected = Itinerary.builder()
+                                .shiftId(1L)
+                                .driverId(5L)
+                                .stops(Arrays.asList(
+                                                ItineraryStop.builder().rideId(3L).pickup(true).location("Phelps Hall")
+                                                                .day("Tuesday").time("2:00PM").build(),
+                                                ItineraryStop.builder().rideId(3L).pickup(false).location("South Hall")
+                                                                .day("Tuesday").time("2:05PM").build()))
+                                .travelMinutes(5)
+                                .build();
+                when(itineraryService.planShift(1L, false)).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/shift/1/itinerary"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(itineraryService, times(1)).planShift(1L, false);
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_can_get_backup_itinerary() throws Exception {
+                Itinerary expected = Itinerary.builder().shiftId(1L).driverId(6L).stops(new ArrayList<>()).build();
+                when(itineraryService.planShift(1L, true)).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/shift/1/itinerary?backup=true"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(itineraryService, times(1)).planShift(1L, true);
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        // Tests for /api/shift/onDuty
+
+        @Test
+        public void logged_out_users_cannot_get_on_duty() throws Exception {
+                mockMvc.perform(get("/api/shift/onDuty"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void user_can_get_shifts_on_duty_at_a_time() throws Exception {
+                Shift shift1 = Shift.builder()
+                                .id(3L)
+                                .day("Tuesday")
+                                .shiftStart("08:00AM")
+                                .shiftEnd("11:00AM")
+                                .driverID(1)
+                                .driverBackupID(2)
+                                .build();
+                // 2023-05-16 was a Tuesday
+                when(shiftIndex.onDuty(1440 + 9 * 60 + 15)).thenReturn(List.of(shift1));
+
+                MvcResult response = mockMvc.perform(get("/api/shift/onDuty?at=2023-05-16T09:15:00"))
+                                .andExpect(status().isOk()).andReturn();
+
+                verify(shiftIndex, times(1)).onDuty(1440 + 9 * 60 + 15);
+                verify(shiftRepository, never()).findAll();
+                assertEquals(mapper.writeValueAsString(List.of(shift1)), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void on_duty_defaults_to_now() throws Exception {
+                when(shiftIndex.onDuty(anyInt())).thenReturn(List.of());
+
+                mockMvc.perform(get("/api/shift/onDuty"))
+                                .andExpect(status().isOk())
+                                .andExpect(content().string("[]"));
+
+                verify(shiftIndex, times(1)).onDuty(anyInt());
+        }
+
+        // Tests for /api/shift/coverage
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void users_cannot_get_coverage() throws Exception {
+                mockMvc.perform(get("/api/shift/coverage"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_get_coverage() throws Exception {
+                CoverageReport report = CoverageReport.builder()
+                                .driverCapacity(3)
+                                .gaps(List.of(CoverageWindow.builder()
+                                                .startDay("Monday").startTime("2:00AM")
+                                                .endDay("Monday").endTime("8:00AM")
+                                                .startMinuteOfWeek(120).endMinuteOfWeek(480)
+                                                .drivers(0).rides(1).build()))
+                                .oversubscribed(List.of())
+                                .build();
+                when(coverageService.analyzeWeek()).thenReturn(report);
+
+                MvcResult response = mockMvc.perform(get("/api/shift/coverage"))
+                                .andExpect(status().isOk()).andReturn();
+
+                verify(coverageService, times(1)).analyzeWeek();
+                assertEquals(mapper.writeValueAsString(report), response.getResponse().getContentAsString());
+        }
+
+        // Tests for double booking on /api/shift/post
+
+        @WithMockUser(roles = { "DRIVER" })
+        @Test
+        public void posting_a_shift_locks_both_drivers_then_checks_for_overlaps() throws Exception {
+                long userId = currentUserService.getCurrentUser().getUser().getId();
+                when(shiftRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+                mockMvc.perform(
+                                post("/api/shift/post?day=Monday&shiftStart=10:30AM&shiftEnd=12:30PM&driverID=" + userId + "&driverBackupID=7")
+                                                .with(csrf()))
+                                .andExpect(status().isOk());
+
+                InOrder order = inOrder(userRepository, shiftRepository);
+                order.verify(userRepository).findByIdForUpdate(userId);
+                order.verify(userRepository).findByIdForUpdate(7L);
+                // a shift from Sunday night could run this late into Monday
+                order.verify(shiftRepository).findOverlappingByDriverIds(Set.of(userId, 7L), 630 + 10080, 750 + 10080);
+                order.verify(shiftRepository).findOverlappingByDriverIds(Set.of(userId, 7L), 630, 750);
+                order.verify(shiftRepository).save(any());
+        }
+
+        @WithMockUser(roles = { "DRIVER" })
+        @Test
+        public void posting_a_double_booked_shift_is_rejected() throws Exception {
+                long userId = currentUserService.getCurrentUser().getUser().getId();
+
+                Shift existing = Shift.builder()
+                                .id(12L)
+                                .day("Monday")
+                                .shiftStart("12:00PM")
+                                .shiftEnd("2:00PM")
+                                .driverID(7L)
+                                .driverBackupID(userId)
+                                .build();
+                when(shiftRepository.findOverlappingByDriverIds(Set.of(userId, 7L), 630, 750))
+                                .thenReturn(List.of(existing));
+
+                MvcResult response = mockMvc.perform(
+                                post("/api/shift/post?day=Monday&shiftStart=10:30AM&shiftEnd=12:30PM&driverID=" + userId + "&driverBackupID=7")
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                verify(shiftRepository, never()).save(any());
+                verify(shiftIndex, never()).saved(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("ShiftConflictException", json.get("type"));
+                assertEquals("Shift overlaps shift with id 12 on Monday from 12:00PM to 2:00PM, which has the same driver or backup driver",
+                                json.get("message"));
+        }
+
+        @WithMockUser(roles = { "DRIVER" })
+        @Test
+        public void a_shift_past_midnight_on_sunday_is_checked_against_monday() throws Exception {
+                long userId = currentUserService.getCurrentUser().getUser().getId();
+
+                Shift existing = Shift.builder()
+                                .id(13L)
+                                .day("Monday")
+                                .shiftStart("12:30AM")
+                                .shiftEnd("2:00AM")
+                                .driverID(userId)
+                                .driverBackupID(8L)
+                                .build();
+                // Sunday 11:00PM to 1:00AM, a week earlier
+                when(shiftRepository.findOverlappingByDriverIds(Set.of(userId, 7L), 10020 - 10080, 10140 - 10080))
+                                .thenReturn(List.of(existing));
+
+                mockMvc.perform(
+                                post("/api/shift/post?day=Sunday&shiftStart=11:00PM&shiftEnd=1:00AM&driverID=" + userId + "&driverBackupID=7")
+                                                .with(csrf()))
+                                .andExpect(status().isConflict());
+
+                verify(shiftRepository, times(1)).findOverlappingByDriverIds(Set.of(userId, 7L), -60, 60);
+                verify(shiftRepository, never()).save(any());
+        }
+
+        @WithMockUser(roles = { "DRIVER" })
+        @Test
+        public void a_driver_cannot_be_their_own_backup() throws Exception {
+                long userId = currentUserService.getCurrentUser().getUser().getId();
+
+                MvcResult response = mockMvc.perform(
+                                post("/api/shift/post?day=Monday&shiftStart=10:30AM&shiftEnd=12:30PM&driverID=" + userId + "&driverBackupID=" + userId)
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                verify(shiftRepository, never()).save(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("The backup driver can't be the driver of the same shift", json.get("message"));
+        }
+
+        // Tests for /api/shift/roster
+
+        List<DriverAvailability> availability = List.of(
+                        DriverAvailability.builder().driverId(5L).day("Friday").start("12:00PM").end("6:00PM").build(),
+                        DriverAvailability.builder().driverId(6L).day("Friday").start("12:00PM").end("6:00PM").build());
+
+        Roster proposed() {
+                Shift shift = Shift.builder()
+                                .day("Friday")
+                                .shiftStart("2:00PM")
+                                .shiftEnd("4:00PM")
+                                .driverID(5L)
+                                .driverBackupID(6L)
+                                .build();
+                return Roster.builder().shifts(new ArrayList<>(List.of(shift))).demand(2).covered(2).driverHours(4).build();
+        }
+
+        void stubDrivers() {
+                when(userRepository.findByIdForUpdate(5L)).thenReturn(Optional.of(User.builder().id(5L).driver(true).build()));
+                when(userRepository.findByIdForUpdate(6L)).thenReturn(Optional.of(User.builder().id(6L).driver(true).build()));
+        }
+
+        @WithMockUser(roles = { "DRIVER" })
+        @Test
+        public void drivers_cannot_generate_a_roster() throws Exception {
+                mockMvc.perform(post("/api/shift/roster").with(csrf())
+                                .contentType("application/json").content(mapper.writeValueAsString(availability)))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_preview_a_roster() throws Exception {
+                Roster roster = proposed();
+                when(rosterService.generate(eq(availability), eq(12))).thenReturn(roster);
+
+                MvcResult response = mockMvc.perform(post("/api/shift/roster?maxHours=12").with(csrf())
+                                .contentType("application/json").content(mapper.writeValueAsString(availability)))
+                                .andExpect(status().isOk()).andReturn();
+
+                verify(rosterService, times(1)).generate(availability, 12);
+                verify(shiftRepository, never()).save(any());
+                assertEquals(mapper.writeValueAsString(roster), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_save_a_roster() throws Exception {
+                Roster roster = proposed();
+                Shift shift = roster.getShifts().get(0);
+                Shift saved = Shift.builder()
+                                .id(21L)
+                                .day("Friday")
+                                .shiftStart("2:00PM")
+                                .shiftEnd("4:00PM")
+                                .driverID(5L)
+                                .driverBackupID(6L)
+                                .build();
+                stubDrivers();
+                when(rosterService.generate(eq(availability), isNull())).thenReturn(roster);
+                when(shiftRepository.save(shift)).thenReturn(saved);
+
+                MvcResult response = mockMvc.perform(post("/api/shift/roster?save=true").with(csrf())
+                                .contentType("application/json").content(mapper.writeValueAsString(availability)))
+                                .andExpect(status().isOk()).andReturn();
+
+                InOrder order = inOrder(userRepository, rosterService, shiftRepository);
+                order.verify(userRepository).findByIdForUpdate(5L);
+                order.verify(userRepository).findByIdForUpdate(6L);
+                order.verify(rosterService).generate(availability, null);
+                order.verify(shiftRepository).findOverlappingByDriverIds(Set.of(5L, 6L), 4 * 1440 + 840, 4 * 1440 + 960);
+                order.verify(shiftRepository).save(shift);
+                verify(shiftIndex, times(1)).saved(saved);
+                verify(changeEventBus, times(1)).publish(ChangeEvent.of("created", saved));
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(List.of(21), ((List<Map<String, Object>>) json.get("shifts")).stream().map(s -> s.get("id")).toList());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void saving_a_roster_that_double_books_is_rejected() throws Exception {
+                Shift existing = Shift.builder()
+                                .id(12L)
+                                .day("Friday")
+                                .shiftStart("3:00PM")
+                                .shiftEnd("5:00PM")
+                                .driverID(6L)
+                                .driverBackupID(7L)
+                                .build();
+                stubDrivers();
+                when(rosterService.generate(eq(availability), isNull())).thenReturn(proposed());
+                when(shiftRepository.findOverlappingByDriverIds(Set.of(5L, 6L), 4 * 1440 + 840, 4 * 1440 + 960))
+                                .thenReturn(List.of(existing));
+
+                mockMvc.perform(post("/api/shift/roster?save=true").with(csrf())
+                                .contentType("application/json").content(mapper.writeValueAsString(availability)))
+                                .andExpect(status().isConflict());
+
+                verify(shiftRepository, never()).save(any());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void saving_a_roster_for_an_unknown_user_is_rejected() throws Exception {
+                when(userRepository.findByIdForUpdate(5L)).thenReturn(Optional.of(User.builder().id(5L).driver(true).build()));
+                when(userRepository.findByIdForUpdate(6L)).thenReturn(Optional.empty());
+
+                MvcResult response = mockMvc.perform(post("/api/shift/roster?save=true").with(csrf())
+                                .contentType("application/json").content(mapper.writeValueAsString(availability)))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                verify(rosterService, never()).generate(any(), any());
+                verify(shiftRepository, never()).save(any());
+                assertEquals("No user with id 6", responseToJson(response).get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void saving_a_roster_for_a_non_driver_is_rejected() throws Exception {
+                when(userRepository.findByIdForUpdate(5L)).thenReturn(Optional.of(User.builder().id(5L).driver(false).build()));
+
+                MvcResult response = mockMvc.perform(post("/api/shift/roster?save=true").with(csrf())
+                                .contentType("application/json").content(mapper.writeValueAsString(availability)))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                verify(rosterService, never()).generate(any(), any());
+                verify(shiftRepository, never()).save(any());
+                assertEquals("User 5 is not a driver", responseToJson(response).get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void roster_rejects_invalid_availability() throws Exception {
+                List<DriverAvailability> invalid = List.of(
+                                DriverAvailability.builder().driverId(5L).day("Funday").start("12:00PM").end("6:00PM").build());
+
+                MvcResult response = mockMvc.perform(post("/api/shift/roster").with(csrf())
+                                .contentType("application/json").content(mapper.writeValueAsString(invalid)))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                verify(rosterService, never()).generate(any(), any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("BadRequestException", json.get("type"));
+                assertEquals("Invalid day Funday", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void roster_rejects_negative_max_hours() throws Exception {
+                mockMvc.perform(post("/api/shift/roster?maxHours=-1").with(csrf())
+                                .contentType("application/json").content(mapper.writeValueAsString(availability)))
+                                .andExpect(status().isBadRequest());
+
+                verify(rosterService, never()).generate(any(), any());
+        }
+}
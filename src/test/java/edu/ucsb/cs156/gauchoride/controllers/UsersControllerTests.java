@@ -3,19 +3,31 @@ package edu.ucsb.cs156.gauchoride.controllers;
 import edu.ucsb.cs156.gauchoride.ControllerTestCase;
 import edu.ucsb.cs156.gauchoride.entities.User;
 import edu.ucsb.cs156.gauchoride.repositories.UserRepository;
+import edu.ucsb.cs156.gauchoride.models.RoleChangeEvent;
+import edu.ucsb.cs156.gauchoride.models.UserCacheStats;
+import edu.ucsb.cs156.gauchoride.services.CollectionVersions;
+import edu.ucsb.cs156.gauchoride.services.JsonStreamService;
+import edu.ucsb.cs156.gauchoride.services.UserCache;
 import edu.ucsb.cs156.gauchoride.testconfig.TestConfig;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.result.FlashAttributeResultMatchers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -23,18 +35,42 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 
+import javax.persistence.EntityManager;
+
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 @WebMvcTest(controllers = UsersController.class)
-@Import(TestConfig.class)
+@RecordApplicationEvents
+@Import({ TestConfig.class, JsonStreamService.class })
 public class UsersControllerTests extends ControllerTestCase {
 
   @MockBean
   UserRepository userRepository;
 
+  @MockBean
+  CollectionVersions collectionVersions;
+
+  @MockBean
+  UserCache userCache;
+
+  @MockBean
+  EntityManager entityManager;
+
+  @Autowired
+  ApplicationEvents applicationEvents;
+
+  @BeforeEach
+  public void stubCollectionVersions() {
+    when(collectionVersions.etag(CollectionVersions.USERS)).thenReturn("\"users-2\"");
+  }
+
   @Test
   public void users__logged_out() throws Exception {
     mockMvc.perform(get("/api/admin/users"))
@@ -61,22 +97,44 @@ public class UsersControllerTests extends ControllerTestCase {
     ArrayList<User> expectedUsers = new ArrayList<>();
     expectedUsers.addAll(Arrays.asList(u1, u2, u));
 
-    when(userRepository.findAll()).thenReturn(expectedUsers);
+    when(userRepository.streamAllByOrderByIdAsc()).thenReturn(expectedUsers.stream());
     String expectedJson = mapper.writeValueAsString(expectedUsers);
     
     // act
 
-    MvcResult response = mockMvc.perform(get("/api/admin/users"))
-        .andExpect(status().isOk()).andReturn();
+    MvcResult started = mockMvc.perform(get("/api/admin/users"))
+        .andExpect(request().asyncStarted()).andReturn();
+    MvcResult response = mockMvc.perform(asyncDispatch(started))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType("application/json")).andReturn();
 
     // assert
 
-    verify(userRepository, times(1)).findAll();
+    verify(userRepository, times(1)).streamAllByOrderByIdAsc();
+    verify(userRepository, never()).findAll();
+    verify(entityManager, times(3)).detach(any());
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
 
   }
 
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void users__admin_gets_an_etag() throws Exception {
+    mockMvc.perform(get("/api/admin/users"))
+        .andExpect(status().isOk())
+        .andExpect(header().string("ETag", "\"users-2\""));
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void users__not_modified_without_a_query() throws Exception {
+    mockMvc.perform(get("/api/admin/users").header("If-None-Match", "\"users-2\""))
+        .andExpect(status().isNotModified());
+
+    verify(userRepository, never()).streamAllByOrderByIdAsc();
+  }
+
   @WithMockUser(roles = { "ADMIN" })
   @Test
   public void api_users__admin_logged_in__returns_a_user_that_exists() throws Exception {
@@ -141,6 +199,7 @@ public class UsersControllerTests extends ControllerTestCase {
           // assert
           verify(userRepository, times(1)).findById(15L);
           verify(userRepository, times(1)).delete(any());
+          verify(userCache, times(1)).invalidate(user1);
 
           Map<String, Object> json = responseToJson(response);
           assertEquals("User with id 15 deleted", json.get("message"));
@@ -166,58 +225,18 @@ public class UsersControllerTests extends ControllerTestCase {
           assertEquals("User with id 15 not found", json.get("message"));
   }
 
-  @WithMockUser(roles = { "ADMIN", "USER" })
-  @Test
-  public void admin_can_toggle_admin_status_of_a_user_from_false_to_true() throws Exception {
-          // arrange
-          User userBefore = User.builder()
-          .email("cgaucho@ucsb.edu")
-          .id(15L)
-          .admin(false)
-          .build();
-
-          User userAfter = User.builder()
-          .email("cgaucho@ucsb.edu")
-          .id(15L)
-          .admin(true)
-          .build();
-
-    
-          when(userRepository.findById(eq(15L))).thenReturn(Optional.of(userBefore));
-          when(userRepository.save(eq(userAfter))).thenReturn(userAfter);
-          // act
-          MvcResult response = mockMvc.perform(
-                          post("/api/admin/users/toggleAdmin?id=15")
-                                          .with(csrf()))
-                          .andExpect(status().isOk()).andReturn();
-
-          // assert
-          verify(userRepository, times(1)).findById(15L);
-          verify(userRepository, times(1)).save(userAfter);
-
-          Map<String, Object> json = responseToJson(response);
-          assertEquals("User with id 15 has toggled admin status", json.get("message"));
+  private RoleChangeEvent onlyRoleChangeEvent() {
+    List<RoleChangeEvent> events = applicationEvents.stream(RoleChangeEvent.class).collect(Collectors.toList());
+    assertEquals(1, events.size());
+    return events.get(0);
   }
 
   @WithMockUser(roles = { "ADMIN", "USER" })
   @Test
-  public void admin_can_toggle_admin_status_of_a_user_from_true_to_false() throws Exception {
+  public void admin_can_toggle_admin_status_of_a_user() throws Exception {
           // arrange
-          User userBefore = User.builder()
-          .email("cgaucho@ucsb.edu")
-          .id(15L)
-          .admin(true)
-          .build();
-
-          User userAfter = User.builder()
-          .email("cgaucho@ucsb.edu")
-          .id(15L)
-          .admin(false)
-          .build();
+          when(userRepository.toggleAdmin(15L)).thenReturn(1);
 
-    
-          when(userRepository.findById(eq(15L))).thenReturn(Optional.of(userBefore));
-          when(userRepository.save(eq(userAfter))).thenReturn(userAfter);
           // act
           MvcResult response = mockMvc.perform(
                           post("/api/admin/users/toggleAdmin?id=15")
@@ -225,8 +244,10 @@ public class UsersControllerTests extends ControllerTestCase {
                           .andExpect(status().isOk()).andReturn();
 
           // assert
-          verify(userRepository, times(1)).findById(15L);
-          verify(userRepository, times(1)).save(userAfter);
+          verify(userRepository, times(1)).toggleAdmin(15L);
+          verify(userRepository, never()).save(any());
+          verify(collectionVersions, times(1)).changed(CollectionVersions.USERS);
+          assertEquals(RoleChangeEvent.builder().userIds(List.of(15L)).build(), onlyRoleChangeEvent());
 
           Map<String, Object> json = responseToJson(response);
           assertEquals("User with id 15 has toggled admin status", json.get("message"));
@@ -236,10 +257,8 @@ public class UsersControllerTests extends ControllerTestCase {
   @Test
   public void admin_tries_to_toggleAdmin_non_existant_user_and_gets_right_error_message() throws Exception {
           // arrange
-        
-    
-          when(userRepository.findById(eq(15L))).thenReturn(Optional.empty());
-          
+          when(userRepository.toggleAdmin(15L)).thenReturn(0);
+
           // act
           MvcResult response = mockMvc.perform(
                           post("/api/admin/users/toggleAdmin?id=15")
@@ -247,8 +266,8 @@ public class UsersControllerTests extends ControllerTestCase {
                           .andExpect(status().isNotFound()).andReturn();
 
           // assert
-          verify(userRepository, times(1)).findById(15L);
-         
+          verify(userRepository, times(1)).toggleAdmin(15L);
+          assertEquals(0, applicationEvents.stream(RoleChangeEvent.class).count());
 
           Map<String, Object> json = responseToJson(response);
           assertEquals("User with id 15 not found", json.get("message"));
@@ -256,23 +275,10 @@ public class UsersControllerTests extends ControllerTestCase {
 
   @WithMockUser(roles = { "ADMIN", "USER" })
   @Test
-  public void admin_can_toggle_driver_status_of_a_user_from_false_to_true() throws Exception {
+  public void admin_can_toggle_driver_status_of_a_user() throws Exception {
           // arrange
-          User userBefore = User.builder()
-          .email("cgaucho@ucsb.edu")
-          .id(15L)
-          .driver(false)
-          .build();
-
-          User userAfter = User.builder()
-          .email("cgaucho@ucsb.edu")
-          .id(15L)
-          .driver(true)
-          .build();
+          when(userRepository.toggleDriver(15L)).thenReturn(1);
 
-    
-          when(userRepository.findById(eq(15L))).thenReturn(Optional.of(userBefore));
-          when(userRepository.save(eq(userAfter))).thenReturn(userAfter);
           // act
           MvcResult response = mockMvc.perform(
                           post("/api/admin/users/toggleDriver?id=15")
@@ -280,8 +286,10 @@ public class UsersControllerTests extends ControllerTestCase {
                           .andExpect(status().isOk()).andReturn();
 
           // assert
-          verify(userRepository, times(1)).findById(15L);
-          verify(userRepository, times(1)).save(userAfter);
+          verify(userRepository, times(1)).toggleDriver(15L);
+          verify(userRepository, never()).save(any());
+          verify(collectionVersions, times(1)).changed(CollectionVersions.USERS);
+          assertEquals(RoleChangeEvent.builder().userIds(List.of(15L)).build(), onlyRoleChangeEvent());
 
           Map<String, Object> json = responseToJson(response);
           assertEquals("User with id 15 has toggled driver status", json.get("message"));
@@ -289,56 +297,222 @@ public class UsersControllerTests extends ControllerTestCase {
 
   @WithMockUser(roles = { "ADMIN", "USER" })
   @Test
-  public void admin_can_toggle_driver_status_of_a_user_from_true_to_false() throws Exception {
+  public void admin_tries_to_toggleDriver_non_existant_user_and_gets_right_error_message() throws Exception {
           // arrange
-          User userBefore = User.builder()
-          .email("cgaucho@ucsb.edu")
-          .id(15L)
-          .driver(true)
-          .build();
-
-          User userAfter = User.builder()
-          .email("cgaucho@ucsb.edu")
-          .id(15L)
-          .driver(false)
-          .build();
+          when(userRepository.toggleDriver(15L)).thenReturn(0);
 
-    
-          when(userRepository.findById(eq(15L))).thenReturn(Optional.of(userBefore));
-          when(userRepository.save(eq(userAfter))).thenReturn(userAfter);
           // act
           MvcResult response = mockMvc.perform(
                           post("/api/admin/users/toggleDriver?id=15")
                                           .with(csrf()))
-                          .andExpect(status().isOk()).andReturn();
+                          .andExpect(status().isNotFound()).andReturn();
 
           // assert
-          verify(userRepository, times(1)).findById(15L);
-          verify(userRepository, times(1)).save(userAfter);
+          verify(userRepository, times(1)).toggleDriver(15L);
+          assertEquals(0, applicationEvents.stream(RoleChangeEvent.class).count());
 
           Map<String, Object> json = responseToJson(response);
-          assertEquals("User with id 15 has toggled driver status", json.get("message"));
+          assertEquals("User with id 15 not found", json.get("message"));
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void users_cannot_update_roles() throws Exception {
+    mockMvc.perform(post("/api/admin/users/roles?ids=1,2&driver=true").with(csrf()))
+        .andExpect(status().is(403));
+    verify(userRepository, never()).updateRoles(any(), any(), any());
   }
 
   @WithMockUser(roles = { "ADMIN", "USER" })
   @Test
-  public void admin_tries_to_toggleDriver_non_existant_user_and_gets_right_error_message() throws Exception {
-          // arrange
-        
-    
-          when(userRepository.findById(eq(15L))).thenReturn(Optional.empty());
-          
-          // act
-          MvcResult response = mockMvc.perform(
-                          post("/api/admin/users/toggleDriver?id=15")
-                                          .with(csrf()))
-                          .andExpect(status().isNotFound()).andReturn();
+  public void admin_can_make_many_users_drivers_in_one_update() throws Exception {
+    when(userRepository.updateRoles(List.of(3L, 4L, 5L), null, true)).thenReturn(3);
 
-          // assert
-          verify(userRepository, times(1)).findById(15L);
-         
+    MvcResult response = mockMvc.perform(post("/api/admin/users/roles?ids=3,4,5,4&driver=true").with(csrf()))
+        .andExpect(status().isOk()).andReturn();
 
-          Map<String, Object> json = responseToJson(response);
-          assertEquals("User with id 15 not found", json.get("message"));
+    verify(userRepository, times(1)).updateRoles(List.of(3L, 4L, 5L), null, true);
+    verify(collectionVersions, times(1)).changed(CollectionVersions.USERS);
+    assertEquals(RoleChangeEvent.builder().userIds(List.of(3L, 4L, 5L)).driver(true).build(), onlyRoleChangeEvent());
+    assertEquals("Updated roles of 3 users", responseToJson(response).get("message"));
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void update_roles_needs_a_role() throws Exception {
+    MvcResult response = mockMvc.perform(post("/api/admin/users/roles?ids=3,4").with(csrf()))
+        .andExpect(status().isBadRequest()).andReturn();
+
+    assertEquals("Give admin, driver or both", responseToJson(response).get("message"));
+    verify(userRepository, never()).updateRoles(any(), any(), any());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void update_roles_limits_the_number_of_ids() throws Exception {
+    String ids = LongStream.rangeClosed(1, UsersController.MAX_ROLE_UPDATE + 1)
+        .mapToObj(Long::toString).collect(Collectors.joining(","));
+
+    MvcResult response = mockMvc.perform(post("/api/admin/users/roles").param("ids", ids).param("admin", "false")
+        .with(csrf()))
+        .andExpect(status().isBadRequest()).andReturn();
+
+    assertEquals("Between 1 and 500 ids are needed, got 501", responseToJson(response).get("message"));
+    verify(userRepository, never()).updateRoles(any(), any(), any());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void users_cannot_get_cache_stats() throws Exception {
+    mockMvc.perform(get("/api/admin/users/cache"))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void admin_can_get_cache_stats() throws Exception {
+    UserCacheStats stats = UserCacheStats.builder()
+        .size(3).maxSize(10000).hits(90).misses(10).hitRate(0.9).evictions(1).build();
+    when(userCache.stats()).thenReturn(stats);
+
+    MvcResult response = mockMvc.perform(get("/api/admin/users/cache"))
+        .andExpect(status().isOk()).andReturn();
+
+    assertEquals(mapper.writeValueAsString(stats), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void users_cannot_page_through_users() throws Exception {
+    mockMvc.perform(get("/api/admin/users/page"))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void admin_gets_the_only_page_with_an_exact_total() throws Exception {
+    User user1 = User.builder().email("cgaucho@ucsb.edu").id(15L).build();
+    User user2 = User.builder().email("ldelplaya@ucsb.edu").id(16L).build();
+    when(userRepository.search(eq(0L), eq(null), eq(null), eq(PageRequest.of(0, 26))))
+        .thenReturn(List.of(user1, user2));
+
+    MvcResult started = mockMvc.perform(get("/api/admin/users/page"))
+        .andExpect(request().asyncStarted()).andReturn();
+    MvcResult response = mockMvc.perform(asyncDispatch(started))
+        .andExpect(status().isOk()).andReturn();
+
+    Map<String, Object> expected = new LinkedHashMap<>();
+    expected.put("content", List.of(user1, user2));
+    expected.put("nextCursor", null);
+    expected.put("estimatedTotal", 2);
+    assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    verify(userRepository, never()).maxId();
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void admin_filters_by_role_and_gets_an_estimated_total() throws Exception {
+    User user1 = User.builder().email("cgaucho@ucsb.edu").id(20L).driver(true).build();
+    User user2 = User.builder().email("cgaucho2@ucsb.edu").id(30L).driver(true).build();
+    User user3 = User.builder().email("cgaucho3@ucsb.edu").id(40L).driver(true).build();
+    when(userRepository.search(eq(10L), eq(null), eq(true), eq(PageRequest.of(0, 3))))
+        .thenReturn(List.of(user1, user2, user3));
+    when(userRepository.maxId()).thenReturn(210L);
+
+    MvcResult started = mockMvc.perform(get("/api/admin/users/page?driver=true&cursor=10&size=2"))
+        .andExpect(request().asyncStarted()).andReturn();
+    MvcResult response = mockMvc.perform(asyncDispatch(started))
+        .andExpect(status().isOk()).andReturn();
+
+    // 2 matches among ids 11..30, so about 21 up to id 210
+    Map<String, Object> expected = new LinkedHashMap<>();
+    expected.put("content", List.of(user1, user2));
+    expected.put("nextCursor", 30);
+    expected.put("estimatedTotal", 21);
+    assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void admin_searches_emails_then_names() throws Exception {
+    User user1 = User.builder().email("cg_a%u@ucsb.edu").id(20L).driver(true).build();
+    User user2 = User.builder().email("chris@ucsb.edu").fullName("CG_a%U One").id(30L).driver(true).build();
+    User user3 = User.builder().email("carl@ucsb.edu").fullName("CG_a%U Two").id(10L).driver(true).build();
+    when(userRepository.searchByEmailKey(eq("cg!_a!%u%"), eq(""), eq(0L), eq(null), eq(true), eq(PageRequest.of(0, 3))))
+        .thenReturn(List.of(user1));
+    when(userRepository.searchByNameKey(eq("cg!_a!%u%"), eq(""), eq(0L), eq(null), eq(true), eq(PageRequest.of(0, 2))))
+        .thenReturn(List.of(user2, user3));
+    when(userRepository.countByEmailKey("cg!_a!%u%", null, true)).thenReturn(1L);
+    when(userRepository.countByNameKey("cg!_a!%u%", null, true)).thenReturn(4L);
+
+    MvcResult started = mockMvc.perform(get("/api/admin/users/page?driver=true&size=2")
+        .param("q", " CG_a%U "))
+        .andExpect(request().asyncStarted()).andReturn();
+    MvcResult response = mockMvc.perform(asyncDispatch(started))
+        .andExpect(status().isOk()).andReturn();
+
+    Map<String, Object> expected = new LinkedHashMap<>();
+    expected.put("content", List.of(user1, user2));
+    // negative: carry on among the names
+    expected.put("nextCursor", -30);
+    expected.put("estimatedTotal", 5);
+    assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    verify(userRepository, never()).maxId();
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void admin_search_that_fits_on_one_page_is_not_counted() throws Exception {
+    User user1 = User.builder().email("cgaucho@ucsb.edu").id(20L).build();
+    when(userRepository.searchByEmailKey(eq("cg%"), eq(""), eq(0L), eq(null), eq(null), eq(PageRequest.of(0, 26))))
+        .thenReturn(List.of(user1));
+
+    MvcResult started = mockMvc.perform(get("/api/admin/users/page?q=cg"))
+        .andExpect(request().asyncStarted()).andReturn();
+    MvcResult response = mockMvc.perform(asyncDispatch(started))
+        .andExpect(status().isOk()).andReturn();
+
+    Map<String, Object> expected = new LinkedHashMap<>();
+    expected.put("content", List.of(user1));
+    expected.put("nextCursor", null);
+    expected.put("estimatedTotal", 1);
+    assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    verify(userRepository, never()).countByEmailKey(any(), any(), any());
+    verify(userRepository, never()).countByNameKey(any(), any(), any());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void admin_gets_the_next_page_of_names() throws Exception {
+    User user2 = User.builder().email("chris@ucsb.edu").fullName("CG_a%U One").id(30L).driver(true).build();
+    user2.computeKeys();
+    User user3 = User.builder().email("carl@ucsb.edu").fullName("CG_a%U Two").id(10L).driver(true).build();
+    when(userRepository.findById(30L)).thenReturn(Optional.of(user2));
+    when(userRepository.searchByNameKey(eq("cg%"), eq("cg_a%u one"), eq(30L), eq(null), eq(null), eq(PageRequest.of(0, 3))))
+        .thenReturn(List.of(user3));
+
+    MvcResult started = mockMvc.perform(get("/api/admin/users/page?q=cg&cursor=-30&size=2"))
+        .andExpect(request().asyncStarted()).andReturn();
+    MvcResult response = mockMvc.perform(asyncDispatch(started))
+        .andExpect(status().isOk()).andReturn();
+
+    Map<String, Object> expected = new LinkedHashMap<>();
+    expected.put("content", List.of(user3));
+    expected.put("nextCursor", null);
+    // counted on the first page only
+    expected.put("estimatedTotal", null);
+    assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    verify(userRepository, never()).searchByEmailKey(any(), any(), anyLong(), any(), any(), any());
+    verify(userRepository, never()).countByEmailKey(any(), any(), any());
+    verify(userRepository, never()).countByNameKey(any(), any(), any());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void admin_gets_400_when_the_cursor_user_is_gone() throws Exception {
+    when(userRepository.findById(30L)).thenReturn(Optional.empty());
+
+    mockMvc.perform(get("/api/admin/users/page?q=cg&cursor=30"))
+        .andExpect(status().isBadRequest());
   }
 }
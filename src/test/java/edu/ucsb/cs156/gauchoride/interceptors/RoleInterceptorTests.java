@@ -14,6 +14,7 @@ import org.springframework.security.oauth2.core.user.OAuth2User;
 import edu.ucsb.cs156.gauchoride.entities.User;
 import edu.ucsb.cs156.gauchoride.ControllerTestCase;
 import edu.ucsb.cs156.gauchoride.repositories.UserRepository;
+import edu.ucsb.cs156.gauchoride.services.UserCache;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -21,6 +22,7 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
 import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
 
 import java.util.Collection;
 import java.util.Map;
@@ -35,6 +37,9 @@ import static org.mockito.Mockito.times;
 
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 
 @SpringBootTest
 @AutoConfigureMockMvc
@@ -46,8 +51,14 @@ public class RoleInterceptorTests extends ControllerTestCase {
         @Autowired
         private RequestMappingHandlerMapping mapping;
 
+        @Autowired
+        UserCache userCache;
+
         @BeforeEach
         public void mockLogin() {
+                // users cached by an earlier test came from a different mock repository
+                userCache.invalidateAll();
+
                 Map<String, Object> attributes = new HashMap<>();
                 attributes.put("sub", "sub");
                 attributes.put("name", "name");
@@ -206,4 +217,119 @@ public class RoleInterceptorTests extends ControllerTestCase {
                 assertTrue(role_driver, "ROLE_DRIVER should be in roles list");
                 assertTrue(role_member, "ROLE_MEMBER should be in roles list");
         }
-}
\ No newline at end of file
+
+        @Test
+        public void reuses_authorities_until_role_epoch_changes() throws Exception {
+                User user = User.builder()
+                                .email("cgaucho@ucsb.edu")
+                                .id(15L)
+                                .admin(false)
+                                .driver(true)
+                                .build();
+                when(userRepository.findByEmail("cgaucho@ucsb.edu")).thenReturn(Optional.of(user));
+
+                MockHttpSession session = new MockHttpSession();
+                MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/currentUser");
+                request.setSession(session);
+                HandlerExecutionChain chain = mapping.getHandler(request);
+                MockHttpServletResponse response = new MockHttpServletResponse();
+
+                assert chain != null;
+                HandlerInterceptor roleInterceptor = chain.getInterceptorList()
+                                .stream()
+                                .filter(RoleInterceptor.class::isInstance)
+                                .findFirst()
+                                .get();
+
+                roleInterceptor.preHandle(request, response, chain.getHandler());
+                Authentication first = SecurityContextHolder.getContext().getAuthentication();
+
+                // same session, nothing changed: the authentication is left alone
+                roleInterceptor.preHandle(request, response, chain.getHandler());
+                assertSame(first, SecurityContextHolder.getContext().getAuthentication());
+
+                // the user is made an admin; the next request picks it up
+                User promoted = User.builder()
+                                .email("cgaucho@ucsb.edu")
+                                .id(15L)
+                                .admin(true)
+                                .driver(true)
+                                .roleEpoch(1L)
+                                .build();
+                when(userRepository.findByEmail("cgaucho@ucsb.edu")).thenReturn(Optional.of(promoted));
+                userCache.invalidate(promoted);
+
+                roleInterceptor.preHandle(request, response, chain.getHandler());
+                Authentication second = SecurityContextHolder.getContext().getAuthentication();
+                assertNotSame(first, second);
+                assertTrue(second.getAuthorities().stream()
+                                .anyMatch(grantedAuth -> grantedAuth.getAuthority().equals("ROLE_ADMIN")));
+                verify(userRepository, times(2)).findByEmail("cgaucho@ucsb.edu");
+        }
+
+        @Test
+        public void recomputes_when_session_belongs_to_another_email() throws Exception {
+                User user = User.builder()
+                                .email("cgaucho@ucsb.edu")
+                                .id(15L)
+                                .admin(false)
+                                .driver(false)
+                                .build();
+                when(userRepository.findByEmail("cgaucho@ucsb.edu")).thenReturn(Optional.of(user));
+
+                MockHttpSession session = new MockHttpSession();
+                session.setAttribute(RoleInterceptor.SEEN_ROLES,
+                                new RoleInterceptor.SeenRoles("other@ucsb.edu", 15L, 0L));
+                MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/currentUser");
+                request.setSession(session);
+                HandlerExecutionChain chain = mapping.getHandler(request);
+
+                assert chain != null;
+                HandlerInterceptor roleInterceptor = chain.getInterceptorList()
+                                .stream()
+                                .filter(RoleInterceptor.class::isInstance)
+                                .findFirst()
+                                .get();
+
+                roleInterceptor.preHandle(request, new MockHttpServletResponse(), chain.getHandler());
+
+                assertFalse(SecurityContextHolder.getContext().getAuthentication().getAuthorities().stream()
+                                .anyMatch(grantedAuth -> grantedAuth.getAuthority().equals("ROLE_ADMIN")));
+                assertEquals(new RoleInterceptor.SeenRoles("cgaucho@ucsb.edu", 15L, 0L),
+                                session.getAttribute(RoleInterceptor.SEEN_ROLES));
+        }
+
+        @Test
+        public void recomputes_when_the_rows_role_epoch_moved_elsewhere() throws Exception {
+                // e.g. changed by another instance, or before a restart: nothing here was invalidated
+                User user = User.builder()
+                                .email("cgaucho@ucsb.edu")
+                                .id(15L)
+                                .admin(false)
+                                .driver(false)
+                                .roleEpoch(3L)
+                                .build();
+                when(userRepository.findByEmail("cgaucho@ucsb.edu")).thenReturn(Optional.of(user));
+
+                MockHttpSession session = new MockHttpSession();
+                session.setAttribute(RoleInterceptor.SEEN_ROLES,
+                                new RoleInterceptor.SeenRoles("cgaucho@ucsb.edu", 15L, 2L));
+                MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/currentUser");
+                request.setSession(session);
+                HandlerExecutionChain chain = mapping.getHandler(request);
+
+                assert chain != null;
+                HandlerInterceptor roleInterceptor = chain.getInterceptorList()
+                                .stream()
+                                .filter(RoleInterceptor.class::isInstance)
+                                .findFirst()
+                                .get();
+
+                roleInterceptor.preHandle(request, new MockHttpServletResponse(), chain.getHandler());
+
+                assertFalse(SecurityContextHolder.getContext().getAuthentication().getAuthorities().stream()
+                                .anyMatch(grantedAuth -> grantedAuth.getAuthority().equals("ROLE_ADMIN")));
+                assertEquals(new RoleInterceptor.SeenRoles("cgaucho@ucsb.edu", 15L, 3L),
+                                session.getAttribute(RoleInterceptor.SEEN_ROLES));
+        }
+}
@@ -0,0 +1,124 @@
+package edu.ucsb.cs156.gauchoride.repositories;
+
+import edu.ucsb.cs156.gauchoride.entities.Location;
+import edu.ucsb.cs156.gauchoride.entities.Ride;
+import edu.ucsb.cs156.gauchoride.services.CollectionVersions;
+import edu.ucsb.cs156.gauchoride.services.LocationDictionary;
+import edu.ucsb.cs156.gauchoride.services.RideChangeService;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest
+@Import({ LocationDictionary.class, RideChangeService.class, CollectionVersions.class })
+public class RideSpecificationsTests {
+
+  @Autowired
+  RideRepository rideRepository;
+
+  @Autowired
+  LocationDictionary locationDictionary;
+
+  @Autowired
+  LocationRepository locationRepository;
+
+  @Autowired
+  TestEntityManager entityManager;
+
+  Ride tuesday;
+  Ride tuesdayEvening;
+  Ride mondayLate;
+  Ride wednesday;
+
+  private Ride ride(long riderId, String day, String start, String end, String pickup, String course) {
+    return Ride.builder()
+        .riderId(riderId)
+        .day(day)
+        .startTime(start)
+        .endTime(end)
+        .pickupLocationId(locationDictionary.intern(pickup).getId())
+        .dropoffLocationId(locationDictionary.intern("South Hall").getId())
+        .course(course)
+        .build();
+  }
+
+  @BeforeEach
+  public void setup() {
+    tuesday = rideRepository.save(ride(1, "Tuesday", "2:00PM", "3:15PM", "Phelps Hall", "CMPSC 156"));
+    tuesdayEvening = rideRepository.save(ride(2, "Tuesday", "7:00PM", "8:00PM", " Phelps Hall ", "CMPSC 8"));
+    mondayLate = rideRepository.save(ride(1, "Monday", "11:30PM", "12:30AM", "Library", "CMPSC 156"));
+    wednesday = rideRepository.save(ride(2, "Wednesday", "2:00PM", "3:15PM", "Library", "CMPSC 156"));
+  }
+
+  private List<Long> search(Specification<Ride> spec) {
+    return rideRepository.findAll(spec, Sort.by("startMinuteOfWeek")).stream()
+        .map(Ride::getId)
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  public void startsOnDay_excludes_rides_from_the_day_before() {
+    assertEquals(List.of(tuesday.getId(), tuesdayEvening.getId()),
+        search(RideSpecifications.startsOnDay(1)));
+  }
+
+  @Test
+  public void overlaps_includes_rides_crossing_midnight() {
+    // Tuesday 12:00AM to 1:00AM
+    assertEquals(List.of(mondayLate.getId()), search(RideSpecifications.overlaps(1440, 1500)));
+  }
+
+  @Test
+  public void overlaps_wraps_around_the_end_of_the_week() {
+    Ride sundayLate = rideRepository.save(ride(3, "Sunday", "11:30PM", "12:30AM", "Library", "CMPSC 8"));
+    Ride mondayEarly = rideRepository.save(ride(3, "Monday", "12:00AM", "12:45AM", "Library", "CMPSC 8"));
+    // Monday 12:00AM to 12:15AM
+    assertEquals(List.of(mondayEarly.getId(), sundayLate.getId()), search(RideSpecifications.overlaps(0, 15)));
+    // Sunday 11:45PM to Monday 12:15AM
+    assertEquals(List.of(mondayEarly.getId(), sundayLate.getId()), search(RideSpecifications.overlaps(10065, 10095)));
+  }
+
+  @Test
+  public void location_names_are_read_from_the_location_table() {
+    entityManager.flush();
+    entityManager.clear();
+    assertEquals("Phelps Hall", rideRepository.findById(tuesdayEvening.getId()).get().getPickupLocation());
+    assertEquals("South Hall", rideRepository.findById(tuesdayEvening.getId()).get().getDropoffLocation());
+
+    Location phelps = locationDictionary.lookup("Phelps Hall").get();
+    locationRepository.save(Location.builder().id(phelps.getId()).name("Phelps").build());
+    entityManager.flush();
+    entityManager.clear();
+    assertEquals("Phelps", rideRepository.findById(tuesday.getId()).get().getPickupLocation());
+  }
+
+  @Test
+  public void rides_sort_by_location_name() {
+    entityManager.flush();
+    entityManager.clear();
+    List<Long> ids = rideRepository.findAll(Specification.where(null), Sort.by("pickupLocation").and(Sort.by("id"))).stream()
+        .map(Ride::getId)
+        .collect(Collectors.toList());
+    assertEquals(List.of(mondayLate.getId(), wednesday.getId(), tuesday.getId(), tuesdayEvening.getId()), ids);
+  }
+
+  @Test
+  public void filters_combine() {
+    Specification<Ride> spec = Specification.where(RideSpecifications.riderIs(1))
+        .and(RideSpecifications.courseIs("CMPSC 156"))
+        .and(RideSpecifications.pickupLocationIs(locationDictionary.lookup("Phelps Hall").get().getId()))
+        .and(RideSpecifications.dropoffLocationIs(locationDictionary.lookup("South Hall").get().getId()));
+    assertEquals(List.of(tuesday.getId()), search(spec));
+  }
+}
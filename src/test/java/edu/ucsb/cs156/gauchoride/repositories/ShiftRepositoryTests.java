@@ -0,0 +1,82 @@
+package edu.ucsb.cs156.gauchoride.repositories;
+
+import edu.ucsb.cs156.gauchoride.entities.Shift;
+import edu.ucsb.cs156.gauchoride.services.CollectionVersions;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@Import(CollectionVersions.class)
+public class ShiftRepositoryTests {
+
+  @Autowired
+  ShiftRepository shiftRepository;
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  Shift mondayMorning;
+  Shift mondayLunch;
+  Shift tuesdayMorning;
+
+  Shift save(String day, String start, String end, long driver, long backup) {
+    return shiftRepository.save(Shift.builder().day(day).shiftStart(start).shiftEnd(end)
+        .driverID(driver).driverBackupID(backup).build());
+  }
+
+  @BeforeEach
+  public void setup() {
+    mondayMorning = save("Monday", "8:00AM", "11:00AM", 1, 2);
+    mondayLunch = save("Monday", "11:00AM", "1:00PM", 3, 1);
+    tuesdayMorning = save("Tuesday", "8:00AM", "11:00AM", 1, 4);
+  }
+
+  List<Long> ids(List<Shift> shifts) {
+    return shifts.stream().map(Shift::getId).collect(Collectors.toList());
+  }
+
+  @Test
+  public void test_findOverlappingByDriverIds_matches_drivers_and_backups() {
+    // 10:00AM to 12:00PM on Monday
+    assertEquals(List.of(mondayMorning.getId(), mondayLunch.getId()),
+        ids(shiftRepository.findOverlappingByDriverIds(List.of(1L), 600, 720)));
+    assertEquals(List.of(mondayMorning.getId()),
+        ids(shiftRepository.findOverlappingByDriverIds(List.of(2L, 5L), 600, 720)));
+    assertEquals(List.of(mondayLunch.getId()),
+        ids(shiftRepository.findOverlappingByDriverIds(List.of(3L), 600, 720)));
+    assertEquals(List.of(), shiftRepository.findOverlappingByDriverIds(List.of(4L), 600, 720));
+  }
+
+  @Test
+  public void test_findOverlappingByDriverIds_windows_are_half_open() {
+    // 11:00AM on Monday is when one shift ends and the next starts
+    assertEquals(List.of(mondayLunch.getId()),
+        ids(shiftRepository.findOverlappingByDriverIds(List.of(1L), 660, 700)));
+    assertEquals(List.of(mondayMorning.getId()),
+        ids(shiftRepository.findOverlappingByDriverIds(List.of(1L), 420, 480 + 1)));
+    assertEquals(List.of(), shiftRepository.findOverlappingByDriverIds(List.of(1L), 420, 480));
+  }
+
+  private String plan(String sql) {
+    return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class).toUpperCase();
+  }
+
+  @Test
+  public void test_overlap_by_driver_uses_its_index() {
+    assertTrue(plan("SELECT * FROM shift WHERE driverid = 1 AND start_minute_of_week > -840 AND start_minute_of_week < 720")
+        .contains("SHIFT_DRIVER_START_MINUTE_IDX"));
+    assertTrue(plan("SELECT * FROM shift WHERE driver_backupid = 1 AND start_minute_of_week > -840 AND start_minute_of_week < 720")
+        .contains("SHIFT_BACKUP_START_MINUTE_IDX"));
+  }
+}
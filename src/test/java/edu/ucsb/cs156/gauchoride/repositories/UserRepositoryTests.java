@@ -0,0 +1,182 @@
+package edu.ucsb.cs156.gauchoride.repositories;
+
+import edu.ucsb.cs156.gauchoride.entities.User;
+import edu.ucsb.cs156.gauchoride.services.CollectionVersions;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@Import(CollectionVersions.class)
+public class UserRepositoryTests {
+
+  @Autowired
+  UserRepository userRepository;
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  TestEntityManager entityManager;
+
+  User cgaucho;
+
+  @BeforeEach
+  public void setup() {
+    cgaucho = userRepository.save(User.builder()
+        .email("CGaucho@ucsb.edu")
+        .googleSub("1001")
+        .fullName("Chris Gaucho")
+        .build());
+  }
+
+  @Test
+  public void test_findByEmail_ignores_case_and_spaces() {
+    assertEquals(cgaucho.getId(), userRepository.findByEmail("cgaucho@ucsb.edu").get().getId());
+    assertEquals(cgaucho.getId(), userRepository.findByEmail(" CGAUCHO@UCSB.EDU ").get().getId());
+    assertFalse(userRepository.findByEmail("ldelplaya@ucsb.edu").isPresent());
+  }
+
+  @Test
+  public void test_email_key_follows_email_changes() {
+    cgaucho.setEmail("chris@ucsb.edu");
+    userRepository.save(cgaucho);
+    userRepository.findAll(); // flush
+
+    assertTrue(userRepository.findByEmail("Chris@ucsb.edu").isPresent());
+    assertFalse(userRepository.findByEmail("cgaucho@ucsb.edu").isPresent());
+  }
+
+  @Test
+  public void test_findByGoogleSub() {
+    assertEquals(cgaucho.getId(), userRepository.findByGoogleSub("1001").get().getId());
+    assertFalse(userRepository.findByGoogleSub("1002").isPresent());
+  }
+
+  @Test
+  public void test_email_differing_only_in_case_is_rejected() {
+    assertThrows(DataIntegrityViolationException.class, () -> userRepository.save(User.builder()
+        .email("cgaucho@UCSB.edu")
+        .googleSub("1002")
+        .build()));
+  }
+
+  @Test
+  public void test_googleSub_is_unique() {
+    assertThrows(DataIntegrityViolationException.class, () -> userRepository.save(User.builder()
+        .email("other@ucsb.edu")
+        .googleSub("1001")
+        .build()));
+  }
+
+  @Test
+  public void test_search_by_prefix_and_role() {
+    User ldelplaya = userRepository.save(User.builder()
+        .email("ldelplaya@ucsb.edu").fullName("Lauren Del Playa").driver(true).build());
+    User cgaucho2 = userRepository.save(User.builder()
+        .email("cgaucho2@ucsb.edu").fullName("Carl 100% Gaucho").admin(true).build());
+    Pageable limit = PageRequest.of(0, 10);
+
+    assertEquals(List.of(cgaucho.getId(), ldelplaya.getId(), cgaucho2.getId()),
+        ids(userRepository.search(0, null, null, limit)));
+    assertEquals(List.of(ldelplaya.getId()), ids(userRepository.search(0, null, true, limit)));
+    assertEquals(List.of(ldelplaya.getId(), cgaucho2.getId()), ids(userRepository.search(cgaucho.getId(), null, null, limit)));
+    assertEquals(List.of(cgaucho.getId()), ids(userRepository.search(0, null, null, PageRequest.of(0, 1))));
+
+    // in key order: '2' sorts before '@'
+    assertEquals(List.of(cgaucho2.getId(), cgaucho.getId()),
+        ids(userRepository.searchByEmailKey("cgaucho%", "", 0, null, null, limit)));
+    assertEquals(List.of(cgaucho.getId()),
+        ids(userRepository.searchByEmailKey("cgaucho%", "cgaucho2@ucsb.edu", cgaucho2.getId(), null, null, limit)));
+    assertEquals(List.of(cgaucho2.getId()), ids(userRepository.searchByEmailKey("c%", "", 0, true, false, limit)));
+    assertEquals(List.of(), ids(userRepository.searchByEmailKey("lauren d%", "", 0, null, null, limit)));
+    assertEquals(List.of(ldelplaya.getId()), ids(userRepository.searchByNameKey("lauren d%", "", 0, null, null, limit)));
+    // already found by email
+    assertEquals(List.of(), ids(userRepository.searchByNameKey("c%", "", 0, null, null, limit)));
+    assertEquals(List.of(), ids(userRepository.searchByNameKey("carl 100!%!_%", "", 0, null, null, limit)));
+    assertEquals(List.of(cgaucho2.getId()), ids(userRepository.searchByNameKey("carl 100!%%", "", 0, null, null, limit)));
+    assertEquals(2, userRepository.countByEmailKey("cgaucho%", null, null));
+    assertEquals(0, userRepository.countByNameKey("c%", null, null));
+    assertEquals(1, userRepository.countByNameKey("lauren%", null, true));
+    assertEquals(cgaucho2.getId(), userRepository.maxId());
+  }
+
+  @Test
+  public void test_search_by_name_key_pages_through_ties_in_id_order() {
+    User other = userRepository.save(User.builder().email("xg@ucsb.edu").fullName("Chris Gaucho").build());
+    Pageable limit = PageRequest.of(0, 10);
+
+    assertEquals(List.of(cgaucho.getId(), other.getId()),
+        ids(userRepository.searchByNameKey("chris%", "", 0, null, null, limit)));
+    assertEquals(List.of(other.getId()),
+        ids(userRepository.searchByNameKey("chris%", "chris gaucho", cgaucho.getId(), null, null, limit)));
+    assertEquals(2, userRepository.countByNameKey("chris%", null, null));
+  }
+
+  @Test
+  public void test_role_updates_are_single_statements() {
+    User ldelplaya = userRepository.save(User.builder()
+        .email("ldelplaya@ucsb.edu").admin(true).driver(false).build());
+    User cgaucho2 = userRepository.save(User.builder()
+        .email("cgaucho2@ucsb.edu").admin(false).driver(false).build());
+    entityManager.flush();
+
+    assertEquals(2, userRepository.updateRoles(List.of(ldelplaya.getId(), cgaucho2.getId()), null, true));
+    assertEquals(1, userRepository.toggleAdmin(cgaucho2.getId()));
+    assertEquals(1, userRepository.toggleAdmin(ldelplaya.getId()));
+    assertEquals(0, userRepository.toggleDriver(-1));
+    entityManager.clear();
+
+    User ldelplayaAfter = userRepository.findById(ldelplaya.getId()).get();
+    assertFalse(ldelplayaAfter.getAdmin());
+    assertTrue(ldelplayaAfter.getDriver());
+    assertEquals(2L, ldelplayaAfter.getRoleEpoch());
+    User cgaucho2After = userRepository.findById(cgaucho2.getId()).get();
+    assertTrue(cgaucho2After.getAdmin());
+    assertTrue(cgaucho2After.getDriver());
+    assertEquals(2L, cgaucho2After.getRoleEpoch());
+    assertFalse(userRepository.findById(cgaucho.getId()).get().getDriver());
+  }
+
+  private static List<Long> ids(List<User> users) {
+    return users.stream().map(User::getId).collect(Collectors.toList());
+  }
+
+  // H2 names the index it will use in the plan; a scan would show the
+  // primary key or table scan instead
+
+  private String plan(String sql) {
+    return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class).toUpperCase();
+  }
+
+  @Test
+  public void test_lookup_by_email_key_uses_its_index() {
+    assertTrue(plan("SELECT * FROM users WHERE email_key = 'cgaucho@ucsb.edu'").contains("USERS_EMAIL_KEY_IDX"));
+  }
+
+  @Test
+  public void test_name_prefix_search_uses_its_index() {
+    assertTrue(plan("SELECT * FROM users WHERE name_key LIKE 'cg%'").contains("USERS_NAME_KEY_IDX"));
+  }
+
+  @Test
+  public void test_lookup_by_google_sub_uses_its_index() {
+    assertTrue(plan("SELECT * FROM users WHERE google_sub = '1001'").contains("USERS_GOOGLE_SUB_IDX"));
+  }
+}
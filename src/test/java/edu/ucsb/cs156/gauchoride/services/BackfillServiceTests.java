@@ -0,0 +1,149 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import edu.ucsb.cs156.gauchoride.entities.Ride;
+import edu.ucsb.cs156.gauchoride.entities.Shift;
+import edu.ucsb.cs156.gauchoride.entities.User;
+import edu.ucsb.cs156.gauchoride.repositories.RideRepository;
+import edu.ucsb.cs156.gauchoride.repositories.ShiftRepository;
+import edu.ucsb.cs156.gauchoride.repositories.UserRepository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@DataJpaTest
+@Import({ BackfillService.class, LocationDictionary.class, RideChangeService.class, CollectionVersions.class })
+public class BackfillServiceTests {
+
+  @Autowired
+  BackfillService backfillService;
+
+  @Autowired
+  RideRepository rideRepository;
+
+  @Autowired
+  ShiftRepository shiftRepository;
+
+  @Autowired
+  UserRepository userRepository;
+
+  @Autowired
+  TestEntityManager entityManager;
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @MockBean
+  ShiftIndex shiftIndex;
+
+  private List<Integer> minutes(String table, long id) {
+    return jdbcTemplate.queryForObject(
+        "SELECT start_minute_of_week, end_minute_of_week FROM " + table + " WHERE id = ?",
+        (rs, n) -> Arrays.asList((Integer) rs.getObject(1), (Integer) rs.getObject(2)), id);
+  }
+
+  // a fresh context, so that ride_seq and Hibernate's pool of ids start at 1
+  @Test
+  @DirtiesContext(methodMode = DirtiesContext.MethodMode.BEFORE_METHOD)
+  public void moves_ride_seq_past_rows_written_under_identity() {
+    for (long id = 1; id <= 3; id++) {
+      jdbcTemplate.update("INSERT INTO ride (id, rider_id, day) VALUES (?, 1, 'Monday')", id);
+    }
+
+    backfillService.advanceRideSequence();
+    Ride ride = rideRepository.save(Ride.builder().riderId(2).day("Tuesday").startTime("9:00AM").endTime("9:30AM").build());
+    entityManager.flush();
+
+    assertTrue(ride.getId() > 3, "ride id " + ride.getId());
+    assertEquals(4, rideRepository.count());
+
+    // a second run leaves the sequence where it is
+    long next = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR ride_seq", Long.class);
+    backfillService.advanceRideSequence();
+    assertEquals(next + 2 * Ride.SEQUENCE_ALLOCATION, jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR ride_seq", Long.class));
+  }
+
+  @Test
+  public void fills_in_rows_written_before_the_columns_existed() {
+    Ride ride = rideRepository.save(Ride.builder().riderId(1).day("Sunday").startTime("11:00PM").endTime("1:00AM")
+        .pickupLocation("Phelps Hall").dropoffLocation("South Hall").build());
+    Ride unparseable = rideRepository.save(Ride.builder().riderId(1).day("Funday").startTime("11:00PM").endTime("1:00AM")
+        .pickupLocation("Phelps Hall").dropoffLocation("South Hall").build());
+    Shift shift = shiftRepository.save(Shift.builder().day("Monday").shiftStart("8:00AM").shiftEnd("11:00AM")
+        .driverID(1).driverBackupID(2).build());
+    long version = rideRepository.findById(ride.getId()).get().getChangeVersion();
+    entityManager.flush();
+    jdbcTemplate.update("UPDATE ride SET start_minute_of_week = NULL, end_minute_of_week = NULL");
+    jdbcTemplate.update("UPDATE shift SET start_minute_of_week = NULL, end_minute_of_week = NULL");
+    entityManager.clear();
+
+    backfillService.backfillMinutesOfWeek();
+
+    assertEquals(List.of(6 * 1440 + 23 * 60, 7 * 1440 + 60), minutes("ride", ride.getId()));
+    assertEquals(Arrays.asList(null, null), minutes("ride", unparseable.getId()));
+    assertEquals(List.of(480, 660), minutes("shift", shift.getId()));
+    // not a change anyone syncing needs to see
+    assertEquals(version, rideRepository.findById(ride.getId()).get().getChangeVersion());
+    verify(shiftIndex, times(1)).saved(any());
+    verify(shiftIndex).saved(argThat(s -> s.getId() == shift.getId() && s.getStartMinuteOfWeek() == 480
+        && s.getEndMinuteOfWeek() == 660));
+  }
+
+  @Test
+  public void resolves_location_names_left_in_the_old_columns() {
+    // the columns rides had before V13; DDL commits, so do it before writing anything
+    jdbcTemplate.execute("ALTER TABLE ride ADD COLUMN IF NOT EXISTS pickup_location VARCHAR(255)");
+    jdbcTemplate.execute("ALTER TABLE ride ADD COLUMN IF NOT EXISTS dropoff_location VARCHAR(255)");
+    Ride ride = rideRepository.save(Ride.builder().riderId(1).day("Monday").startTime("9:00AM").endTime("10:00AM").build());
+    entityManager.flush();
+    jdbcTemplate.update("UPDATE ride SET pickup_location = ' Phelps Hall', dropoff_location = 'South Hall' WHERE id = ?",
+        ride.getId());
+    entityManager.clear();
+
+    backfillService.backfillLocationIds();
+
+    entityManager.clear();
+    Ride backfilled = rideRepository.findById(ride.getId()).get();
+    assertEquals("Phelps Hall", backfilled.getPickupLocation());
+    assertEquals("South Hall", backfilled.getDropoffLocation());
+  }
+
+  @Test
+  public void fills_in_user_keys_on_rows_written_before_the_columns_existed() {
+    User cgaucho = userRepository.save(User.builder().email("CGaucho@ucsb.edu").fullName("Chris Gaucho").build());
+    User duplicate = userRepository.save(User.builder().email("chris@ucsb.edu").fullName("Chris Gaucho").build());
+    entityManager.flush();
+    jdbcTemplate.update("UPDATE users SET email_key = NULL, name_key = NULL");
+    // only possible before the unique index on email_key
+    jdbcTemplate.update("UPDATE users SET email = 'cgaucho@UCSB.edu ' WHERE id = ?", duplicate.getId());
+    entityManager.clear();
+    assertFalse(userRepository.findByEmail("cgaucho@ucsb.edu").isPresent());
+
+    backfillService.backfillUserKeys();
+
+    entityManager.clear();
+    assertEquals(cgaucho.getId(), userRepository.findByEmail("cgaucho@ucsb.edu").get().getId());
+    assertEquals("chris gaucho", userRepository.findById(cgaucho.getId()).get().getNameKey());
+    // left for merging by hand, but still searchable by name
+    User unmerged = userRepository.findById(duplicate.getId()).get();
+    assertNull(unmerged.getEmailKey());
+    assertEquals("chris gaucho", unmerged.getNameKey());
+  }
+}
@@ -0,0 +1,117 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.io.StringReader;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+
+import edu.ucsb.cs156.gauchoride.entities.Location;
+import edu.ucsb.cs156.gauchoride.utilities.RoadGraph;
+import edu.ucsb.cs156.gauchoride.utilities.TravelTimeMatrix;
+
+class CampusTravelTimeServiceTests {
+
+  static final String ROADS = "Phelps Hall,Corner,2\nCorner,South Hall,3\nPhelps Hall,South Hall,9\n";
+
+  @TempDir
+  Path dir;
+
+  LocationDictionary locationDictionary = mock(LocationDictionary.class);
+
+  CampusTravelTimeService service(String roads) throws IOException {
+    CampusTravelTimeService service = new CampusTravelTimeService();
+    service.graphFile = new ByteArrayResource(roads.getBytes(StandardCharsets.UTF_8));
+    service.matrixFile = new FileSystemResource(dir.resolve("times.bin"));
+    service.defaultMinutes = 5;
+    service.locationDictionary = locationDictionary;
+    service.load();
+    return service;
+  }
+
+  @BeforeEach
+  void locations() {
+    when(locationDictionary.lookup(1L)).thenReturn(Optional.of(Location.builder().id(1L).name("Phelps Hall").build()));
+    when(locationDictionary.lookup(2L)).thenReturn(Optional.of(Location.builder().id(2L).name("South Hall").build()));
+    when(locationDictionary.lookup(3L)).thenReturn(Optional.of(Location.builder().id(3L).name("Storke Tower").build()));
+  }
+
+  @Test
+  void test_minutes_by_location_id() throws IOException {
+    CampusTravelTimeService service = service(ROADS);
+
+    assertEquals(5, service.minutes(1L, 2L));
+    assertEquals(5, service.minutes(2L, 1L));
+    assertEquals(0, service.minutes(1L, 1L));
+    // Storke Tower isn't on the graph
+    assertEquals(5, service.minutes(1L, 3L));
+    assertArrayEquals(new int[][] { { 0, 5, 5 }, { 5, 0, 5 }, { 5, 5, 0 } }, service.matrix(new long[] { 1L, 2L, 3L }));
+
+    // each location is looked up once
+    service.minutes(1L, 2L);
+    verify(locationDictionary, times(1)).lookup(1L);
+  }
+
+  @Test
+  void test_rename_is_noticed() throws IOException {
+    CampusTravelTimeService service = service(ROADS);
+    assertEquals(5, service.minutes(1L, 3L));
+
+    when(locationDictionary.lookup(3L)).thenReturn(Optional.of(Location.builder().id(3L).name("Corner").build()));
+    when(locationDictionary.generation()).thenReturn(1L);
+
+    assertEquals(2, service.minutes(1L, 3L));
+  }
+
+  @Test
+  void test_stored_table_is_used_until_the_graph_changes() throws IOException {
+    // a table for a slower graph but with ROADS' hash, to tell it apart from a computed one
+    RoadGraph slower = RoadGraph.parse(new StringReader("Phelps Hall,Corner,4\nCorner,South Hall,3\nPhelps Hall,South Hall,7\n"));
+    Path file = dir.resolve("times.bin");
+    TravelTimeMatrix.compute(slower, TravelTimeMatrix.hashOf(ROADS.getBytes(StandardCharsets.UTF_8))).writeTo(file);
+    byte[] contents = Files.readAllBytes(file);
+
+    CampusTravelTimeService fromFile = service(ROADS);
+    assertEquals(7, fromFile.minutes(1L, 2L));
+    assertTrue(fromFile.matrix.isMapped());
+
+    // the same table from a stream, as from inside a jar, is copied out and mapped too
+    CampusTravelTimeService fromStream = new CampusTravelTimeService();
+    fromStream.graphFile = new ByteArrayResource(ROADS.getBytes(StandardCharsets.UTF_8));
+    fromStream.matrixFile = new ByteArrayResource(contents);
+    fromStream.locationDictionary = locationDictionary;
+    fromStream.load();
+    assertEquals(7, fromStream.minutes(1L, 2L));
+    assertTrue(fromStream.matrix.isMapped());
+
+    assertEquals(1, service(ROADS + "Phelps Hall,South Hall,1\n").minutes(1L, 2L));
+  }
+
+  @Test
+  void test_campus_graph_loads() throws IOException {
+    CampusTravelTimeService service = new CampusTravelTimeService();
+    service.graphFile = new ClassPathResource("campus/roads.csv");
+    service.matrixFile = new ClassPathResource("campus/travel-times.bin");
+    service.locationDictionary = locationDictionary;
+    service.load();
+
+    // Phelps Hall and South Hall share a service road
+    assertEquals(1, service.minutes(1L, 2L));
+  }
+}
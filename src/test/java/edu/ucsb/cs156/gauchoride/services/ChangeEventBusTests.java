@@ -0,0 +1,171 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.gauchoride.models.ChangeEvent;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import static edu.ucsb.cs156.gauchoride.Fixtures.rideCreated;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ChangeEventBusTests {
+
+  /** Records what would be written to the client instead of writing it */
+  static class RecordingEmitter extends SseEmitter {
+    static final ObjectMapper mapper = new ObjectMapper();
+    final List<String> sent = new ArrayList<>();
+    boolean completed;
+    boolean broken;
+
+    @Override
+    public void send(SseEventBuilder builder) throws IOException {
+      if (broken) {
+        throw new IOException("Broken pipe");
+      }
+      StringBuilder text = new StringBuilder();
+      for (var data : builder.build()) {
+        Object value = data.getData();
+        text.append(value instanceof String ? value : mapper.writeValueAsString(value));
+      }
+      sent.add(text.toString());
+    }
+
+    @Override
+    public void complete() {
+      completed = true;
+    }
+  }
+
+  ChangeEventBus bus;
+  // sends queued with execute() run when the test calls runSends()
+  List<Runnable> pendingSends;
+
+  @BeforeEach
+  public void setup() {
+    bus = new ChangeEventBus();
+    bus.bufferSize = 3;
+    bus.heartbeatSeconds = 15;
+    bus.senderThreads = 1;
+    pendingSends = new ArrayList<>();
+    bus.senders = (Executor) pendingSends::add;
+  }
+
+  private void runSends() {
+    while (!pendingSends.isEmpty()) {
+      pendingSends.remove(0).run();
+    }
+  }
+
+  @Test
+  public void subscribers_get_events_in_order() {
+    RecordingEmitter emitter = new RecordingEmitter();
+    bus.subscribe(emitter, null);
+
+    bus.onChange(rideCreated(1, 7));
+    bus.onChange(rideCreated(2, 8));
+    runSends();
+
+    assertEquals(2, emitter.sent.size());
+    assertTrue(emitter.sent.get(0).startsWith("event:ride\ndata:"));
+    assertTrue(emitter.sent.get(0).contains("\"id\":1"));
+    assertTrue(emitter.sent.get(1).contains("\"id\":2"));
+    assertTrue(!emitter.sent.get(0).contains("riderId"));
+  }
+
+  @Test
+  public void one_drain_is_scheduled_per_burst() {
+    RecordingEmitter emitter = new RecordingEmitter();
+    bus.subscribe(emitter, null);
+
+    bus.onChange(rideCreated(1, 7));
+    bus.onChange(rideCreated(2, 7));
+    assertEquals(1, pendingSends.size());
+  }
+
+  @Test
+  public void riders_only_get_their_own_rides_but_all_shifts() {
+    RecordingEmitter emitter = new RecordingEmitter();
+    bus.subscribe(emitter, 7L);
+
+    bus.onChange(rideCreated(1, 7));
+    bus.onChange(rideCreated(2, 8));
+    bus.onChange(ChangeEvent.builder().entity("shift").action("created").id(3).build());
+    runSends();
+
+    assertEquals(2, emitter.sent.size());
+    assertTrue(emitter.sent.get(0).contains("\"id\":1"));
+    assertTrue(emitter.sent.get(1).startsWith("event:shift"));
+  }
+
+  @Test
+  public void slow_subscriber_is_dropped_when_its_buffer_is_full() {
+    RecordingEmitter slow = new RecordingEmitter();
+    RecordingEmitter fast = new RecordingEmitter();
+    bus.subscribe(slow, null);
+
+    for (int i = 0; i < 3; i++) {
+      bus.onChange(rideCreated(i, 7));
+    }
+    assertEquals(1, bus.subscriberCount());
+    bus.onChange(rideCreated(3, 7));
+
+    assertTrue(slow.completed);
+    assertEquals(0, bus.subscriberCount());
+
+    bus.subscribe(fast, null);
+    bus.onChange(rideCreated(4, 7));
+    pendingSends.clear();
+    bus.subscribers.forEach(ChangeEventBus.Subscriber::drain);
+    assertEquals(1, fast.sent.size());
+    assertTrue(slow.sent.isEmpty());
+  }
+
+  @Test
+  public void subscriber_that_cannot_be_written_to_is_dropped() {
+    RecordingEmitter emitter = new RecordingEmitter();
+    emitter.broken = true;
+    bus.subscribe(emitter, null);
+
+    bus.onChange(rideCreated(1, 7));
+    runSends();
+
+    assertTrue(emitter.completed);
+    assertEquals(0, bus.subscriberCount());
+  }
+
+  @Test
+  public void heartbeat_is_a_comment() {
+    RecordingEmitter emitter = new RecordingEmitter();
+    bus.subscribe(emitter, 7L);
+
+    bus.heartbeat();
+    runSends();
+
+    assertEquals(List.of(":heartbeat\n\n"), emitter.sent);
+  }
+
+  @Test
+  public void stop_closes_every_stream() {
+    RecordingEmitter first = new RecordingEmitter();
+    RecordingEmitter second = new RecordingEmitter();
+    bus.start();
+    bus.subscribe(first, null);
+    bus.subscribe(second, 7L);
+
+    bus.stop();
+
+    assertTrue(first.completed);
+    assertTrue(second.completed);
+    assertEquals(Set.of(), bus.subscribers);
+  }
+}
@@ -0,0 +1,94 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class CollectionVersionsTests {
+
+  CollectionVersions versions = new CollectionVersions();
+
+  @Test
+  void test_etags_are_quoted_and_differ_per_collection() {
+    String shifts = versions.etag(CollectionVersions.SHIFTS);
+    assertTrue(shifts.startsWith("\"") && shifts.endsWith("\""));
+    assertTrue(shifts.endsWith("-shifts-0\""));
+    assertNotEquals(shifts, versions.etag(CollectionVersions.USERS));
+  }
+
+  @Test
+  void test_etags_differ_between_runs() {
+    assertNotEquals(versions.etag(CollectionVersions.SHIFTS), new CollectionVersions().etag(CollectionVersions.SHIFTS));
+  }
+
+  @Test
+  void test_changed_only_moves_that_collection() {
+    String shifts = versions.etag(CollectionVersions.SHIFTS);
+    String users = versions.etag(CollectionVersions.USERS);
+
+    versions.changed(CollectionVersions.SHIFTS);
+
+    assertNotEquals(shifts, versions.etag(CollectionVersions.SHIFTS));
+    assertEquals(users, versions.etag(CollectionVersions.USERS));
+  }
+
+  @Test
+  void test_rideChanged_moves_all_rides_and_that_rider_only() {
+    String all = versions.etag(CollectionVersions.RIDES);
+    String rider3 = versions.riderEtag(3);
+    String rider4 = versions.riderEtag(4);
+
+    versions.rideChanged(3);
+
+    assertNotEquals(all, versions.etag(CollectionVersions.RIDES));
+    assertNotEquals(rider3, versions.riderEtag(3));
+    assertEquals(rider4, versions.riderEtag(4));
+  }
+
+  @Test
+  void test_rides_changed_moves_every_rider() {
+    String rider3 = versions.riderEtag(3);
+    String rider4 = versions.riderEtag(4);
+
+    versions.changed(CollectionVersions.RIDES);
+
+    assertNotEquals(rider3, versions.riderEtag(3));
+    assertNotEquals(rider4, versions.riderEtag(4));
+  }
+
+  @Test
+  void test_versions_move_when_the_transaction_commits() {
+    String shifts = versions.etag(CollectionVersions.SHIFTS);
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      versions.changed(CollectionVersions.SHIFTS);
+      assertEquals(shifts, versions.etag(CollectionVersions.SHIFTS));
+
+      for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+        synchronization.afterCommit();
+      }
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+    assertNotEquals(shifts, versions.etag(CollectionVersions.SHIFTS));
+  }
+
+  @Test
+  void test_rolled_back_writes_do_not_move_versions() {
+    String users = versions.etag(CollectionVersions.USERS);
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      versions.changed(CollectionVersions.USERS);
+      for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+        synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+      }
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+    assertEquals(users, versions.etag(CollectionVersions.USERS));
+  }
+}
@@ -0,0 +1,108 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import static edu.ucsb.cs156.gauchoride.Fixtures.ride;
+import static edu.ucsb.cs156.gauchoride.Fixtures.shift;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.gauchoride.entities.Ride;
+import edu.ucsb.cs156.gauchoride.entities.Shift;
+import edu.ucsb.cs156.gauchoride.models.CoverageReport;
+import edu.ucsb.cs156.gauchoride.models.CoverageWindow;
+import edu.ucsb.cs156.gauchoride.repositories.RideRepository;
+import edu.ucsb.cs156.gauchoride.repositories.ShiftRepository;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = CoverageService.class)
+@TestPropertySource(properties = "app.assignment.driverCapacity=1")
+class CoverageServiceTests {
+
+  @MockBean
+  ShiftRepository shiftRepository;
+
+  @MockBean
+  RideRepository rideRepository;
+
+  @Autowired
+  CoverageService coverageService;
+
+  static CoverageWindow window(String startDay, String startTime, String endDay, String endTime,
+      int start, int end, int drivers, int rides) {
+    return CoverageWindow.builder().startDay(startDay).startTime(startTime).endDay(endDay).endTime(endTime)
+        .startMinuteOfWeek(start).endMinuteOfWeek(end).drivers(drivers).rides(rides).build();
+  }
+
+  @Test
+  void test_analyzeWeek_finds_gaps_and_oversubscribed_windows() {
+    List<Shift> shifts = List.of(
+        shift(1, "Monday", "8:00AM", "12:00PM", 10, 20),
+        shift(2, "Monday", "10:00AM", "2:00PM", 30, 40),
+        shift(3, "Sunday", "10:00PM", "2:00AM", 50, 60)); // into Monday
+    List<Ride> rides = List.of(
+        ride(101, "Monday", "9:00AM", "9:30AM"),
+        ride(102, "Monday", "9:00AM", "9:30AM"),
+        ride(103, "Monday", "3:00PM", "3:30PM"),
+        ride(104, "Monday", "10:30AM", "11:00AM"), // two drivers by then
+        Ride.builder().id(105).day("Someday").startTime("9:00AM").endTime("9:30AM").build());
+    when(shiftRepository.findAll()).thenReturn(shifts);
+    when(rideRepository.findAll()).thenReturn(rides);
+
+    CoverageReport report = coverageService.analyzeWeek();
+
+    assertEquals(1, report.getDriverCapacity());
+    assertEquals(List.of(
+        window("Monday", "2:00AM", "Monday", "8:00AM", 120, 480, 0, 0),
+        window("Monday", "2:00PM", "Sunday", "10:00PM", 840, 9960, 0, 1)), report.getGaps());
+    assertEquals(List.of(
+        window("Monday", "9:00AM", "Monday", "9:30AM", 540, 570, 1, 2),
+        window("Monday", "3:00PM", "Monday", "3:30PM", 900, 930, 0, 1)), report.getOversubscribed());
+  }
+
+  @Test
+  void test_analyze_joins_windows_across_the_end_of_the_week() {
+    List<Shift> shifts = List.of(shift(1, "Monday", "8:00AM", "12:00PM", 10, 20));
+    List<Ride> rides = List.of(ride(101, "Sunday", "11:00PM", "1:00AM"));
+
+    CoverageReport report = coverageService.analyze(shifts, rides);
+
+    assertEquals(List.of(window("Monday", "12:00PM", "Monday", "8:00AM", 720, 10080 + 480, 0, 1)),
+        report.getGaps());
+    assertEquals(List.of(window("Sunday", "11:00PM", "Monday", "1:00AM", 10020, 10080 + 60, 0, 1)),
+        report.getOversubscribed());
+  }
+
+  @Test
+  void test_analyze_joins_windows_across_a_shift_handoff() {
+    List<Shift> shifts = List.of(
+        shift(1, "Friday", "8:00AM", "10:00AM", 10, 20),
+        shift(2, "Friday", "10:00AM", "12:00PM", 30, 40));
+    List<Ride> rides = List.of(
+        ride(101, "Friday", "9:00AM", "11:00AM"),
+        ride(102, "Friday", "9:00AM", "11:00AM"));
+
+    CoverageReport report = coverageService.analyze(shifts, rides);
+
+    assertEquals(List.of(window("Friday", "12:00PM", "Friday", "8:00AM", 6480, 10080 + 6240, 0, 0)),
+        report.getGaps());
+    assertEquals(List.of(window("Friday", "9:00AM", "Friday", "11:00AM", 6300, 6420, 1, 2)),
+        report.getOversubscribed());
+  }
+
+  @Test
+  void test_analyze_with_nothing_scheduled_is_one_gap() {
+    CoverageReport report = coverageService.analyze(List.of(), List.of());
+
+    assertEquals(List.of(window("Monday", "12:00AM", "Monday", "12:00AM", 0, 10080, 0, 0)), report.getGaps());
+    assertEquals(List.of(), report.getOversubscribed());
+  }
+}
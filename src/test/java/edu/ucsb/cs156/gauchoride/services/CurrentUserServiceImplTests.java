@@ -0,0 +1,161 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.oauth2Login;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.ucsb.cs156.gauchoride.entities.User;
+import edu.ucsb.cs156.gauchoride.models.CurrentUser;
+import edu.ucsb.cs156.gauchoride.models.UserCacheStats;
+import edu.ucsb.cs156.gauchoride.repositories.UserRepository;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class CurrentUserServiceImplTests {
+
+  // the real service, under the name controllers autowire (test sources also
+  // define mockCurrentUser, which doesn't read the users table)
+  @TestConfiguration
+  static class Config {
+    @Bean
+    public CurrentUserService currentUserService() {
+      return new CurrentUserServiceImpl();
+    }
+  }
+
+  @MockBean
+  UserRepository userRepository;
+
+  @Autowired
+  MockMvc mockMvc;
+
+  @Autowired
+  @Qualifier("currentUserService")
+  CurrentUserService currentUserService;
+
+  @Autowired
+  UserCache userCache;
+
+  @BeforeEach
+  void clearCache() {
+    userCache.invalidateAll();
+  }
+
+  static final Map<String, Object> ATTRIBUTES = Map.of(
+      "sub", "sub",
+      "name", "Chris Gaucho",
+      "email", "cgaucho@ucsb.edu",
+      "email_verified", true);
+
+  User cgaucho = User.builder().id(15L).email("cgaucho@ucsb.edu").fullName("Chris Gaucho").build();
+
+  @Test
+  void test_user_is_queried_once_then_cached() throws Exception {
+    when(userRepository.findByEmail("cgaucho@ucsb.edu")).thenReturn(Optional.of(cgaucho));
+
+    UserCacheStats before = userCache.stats();
+
+    // RoleInterceptor and RideController.allRides both need the user
+    mockMvc.perform(get("/api/ride_request/all")
+        .with(oauth2Login().attributes(a -> a.putAll(ATTRIBUTES))
+            .authorities(new SimpleGrantedAuthority("ROLE_USER"))))
+        .andExpect(status().isOk());
+    verify(userRepository, times(1)).findByEmail(anyString());
+
+    mockMvc.perform(get("/api/currentUser")
+        .with(oauth2Login().attributes(a -> a.putAll(ATTRIBUTES))
+            .authorities(new SimpleGrantedAuthority("ROLE_USER"))))
+        .andExpect(status().isOk());
+    verify(userRepository, times(1)).findByEmail(anyString());
+    // a miss in RoleInterceptor, then hits for everything else
+    UserCacheStats after = userCache.stats();
+    assertEquals(1, after.getMisses() - before.getMisses());
+    assertEquals(3, after.getHits() - before.getHits());
+  }
+
+  @Test
+  void test_new_user_is_created_once_per_request() throws Exception {
+    mockMvc.perform(get("/api/currentUser")
+        .with(oauth2Login().attributes(a -> a.putAll(ATTRIBUTES))
+            .authorities(new SimpleGrantedAuthority("ROLE_USER"))))
+        .andExpect(status().isOk());
+
+    // users that don't exist yet aren't cached, so RoleInterceptor and the
+    // service each look
+    verify(userRepository, times(2)).findByEmail("cgaucho@ucsb.edu");
+    verify(userRepository, times(1)).save(any(User.class));
+  }
+
+  @Test
+  void test_outside_a_request_user_still_comes_from_the_cache() {
+    when(userRepository.findByEmail("cgaucho@ucsb.edu")).thenReturn(Optional.of(cgaucho));
+    DefaultOAuth2User principal = new DefaultOAuth2User(
+        List.of(new SimpleGrantedAuthority("ROLE_USER")), ATTRIBUTES, "name");
+    SecurityContextHolder.getContext().setAuthentication(
+        new OAuth2AuthenticationToken(principal, principal.getAuthorities(), "google"));
+    try {
+      RequestContextHolder.resetRequestAttributes();
+      CurrentUser first = currentUserService.getCurrentUser();
+      CurrentUser second = currentUserService.getCurrentUser();
+
+      assertEquals(first, second);
+      assertEquals(cgaucho, first.getUser());
+      verify(userRepository, times(1)).findByEmail("cgaucho@ucsb.edu");
+    } finally {
+      SecurityContextHolder.clearContext();
+    }
+  }
+
+  @Test
+  void test_user_id_in_the_principal_is_looked_up_by_id() {
+    when(userRepository.findById(15L)).thenReturn(Optional.of(cgaucho));
+    Map<String, Object> attributes = new HashMap<>(ATTRIBUTES);
+    attributes.put(UserProvisioningService.USER_ID, 15L);
+    DefaultOAuth2User principal = new DefaultOAuth2User(
+        List.of(new SimpleGrantedAuthority("ROLE_USER")), attributes, "name");
+    SecurityContextHolder.getContext().setAuthentication(
+        new OAuth2AuthenticationToken(principal, principal.getAuthorities(), "google"));
+    try {
+      RequestContextHolder.resetRequestAttributes();
+      assertEquals(cgaucho, currentUserService.getUser());
+      assertEquals(cgaucho, currentUserService.getUser());
+
+      verify(userRepository, times(1)).findById(15L);
+      verify(userRepository, never()).findByEmail(anyString());
+      verify(userRepository, never()).save(any(User.class));
+    } finally {
+      SecurityContextHolder.clearContext();
+    }
+  }
+}
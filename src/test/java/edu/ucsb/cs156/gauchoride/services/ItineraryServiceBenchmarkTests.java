@@ -0,0 +1,85 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.gauchoride.entities.Ride;
+import edu.ucsb.cs156.gauchoride.entities.Shift;
+import edu.ucsb.cs156.gauchoride.models.Itinerary;
+import lombok.extern.slf4j.Slf4j;
+
+// Run with: mvn test -P benchmark
+
+@Slf4j
+@Tag("benchmark")
+class ItineraryServiceBenchmarkTests {
+
+  static final int LOCATIONS = 200;
+  static final int RIDES = 20; // 40 stops
+
+  @Test
+  void benchmark_plan_40_stops() {
+    Random random = new Random(156);
+    int[][] coordinates = new int[LOCATIONS][2];
+    for (int[] point : coordinates) {
+      point[0] = random.nextInt(30);
+      point[1] = random.nextInt(30);
+    }
+
+    ItineraryService service = new ItineraryService();
+    service.driverCapacity = 3;
+    service.travelTimeService = new TravelTimeService() {
+      public int minutes(long from, long to) {
+        int[] a = coordinates[(int) from];
+        int[] b = coordinates[(int) to];
+        return Math.abs(a[0] - b[0]) / 3 + Math.abs(a[1] - b[1]) / 3 + 1;
+      }
+    };
+
+    // a four hour shift starting Tuesday 10:00AM
+    Shift shift = Shift.builder().id(1).startMinuteOfWeek(1440 + 600).endMinuteOfWeek(1440 + 840).build();
+    List<List<Ride>> problems = new ArrayList<>();
+    for (int p = 0; p < 50; p++) {
+      List<Ride> rides = new ArrayList<>();
+      for (int i = 0; i < RIDES; i++) {
+        int start = shift.getStartMinuteOfWeek() + random.nextInt(200);
+        rides.add(Ride.builder().id(i)
+            .pickupLocationId((long) random.nextInt(LOCATIONS))
+            .dropoffLocationId((long) random.nextInt(LOCATIONS))
+            .startMinuteOfWeek(start).endMinuteOfWeek(start + 30 + random.nextInt(30)).build());
+      }
+      problems.add(rides);
+    }
+
+    for (int warmup = 0; warmup < 3; warmup++) {
+      for (List<Ride> rides : problems) {
+        service.plan(shift, 1, rides);
+      }
+    }
+
+    long worst = 0;
+    long total = 0;
+    long late = 0;
+    for (List<Ride> rides : problems) {
+      long begin = System.nanoTime();
+      Itinerary itinerary = service.plan(shift, 1, rides);
+      long elapsed = System.nanoTime() - begin;
+      assertEquals(2 * RIDES, itinerary.getStops().size());
+      worst = Math.max(worst, elapsed);
+      total += elapsed;
+      late += itinerary.getMinutesLate();
+    }
+
+    double worstMillis = worst / 1e6;
+    log.info("planned {} shifts of {} stops: mean {} ms, worst {} ms, {} minutes late in all",
+        problems.size(), 2 * RIDES, Math.round(total / 1e3 / problems.size()) / 1e3, worstMillis, late);
+    assertTrue(worstMillis < 100, "expected well under 100 ms per 40 stop shift, worst was " + worstMillis);
+  }
+}
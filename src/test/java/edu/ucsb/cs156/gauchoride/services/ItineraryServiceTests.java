@@ -0,0 +1,170 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import static edu.ucsb.cs156.gauchoride.Fixtures.ride;
+import static edu.ucsb.cs156.gauchoride.Fixtures.shift;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.gauchoride.entities.Ride;
+import edu.ucsb.cs156.gauchoride.entities.Shift;
+import edu.ucsb.cs156.gauchoride.errors.EntityNotFoundException;
+import edu.ucsb.cs156.gauchoride.models.Itinerary;
+import edu.ucsb.cs156.gauchoride.models.ItineraryStop;
+import edu.ucsb.cs156.gauchoride.models.RideAssignment;
+import edu.ucsb.cs156.gauchoride.repositories.RideRepository;
+import edu.ucsb.cs156.gauchoride.repositories.ShiftRepository;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = ItineraryService.class)
+@TestPropertySource(properties = "app.assignment.driverCapacity=2")
+class ItineraryServiceTests {
+
+  @MockBean
+  ShiftRepository shiftRepository;
+
+  @MockBean
+  RideRepository rideRepository;
+
+  @MockBean
+  RideAssignmentService rideAssignmentService;
+
+  @MockBean
+  TravelTimeService travelTimeService;
+
+  @Autowired
+  ItineraryService itineraryService;
+
+  Shift shift = shift(1L, "Tuesday", "10:00AM", "2:00PM", 5, 6);
+
+  // locations lie along one road, 10 minutes apart
+  @BeforeEach
+  void line() {
+    when(travelTimeService.matrix(any())).thenAnswer(invocation -> {
+      long[] ids = invocation.getArgument(0);
+      int[][] matrix = new int[ids.length][ids.length];
+      for (int i = 0; i < ids.length; i++) {
+        for (int j = 0; j < ids.length; j++) {
+          matrix[i][j] = (int) Math.abs(ids[i] - ids[j]) * 10;
+        }
+      }
+      return matrix;
+    });
+  }
+
+  static List<String> stops(Itinerary itinerary) {
+    return itinerary.getStops().stream()
+        .map(stop -> (stop.getPickup() ? "+" : "-") + stop.getRideId())
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  void test_rides_going_the_same_way_share_the_car() {
+    Ride ride1 = ride(1, "Tuesday", "10:00AM", "11:00AM", 1, 4);
+    Ride ride2 = ride(2, "Tuesday", "10:00AM", "11:00AM", 2, 3);
+
+    Itinerary itinerary = itineraryService.plan(shift, 5, List.of(ride1, ride2));
+
+    assertEquals(List.of("+1", "+2", "-2", "-1"), stops(itinerary));
+    assertEquals(30, itinerary.getTravelMinutes());
+    assertEquals(0, itinerary.getMinutesLate());
+    ItineraryStop last = itinerary.getStops().get(3);
+    assertEquals("L4", last.getLocation());
+    assertEquals("Tuesday", last.getDay());
+    assertEquals("10:30AM", last.getTime());
+  }
+
+  @Test
+  void test_pickups_wait_for_start_time_and_capacity_is_respected() {
+    Ride early = ride(1, "Tuesday", "10:00AM", "10:30AM", 1, 2);
+    Ride later = ride(2, "Tuesday", "11:00AM", "11:25AM", 1, 2);
+    Ride latest = ride(3, "Tuesday", "11:00AM", "11:25AM", 1, 2);
+    Ride third = ride(4, "Tuesday", "11:00AM", "11:25AM", 1, 2);
+
+    Itinerary itinerary = itineraryService.plan(shift, 5, List.of(third, latest, later, early));
+
+    assertEquals(List.of("+1", "-1"), stops(itinerary).subList(0, 2));
+    assertEquals("11:00AM", itinerary.getStops().get(2).getTime());
+    int load = 0;
+    for (ItineraryStop stop : itinerary.getStops()) {
+      load += stop.getPickup() ? 1 : -1;
+      assertTrue(load <= 2);
+    }
+    // capacity 2: one of the 11:00AM riders waits for a second trip and is 5 minutes late
+    assertEquals(5, itinerary.getMinutesLate());
+    assertEquals(50, itinerary.getTravelMinutes());
+  }
+
+  @Test
+  void test_rides_share_stops_on_the_shortest_route() {
+    Ride a = ride(1, "Tuesday", "10:00AM", "1:00PM", 1, 5);
+    Ride b = ride(2, "Tuesday", "10:00AM", "1:00PM", 5, 1);
+    Ride c = ride(3, "Tuesday", "10:00AM", "1:00PM", 3, 5);
+
+    Itinerary itinerary = itineraryService.plan(shift, 5, List.of(a, b, c));
+
+    // any route has to drive the length of the road both ways
+    assertEquals(0, itinerary.getMinutesLate());
+    assertEquals(80, itinerary.getTravelMinutes());
+  }
+
+  @Test
+  void test_rides_after_sunday_midnight_follow_the_shift_clock() {
+    Shift sunday = shift(2L, "Sunday", "11:00PM", "1:00AM", 5, 6);
+    Ride monday = ride(1, "Monday", "12:15AM", "12:45AM", 1, 2);
+    Ride sundayNight = ride(2, "Sunday", "11:30PM", "11:50PM", 1, 2);
+
+    Itinerary itinerary = itineraryService.plan(sunday, 5, List.of(monday, sundayNight));
+
+    assertEquals(List.of("+2", "-2", "+1", "-1"), stops(itinerary));
+    assertEquals(0, itinerary.getMinutesLate());
+    ItineraryStop last = itinerary.getStops().get(3);
+    assertEquals("Monday", last.getDay());
+    assertEquals("12:25AM", last.getTime());
+  }
+
+  @Test
+  void test_planShift_plans_the_drivers_assigned_rides() {
+    Ride mine = ride(1, "Tuesday", "10:00AM", "11:00AM", 1, 2);
+    Ride backups = ride(2, "Tuesday", "10:00AM", "11:00AM", 1, 2);
+    Ride other = ride(3, "Tuesday", "10:00AM", "11:00AM", 1, 2);
+    List<Ride> rides = List.of(mine, backups, other);
+    List<Shift> shifts = List.of(shift);
+    when(shiftRepository.findById(1L)).thenReturn(Optional.of(shift));
+    when(shiftRepository.findAll()).thenReturn(shifts);
+    when(rideRepository.findAll()).thenReturn(rides);
+    when(rideAssignmentService.assign(shifts, rides)).thenReturn(List.of(
+        RideAssignment.builder().rideId(1).shiftId(1L).driverId(5L).build(),
+        RideAssignment.builder().rideId(2).shiftId(1L).driverId(6L).backup(true).build(),
+        RideAssignment.builder().rideId(3).build()));
+
+    Itinerary itinerary = itineraryService.planShift(1L, true);
+
+    assertEquals(1L, itinerary.getShiftId());
+    assertEquals(6L, itinerary.getDriverId());
+    assertEquals(List.of("+2", "-2"), stops(itinerary));
+  }
+
+  @Test
+  void test_planShift_unknown_shift() {
+    when(shiftRepository.findById(7L)).thenReturn(Optional.empty());
+
+    EntityNotFoundException e = assertThrows(EntityNotFoundException.class, () -> itineraryService.planShift(7L, false));
+    assertEquals("Shift with id 7 not found", e.getMessage());
+  }
+}
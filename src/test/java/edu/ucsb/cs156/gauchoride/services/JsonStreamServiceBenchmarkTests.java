@@ -0,0 +1,94 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.gauchoride.entities.Shift;
+import edu.ucsb.cs156.gauchoride.utilities.MinuteOfWeek;
+import lombok.extern.slf4j.Slf4j;
+
+// Run with: mvn test -P benchmark
+
+@Slf4j
+@Tag("benchmark")
+class JsonStreamServiceBenchmarkTests {
+
+  static final int SHIFTS = 50_000;
+
+  // counts bytes, like a servlet output stream that has already sent them
+  static final class CountingOutputStream extends OutputStream {
+    long bytes;
+
+    @Override
+    public void write(int b) {
+      bytes++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      bytes += len;
+    }
+  }
+
+  interface Body {
+    void writeTo(OutputStream out) throws IOException;
+  }
+
+  static long allocatedBytes(Body body, OutputStream out) throws IOException {
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+    long before = threads.getThreadAllocatedBytes(thread);
+    body.writeTo(out);
+    return threads.getThreadAllocatedBytes(thread) - before;
+  }
+
+  @Test
+  void benchmark_allocation_of_writeValueAsString_and_writeArray() throws IOException {
+    List<Shift> shifts = new ArrayList<>();
+    for (int i = 0; i < SHIFTS; i++) {
+      shifts.add(Shift.builder().id(i).day(MinuteOfWeek.DAYS.get(i % 7)).shiftStart("10:30AM").shiftEnd("12:30PM")
+          .driverID(i % 200).driverBackupID((i + 1) % 200).build());
+    }
+
+    ObjectMapper mapper = new ObjectMapper();
+    JsonStreamService service = new JsonStreamService();
+    service.mapper = mapper;
+    // a mock would record every detach() and dwarf what is being measured
+    service.entityManager = (EntityManager) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[] { EntityManager.class }, (proxy, method, args) -> null);
+
+    // what allShifts() and users() did before: the whole body as a String, then its bytes
+    Body asString = out -> out.write(mapper.writeValueAsString(shifts).getBytes(StandardCharsets.UTF_8));
+    Body streamed = out -> service.writeArray(out, shifts::stream);
+
+    long stringBytes = 0;
+    long streamedBytes = 0;
+    for (int run = 0; run < 10; run++) {
+      CountingOutputStream stringOut = new CountingOutputStream();
+      CountingOutputStream streamedOut = new CountingOutputStream();
+      stringBytes = allocatedBytes(asString, stringOut);
+      streamedBytes = allocatedBytes(streamed, streamedOut);
+      assertEquals(stringOut.bytes, streamedOut.bytes);
+    }
+
+    log.info("{} shifts: writeValueAsString allocated {} KiB, writeArray {} KiB",
+        SHIFTS, stringBytes / 1024, streamedBytes / 1024);
+    assertTrue(streamedBytes * 2 < stringBytes,
+        "expected writeArray to allocate well under half as much, got %d vs %d".formatted(streamedBytes, stringBytes));
+  }
+}
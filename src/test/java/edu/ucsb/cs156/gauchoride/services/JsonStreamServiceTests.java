@@ -0,0 +1,96 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.gauchoride.entities.Shift;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = JsonStreamService.class)
+@Import(JacksonAutoConfiguration.class)
+class JsonStreamServiceTests {
+
+  @MockBean
+  EntityManager entityManager;
+
+  @Autowired
+  JsonStreamService jsonStreamService;
+
+  @Autowired
+  ObjectMapper mapper;
+
+  Shift shift1 = Shift.builder().id(1L).day("Monday").shiftStart("8:00AM").shiftEnd("11:00AM")
+      .driverID(3L).driverBackupID(4L).build();
+
+  Shift shift2 = Shift.builder().id(2L).day("Tuesday").shiftStart("1:00PM").shiftEnd("4:30PM")
+      .driverID(5L).driverBackupID(6L).build();
+
+  @Test
+  void test_writeArray_matches_writeValueAsString_and_detaches_each_row() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    AtomicBoolean closed = new AtomicBoolean();
+
+    long count = jsonStreamService.writeArray(out,
+        () -> Stream.of(shift1, shift2).onClose(() -> closed.set(true)));
+
+    assertEquals(2, count);
+    assertEquals(mapper.writeValueAsString(List.of(shift1, shift2)), out.toString(StandardCharsets.UTF_8));
+    assertTrue(closed.get());
+    verify(entityManager).detach(shift1);
+    verify(entityManager).detach(shift2);
+  }
+
+  @Test
+  void test_writeArray_of_nothing_is_an_empty_array() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    assertEquals(0, jsonStreamService.writeArray(out, Stream::empty));
+
+    assertEquals("[]", out.toString(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void test_writeArray_does_not_close_the_output_or_flush_every_row() throws Exception {
+    int[] flushes = { 0 };
+    AtomicBoolean closed = new AtomicBoolean();
+    FilterOutputStream out = new FilterOutputStream(new ByteArrayOutputStream()) {
+      @Override
+      public void flush() throws IOException {
+        flushes[0]++;
+      }
+
+      @Override
+      public void close() {
+        closed.set(true);
+      }
+    };
+
+    jsonStreamService.writeArray(out, () -> Stream.of(shift1, shift2, shift1, shift2));
+
+    assertEquals(1, flushes[0]);
+    assertFalse(closed.get());
+  }
+}
@@ -0,0 +1,87 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import edu.ucsb.cs156.gauchoride.entities.Location;
+import edu.ucsb.cs156.gauchoride.repositories.LocationRepository;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = LocationDictionary.class)
+class LocationDictionaryTests {
+
+  @MockBean
+  LocationRepository locationRepository;
+
+  @MockBean
+  PlatformTransactionManager transactionManager;
+
+  @Autowired
+  LocationDictionary locationDictionary;
+
+  Location phelps = Location.builder().id(1L).name("Phelps Hall").build();
+  Location southHall = Location.builder().id(2L).name("South Hall").build();
+
+  @BeforeEach
+  void load() {
+    when(locationRepository.findAll()).thenReturn(List.of(southHall, phelps));
+    locationDictionary.refresh();
+  }
+
+  @Test
+  void test_known_names_are_served_from_memory() {
+    assertSame(phelps, locationDictionary.lookup(" Phelps Hall").get());
+    assertSame(southHall, locationDictionary.intern("South Hall"));
+    assertSame(southHall, locationDictionary.lookup(2L).get());
+    assertEquals(List.of(phelps, southHall), locationDictionary.all());
+    verify(locationRepository, times(0)).findByName(any());
+  }
+
+  @Test
+  void test_blank_names_have_no_location() {
+    assertNull(locationDictionary.intern("  "));
+    assertNull(locationDictionary.intern(null));
+    assertTrue(locationDictionary.lookup("").isEmpty());
+  }
+
+  @Test
+  void test_new_name_is_saved_once() {
+    Location library = Location.builder().id(3L).name("Library").build();
+    when(locationRepository.findByName("Library")).thenReturn(Optional.empty());
+    when(locationRepository.save(Location.builder().name("Library").build())).thenReturn(library);
+
+    assertSame(library, locationDictionary.intern("Library "));
+    assertSame(library, locationDictionary.intern("Library"));
+
+    verify(locationRepository, times(1)).save(any());
+  }
+
+  @Test
+  void test_rename_replaces_old_name() {
+    Location renamed = Location.builder().id(1L).name("Phelps").build();
+    when(locationRepository.findByName("Phelps Hall")).thenReturn(Optional.empty());
+
+    locationDictionary.remember(renamed);
+
+    assertSame(renamed, locationDictionary.lookup("Phelps").get());
+    assertTrue(locationDictionary.lookup("Phelps Hall").isEmpty());
+  }
+}
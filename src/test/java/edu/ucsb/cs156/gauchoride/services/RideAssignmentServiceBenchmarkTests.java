@@ -0,0 +1,64 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.gauchoride.entities.Ride;
+import edu.ucsb.cs156.gauchoride.entities.Shift;
+import edu.ucsb.cs156.gauchoride.models.RideAssignment;
+import edu.ucsb.cs156.gauchoride.utilities.MinuteOfWeek;
+import lombok.extern.slf4j.Slf4j;
+
+// Run with: mvn test -P benchmark
+
+@Slf4j
+@Tag("benchmark")
+class RideAssignmentServiceBenchmarkTests {
+
+  static final int SHIFTS = 2_000;
+  static final int RIDES = 50_000;
+
+  @Test
+  void benchmark_assign() {
+    Random random = new Random(156);
+    List<Shift> shifts = new ArrayList<>();
+    for (int i = 0; i < SHIFTS; i++) {
+      int start = random.nextInt(7) * MinuteOfWeek.MINUTES_PER_DAY + 7 * 60 + random.nextInt(10 * 60);
+      shifts.add(Shift.builder().id(i).driverID(random.nextInt(200)).driverBackupID(random.nextInt(200))
+          .startMinuteOfWeek(start).endMinuteOfWeek(start + 120 + random.nextInt(180)).build());
+    }
+    List<Ride> rides = new ArrayList<>();
+    for (int i = 0; i < RIDES; i++) {
+      int start = random.nextInt(7) * MinuteOfWeek.MINUTES_PER_DAY + 8 * 60 + random.nextInt(11 * 60);
+      rides.add(Ride.builder().id(i).startMinuteOfWeek(start).endMinuteOfWeek(start + 10 + random.nextInt(50)).build());
+    }
+
+    RideAssignmentService service = new RideAssignmentService();
+    service.driverCapacity = 3;
+
+    for (int warmup = 0; warmup < 5; warmup++) {
+      service.assign(shifts, rides);
+    }
+
+    int runs = 10;
+    long assigned = 0;
+    long begin = System.nanoTime();
+    for (int run = 0; run < runs; run++) {
+      List<RideAssignment> result = service.assign(shifts, rides);
+      assertEquals(RIDES, result.size());
+      assigned = result.stream().filter(a -> a.getDriverId() != null).count();
+    }
+    double seconds = (System.nanoTime() - begin) / 1e9;
+    double ridesPerSecond = runs * (double) RIDES / seconds;
+
+    log.info("assigned {} of {} rides to {} shifts: {} rides/s", assigned, RIDES, SHIFTS, Math.round(ridesPerSecond));
+    assertTrue(ridesPerSecond > 20_000, "expected tens of thousands of rides/s, got " + ridesPerSecond);
+  }
+}
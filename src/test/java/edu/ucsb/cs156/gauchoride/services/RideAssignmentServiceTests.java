@@ -0,0 +1,104 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import static edu.ucsb.cs156.gauchoride.Fixtures.ride;
+import static edu.ucsb.cs156.gauchoride.Fixtures.shift;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.gauchoride.entities.Ride;
+import edu.ucsb.cs156.gauchoride.entities.Shift;
+import edu.ucsb.cs156.gauchoride.models.RideAssignment;
+import edu.ucsb.cs156.gauchoride.repositories.RideRepository;
+import edu.ucsb.cs156.gauchoride.repositories.ShiftRepository;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = RideAssignmentService.class)
+@TestPropertySource(properties = "app.assignment.driverCapacity=1")
+class RideAssignmentServiceTests {
+
+  @MockBean
+  ShiftRepository shiftRepository;
+
+  @MockBean
+  RideRepository rideRepository;
+
+  @Autowired
+  RideAssignmentService rideAssignmentService;
+
+  @Test
+  void test_assignAll_uses_primary_then_backup_then_gives_up() {
+    List<Shift> shifts = List.of(
+        shift(1, "Monday", "8:00AM", "12:00PM", 10, 20),
+        shift(2, "Tuesday", "8:00AM", "12:00PM", 30, 40));
+    List<Ride> rides = List.of(
+        ride(103, "Monday", "9:30AM", "10:00AM"), // overlaps 101 and 102, both drivers busy
+        ride(101, "Monday", "9:00AM", "9:45AM"),
+        ride(102, "Monday", "9:15AM", "9:50AM"),
+        ride(104, "Monday", "10:30AM", "11:00AM"), // primary is free again
+        ride(105, "Monday", "11:30AM", "12:30PM"), // runs past the end of the shift
+        ride(106, "Wednesday", "9:00AM", "9:30AM"), // no shift that day
+        Ride.builder().id(107).day("Someday").startTime("9:00AM").endTime("9:30AM").build());
+    when(shiftRepository.findAll()).thenReturn(shifts);
+    when(rideRepository.findAll()).thenReturn(rides);
+
+    List<RideAssignment> assignments = rideAssignmentService.assignAll();
+
+    assertEquals(List.of(
+        RideAssignment.builder().rideId(101).shiftId(1L).driverId(10L).build(),
+        RideAssignment.builder().rideId(102).shiftId(1L).driverId(20L).backup(true).build(),
+        RideAssignment.builder().rideId(103).build(),
+        RideAssignment.builder().rideId(104).shiftId(1L).driverId(10L).build(),
+        RideAssignment.builder().rideId(105).build(),
+        RideAssignment.builder().rideId(106).build(),
+        RideAssignment.builder().rideId(107).build()), assignments);
+  }
+
+  @Test
+  void test_assign_tries_every_covering_shift() {
+    List<Shift> shifts = List.of(
+        shift(1, "Friday", "1:00PM", "5:00PM", 10, 20),
+        shift(2, "Friday", "2:00PM", "4:00PM", 30, 40),
+        Shift.builder().id(3).day("Friday").shiftStart("whenever").driverID(50).build());
+    List<Ride> rides = List.of(
+        ride(1, "Friday", "2:30PM", "3:00PM"),
+        ride(2, "Friday", "2:30PM", "3:00PM"),
+        ride(3, "Friday", "2:30PM", "3:00PM"));
+
+    List<RideAssignment> assignments = rideAssignmentService.assign(shifts, rides);
+
+    assertEquals(10L, assignments.get(0).getDriverId());
+    assertEquals(30L, assignments.get(1).getDriverId());
+    assertEquals(2L, assignments.get(1).getShiftId());
+    assertEquals(20L, assignments.get(2).getDriverId());
+    assertEquals(true, assignments.get(2).getBackup());
+  }
+
+  @Test
+  void test_assign_wraps_around_sunday_midnight() {
+    List<Shift> shifts = List.of(shift(1, "Sunday", "11:00PM", "1:00AM", 10, 20));
+    List<Ride> rides = List.of(
+        ride(1, "Sunday", "11:45PM", "12:15AM"),
+        ride(2, "Monday", "12:05AM", "12:30AM"),
+        ride(3, "Monday", "12:30AM", "12:45AM"),
+        ride(4, "Monday", "12:45AM", "1:15AM"));
+
+    List<RideAssignment> assignments = rideAssignmentService.assign(shifts, rides);
+
+    assertEquals(List.of(
+        RideAssignment.builder().rideId(2).shiftId(1L).driverId(10L).build(),
+        RideAssignment.builder().rideId(3).shiftId(1L).driverId(10L).build(),
+        RideAssignment.builder().rideId(4).build(),
+        // driver 10 is carrying ride 2 from 12:05AM Monday
+        RideAssignment.builder().rideId(1).shiftId(1L).driverId(20L).backup(true).build()), assignments);
+  }
+}
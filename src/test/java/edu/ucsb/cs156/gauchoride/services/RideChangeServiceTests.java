@@ -0,0 +1,202 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import static edu.ucsb.cs156.gauchoride.Fixtures.rideAtVersion;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import edu.ucsb.cs156.gauchoride.entities.Ride;
+import edu.ucsb.cs156.gauchoride.entities.RideTombstone;
+import edu.ucsb.cs156.gauchoride.entities.RideTombstoneCutoff;
+import edu.ucsb.cs156.gauchoride.models.RideChanges;
+import edu.ucsb.cs156.gauchoride.repositories.RideRepository;
+import edu.ucsb.cs156.gauchoride.repositories.RideTombstoneCutoffRepository;
+import edu.ucsb.cs156.gauchoride.repositories.RideTombstoneRepository;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = RideChangeService.class)
+class RideChangeServiceTests {
+
+  @MockBean
+  RideRepository rideRepository;
+
+  @MockBean
+  RideTombstoneRepository rideTombstoneRepository;
+
+  @MockBean
+  RideTombstoneCutoffRepository rideTombstoneCutoffRepository;
+
+  @Autowired
+  RideChangeService rideChangeService;
+
+  static final Pageable LIMIT = PageRequest.of(0, RideChangeService.MAX_CHANGES + 1);
+
+  @BeforeEach
+  void seed() {
+    when(rideRepository.maxChangeVersion()).thenReturn(20L);
+    when(rideTombstoneRepository.maxVersion()).thenReturn(30L);
+    rideChangeService.seed();
+  }
+
+  static RideTombstone tombstone(long rideId, long version) {
+    return RideTombstone.builder().rideId(rideId).version(version).build();
+  }
+
+  @Test
+  void test_versions_continue_from_the_database() {
+    assertEquals(30L, rideChangeService.settledVersion());
+    assertEquals(31L, rideChangeService.nextVersion());
+
+    Ride ride = new Ride();
+    rideChangeService.stamp(ride);
+    assertEquals(32L, ride.getChangeVersion());
+    assertNotNull(ride.getUpdatedAt());
+    assertEquals(32L, rideChangeService.settledVersion());
+  }
+
+  @Test
+  void test_versions_are_unsettled_until_their_transaction_ends() {
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      assertEquals(31L, rideChangeService.nextVersion());
+      assertEquals(32L, rideChangeService.nextVersion());
+      assertEquals(30L, rideChangeService.settledVersion());
+
+      for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+        synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+      }
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+    assertEquals(32L, rideChangeService.settledVersion());
+  }
+
+  @Test
+  void test_recordDelete_saves_a_tombstone() {
+    rideChangeService.recordDelete(Ride.builder().id(7L).riderId(3L).build());
+
+    ArgumentCaptor<RideTombstone> saved = ArgumentCaptor.forClass(RideTombstone.class);
+    verify(rideTombstoneRepository).save(saved.capture());
+    assertEquals(7L, saved.getValue().getRideId());
+    assertEquals(3L, saved.getValue().getRiderId());
+    assertEquals(31L, saved.getValue().getVersion());
+    assertNotNull(saved.getValue().getDeletedAt());
+  }
+
+  @Test
+  void test_recordDelete_prunes_old_tombstones_at_most_once_an_hour() {
+    when(rideTombstoneRepository.maxVersionDeletedBefore(any(Instant.class))).thenReturn(12L);
+
+    rideChangeService.recordDelete(Ride.builder().id(7L).riderId(3L).build());
+    rideChangeService.recordDelete(Ride.builder().id(8L).riderId(3L).build());
+
+    ArgumentCaptor<RideTombstoneCutoff> cutoff = ArgumentCaptor.forClass(RideTombstoneCutoff.class);
+    verify(rideTombstoneCutoffRepository).save(cutoff.capture());
+    assertEquals(RideTombstoneCutoff.ID, cutoff.getValue().getId());
+    assertEquals(12L, cutoff.getValue().getVersion());
+    verify(rideTombstoneRepository, times(1)).deleteUpTo(12L);
+    assertEquals(12L, rideChangeService.prunedVersion());
+  }
+
+  @Test
+  void test_nothing_to_prune() {
+    rideChangeService.pruneTombstones();
+
+    verify(rideTombstoneCutoffRepository, times(0)).save(any());
+    verify(rideTombstoneRepository, times(0)).deleteUpTo(anyLong());
+  }
+
+  @Test
+  void test_changesSince_asks_for_a_resync_below_the_pruned_version() {
+    when(rideTombstoneCutoffRepository.findById(RideTombstoneCutoff.ID))
+        .thenReturn(Optional.of(RideTombstoneCutoff.builder().id(RideTombstoneCutoff.ID).version(25L).build()));
+    rideChangeService.seed();
+
+    RideChanges changes = rideChangeService.changesSince(10L, null);
+
+    assertTrue(changes.getResync());
+    assertEquals(0, changes.getChanged().size());
+    assertEquals(0, changes.getDeleted().size());
+    assertEquals(30L, changes.getVersion());
+    verify(rideRepository, times(0)).findChanged(anyLong(), anyLong(), any());
+
+    when(rideRepository.findChanged(25L, 30L, LIMIT)).thenReturn(List.of(rideAtVersion(1, 27)));
+    assertFalse(rideChangeService.changesSince(25L, null).getResync());
+  }
+
+  @Test
+  void test_changesSince_merges_writes_and_deletes_in_version_order() {
+    when(rideRepository.findChanged(10L, 30L, LIMIT)).thenReturn(List.of(rideAtVersion(1, 12), rideAtVersion(2, 15)));
+    when(rideTombstoneRepository.findDeleted(10L, 30L, LIMIT)).thenReturn(List.of(tombstone(3, 14)));
+
+    RideChanges changes = rideChangeService.changesSince(10L, null);
+
+    assertEquals(List.of(1L, 2L), changes.getChanged().stream().map(Ride::getId).collect(Collectors.toList()));
+    assertEquals(List.of(3L), changes.getDeleted());
+    assertEquals(30L, changes.getVersion());
+    assertFalse(changes.getMore());
+  }
+
+  @Test
+  void test_changesSince_for_one_rider() {
+    when(rideRepository.findChangedByRiderId(5L, 0L, 30L, LIMIT)).thenReturn(List.of(rideAtVersion(1, 12)));
+    when(rideTombstoneRepository.findDeletedByRiderId(5L, 0L, 30L, LIMIT)).thenReturn(List.of());
+
+    RideChanges changes = rideChangeService.changesSince(0L, 5L);
+
+    assertEquals(1, changes.getChanged().size());
+    verify(rideRepository, times(0)).findChanged(anyLong(), anyLong(), any());
+  }
+
+  @Test
+  void test_changesSince_pages_large_change_sets() {
+    List<Ride> rides = new ArrayList<>();
+    for (long id = 1; id <= RideChangeService.MAX_CHANGES; id++) {
+      rides.add(rideAtVersion(id, 2 * id));
+    }
+    when(rideRepository.findChanged(eq(0L), eq(30L), any())).thenReturn(rides);
+    when(rideTombstoneRepository.findDeleted(eq(0L), eq(30L), any())).thenReturn(List.of(tombstone(1000, 1)));
+
+    RideChanges changes = rideChangeService.changesSince(0L, null);
+
+    assertEquals(RideChangeService.MAX_CHANGES - 1, changes.getChanged().size());
+    assertEquals(List.of(1000L), changes.getDeleted());
+    assertEquals(2L * (RideChangeService.MAX_CHANGES - 1), changes.getVersion());
+    assertTrue(changes.getMore());
+  }
+
+  @Test
+  void test_changesSince_up_to_date() {
+    RideChanges changes = rideChangeService.changesSince(30L, null);
+
+    assertEquals(0, changes.getChanged().size());
+    assertEquals(30L, changes.getVersion());
+    verify(rideRepository, times(0)).findChanged(anyLong(), anyLong(), any());
+  }
+}
@@ -0,0 +1,106 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.gauchoride.entities.Ride;
+import edu.ucsb.cs156.gauchoride.repositories.RideRepository;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = RideExportService.class)
+@Import(JacksonAutoConfiguration.class)
+class RideExportServiceTests {
+
+  @MockBean
+  RideRepository rideRepository;
+
+  @MockBean
+  EntityManager entityManager;
+
+  @Autowired
+  RideExportService rideExportService;
+
+  @Autowired
+  ObjectMapper mapper;
+
+  Ride ride1 = Ride.builder()
+      .id(1L)
+      .riderId(7L)
+      .student("CGaucho")
+      .day("Monday")
+      .course("CMPSC 156")
+      .startTime("2:00PM")
+      .endTime("3:15PM")
+      .dropoffLocation("South Hall")
+      .pickupLocation("Phelps Hall")
+      .room("1431")
+      .build();
+
+  Ride ride2 = Ride.builder()
+      .id(2L)
+      .riderId(8L)
+      .student("Gaucho, \"Del\"")
+      .day("Tuesday")
+      .course("MATH 3A")
+      .startTime("9:30AM")
+      .endTime("10:45AM")
+      .dropoffLocation("Girvetz Hall")
+      .pickupLocation("Santa Catalina")
+      .room("1004")
+      .build();
+
+  @Test
+  void test_writeNdjson_writes_one_ride_per_line() throws Exception {
+    when(rideRepository.streamAllByOrderByIdAsc()).thenReturn(Stream.of(ride1, ride2));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    long count = rideExportService.writeNdjson(out);
+
+    assertEquals(2L, count);
+    String expected = mapper.writeValueAsString(ride1) + "\n" + mapper.writeValueAsString(ride2) + "\n";
+    assertEquals(expected, out.toString(StandardCharsets.UTF_8));
+    verify(entityManager, times(1)).detach(ride1);
+    verify(entityManager, times(1)).detach(ride2);
+  }
+
+  @Test
+  void test_writeCsv_writes_header_and_escaped_rows() throws Exception {
+    when(rideRepository.streamAllByOrderByIdAsc()).thenReturn(Stream.of(ride1, ride2));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    long count = rideExportService.writeCsv(out);
+
+    assertEquals(2L, count);
+    String expected = RideExportService.CSV_HEADER + "\r\n"
+        + "1,7,CGaucho,Monday,2:00PM,3:15PM,Phelps Hall,South Hall,1431,CMPSC 156\r\n"
+        + "2,8,\"Gaucho, \"\"Del\"\"\",Tuesday,9:30AM,10:45AM,Santa Catalina,Girvetz Hall,1004,MATH 3A\r\n";
+    assertEquals(expected, out.toString(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void test_csvField() {
+    assertEquals("", RideExportService.csvField(null));
+    assertEquals("South Hall", RideExportService.csvField("South Hall"));
+    assertEquals("\"a\nb\"", RideExportService.csvField("a\nb"));
+    assertEquals("\"a\rb\"", RideExportService.csvField("a\rb"));
+  }
+}
@@ -0,0 +1,89 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.gauchoride.entities.Ride;
+import edu.ucsb.cs156.gauchoride.entities.Shift;
+import edu.ucsb.cs156.gauchoride.models.DriverAvailability;
+import edu.ucsb.cs156.gauchoride.models.Roster;
+import edu.ucsb.cs156.gauchoride.utilities.MinuteOfWeek;
+import lombok.extern.slf4j.Slf4j;
+
+// Run with: mvn test -P benchmark
+
+@Slf4j
+@Tag("benchmark")
+class RosterServiceBenchmarkTests {
+
+  static final int DRIVERS = 120;
+  static final int RIDES = 20_000;
+  static final int MAX_HOURS = 20;
+
+  @Test
+  void benchmark_generate_a_campus_week() {
+    Random random = new Random(156);
+    List<DriverAvailability> availability = new ArrayList<>();
+    for (int driver = 1; driver <= DRIVERS; driver++) {
+      for (int day = 0; day < 7; day++) {
+        if (random.nextInt(7) < 4) {
+          int start = (7 + random.nextInt(10)) * 60;
+          int end = Math.min(start + (4 + random.nextInt(7)) * 60, 23 * 60);
+          availability.add(DriverAvailability.builder().driverId(driver).day(MinuteOfWeek.DAYS.get(day))
+              .start(MinuteOfWeek.timeOf(start)).end(MinuteOfWeek.timeOf(end)).build());
+        }
+      }
+    }
+    List<Ride> rides = new ArrayList<>();
+    for (int i = 0; i < RIDES; i++) {
+      int start = random.nextInt(7) * MinuteOfWeek.MINUTES_PER_DAY + 8 * 60 + random.nextInt(12 * 60);
+      rides.add(Ride.builder().id(i).startMinuteOfWeek(start).endMinuteOfWeek(start + 10 + random.nextInt(50)).build());
+    }
+    int[] demand = RosterService.demandPerHour(rides);
+
+    RosterService service = new RosterService();
+    service.driverCapacity = 3;
+    service.minShiftHours = 2;
+    service.maxShiftHours = 4;
+
+    for (int warmup = 0; warmup < 2; warmup++) {
+      service.generate(availability, demand, MAX_HOURS);
+    }
+
+    int runs = 5;
+    Roster roster = null;
+    long begin = System.nanoTime();
+    for (int run = 0; run < runs; run++) {
+      roster = service.generate(availability, demand, MAX_HOURS);
+    }
+    double seconds = (System.nanoTime() - begin) / 1e9 / runs;
+
+    // every driver within their hours, and never on two shifts at once
+    Map<Long, Integer> hours = new HashMap<>();
+    Map<Long, List<Shift>> byDriver = new HashMap<>();
+    for (Shift shift : roster.getShifts()) {
+      int length = (shift.getEndMinuteOfWeek() - shift.getStartMinuteOfWeek()) / 60;
+      for (long driver : new long[] { shift.getDriverID(), shift.getDriverBackupID() }) {
+        hours.merge(driver, length, Integer::sum);
+        for (Shift other : byDriver.computeIfAbsent(driver, d -> new ArrayList<>())) {
+          assertTrue(other.getEndMinuteOfWeek() <= shift.getStartMinuteOfWeek()
+              || shift.getEndMinuteOfWeek() <= other.getStartMinuteOfWeek(), "driver " + driver + " double booked");
+        }
+        byDriver.get(driver).add(shift);
+      }
+    }
+    assertTrue(hours.values().stream().allMatch(h -> h <= MAX_HOURS));
+
+    log.info("rostered {} shifts for {} drivers, {} of {} ride-hours covered, in {} s",
+        roster.getShifts().size(), DRIVERS, roster.getCovered(), roster.getDemand(), seconds);
+    assertTrue(seconds < 5, "expected a week's roster in seconds, took " + seconds);
+  }
+}
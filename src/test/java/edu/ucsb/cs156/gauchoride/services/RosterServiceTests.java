@@ -0,0 +1,196 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import static edu.ucsb.cs156.gauchoride.Fixtures.ride;
+import static edu.ucsb.cs156.gauchoride.Fixtures.shift;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.gauchoride.entities.Shift;
+import edu.ucsb.cs156.gauchoride.models.DriverAvailability;
+import edu.ucsb.cs156.gauchoride.models.Roster;
+import edu.ucsb.cs156.gauchoride.repositories.RideRepository;
+import edu.ucsb.cs156.gauchoride.repositories.ShiftRepository;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = RosterService.class)
+@TestPropertySource(properties = {
+    "app.assignment.driverCapacity=1",
+    "app.roster.maxHoursPerDriver=20",
+    "app.roster.minShiftHours=2",
+    "app.roster.maxShiftHours=4" })
+class RosterServiceTests {
+
+  @MockBean
+  RideRepository rideRepository;
+
+  @MockBean
+  ShiftRepository shiftRepository;
+
+  @Autowired
+  RosterService rosterService;
+
+  static DriverAvailability available(long driverId, String day, String start, String end) {
+    return DriverAvailability.builder().driverId(driverId).day(day).start(start).end(end).build();
+  }
+
+  static int[] demand(int... hoursAndCounts) {
+    int[] demand = new int[RosterService.HOURS_PER_WEEK];
+    for (int i = 0; i < hoursAndCounts.length; i += 2) {
+      demand[hoursAndCounts[i]] = hoursAndCounts[i + 1];
+    }
+    return demand;
+  }
+
+  @Test
+  void test_demandPerHour_counts_every_hour_a_ride_is_under_way() {
+    int[] demand = RosterService.demandPerHour(List.of(
+        ride(1, "Monday", "9:15AM", "10:05AM"),
+        ride(2, "Monday", "9:00AM", "10:00AM"),
+        ride(3, "Sunday", "11:30PM", "12:15AM"), // into Monday
+        ride(4, "Someday", "9:00AM", "10:00AM")));
+
+    assertEquals(1, demand[0]);
+    assertEquals(0, demand[8]);
+    assertEquals(2, demand[9]);
+    assertEquals(1, demand[10]);
+    assertEquals(1, demand[167]);
+    assertEquals(5, Arrays.stream(demand).sum());
+  }
+
+  @Test
+  void test_generate_covers_the_busiest_hours_with_a_driver_and_backup() {
+    List<DriverAvailability> availability = List.of(
+        available(1, "Monday", "8:00AM", "12:00PM"),
+        available(2, "Monday", "8:00AM", "12:00PM"),
+        available(3, "Monday", "8:00AM", "12:00PM"));
+
+    Roster roster = rosterService.generate(availability, demand(9, 2, 10, 2), 20);
+
+    assertEquals(List.of(shift(0, "Monday", "9:00AM", "11:00AM", 1, 2)), roster.getShifts());
+    assertEquals(4, roster.getDemand());
+    assertEquals(4, roster.getCovered());
+    assertEquals(4, roster.getDriverHours());
+  }
+
+  @Test
+  void test_generate_respects_hour_caps_and_availability() {
+    List<DriverAvailability> availability = List.of(
+        available(1, "Monday", "8:00AM", "12:00PM"),
+        available(1, "Tuesday", "8:00AM", "12:00PM"),
+        available(2, "Monday", "8:00AM", "12:00PM"),
+        available(2, "Tuesday", "8:00AM", "12:00PM"),
+        available(3, "Tuesday", "8:30AM", "11:00AM"), // only 9 and 10 in full
+        available(4, "Tuesday", "9:00AM", "4:00PM"));
+
+    Roster roster = rosterService.generate(availability, demand(9, 2, 10, 2, 24 + 9, 2, 24 + 10, 2), 2);
+
+    assertEquals(List.of(
+        shift(0, "Monday", "9:00AM", "11:00AM", 1, 2),
+        shift(0, "Tuesday", "9:00AM", "11:00AM", 3, 4)), roster.getShifts());
+    assertEquals(8, roster.getCovered());
+  }
+
+  @Test
+  void test_generate_adds_a_second_pair_where_one_is_not_enough() {
+    List<DriverAvailability> availability = List.of(
+        available(1, "Monday", "9:00AM", "1:00PM"),
+        available(2, "Monday", "9:00AM", "1:00PM"),
+        available(3, "Monday", "11:00AM", "1:00PM"),
+        available(4, "Monday", "11:00AM", "1:00PM"));
+
+    Roster roster = rosterService.generate(availability, demand(9, 2, 10, 2, 11, 4, 12, 4), 20);
+
+    assertEquals(List.of(
+        shift(0, "Monday", "9:00AM", "1:00PM", 1, 2),
+        shift(0, "Monday", "11:00AM", "1:00PM", 3, 4)), roster.getShifts());
+    assertEquals(12, roster.getCovered());
+    assertEquals(12, roster.getDriverHours());
+  }
+
+  @Test
+  void test_generate_local_search_grows_a_greedy_shift() {
+    // greedily 8-10 covers the most per hour, leaving each driver one hour
+    // that no new shift can use; growing the shift to 11 uses it
+    List<DriverAvailability> availability = List.of(
+        available(1, "Monday", "8:00AM", "11:00AM"),
+        available(2, "Monday", "8:00AM", "11:00AM"));
+
+    Roster roster = rosterService.generate(availability, demand(8, 2, 9, 2, 10, 1), 3);
+
+    assertEquals(List.of(shift(0, "Monday", "8:00AM", "11:00AM", 1, 2)), roster.getShifts());
+    assertEquals(5, roster.getCovered());
+    assertEquals(6, roster.getDriverHours());
+  }
+
+  @Test
+  void test_generate_needs_two_drivers_for_a_shift() {
+    Roster roster = rosterService.generate(List.of(available(1, "Monday", "8:00AM", "12:00PM")),
+        demand(9, 2, 10, 2), 20);
+
+    assertEquals(List.of(), roster.getShifts());
+    assertEquals(4, roster.getDemand());
+    assertEquals(0, roster.getCovered());
+  }
+
+  @Test
+  void test_generate_uses_past_rides_and_the_configured_cap() {
+    when(rideRepository.findAll()).thenReturn(List.of(
+        ride(1, "Friday", "2:00PM", "3:00PM"),
+        ride(2, "Friday", "3:00PM", "4:00PM")));
+    List<DriverAvailability> availability = List.of(
+        available(5, "Friday", "12:00PM", "6:00PM"),
+        available(6, "Friday", "12:00PM", "6:00PM"));
+
+    Roster roster = rosterService.generate(availability, null);
+
+    assertEquals(List.of(shift(0, "Friday", "2:00PM", "4:00PM", 5, 6)), roster.getShifts());
+    assertEquals(2, roster.getCovered());
+    verify(shiftRepository).findByDriverIds(List.of(5L, 6L));
+  }
+
+  @Test
+  void test_generate_counts_shifts_already_on_file() {
+    List<DriverAvailability> availability = List.of(
+        available(1, "Monday", "8:00AM", "12:00PM"),
+        available(1, "Tuesday", "8:00AM", "12:00PM"),
+        available(2, "Monday", "8:00AM", "12:00PM"),
+        available(2, "Tuesday", "8:00AM", "12:00PM"),
+        available(3, "Monday", "8:00AM", "12:00PM"),
+        available(3, "Tuesday", "8:00AM", "12:00PM"));
+    // driver 1 has used up 5 of their 6 hours; driver 2 is busy on Tuesday
+    // morning, from 8:30 so the 8 o'clock hour too, and has 3 hours left
+    List<Shift> existing = List.of(
+        shift(0, "Wednesday", "1:00PM", "6:00PM", 1, 7),
+        shift(0, "Tuesday", "8:30AM", "10:30AM", 8, 2));
+
+    Roster roster = rosterService.generate(availability, demand(9, 2, 10, 2, 24 + 9, 2, 24 + 10, 2), existing, 6);
+
+    // driver 3 alone can't cover Tuesday
+    assertEquals(List.of(shift(0, "Monday", "9:00AM", "11:00AM", 3, 2)), roster.getShifts());
+    assertEquals(4, roster.getCovered());
+  }
+
+  @Test
+  void test_generate_rejects_bad_input() {
+    assertThrows(IllegalArgumentException.class,
+        () -> rosterService.generate(List.of(available(1, "Monday", "8am", "12:00PM")), demand(), 20));
+    assertThrows(IllegalArgumentException.class,
+        () -> rosterService.generate(List.of(), demand(), -1));
+    assertThrows(IllegalArgumentException.class,
+        () -> rosterService.generate(List.of(), new int[24], 20));
+  }
+}
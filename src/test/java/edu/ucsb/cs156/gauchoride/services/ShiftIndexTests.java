@@ -0,0 +1,111 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import static edu.ucsb.cs156.gauchoride.Fixtures.shift;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import edu.ucsb.cs156.gauchoride.entities.Shift;
+import edu.ucsb.cs156.gauchoride.repositories.ShiftRepository;
+import edu.ucsb.cs156.gauchoride.utilities.MinuteOfWeek;
+
+class ShiftIndexTests {
+
+  ShiftIndex shiftIndex;
+
+  static List<Long> ids(List<Shift> shifts) {
+    return shifts.stream().map(Shift::getId).collect(Collectors.toList());
+  }
+
+  @BeforeEach
+  void setup() {
+    ShiftRepository shiftRepository = mock(ShiftRepository.class);
+    when(shiftRepository.findAll()).thenReturn(List.of(
+        shift(1, "Tuesday", "8:00AM", "12:00PM", 10, 11),
+        shift(2, "Tuesday", "11:00AM", "3:00PM", 12, 13),
+        shift(3, "Sunday", "10:00PM", "2:00AM", 14, 15),
+        shift(4, "Someday", "8:00AM", "9:00AM", 16, 17)));
+    shiftIndex = new ShiftIndex();
+    shiftIndex.shiftRepository = shiftRepository;
+    shiftIndex.load();
+  }
+
+  @Test
+  void test_on_duty() {
+    assertEquals(3, shiftIndex.size());
+    assertEquals(List.of(1L), ids(shiftIndex.onDuty(MinuteOfWeek.of("Tuesday", "8:00AM"))));
+    assertEquals(List.of(1L, 2L), ids(shiftIndex.onDuty(MinuteOfWeek.of("Tuesday", "11:30AM"))));
+    assertEquals(List.of(2L), ids(shiftIndex.onDuty(MinuteOfWeek.of("Tuesday", "12:00PM"))));
+    assertEquals(List.of(), ids(shiftIndex.onDuty(MinuteOfWeek.of("Tuesday", "3:00PM"))));
+  }
+
+  @Test
+  void test_sunday_night_shift_runs_into_monday() {
+    assertEquals(List.of(3L), ids(shiftIndex.onDuty(MinuteOfWeek.of("Sunday", "11:00PM"))));
+    assertEquals(List.of(3L), ids(shiftIndex.onDuty(MinuteOfWeek.of("Monday", "1:59AM"))));
+    assertEquals(List.of(), ids(shiftIndex.onDuty(MinuteOfWeek.of("Monday", "2:00AM"))));
+  }
+
+  @Test
+  void test_saved_and_deleted_shifts_are_applied() {
+    Shift added = shift(5, "Tuesday", "9:00AM", "10:00AM", 18, 19);
+    shiftIndex.saved(added);
+    // later changes to the entity don't reach the index until it is saved again
+    added.setDriverID(99);
+    List<Shift> onDuty = shiftIndex.onDuty(MinuteOfWeek.of("Tuesday", "9:30AM"));
+    assertEquals(List.of(1L, 5L), ids(onDuty));
+    assertEquals(18, onDuty.get(1).getDriverID());
+
+    shiftIndex.saved(shift(1, "Tuesday", "8:00AM", "9:00AM", 10, 11));
+    assertEquals(List.of(5L), ids(shiftIndex.onDuty(MinuteOfWeek.of("Tuesday", "9:30AM"))));
+
+    shiftIndex.deleted(5);
+    assertEquals(List.of(), ids(shiftIndex.onDuty(MinuteOfWeek.of("Tuesday", "9:30AM"))));
+  }
+
+  @Test
+  void test_a_transactions_changes_are_applied_together_on_commit() {
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      shiftIndex.saved(shift(5, "Tuesday", "9:00AM", "10:00AM", 18, 19));
+      shiftIndex.saved(shift(6, "Tuesday", "9:00AM", "10:00AM", 20, 21));
+      shiftIndex.deleted(1);
+      assertEquals(List.of(1L), ids(shiftIndex.onDuty(MinuteOfWeek.of("Tuesday", "9:30AM"))));
+      List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+      assertEquals(1, synchronizations.size());
+
+      for (TransactionSynchronization synchronization : synchronizations) {
+        synchronization.afterCommit();
+        synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+      }
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+    assertEquals(List.of(5L, 6L), ids(shiftIndex.onDuty(MinuteOfWeek.of("Tuesday", "9:30AM"))));
+    assertFalse(TransactionSynchronizationManager.hasResource(shiftIndex));
+  }
+
+  @Test
+  void test_a_rolled_back_transactions_changes_are_dropped() {
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      shiftIndex.deleted(1);
+      for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+        synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+      }
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+    assertEquals(List.of(1L), ids(shiftIndex.onDuty(MinuteOfWeek.of("Tuesday", "9:30AM"))));
+    assertFalse(TransactionSynchronizationManager.hasResource(shiftIndex));
+  }
+}
@@ -0,0 +1,143 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.gauchoride.entities.User;
+import edu.ucsb.cs156.gauchoride.models.RoleChangeEvent;
+import edu.ucsb.cs156.gauchoride.models.UserCacheStats;
+import edu.ucsb.cs156.gauchoride.repositories.UserRepository;
+
+class UserCacheTests {
+
+  UserCache userCache;
+  UserRepository userRepository;
+  long now;
+
+  User alice = User.builder().id(1L).email("alice@ucsb.edu").build();
+  User bob = User.builder().id(2L).email("bob@ucsb.edu").build();
+  User carol = User.builder().id(3L).email("carol@ucsb.edu").build();
+
+  @BeforeEach
+  void setup() {
+    userRepository = mock(UserRepository.class);
+    userCache = new UserCache();
+    userCache.userRepository = userRepository;
+    userCache.maxSize = 2;
+    userCache.ttlSeconds = 60;
+    userCache.clock = () -> now;
+    when(userRepository.findByEmail("alice@ucsb.edu")).thenReturn(Optional.of(alice));
+    when(userRepository.findByEmail("bob@ucsb.edu")).thenReturn(Optional.of(bob));
+    when(userRepository.findByEmail("carol@ucsb.edu")).thenReturn(Optional.of(carol));
+    when(userRepository.findById(1L)).thenReturn(Optional.of(alice));
+  }
+
+  @Test
+  void test_second_lookup_by_email_or_id_is_a_hit() {
+    assertSame(alice, userCache.findByEmail("alice@ucsb.edu").get());
+    assertSame(alice, userCache.findByEmail("alice@ucsb.edu").get());
+    assertSame(alice, userCache.findById(1L).get());
+
+    verify(userRepository, times(1)).findByEmail("alice@ucsb.edu");
+    verify(userRepository, times(0)).findById(1L);
+    UserCacheStats stats = userCache.stats();
+    assertEquals(2, stats.getHits());
+    assertEquals(1, stats.getMisses());
+    assertEquals(2.0 / 3, stats.getHitRate(), 1e-9);
+    assertEquals(1, stats.getSize());
+  }
+
+  @Test
+  void test_email_lookups_ignore_case() {
+    userCache.findByEmail("alice@ucsb.edu");
+    assertSame(alice, userCache.findByEmail("Alice@UCSB.edu").get());
+
+    verify(userRepository, times(1)).findByEmail("alice@ucsb.edu");
+    verify(userRepository, times(0)).findByEmail("Alice@UCSB.edu");
+  }
+
+  @Test
+  void test_missing_users_are_not_cached() {
+    assertFalse(userCache.findByEmail("nobody@ucsb.edu").isPresent());
+    assertFalse(userCache.findByEmail("nobody@ucsb.edu").isPresent());
+
+    verify(userRepository, times(2)).findByEmail("nobody@ucsb.edu");
+  }
+
+  @Test
+  void test_entries_expire() {
+    userCache.findByEmail("alice@ucsb.edu");
+    now += 59_000_000_000L;
+    userCache.findByEmail("alice@ucsb.edu");
+    now += 1_000_000_000L;
+    userCache.findByEmail("alice@ucsb.edu");
+
+    verify(userRepository, times(2)).findByEmail("alice@ucsb.edu");
+    assertEquals(1, userCache.stats().getEvictions());
+  }
+
+  @Test
+  void test_least_recently_used_is_evicted() {
+    userCache.findByEmail("alice@ucsb.edu");
+    userCache.findByEmail("bob@ucsb.edu");
+    userCache.findById(1L);
+    userCache.findByEmail("carol@ucsb.edu");
+
+    assertEquals(2, userCache.stats().getSize());
+    assertEquals(1, userCache.stats().getEvictions());
+    userCache.findByEmail("alice@ucsb.edu");
+    userCache.findByEmail("bob@ucsb.edu");
+    verify(userRepository, times(1)).findByEmail("alice@ucsb.edu");
+    verify(userRepository, times(2)).findByEmail("bob@ucsb.edu");
+  }
+
+  @Test
+  void test_invalidate_forces_a_query() {
+    userCache.findByEmail("alice@ucsb.edu");
+    userCache.invalidate(alice);
+    userCache.findByEmail("alice@ucsb.edu");
+    userCache.invalidateAll();
+    userCache.findById(1L);
+
+    verify(userRepository, times(2)).findByEmail("alice@ucsb.edu");
+    verify(userRepository, times(1)).findById(1L);
+  }
+
+  @Test
+  void test_lookup_racing_an_invalidation_is_not_cached() {
+    when(userRepository.findByEmail("alice@ucsb.edu")).thenAnswer(invocation -> {
+      // the row changes while it is being read
+      userCache.invalidate(1L);
+      return Optional.of(alice);
+    });
+
+    userCache.findByEmail("alice@ucsb.edu");
+    userCache.findByEmail("alice@ucsb.edu");
+
+    verify(userRepository, times(2)).findByEmail("alice@ucsb.edu");
+  }
+
+  @Test
+  void test_role_change_event_invalidates_its_users() {
+    userCache.findByEmail("alice@ucsb.edu");
+    userCache.findByEmail("bob@ucsb.edu");
+
+    userCache.onRoleChange(RoleChangeEvent.builder().userIds(List.of(1L)).driver(true).build());
+
+    userCache.findByEmail("alice@ucsb.edu");
+    userCache.findByEmail("bob@ucsb.edu");
+    verify(userRepository, times(2)).findByEmail("alice@ucsb.edu");
+    verify(userRepository, times(1)).findByEmail("bob@ucsb.edu");
+  }
+}
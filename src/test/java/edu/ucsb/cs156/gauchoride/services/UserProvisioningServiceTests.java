@@ -0,0 +1,104 @@
+package edu.ucsb.cs156.gauchoride.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+
+import edu.ucsb.cs156.gauchoride.entities.User;
+import edu.ucsb.cs156.gauchoride.repositories.UserRepository;
+
+class UserProvisioningServiceTests {
+
+  UserProvisioningService userProvisioning;
+  UserRepository userRepository;
+  UserCache userCache;
+
+  @BeforeEach
+  void setup() {
+    userRepository = mock(UserRepository.class);
+    userCache = mock(UserCache.class);
+    userProvisioning = new UserProvisioningService();
+    userProvisioning.userRepository = userRepository;
+    userProvisioning.userCache = userCache;
+    userProvisioning.adminEmails = List.of("phtcon@ucsb.edu");
+  }
+
+  OAuth2User principal(String email) {
+    return new DefaultOAuth2User(List.of(new SimpleGrantedAuthority("ROLE_USER")),
+        Map.of("sub", "sub-" + email, "email", email, "name", "Chris Gaucho", "email_verified", true), "sub");
+  }
+
+  @Test
+  void test_existing_user_is_returned_without_a_write() {
+    User cgaucho = User.builder().id(15L).email("cgaucho@ucsb.edu").build();
+    when(userCache.findByEmail("cgaucho@ucsb.edu")).thenReturn(Optional.of(cgaucho));
+
+    assertSame(cgaucho, userProvisioning.provision(principal("cgaucho@ucsb.edu")));
+
+    verify(userRepository, never()).save(any(User.class));
+  }
+
+  @Test
+  void test_existing_user_in_admin_emails_is_made_admin() {
+    User cached = User.builder().id(2L).email("phtcon@ucsb.edu").admin(false).build();
+    User stored = User.builder().id(2L).email("phtcon@ucsb.edu").admin(false).build();
+    when(userCache.findByEmail("phtcon@ucsb.edu")).thenReturn(Optional.of(cached));
+    when(userRepository.findById(2L)).thenReturn(Optional.of(stored));
+
+    User provisioned = userProvisioning.provision(principal("phtcon@ucsb.edu"));
+
+    assertSame(stored, provisioned);
+    assertTrue(provisioned.getAdmin());
+    assertEquals(1L, provisioned.getRoleEpoch());
+    // the cache's copy is left alone
+    assertFalse(cached.getAdmin());
+    verify(userRepository, times(1)).save(stored);
+    verify(userCache, times(1)).invalidate(stored);
+  }
+
+  @Test
+  void test_new_user_is_created() {
+    when(userCache.findByEmail("cgaucho@ucsb.edu")).thenReturn(Optional.empty());
+
+    User provisioned = userProvisioning.provision(principal("cgaucho@ucsb.edu"));
+
+    assertEquals("cgaucho@ucsb.edu", provisioned.getEmail());
+    assertEquals("sub-cgaucho@ucsb.edu", provisioned.getGoogleSub());
+    assertEquals("Chris Gaucho", provisioned.getFullName());
+    assertTrue(provisioned.getEmailVerified());
+    assertFalse(provisioned.getAdmin());
+    verify(userRepository, times(1)).save(provisioned);
+    verify(userCache, times(1)).invalidate(provisioned);
+  }
+
+  @Test
+  void test_user_whose_email_changed_is_found_by_google_sub() {
+    User cgaucho = User.builder().id(15L).email("cgaucho@ucsb.edu").googleSub("sub-chris@ucsb.edu").build();
+    when(userCache.findByEmail("chris@ucsb.edu")).thenReturn(Optional.empty());
+    when(userRepository.findByGoogleSub("sub-chris@ucsb.edu")).thenReturn(Optional.of(cgaucho));
+
+    User provisioned = userProvisioning.provision(principal("chris@ucsb.edu"));
+
+    assertSame(cgaucho, provisioned);
+    assertEquals("chris@ucsb.edu", provisioned.getEmail());
+    verify(userRepository, times(1)).save(cgaucho);
+    verify(userCache, times(1)).invalidate(cgaucho);
+  }
+}
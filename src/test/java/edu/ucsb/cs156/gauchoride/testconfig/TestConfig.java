@@ -5,6 +5,8 @@ import org.springframework.context.annotation.Bean;
 
 import edu.ucsb.cs156.gauchoride.services.CurrentUserService;
 import edu.ucsb.cs156.gauchoride.services.GrantedAuthoritiesService;
+import edu.ucsb.cs156.gauchoride.services.UserCache;
+import edu.ucsb.cs156.gauchoride.services.UserProvisioningService;
 
 @TestConfiguration
 public class TestConfig {
@@ -18,4 +20,14 @@ public class TestConfig {
     public GrantedAuthoritiesService grantedAuthoritiesService() {
         return new GrantedAuthoritiesService();
     }
+
+    @Bean
+    public UserCache userCacheService() {
+        return new UserCache();
+    }
+
+    @Bean
+    public UserProvisioningService userProvisioningService() {
+        return new UserProvisioningService();
+    }
 }
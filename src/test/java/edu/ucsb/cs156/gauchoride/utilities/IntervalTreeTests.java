@@ -0,0 +1,67 @@
+package edu.ucsb.cs156.gauchoride.utilities;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+class IntervalTreeTests {
+
+  private static int[] interval(int start, int end) {
+    return new int[] { start, end };
+  }
+
+  private static IntervalTree<int[]> treeOf(List<int[]> intervals) {
+    return IntervalTree.of(intervals, i -> i[0], i -> i[1]);
+  }
+
+  @Test
+  void test_empty_tree() {
+    IntervalTree<int[]> tree = treeOf(List.of());
+    assertEquals(0, tree.size());
+    assertEquals(List.of(), tree.containing(5));
+  }
+
+  @Test
+  void test_overlapping_is_half_open_and_in_start_order() {
+    int[] a = interval(10, 20);
+    int[] b = interval(0, 10);
+    int[] c = interval(15, 30);
+    int[] d = interval(5, 12);
+    IntervalTree<int[]> tree = treeOf(List.of(a, b, c, d));
+
+    assertEquals(4, tree.size());
+    assertEquals(List.of(b, d), tree.containing(5));
+    assertEquals(List.of(d, a), tree.containing(10));
+    assertEquals(List.of(a, c), tree.overlapping(15, 16));
+    assertEquals(List.of(b, d, a, c), tree.overlapping(0, 100));
+    assertEquals(List.of(), tree.overlapping(30, 40));
+    assertEquals(List.of(c), tree.overlapping(20, 40));
+  }
+
+  @Test
+  void test_matches_brute_force() {
+    Random random = new Random(156);
+    List<int[]> intervals = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      int start = random.nextInt(10000);
+      intervals.add(interval(start, start + 1 + random.nextInt(300)));
+    }
+    IntervalTree<int[]> tree = treeOf(intervals);
+
+    for (int q = 0; q < 200; q++) {
+      int from = random.nextInt(10500);
+      int to = from + 1 + random.nextInt(100);
+      List<int[]> expected = intervals.stream()
+          .filter(i -> i[0] < to && i[1] > from)
+          .collect(Collectors.toList());
+      List<int[]> actual = tree.overlapping(from, to);
+      assertEquals(expected.size(), actual.size());
+      assertEquals(true, actual.containsAll(expected));
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package edu.ucsb.cs156.gauchoride.utilities;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.gauchoride.entities.Ride;
+import edu.ucsb.cs156.gauchoride.entities.Shift;
+
+class MinuteOfWeekTests {
+
+  @Test
+  void test_dayIndex() {
+    assertEquals(0, MinuteOfWeek.dayIndex("Monday"));
+    assertEquals(1, MinuteOfWeek.dayIndex(" tuesday "));
+    assertEquals(6, MinuteOfWeek.dayIndex("SUNDAY"));
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> MinuteOfWeek.dayIndex("Funday"));
+    assertEquals("Invalid day Funday", e.getMessage());
+    assertThrows(IllegalArgumentException.class, () -> MinuteOfWeek.dayIndex(null));
+  }
+
+  @Test
+  void test_minuteOfDay() {
+    assertEquals(0, MinuteOfWeek.minuteOfDay("12:00AM"));
+    assertEquals(59, MinuteOfWeek.minuteOfDay("12:59am"));
+    assertEquals(9 * 60 + 30, MinuteOfWeek.minuteOfDay("09:30AM"));
+    assertEquals(12 * 60, MinuteOfWeek.minuteOfDay("12:00PM"));
+    assertEquals(13 * 60 + 37, MinuteOfWeek.minuteOfDay("1:37PM"));
+    assertEquals(23 * 60 + 59, MinuteOfWeek.minuteOfDay(" 11:59 PM "));
+  }
+
+  @Test
+  void test_minuteOfDay_rejects_bad_times() {
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> MinuteOfWeek.minuteOfDay("14:00"));
+    assertEquals("Invalid time 14:00, expected HH:MM(A/P)M", e.getMessage());
+    assertThrows(IllegalArgumentException.class, () -> MinuteOfWeek.minuteOfDay("13:00PM"));
+    assertThrows(IllegalArgumentException.class, () -> MinuteOfWeek.minuteOfDay("0:30AM"));
+    assertThrows(IllegalArgumentException.class, () -> MinuteOfWeek.minuteOfDay("10:60AM"));
+    assertThrows(IllegalArgumentException.class, () -> MinuteOfWeek.minuteOfDay(null));
+  }
+
+  @Test
+  void test_of_and_end() {
+    int start = MinuteOfWeek.of("Tuesday", "2:00PM");
+    assertEquals(1440 + 14 * 60, start);
+    assertEquals(1440 + 15 * 60 + 15, MinuteOfWeek.end(start, "3:15PM"));
+    // past midnight
+    int late = MinuteOfWeek.of("Sunday", "11:30PM");
+    assertEquals(MinuteOfWeek.MINUTES_PER_WEEK + 15, MinuteOfWeek.end(late, "12:15AM"));
+  }
+
+  @Test
+  void test_orNull() {
+    assertNull(MinuteOfWeek.ofOrNull("Tuesday", "noon"));
+    assertNull(MinuteOfWeek.ofOrNull(null, "2:00PM"));
+    assertEquals(1440, MinuteOfWeek.ofOrNull("Tuesday", "12:00AM"));
+    assertNull(MinuteOfWeek.endOrNull(null, "2:00PM"));
+    assertNull(MinuteOfWeek.endOrNull(1440, "later"));
+    assertEquals(1500, MinuteOfWeek.endOrNull(1440, "1:00AM"));
+  }
+
+  @Test
+  void test_of_local_date_time() {
+    // 2023-05-15 was a Monday
+    assertEquals(0, MinuteOfWeek.of(LocalDateTime.of(2023, 5, 15, 0, 0)));
+    assertEquals(1440 + 14 * 60 + 30, MinuteOfWeek.of(LocalDateTime.of(2023, 5, 16, 14, 30, 59)));
+    assertEquals(MinuteOfWeek.MINUTES_PER_WEEK - 1, MinuteOfWeek.of(LocalDateTime.of(2023, 5, 21, 23, 59)));
+  }
+
+  @Test
+  void test_dayOf_and_timeOf() {
+    assertEquals("Monday", MinuteOfWeek.dayOf(0));
+    assertEquals("Sunday", MinuteOfWeek.dayOf(MinuteOfWeek.MINUTES_PER_WEEK - 1));
+    assertEquals("Monday", MinuteOfWeek.dayOf(MinuteOfWeek.MINUTES_PER_WEEK + 10));
+    assertEquals("12:00AM", MinuteOfWeek.timeOf(0));
+    assertEquals("9:05AM", MinuteOfWeek.timeOf(9 * 60 + 5));
+    assertEquals("12:30PM", MinuteOfWeek.timeOf(1440 + 12 * 60 + 30));
+    assertEquals("11:59PM", MinuteOfWeek.timeOf(MinuteOfWeek.MINUTES_PER_DAY - 1));
+  }
+
+  @Test
+  void test_entities_compute_minutes_of_week() {
+    Ride ride = Ride.builder().day("Wednesday").startTime("10:00AM").endTime("10:50AM").build();
+    ride.computeMinutesOfWeek();
+    assertEquals(2 * 1440 + 600, ride.getStartMinuteOfWeek());
+    assertEquals(2 * 1440 + 650, ride.getEndMinuteOfWeek());
+
+    Shift shift = Shift.builder().day("Friday").shiftStart("09:00AM").shiftEnd("12:30PM").build();
+    shift.computeMinutesOfWeek();
+    assertEquals(4 * 1440 + 540, shift.getStartMinuteOfWeek());
+    assertEquals(4 * 1440 + 750, shift.getEndMinuteOfWeek());
+  }
+
+  @Test
+  void test_weekOffsets() {
+    // Wednesday afternoon: only Sunday's late intervals can't reach it
+    assertArrayEquals(new int[] { 0 }, MinuteOfWeek.weekOffsets(2 * 1440 + 840, 2 * 1440 + 900));
+    // Monday just after midnight: also intervals from Sunday night
+    assertArrayEquals(new int[] { 10080, 0 }, MinuteOfWeek.weekOffsets(0, 60));
+    // Sunday night into Monday: also intervals early on Monday
+    assertArrayEquals(new int[] { 0, -10080 }, MinuteOfWeek.weekOffsets(10020, 10140));
+  }
+}
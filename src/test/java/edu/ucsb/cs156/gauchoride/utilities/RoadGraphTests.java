@@ -0,0 +1,50 @@
+package edu.ucsb.cs156.gauchoride.utilities;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.jupiter.api.Test;
+
+class RoadGraphTests {
+
+  @Test
+  void test_parse_numbers_places_and_links_both_ways() throws IOException {
+    RoadGraph graph = RoadGraph.parse(new StringReader("""
+        # a comment
+        A, B ,3
+
+        B,C,4
+        """));
+
+    assertEquals(3, graph.size());
+    assertEquals(1, graph.indexOf("B"));
+    assertEquals("C", graph.name(2));
+    assertEquals(-1, graph.indexOf("D"));
+
+    int b = graph.indexOf("B");
+    assertEquals(2, graph.endRoad(b) - graph.firstRoad(b));
+    int road = graph.firstRoad(b);
+    assertEquals(0, graph.target(road));
+    assertEquals(3, graph.minutes(road));
+    assertEquals(2, graph.target(road + 1));
+    assertEquals(4, graph.minutes(road + 1));
+  }
+
+  @Test
+  void test_parse_rejects_bad_lines() {
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+        () -> RoadGraph.parse(new StringReader("A,B\n")));
+    assertEquals("Line 1: expected from,to,minutes", e.getMessage());
+
+    e = assertThrows(IllegalArgumentException.class,
+        () -> RoadGraph.parse(new StringReader("A,B,1\nB,C,soon\n")));
+    assertEquals("Line 2: invalid minutes soon", e.getMessage());
+
+    e = assertThrows(IllegalArgumentException.class,
+        () -> RoadGraph.parse(new StringReader("A,B,-1\n")));
+    assertEquals("Line 1: invalid minutes -1", e.getMessage());
+  }
+}
@@ -0,0 +1,151 @@
+package edu.ucsb.cs156.gauchoride.utilities;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TravelTimeMatrixTests {
+
+  static final byte[] HASH = new byte[TravelTimeMatrix.HASH_BYTES];
+
+  static RoadGraph graph(String roads) throws IOException {
+    return RoadGraph.parse(new StringReader(roads));
+  }
+
+  @Test
+  void test_compute_finds_shortest_paths() throws IOException {
+    // A-B-C is shorter than the direct road A-C; D is on its own
+    RoadGraph graph = graph("A,B,2\nB,C,3\nA,C,10\nD,E,1\n");
+    TravelTimeMatrix matrix = TravelTimeMatrix.compute(graph, HASH);
+
+    int a = graph.indexOf("A");
+    int c = graph.indexOf("C");
+    int d = graph.indexOf("D");
+    assertEquals(5, matrix.size());
+    assertEquals(0, matrix.minutes(a, a));
+    assertEquals(5, matrix.minutes(a, c));
+    assertEquals(5, matrix.minutes(c, a));
+    assertEquals(TravelTimeMatrix.UNREACHABLE, matrix.minutes(a, d));
+  }
+
+  @Test
+  void test_compute_matches_floyd_warshall() throws IOException {
+    Random random = new Random(156);
+    int n = 40;
+    StringBuilder roads = new StringBuilder();
+    int[][] expected = new int[n][n];
+    for (int[] row : expected) {
+      Arrays.fill(row, Integer.MAX_VALUE / 2);
+    }
+    for (int i = 0; i < n; i++) {
+      expected[i][i] = 0;
+      // every node is on the ring, so the graph is connected
+      int minutes = 1 + random.nextInt(9);
+      roads.append(i).append(',').append((i + 1) % n).append(',').append(minutes).append('\n');
+      expected[i][(i + 1) % n] = Math.min(expected[i][(i + 1) % n], minutes);
+      expected[(i + 1) % n][i] = expected[i][(i + 1) % n];
+    }
+    for (int k = 0; k < 60; k++) {
+      int i = random.nextInt(n);
+      int j = random.nextInt(n);
+      int minutes = 1 + random.nextInt(20);
+      roads.append(i).append(',').append(j).append(',').append(minutes).append('\n');
+      if (i != j) {
+        expected[i][j] = Math.min(expected[i][j], minutes);
+        expected[j][i] = expected[i][j];
+      }
+    }
+    for (int k = 0; k < n; k++) {
+      for (int i = 0; i < n; i++) {
+        for (int j = 0; j < n; j++) {
+          expected[i][j] = Math.min(expected[i][j], expected[i][k] + expected[k][j]);
+        }
+      }
+    }
+
+    RoadGraph graph = graph(roads.toString());
+    TravelTimeMatrix matrix = TravelTimeMatrix.compute(graph, HASH);
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < n; j++) {
+        assertEquals(expected[i][j], matrix.minutes(graph.indexOf("" + i), graph.indexOf("" + j)));
+      }
+    }
+  }
+
+  @Test
+  void test_write_and_map(@TempDir Path dir) throws IOException {
+    RoadGraph graph = graph("A,B,2\nB,C,3\n");
+    byte[] hash = new byte[TravelTimeMatrix.HASH_BYTES];
+    hash[0] = 1;
+    Path file = dir.resolve("times.bin");
+
+    TravelTimeMatrix.compute(graph, hash).writeTo(file);
+    TravelTimeMatrix mapped = TravelTimeMatrix.map(file, graph.size(), hash).get();
+
+    assertEquals(5, mapped.minutes(graph.indexOf("A"), graph.indexOf("C")));
+    assertEquals(1, Files.list(dir).count());
+  }
+
+  @Test
+  void test_map_ignores_missing_or_stale_files(@TempDir Path dir) throws IOException {
+    RoadGraph graph = graph("A,B,2\nB,C,3\n");
+    Path file = dir.resolve("times.bin");
+    assertTrue(TravelTimeMatrix.map(file, graph.size(), HASH).isEmpty());
+
+    TravelTimeMatrix.compute(graph, HASH).writeTo(file);
+    byte[] otherHash = HASH.clone();
+    otherHash[31] = 7;
+    assertTrue(TravelTimeMatrix.map(file, graph.size(), otherHash).isEmpty());
+    assertTrue(TravelTimeMatrix.map(file, graph.size() + 1, HASH).isEmpty());
+
+    Files.write(file, new byte[(int) TravelTimeMatrix.fileBytes(graph.size())]);
+    assertTrue(TravelTimeMatrix.map(file, graph.size(), HASH).isEmpty());
+  }
+
+  @Test
+  void test_read_checks_the_header() throws IOException {
+    RoadGraph graph = graph("A,B,2\nB,C,3\n");
+    TravelTimeMatrix computed = TravelTimeMatrix.compute(graph, HASH);
+    Path file = Files.createTempFile("times", ".bin");
+    try {
+      computed.writeTo(file);
+      byte[] contents = Files.readAllBytes(file);
+
+      TravelTimeMatrix read = TravelTimeMatrix.read(new ByteArrayInputStream(contents), graph.size(), HASH).get();
+      assertEquals(5, read.minutes(graph.indexOf("A"), graph.indexOf("C")));
+      byte[] otherHash = HASH.clone();
+      otherHash[0] = 1;
+      assertTrue(TravelTimeMatrix.read(new ByteArrayInputStream(contents), graph.size(), otherHash).isEmpty());
+      assertTrue(TravelTimeMatrix.read(new ByteArrayInputStream(Arrays.copyOf(contents, contents.length + 1)),
+          graph.size(), HASH).isEmpty());
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  void test_bundled_campus_table_matches_the_road_graph() throws IOException {
+    // if this fails, rebuild the table as described on TravelTimeMatrix
+    byte[] roads;
+    try (InputStream in = getClass().getResourceAsStream("/campus/roads.csv")) {
+      roads = in.readAllBytes();
+    }
+    RoadGraph graph = RoadGraph.parse(new InputStreamReader(new ByteArrayInputStream(roads), StandardCharsets.UTF_8));
+    try (InputStream in = getClass().getResourceAsStream("/campus/travel-times.bin")) {
+      assertTrue(TravelTimeMatrix.read(in, graph.size(), TravelTimeMatrix.hashOf(roads)).isPresent());
+    }
+  }
+}